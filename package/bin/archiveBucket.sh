@@ -12,6 +12,11 @@
 #  coldPath   = $SPLUNK_HOME/var/lib/splunk/archiver-test-index/colddb
 #  thawedPath = $SPLUNK_HOME/var/lib/splunk/archiver-test-index/thaweddb
 #  coldToFrozenScript = $SPLUNK_HOME/etc/apps/shep/bin/archiveBucket.sh archiver-test-index
+#
+# If spoolDirectory is set in conf/archiver.xml, the bucket is only renamed
+# into <spoolDirectory>/<index>/ and the Shuttl server archives it from there.
+# No JVM is started. The bucket is renamed with a leading dot first, so that
+# the server never sees a bucket that is only partially moved.
 
 #
 #
@@ -47,4 +52,14 @@ fi
 index=$1
 bucket=$2
 
+spool=`sed -n 's:.*<spoolDirectory>[[:space:]]*\(.*[^[:space:]]\)[[:space:]]*</spoolDirectory>.*:\1:p' conf/archiver.xml 2>/dev/null || true`
+
+if [ -n "$spool" ]; then
+    name=`basename "$bucket"`
+    mkdir -p "$spool/$index"
+    mv "$bucket" "$spool/$index/.$name"
+    mv "$spool/$index/.$name" "$spool/$index/$name"
+    exit 0
+fi
+
 exec -a splunk-bucket-freezer $JAVA_HOME/bin/java -cp ./bin/*:./lib/* com.splunk.shuttl.archiver.archive.BucketFreezer $index $bucket
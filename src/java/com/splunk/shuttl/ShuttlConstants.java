@@ -37,9 +37,12 @@ public final class ShuttlConstants {
 	public static final String ENDPOINT_FORWARDER = "/forwarder";
 	public static final String ENDPOINT_SINK_PREFIX = "/sinkprefix";
 	public static final String ENDPOINT_BUCKET_ARCHIVER = "/bucket/archive";
+	public static final String ENDPOINT_BUCKET_ARCHIVER_BATCH = "/bucket/archive/batch";
 	public static final String ENDPOINT_BUCKET_THAW = "/bucket/thaw";
+	public static final String ENDPOINT_THAW_JOBS = "/bucket/thaw/jobs";
 	public static final String ENDPOINT_LIST_BUCKETS = "/bucket/list";
 	public static final String ENDPOINT_LIST_INDEXES = "/index/list";
+	public static final String ENDPOINT_CATALOG_REBUILD = "/catalog/rebuild";
 	public static final String ENDPOINT_ARCHIVER = "/archiver";
 	public static final String ENDPOINT_SHUTDOWN = "/shutdown";
 	public static final String ENDPOINT_EXPORT_SRVC_STATUS = "/exportservicestatus";
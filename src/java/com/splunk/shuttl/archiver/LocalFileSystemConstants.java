@@ -42,6 +42,14 @@ public class LocalFileSystemConstants {
 	static final String THAW_LOCKS_PATH = ARCHIVER_DIRECTORY_PATH
 			+ File.separator + "thaw-locks-dir";
 
+	/**
+	 * Name of the directory next to a bucket that is frozen, where the bucket is
+	 * kept safe while it's archived.
+	 */
+	public static final String SAFE_STAGING_DIRECTORY_NAME = ".shuttl-safe-buckets";
+
+	static final String ARCHIVE_JOURNAL_FILE_NAME = "archive-journal";
+
 	public static final String THAW_TRANSFERS_PATH = ARCHIVER_DIRECTORY_PATH
 			+ File.separator + "thaw-transfers-dir";
 
@@ -101,4 +109,11 @@ public class LocalFileSystemConstants {
 		return createDirectory(THAW_TRANSFERS_PATH);
 	}
 
+	/**
+	 * Journal of the archiving stages that buckets have completed.
+	 */
+	public static File getArchiveJournalFile() {
+		return new File(getArchiverDirectory(), ARCHIVE_JOURNAL_FILE_NAME);
+	}
+
 }
@@ -17,16 +17,27 @@ package com.splunk.shuttl.archiver.archive;
 
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.util.AbstractMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal;
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal.Stage;
 import com.splunk.shuttl.archiver.bucketsize.ArchiveBucketSize;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.ArchiveTimeIndex;
+import com.splunk.shuttl.archiver.catalog.CatalogEntry;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.FileOverwriteException;
+import com.splunk.shuttl.archiver.importexport.BucketExportStream;
 import com.splunk.shuttl.archiver.model.Bucket;
 
 /**
@@ -39,12 +50,33 @@ public class ArchiveBucketTransferer {
 			.getLogger(ArchiveBucketTransferer.class);
 	private final PathResolver pathResolver;
 	private final ArchiveBucketSize archiveBucketSize;
+	private final boolean packBuckets;
+	private final ArchiveCatalog archiveCatalog;
+	private final ArchiveTimeIndex archiveTimeIndex;
+	private final BucketJournal bucketJournal;
 
+	/**
+	 * @param packBuckets
+	 *          if true, buckets in {@link BucketFormat#SPLUNK_BUCKET} are put as a
+	 *          single packed file in the archive.
+	 * @param archiveCatalog
+	 *          to record transferred buckets in.
+	 * @param archiveTimeIndex
+	 *          to add transferred buckets to.
+	 * @param bucketJournal
+	 *          to record uploaded buckets in, and to resume from.
+	 */
 	public ArchiveBucketTransferer(ArchiveFileSystem archive,
-			PathResolver pathResolver, ArchiveBucketSize archiveBucketSize) {
+			PathResolver pathResolver, ArchiveBucketSize archiveBucketSize,
+			boolean packBuckets, ArchiveCatalog archiveCatalog,
+			ArchiveTimeIndex archiveTimeIndex, BucketJournal bucketJournal) {
 		this.archiveFileSystem = archive;
 		this.pathResolver = pathResolver;
 		this.archiveBucketSize = archiveBucketSize;
+		this.packBuckets = packBuckets;
+		this.archiveCatalog = archiveCatalog;
+		this.archiveTimeIndex = archiveTimeIndex;
+		this.bucketJournal = bucketJournal;
 	}
 
 	/**
@@ -60,8 +92,9 @@ public class ArchiveBucketTransferer {
 		logger.info(will("attempting to transfer bucket to archive", "bucket",
 				bucket, "destination", destination));
 		try {
-			archiveFileSystem.putFileAtomically(bucket.getDirectory(), destination);
-			archiveBucketSize.putSize(bucket);
+			putBucketAtomically(bucket, destination);
+			journal(bucket, Stage.SIZE_WRITTEN);
+			recordArchivedBucket(bucket);
 		} catch (FileNotFoundException e) {
 			logFileNotFoundException(bucket, destination, e);
 			throw new FailedToArchiveBucketException(e);
@@ -74,6 +107,129 @@ public class ArchiveBucketTransferer {
 		}
 	}
 
+	/**
+	 * The bucket's size is put with the bucket, so that both are published with
+	 * one rename.
+	 */
+	private void putBucketAtomically(Bucket bucket, URI destination)
+			throws FileNotFoundException, FileOverwriteException, IOException {
+		Map<String, File> sizeMetadata = archiveBucketSize
+				.getSizeMetadata(bucket);
+		try {
+			if (packBuckets && BucketFormat.SPLUNK_BUCKET.equals(bucket.getFormat()))
+				archiveFileSystem.putDirectoryPackedAtomically(bucket.getDirectory(),
+						destination, sizeMetadata);
+			else
+				archiveFileSystem.putFileAtomically(bucket.getDirectory(),
+						destination, sizeMetadata);
+		} finally {
+			deleteSizeFiles(sizeMetadata);
+		}
+	}
+
+	private void deleteSizeFiles(Map<String, File> sizeMetadata) {
+		for (File sizeFile : sizeMetadata.values())
+			FileUtils.deleteQuietly(sizeFile);
+	}
+
+	/**
+	 * Transfers an exported bucket stream to the archive, without the bucket
+	 * existing on the local file system.
+	 * 
+	 * @param bucketStream
+	 *          to read and transfer to {@link ArchiveFileSystem}
+	 * @throws FailedToArchiveBucketException
+	 *           if bucket failed to be transfered to the archive for any reason.
+	 */
+	public void transferBucketStreamToArchive(BucketExportStream bucketStream) {
+		Bucket bucket = bucketStream.getBucket();
+		URI destination = pathResolver.resolveArchivePath(bucket);
+		logger.info(will("attempting to stream bucket to archive", "bucket",
+				bucket, "destination", destination));
+		try {
+			putStreamAtomically(bucketStream, destination);
+			journal(bucket, Stage.SIZE_WRITTEN);
+			recordArchivedBucket(bucketStream.getStreamedBucket());
+		} catch (FileOverwriteException e) {
+			logFileOverwriteException(bucket, destination, e);
+			throw new FailedToArchiveBucketException(e);
+		} catch (IOException e) {
+			logIOException(bucket, destination, e);
+			throw new FailedToArchiveBucketException(e);
+		}
+	}
+
+	private void putStreamAtomically(BucketExportStream bucketStream,
+			URI destination) throws FileOverwriteException, IOException {
+		StreamedSizeMetadata sizeMetadata = new StreamedSizeMetadata(bucketStream);
+		try {
+			archiveFileSystem.putStreamAtomically(bucketStream.getInputStream(),
+					destination, bucketStream.getFileName(), sizeMetadata);
+		} finally {
+			sizeMetadata.deleteSizeFiles();
+		}
+	}
+
+	/**
+	 * The size of a streamed bucket is the number of bytes streamed, so its size
+	 * file is written when the archive file system reads the metadata, which is
+	 * after it has read the stream.
+	 */
+	private class StreamedSizeMetadata extends AbstractMap<String, File> {
+
+		private final BucketExportStream bucketStream;
+		private Map<String, File> sizeMetadata;
+
+		public StreamedSizeMetadata(BucketExportStream bucketStream) {
+			this.bucketStream = bucketStream;
+		}
+
+		@Override
+		public Set<Map.Entry<String, File>> entrySet() {
+			if (sizeMetadata == null)
+				sizeMetadata = archiveBucketSize
+						.getSizeMetadata(getStreamedBucket(bucketStream));
+			return sizeMetadata.entrySet();
+		}
+
+		public void deleteSizeFiles() {
+			if (sizeMetadata != null)
+				ArchiveBucketTransferer.this.deleteSizeFiles(sizeMetadata);
+		}
+	}
+
+	private static Bucket getStreamedBucket(BucketExportStream bucketStream) {
+		try {
+			return bucketStream.getStreamedBucket();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void journal(Bucket bucket, Stage stage) {
+		bucketJournal.record(bucket, stage, bucket.getFormat());
+	}
+
+	private void recordArchivedBucket(Bucket bucket) {
+		archiveTimeIndex.add(bucket.getIndex(), CatalogEntry.fromBucket(bucket));
+		addToCatalog(bucket);
+	}
+
+	/**
+	 * The bucket is already archived when it's added to the catalog, so failing
+	 * to add it does not fail the transfer. The catalog has to be rebuilt to
+	 * list the bucket.
+	 */
+	private void addToCatalog(Bucket bucket) {
+		try {
+			archiveCatalog.add(bucket);
+		} catch (IOException e) {
+			logger.warn(warn("Added archived bucket to the archive catalog", e,
+					"The bucket will not be listed until the catalog is rebuilt",
+					"bucket", bucket, "exception", e));
+		}
+	}
+
 	private void logFileNotFoundException(Bucket bucket, URI destination,
 			FileNotFoundException e) {
 		logger.error(did("attempted to transfer bucket to archive",
@@ -103,8 +259,14 @@ public class ArchiveBucketTransferer {
 	public static ArchiveBucketTransferer create(
 			ArchiveFileSystem archiveFileSystem, ArchiveConfiguration config) {
 		PathResolver pathResolver = new PathResolver(config);
+		ArchiveCatalog archiveCatalog = ArchiveCatalog.disabled();
+		if (config.isCatalogEnabled())
+			archiveCatalog = new ArchiveCatalog(archiveFileSystem, pathResolver);
 		return new ArchiveBucketTransferer(archiveFileSystem, pathResolver,
-				ArchiveBucketSize.create(pathResolver, archiveFileSystem));
+				ArchiveBucketSize.create(pathResolver, archiveFileSystem),
+				config.isPackBuckets(), archiveCatalog,
+				ArchiveTimeIndex.getSharedInstance(),
+				BucketJournal.getSharedInstance());
 	}
 
 	/**
@@ -123,6 +285,19 @@ public class ArchiveBucketTransferer {
 		return !listPathsForBucketUri(bucketUriWithFormat).isEmpty();
 	}
 
+	/**
+	 * Asks only the journal, so that finished formats don't cost a call to the
+	 * archive file system. The journal can't tell if the archive has moved or
+	 * lost the bucket since, so the bucket has to be looked up with
+	 * {@link #isArchived(Bucket, BucketFormat)} before it's deleted.
+	 * 
+	 * @return true if the journal has the {@link Bucket} in {@link BucketFormat}
+	 *         transferred with its size.
+	 */
+	public boolean isJournaledAsArchived(Bucket bucket, BucketFormat format) {
+		return bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN, format);
+	}
+
 	private List<URI> listPathsForBucketUri(URI bucketUriWithFormat) {
 		try {
 			return archiveFileSystem.listPath(bucketUriWithFormat);
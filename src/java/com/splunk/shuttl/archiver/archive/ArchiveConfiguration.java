@@ -15,6 +15,7 @@
 
 package com.splunk.shuttl.archiver.archive;
 
+import java.io.File;
 import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.util.ArrayList;
@@ -25,22 +26,101 @@ import com.splunk.shuttl.server.mbeans.ShuttlArchiverMBean;
 
 public class ArchiveConfiguration {
 
+	public static final int DEFAULT_ARCHIVER_THREADS = 2;
+	public static final int DEFAULT_ARCHIVER_QUEUE_CAPACITY = 100;
+	public static final int DEFAULT_UPLOAD_STREAMS = 4;
+	public static final int DEFAULT_UPLOAD_BUFFER_SIZE = 64 * 1024;
+	public static final int DEFAULT_THAW_THREADS = 1;
+	public static final int DEFAULT_THAW_JOBS = 2;
+
 	private final List<BucketFormat> bucketFormats;
 	private final URI archivingRoot;
 	private final String clusterName;
 	private final String serverName;
 	private final List<BucketFormat> bucketFormatPriority;
 	private final URI tmpDirectory;
+	private final Integer archiverThreads;
+	private final Integer archiverQueueCapacity;
+	private final Boolean csvStreamingExport;
+	private final Integer uploadStreams;
+	private final Integer uploadBufferSize;
+	private final Boolean packBuckets;
+	private final Boolean catalogEnabled;
+	private final Integer thawThreads;
+	private final Boolean csvStreamingThaw;
+	private final Integer thawJobs;
+	private final Long thawCacheBudgetBytes;
+	private final String spoolDirectory;
 
 	public ArchiveConfiguration(List<BucketFormat> bucketFormats,
 			URI archivingRoot, String clusterName, String serverName,
 			List<BucketFormat> bucketFormatPriority, URI tmpDirectory) {
+		this(bucketFormats, archivingRoot, clusterName, serverName,
+				bucketFormatPriority, tmpDirectory, null, null, null, null,
+				null, null, null, null, null, null, null, null);
+	}
+
+	/**
+	 * @param archiverThreads
+	 *          number of buckets archived at the same time. null means default.
+	 * @param archiverQueueCapacity
+	 *          number of buckets that can wait for archiving. null means
+	 *          default.
+	 * @param csvStreamingExport
+	 *          true if csv exports should be streamed to the archive without
+	 *          writing a local .csv file. null means false.
+	 * @param uploadStreams
+	 *          number of files uploaded at the same time. null means default.
+	 * @param uploadBufferSize
+	 *          size in bytes of the buffer used per upload stream. null means
+	 *          default.
+	 * @param packBuckets
+	 *          true if buckets in splunk bucket format are archived as a single
+	 *          container file. null means false.
+	 * @param catalogEnabled
+	 *          true if archived buckets are recorded in, and listed from, the
+	 *          archive catalog. null means false.
+	 * @param thawThreads
+	 *          number of buckets that are thawed at the same time by a thaw
+	 *          request. null means one bucket at a time.
+	 * @param csvStreamingThaw
+	 *          true if csv buckets should be imported while they are read from
+	 *          the archive, without writing a local .csv file. null means false.
+	 * @param thawJobs
+	 *          number of asynchronous thaw jobs run at the same time.
+	 * @param thawCacheBudgetBytes
+	 *          bytes of thawed buckets kept per index.
+	 * @param spoolDirectory
+	 *          directory that archiveBucket.sh renames frozen buckets into,
+	 *          to be archived by the server. Spooling is disabled when null.
+	 */
+	public ArchiveConfiguration(List<BucketFormat> bucketFormats,
+			URI archivingRoot, String clusterName, String serverName,
+			List<BucketFormat> bucketFormatPriority, URI tmpDirectory,
+			Integer archiverThreads, Integer archiverQueueCapacity,
+			Boolean csvStreamingExport, Integer uploadStreams,
+			Integer uploadBufferSize, Boolean packBuckets,
+			Boolean catalogEnabled, Integer thawThreads,
+			Boolean csvStreamingThaw, Integer thawJobs,
+			Long thawCacheBudgetBytes, String spoolDirectory) {
 		this.bucketFormats = bucketFormats;
 		this.archivingRoot = archivingRoot;
 		this.clusterName = clusterName;
 		this.serverName = serverName;
 		this.bucketFormatPriority = bucketFormatPriority;
 		this.tmpDirectory = tmpDirectory;
+		this.archiverThreads = archiverThreads;
+		this.archiverQueueCapacity = archiverQueueCapacity;
+		this.csvStreamingExport = csvStreamingExport;
+		this.uploadStreams = uploadStreams;
+		this.uploadBufferSize = uploadBufferSize;
+		this.packBuckets = packBuckets;
+		this.catalogEnabled = catalogEnabled;
+		this.thawThreads = thawThreads;
+		this.csvStreamingThaw = csvStreamingThaw;
+		this.thawJobs = thawJobs;
+		this.thawCacheBudgetBytes = thawCacheBudgetBytes;
+		this.spoolDirectory = spoolDirectory;
 	}
 
 	/**
@@ -76,7 +156,13 @@ public class ArchiveConfiguration {
 		List<BucketFormat> bucketFormatPriority = createFormatPriorityList(mBean);
 		URI tmpDirectory = getTmpDirectoryFromArchivingRoot(mBean, archivingRoot);
 		return new ArchiveConfiguration(bucketFormats, archivingRoot, clusterName,
-				serverName, bucketFormatPriority, tmpDirectory);
+				serverName, bucketFormatPriority, tmpDirectory,
+				mBean.getArchiverThreads(), mBean.getArchiverQueueCapacity(),
+				mBean.getCsvStreamingExport(), mBean.getUploadStreams(),
+				mBean.getUploadBufferSize(), mBean.getPackBuckets(),
+				mBean.getCatalogEnabled(), mBean.getThawThreads(),
+				mBean.getCsvStreamingThaw(), mBean.getThawJobs(),
+				mBean.getThawCacheBudgetBytes(), mBean.getSpoolDirectory());
 	}
 
 	private static URI archivingRootFromMBean(ShuttlArchiverMBean mBean) {
@@ -141,4 +227,107 @@ public class ArchiveConfiguration {
 		return tmpDirectory;
 	}
 
+	/**
+	 * @return number of buckets that are archived at the same time.
+	 */
+	public int getArchiverThreads() {
+		return positiveOrDefault(archiverThreads, DEFAULT_ARCHIVER_THREADS);
+	}
+
+	/**
+	 * @return number of buckets that can wait to be archived, before archive
+	 *         requests are rejected.
+	 */
+	public int getArchiverQueueCapacity() {
+		return positiveOrDefault(archiverQueueCapacity,
+				DEFAULT_ARCHIVER_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @return true if csv exports are streamed directly to the archive file
+	 *         system.
+	 */
+	public boolean isCsvStreamingExport() {
+		return Boolean.TRUE.equals(csvStreamingExport);
+	}
+
+	/**
+	 * @return number of files of a bucket that are uploaded at the same time.
+	 */
+	public int getUploadStreams() {
+		return positiveOrDefault(uploadStreams, DEFAULT_UPLOAD_STREAMS);
+	}
+
+	/**
+	 * @return size in bytes of the buffer used per uploaded file.
+	 */
+	public int getUploadBufferSize() {
+		return positiveOrDefault(uploadBufferSize, DEFAULT_UPLOAD_BUFFER_SIZE);
+	}
+
+	/**
+	 * @return true if buckets in splunk bucket format are archived as a single
+	 *         container file, instead of one archive file per bucket file.
+	 */
+	public boolean isPackBuckets() {
+		return Boolean.TRUE.equals(packBuckets);
+	}
+
+	/**
+	 * @return true if archived buckets are recorded in, and listed from, the
+	 *         archive catalog.
+	 */
+	public boolean isCatalogEnabled() {
+		return Boolean.TRUE.equals(catalogEnabled);
+	}
+
+	/**
+	 * @return number of buckets that are thawed at the same time by a thaw
+	 *         request. One thaws the buckets one after another.
+	 */
+	public int getThawThreads() {
+		return positiveOrDefault(thawThreads, DEFAULT_THAW_THREADS);
+	}
+
+	/**
+	 * @return true if csv buckets are imported while they are read from the
+	 *         archive file system, without writing a local .csv file.
+	 */
+	public boolean isCsvStreamingThaw() {
+		return Boolean.TRUE.equals(csvStreamingThaw);
+	}
+
+	/**
+	 * @return number of asynchronous thaw jobs that run at the same time. Jobs
+	 *         submitted beyond this wait in a bounded queue.
+	 */
+	public int getThawJobs() {
+		return positiveOrDefault(thawJobs, DEFAULT_THAW_JOBS);
+	}
+
+	/**
+	 * @return bytes of thawed buckets that each index can keep in its thaw
+	 *         directory before the least recently used ones are deleted. Zero
+	 *         keeps thawed buckets forever.
+	 */
+	public long getThawCacheBudgetBytes() {
+		if (thawCacheBudgetBytes == null || thawCacheBudgetBytes < 0)
+			return 0;
+		return thawCacheBudgetBytes;
+	}
+
+	/**
+	 * @return directory that archiveBucket.sh renames frozen buckets into, or
+	 *         null if frozen buckets are handed to the server over REST.
+	 */
+	public File getSpoolDirectory() {
+		if (spoolDirectory == null || spoolDirectory.trim().length() == 0)
+			return null;
+		return new File(spoolDirectory.trim());
+	}
+
+	private static int positiveOrDefault(Integer value, int defaultValue) {
+		return value != null && value > 0 ? value : defaultValue;
+	}
+
 }
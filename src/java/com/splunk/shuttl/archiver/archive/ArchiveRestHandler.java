@@ -14,11 +14,14 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.archive;
 
+import static com.splunk.shuttl.ShuttlConstants.*;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -30,19 +33,30 @@ import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
 
-import com.splunk.shuttl.ShuttlConstants;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketHandler;
+import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketsHandler;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.server.mbeans.rest.ListBucketsEndpoint;
 
 /**
  * Handling all the calls and returns to and from {@link ListBucketsEndpoint}
  */
-public class ArchiveRestHandler implements SharedLockBucketHandler {
+public class ArchiveRestHandler implements SharedLockBucketHandler,
+		SharedLockBucketsHandler {
+
+	/**
+	 * Connections kept open to the shuttl server by the pooled client.
+	 */
+	public static final int MAX_CONNECTIONS = 4;
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
 	private final HttpClient httpClient;
 	private final Logger logger;
@@ -71,22 +85,80 @@ public class ArchiveRestHandler implements SharedLockBucketHandler {
 		}
 	}
 
+	/**
+	 * Sends all buckets in one request to the batch archive endpoint, which
+	 * queues as many of them as it can. Buckets that were not queued are left
+	 * for the next retry of failed buckets.
+	 */
+	public void callRestToArchiveBuckets(List<Bucket> buckets) {
+		HttpResponse response = null;
+		try {
+			HttpPost request = createArchiveRequest(ENDPOINT_BUCKET_ARCHIVER_BATCH);
+			request.setEntity(new UrlEncodedFormEntity(
+					createBucketsParams(buckets)));
+			logger.debug(will("Send an archive buckets request", "request_uri",
+					request.getURI(), "buckets", buckets.size()));
+			response = httpClient.execute(request);
+			handleResponseFromArchiveBucketsRequest(response, buckets);
+		} catch (HttpResponseException e) {
+			logger.error(did("Sent an archive buckets request",
+					"Got non ok http_status", "expected HttpStatus.SC_OK",
+					"http_status", e.getStatusCode(), "buckets", buckets.size()));
+		} catch (IOException e) {
+			logger.error(did("Sent archive buckets request", "got IOException",
+					"request to succeed", "exception", e, "buckets", buckets.size()));
+		} finally {
+			if (response != null)
+				consumeResponseHandlingErrors(response);
+		}
+	}
+
+	private static List<NameValuePair> createBucketsParams(List<Bucket> buckets) {
+		List<NameValuePair> params = new ArrayList<NameValuePair>();
+		for (Bucket bucket : buckets)
+			params.addAll(createBucketParams(bucket));
+		return params;
+	}
+
+	private void handleResponseFromArchiveBucketsRequest(HttpResponse response,
+			List<Bucket> buckets) throws IOException {
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode != HttpStatus.SC_OK)
+			throw new HttpResponseException(statusCode,
+					"Unexpected response when archiving buckets.");
+		@SuppressWarnings("unchecked")
+		Map<String, List<String>> result = OBJECT_MAPPER.readValue(
+				getEntityFromResponse(response), Map.class);
+		List<String> notQueued = result.get("not_queued");
+		if (notQueued != null && !notQueued.isEmpty())
+			logger.warn(warn("Sent an archive buckets request",
+					"some buckets were not queued",
+					"buckets will be archived when the failed buckets are retried",
+					"not_queued", notQueued));
+		logger.debug(done("Got http response from archiveBucketsRequest",
+				"buckets", buckets.size(), "queued", result.get("queued")));
+	}
+
 	private static HttpUriRequest createBucketArchiveRequest(Bucket bucket)
 			throws UnsupportedEncodingException {
+		HttpPost request = createArchiveRequest(ENDPOINT_BUCKET_ARCHIVER);
+		request.setEntity(new UrlEncodedFormEntity(createBucketParams(bucket)));
+		return request;
+	}
+
+	private static HttpPost createArchiveRequest(String endpoint) {
 		// CONFIG configure the host and port with a general solution.
 		String requestString = "http://localhost:9090/"
-				+ ShuttlConstants.ENDPOINT_CONTEXT + ShuttlConstants.ENDPOINT_ARCHIVER
-				+ ShuttlConstants.ENDPOINT_BUCKET_ARCHIVER;
-
-		HttpPost request = new HttpPost(requestString);
+				+ ENDPOINT_CONTEXT + ENDPOINT_ARCHIVER + endpoint;
+		return new HttpPost(requestString);
+	}
 
-		ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
+	private static List<NameValuePair> createBucketParams(Bucket bucket) {
+		List<NameValuePair> params = new ArrayList<NameValuePair>();
 		params.add(new BasicNameValuePair("path", bucket.getDirectory()
 				.getAbsolutePath()));
 		params.add(new BasicNameValuePair("index", bucket.getIndex()));
-
-		request.setEntity(new UrlEncodedFormEntity(params));
-		return request;
+		return params;
 	}
 
 	private HttpResponse executeArchiveBucketRequest(Bucket bucket,
@@ -133,9 +205,16 @@ public class ArchiveRestHandler implements SharedLockBucketHandler {
 	}
 
 	private void logHttpResponseException(Bucket bucket, HttpResponseException e) {
-		logger.error(did("Sent an archive bucket reuqest",
-				"Got non ok http_status", "expected HttpStatus.SC_OK or SC_NO_CONTENT",
-				"http_status", e.getStatusCode(), "bucket_name", bucket.getName()));
+		if (e.getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE)
+			logger.warn(warn("Sent an archive bucket request",
+					"archive queue on the server was full",
+					"bucket will be archived when the failed buckets are retried",
+					"bucket_name", bucket.getName()));
+		else
+			logger.error(did("Sent an archive bucket reuqest",
+					"Got non ok http_status",
+					"expected HttpStatus.SC_OK or SC_NO_CONTENT", "http_status",
+					e.getStatusCode(), "bucket_name", bucket.getName()));
 	}
 
 	private void logIOExceptionGenereratedByDoingArchiveBucketRequest(
@@ -167,4 +246,20 @@ public class ArchiveRestHandler implements SharedLockBucketHandler {
 		callRestToArchiveBucket(bucket);
 	}
 
+	@Override
+	public void handleSharedLockedBuckets(List<Bucket> buckets) {
+		callRestToArchiveBuckets(buckets);
+	}
+
+	/**
+	 * @return client that keeps up to {@link #MAX_CONNECTIONS} connections to
+	 *         the shuttl server alive between requests.
+	 */
+	public static HttpClient createPooledHttpClient() {
+		ThreadSafeClientConnManager connections = new ThreadSafeClientConnManager();
+		connections.setMaxTotal(MAX_CONNECTIONS);
+		connections.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+		return new DefaultHttpClient(connections);
+	}
+
 }
@@ -15,21 +15,44 @@
 
 package com.splunk.shuttl.archiver.archive;
 
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal;
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal.Stage;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.importexport.BucketExportStream;
 import com.splunk.shuttl.archiver.importexport.BucketExporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 
 /**
- * Archives buckets the way that it is configured to archive them.
+ * Archives buckets the way that it is configured to archive them. Each format
+ * is exported and transfered in its own branch. The branches run concurrently
+ * when there is more than one format.
  */
 public class BucketArchiver {
 
+	private static final Logger logger = Logger.getLogger(BucketArchiver.class);
+
 	private final BucketExporter bucketExporter;
 	private final ArchiveBucketTransferer archiveBucketTransferer;
 	private final BucketDeleter bucketDeleter;
 	private final List<BucketFormat> bucketFormats;
+	private final ExecutorService formatExecutor;
+	private final BucketJournal bucketJournal;
 
 	/**
 	 * Constructor following dependency injection pattern, makes it easier to
@@ -44,28 +67,125 @@ public class BucketArchiver {
 	 *          that deletesBuckets that has been archived.
 	 * @param bucketFormats
 	 *          the formats to archive the bucket in.
+	 * @param formatExecutor
+	 *          to archive the formats concurrently on.
+	 * @param bucketJournal
+	 *          to record exports and deletions in.
 	 */
 	public BucketArchiver(BucketExporter exporter,
 			ArchiveBucketTransferer archiveBucketTransferer,
-			BucketDeleter bucketDeleter, List<BucketFormat> bucketFormats) {
+			BucketDeleter bucketDeleter, List<BucketFormat> bucketFormats,
+			ExecutorService formatExecutor, BucketJournal bucketJournal) {
 		this.bucketExporter = exporter;
 		this.archiveBucketTransferer = archiveBucketTransferer;
 		this.bucketDeleter = bucketDeleter;
 		this.bucketFormats = bucketFormats;
+		this.formatExecutor = formatExecutor;
+		this.bucketJournal = bucketJournal;
 	}
 
+	/**
+	 * Archives the bucket in all formats. The bucket is deleted only if every
+	 * format was successfully archived.
+	 */
 	public void archiveBucket(Bucket bucket) {
+		Set<BucketFormat> journaledFormats = Collections
+				.synchronizedSet(EnumSet.noneOf(BucketFormat.class));
+		boolean successfullyArchivedAllFormats;
+		if (bucketFormats.size() < 2)
+			successfullyArchivedAllFormats = archiveFormatsSequentially(bucket,
+					journaledFormats);
+		else
+			successfullyArchivedAllFormats = archiveFormatsConcurrently(bucket,
+					journaledFormats);
+
+		if (successfullyArchivedAllFormats
+				&& areJournaledFormatsInArchive(bucket, journaledFormats)) {
+			bucketDeleter.deleteBucket(bucket);
+			bucketJournal.record(bucket, Stage.DELETED);
+		}
+	}
+
+	/**
+	 * The journal can't know if the archive has moved or lost a format since it
+	 * was recorded, so formats that were skipped because of the journal are
+	 * looked up in the archive before the bucket is deleted. If one is missing,
+	 * the journal forgets the bucket so that it's archived again.
+	 */
+	private boolean areJournaledFormatsInArchive(Bucket bucket,
+			Set<BucketFormat> journaledFormats) {
+		for (BucketFormat format : journaledFormats)
+			if (!archiveBucketTransferer.isArchived(bucket, format)) {
+				logger.warn(warn("Looked up journaled bucket format in the archive",
+						"it was not in the archive", "bucket will not be deleted and "
+								+ "will be archived again", "bucket", bucket, "format",
+						format));
+				bucketJournal.forget(bucket);
+				return false;
+			}
+		return true;
+	}
+
+	private boolean archiveFormatsSequentially(Bucket bucket,
+			Set<BucketFormat> journaledFormats) {
 		boolean successfullyArchivedAllFormats = true;
 		for (BucketFormat format : bucketFormats)
-			if (!archiveBucketTransferer.isArchived(bucket, format))
-				if (!isSuccessfulArchiving(bucket, format))
+			if (!isArchivedOrSuccessfulArchiving(bucket, format, journaledFormats))
+				successfullyArchivedAllFormats = false;
+		return successfullyArchivedAllFormats;
+	}
+
+	private boolean archiveFormatsConcurrently(Bucket bucket,
+			Set<BucketFormat> journaledFormats) {
+		List<Future<Boolean>> branches = new ArrayList<Future<Boolean>>();
+		for (BucketFormat format : bucketFormats)
+			branches.add(formatExecutor.submit(new ArchiveFormatBranch(bucket,
+					format, journaledFormats)));
+
+		boolean successfullyArchivedAllFormats = true;
+		RuntimeException branchException = null;
+		for (Future<Boolean> branch : branches) {
+			try {
+				if (!branch.get())
 					successfullyArchivedAllFormats = false;
+			} catch (ExecutionException e) {
+				successfullyArchivedAllFormats = false;
+				if (branchException == null)
+					branchException = asRuntimeException(e.getCause());
+			} catch (InterruptedException e) {
+				logger.warn(warn("Waited for bucket format to be archived",
+						"got interrupted", "bucket will not be deleted", "bucket",
+						bucket));
+				Thread.currentThread().interrupt();
+				successfullyArchivedAllFormats = false;
+			}
+		}
+		if (branchException != null)
+			throw branchException;
+		return successfullyArchivedAllFormats;
+	}
 
-		if (successfullyArchivedAllFormats)
-			bucketDeleter.deleteBucket(bucket);
+	private RuntimeException asRuntimeException(Throwable cause) {
+		if (cause instanceof RuntimeException)
+			return (RuntimeException) cause;
+		else
+			return new FailedToArchiveBucketException(cause);
+	}
+
+	private boolean isArchivedOrSuccessfulArchiving(Bucket bucket,
+			BucketFormat format, Set<BucketFormat> journaledFormats) {
+		if (archiveBucketTransferer.isJournaledAsArchived(bucket, format)) {
+			journaledFormats.add(format);
+			return true;
+		}
+		return archiveBucketTransferer.isArchived(bucket, format)
+				|| isSuccessfulArchiving(bucket, format);
 	}
 
 	private boolean isSuccessfulArchiving(Bucket bucket, BucketFormat format) {
+		bucketJournal.record(bucket, Stage.EXPORTING, format);
+		if (bucketExporter.canExportBucketToStream(bucket, format))
+			return isSuccessfulStreaming(bucket, format);
 		Bucket exportedBucket = bucketExporter.exportBucket(bucket, format);
 		try {
 			archiveBucketTransferer.transferBucketToArchive(exportedBucket);
@@ -77,4 +197,40 @@ public class BucketArchiver {
 				bucketDeleter.deleteBucket(exportedBucket);
 		}
 	}
+
+	private boolean isSuccessfulStreaming(Bucket bucket, BucketFormat format) {
+		BucketExportStream bucketStream = null;
+		try {
+			bucketStream = bucketExporter.exportBucketToStream(bucket, format);
+			archiveBucketTransferer.transferBucketStreamToArchive(bucketStream);
+			return true;
+		} catch (IOException e) {
+			logger.error(did("Exported bucket to stream", e, "export to start",
+					"bucket", bucket, "format", format));
+			return false;
+		} catch (FailedToArchiveBucketException e) {
+			return false;
+		} finally {
+			IOUtils.closeQuietly(bucketStream);
+		}
+	}
+
+	private class ArchiveFormatBranch implements Callable<Boolean> {
+
+		private final Bucket bucket;
+		private final BucketFormat format;
+		private final Set<BucketFormat> journaledFormats;
+
+		public ArchiveFormatBranch(Bucket bucket, BucketFormat format,
+				Set<BucketFormat> journaledFormats) {
+			this.bucket = bucket;
+			this.format = format;
+			this.journaledFormats = journaledFormats;
+		}
+
+		@Override
+		public Boolean call() {
+			return isArchivedOrSuccessfulArchiving(bucket, format, journaledFormats);
+		}
+	}
 }
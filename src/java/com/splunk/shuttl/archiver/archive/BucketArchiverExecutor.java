@@ -0,0 +1,157 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+
+/**
+ * Runs archiving of buckets on a fixed number of threads with a bounded queue.
+ * When the queue is full, new buckets are rejected with an
+ * {@link ArchiveQueueFullException} instead of piling up in memory, so the
+ * caller can retry later.
+ */
+public class BucketArchiverExecutor {
+
+	private static final Logger logger = Logger
+			.getLogger(BucketArchiverExecutor.class);
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicInteger inFlight;
+	private final AtomicLong rejected;
+
+	/**
+	 * @param executor
+	 *          which runs the archiving and rejects tasks when it's full.
+	 */
+	public BucketArchiverExecutor(ThreadPoolExecutor executor) {
+		this.executor = executor;
+		this.inFlight = new AtomicInteger();
+		this.rejected = new AtomicLong();
+	}
+
+	/**
+	 * Queue a runnable for archiving.
+	 * 
+	 * @throws ArchiveQueueFullException
+	 *           if the queue has no room for the runnable.
+	 */
+	public void execute(Runnable archiveRunnable) {
+		try {
+			executor.execute(new InFlightCountingRunnable(archiveRunnable));
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			logger.warn(warn("Queued bucket for archiving", "archive queue was full",
+					"bucket will not be archived now", "queue_depth", getQueueDepth(),
+					"in_flight", getInFlight()));
+			throw new ArchiveQueueFullException(e);
+		}
+	}
+
+	/**
+	 * @return number of runnables waiting in the queue.
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return number of runnables currently running.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return number of runnables that have been rejected since creation.
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Stops accepting runnables. Already queued runnables are still run.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Waits for all queued and running runnables to finish after a
+	 * {@link #shutdown()}.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	private class InFlightCountingRunnable implements Runnable {
+
+		private final Runnable runnable;
+
+		public InFlightCountingRunnable(Runnable runnable) {
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			inFlight.incrementAndGet();
+			try {
+				runnable.run();
+			} catch (RuntimeException e) {
+				logger.error(did("Ran archive runnable", e, "no exception",
+						"runnable", runnable));
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return {@link BucketArchiverExecutor} with {@code threads} workers and
+	 *         room for {@code queueCapacity} waiting runnables.
+	 */
+	public static BucketArchiverExecutor create(int threads, int queueCapacity) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+				new DaemonThreadFactory("shuttl-archiver"));
+		return new BucketArchiverExecutor(executor);
+	}
+
+	private static BucketArchiverExecutor sharedInstance;
+
+	/**
+	 * @return executor shared by the whole server, configured with
+	 *         {@link ArchiveConfiguration#getSharedInstance()}.
+	 */
+	public static synchronized BucketArchiverExecutor getSharedInstance() {
+		if (sharedInstance == null) {
+			ArchiveConfiguration config = ArchiveConfiguration.getSharedInstance();
+			sharedInstance = create(config.getArchiverThreads(),
+					config.getArchiverQueueCapacity());
+		}
+		return sharedInstance;
+	}
+}
@@ -14,9 +14,14 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.archive;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.importexport.BucketExporter;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
 
 /**
  * Construction code for creating BucketArchivers that archives in different
@@ -48,9 +53,27 @@ public class BucketArchiverFactory {
 	 */
 	public static BucketArchiver createWithConfigurationAndArchiveFileSystem(
 			ArchiveConfiguration config, ArchiveFileSystem archiveFileSystem) {
-		return new BucketArchiver(BucketExporter.create(),
+		BucketExporter exporter = config.isCsvStreamingExport() ? BucketExporter
+				.createStreaming() : BucketExporter.create();
+		return new BucketArchiver(exporter,
 				ArchiveBucketTransferer.create(archiveFileSystem, config),
-				BucketDeleter.create(), config.getArchiveFormats());
+				BucketDeleter.create(), config.getArchiveFormats(),
+				getSharedFormatExecutor(config), BucketJournal.getSharedInstance());
+	}
+
+	private static ExecutorService sharedFormatExecutor;
 
+	/**
+	 * Every archiver thread can have one branch running per format.
+	 */
+	private static synchronized ExecutorService getSharedFormatExecutor(
+			ArchiveConfiguration config) {
+		if (sharedFormatExecutor == null) {
+			int formats = Math.max(1, config.getArchiveFormats().size());
+			sharedFormatExecutor = Executors.newFixedThreadPool(
+					config.getArchiverThreads() * formats, new DaemonThreadFactory(
+							"shuttl-archive-format"));
+		}
+		return sharedFormatExecutor;
 	}
 }
@@ -28,9 +28,16 @@ import com.splunk.shuttl.archiver.model.Bucket;
 public class BucketDeleter {
 
 	private final Logger logger;
+	private final BucketTrash bucketTrash;
 
-	public BucketDeleter(Logger logger) {
+	/**
+	 * @param bucketTrash
+	 *          to delete buckets in the background with. Buckets that it cannot
+	 *          trash are deleted immediately.
+	 */
+	public BucketDeleter(Logger logger, BucketTrash bucketTrash) {
 		this.logger = logger;
+		this.bucketTrash = bucketTrash;
 	}
 
 	/**
@@ -38,6 +45,8 @@ public class BucketDeleter {
 	 *          to delete.
 	 */
 	public void deleteBucket(Bucket bucket) {
+		if (bucketTrash.trashBucket(bucket))
+			return;
 		try {
 			bucket.deleteBucket();
 		} catch (IOException e) {
@@ -52,10 +61,12 @@ public class BucketDeleter {
 	}
 
 	/**
-	 * @return
+	 * @return deleter that deletes buckets in the background with the shared
+	 *         {@link BucketTrash}.
 	 */
 	public static BucketDeleter create() {
-		return new BucketDeleter(Logger.getLogger(BucketDeleter.class));
+		return new BucketDeleter(Logger.getLogger(BucketDeleter.class),
+				BucketTrash.getSharedInstance());
 	}
 
 }
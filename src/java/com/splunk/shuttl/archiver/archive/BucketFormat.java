@@ -18,7 +18,49 @@ package com.splunk.shuttl.archiver.archive;
 import java.io.File;
 
 public enum BucketFormat {
-	SPLUNK_BUCKET, UNKNOWN, CSV;
+	SPLUNK_BUCKET, UNKNOWN, CSV, CSV_GZ(CSV, ".gz"), CSV_BZ2(CSV, ".bz2"),
+	CSV_SNAPPY(CSV, ".snappy");
+
+	private final BucketFormat uncompressedFormat;
+	private final String codecExtension;
+
+	private BucketFormat() {
+		this(null, null);
+	}
+
+	/**
+	 * @param uncompressedFormat
+	 *          the format of the files before they were compressed.
+	 * @param codecExtension
+	 *          file extension which identifies the compression codec.
+	 */
+	private BucketFormat(BucketFormat uncompressedFormat, String codecExtension) {
+		this.uncompressedFormat = uncompressedFormat;
+		this.codecExtension = codecExtension;
+	}
+
+	/**
+	 * @return true if the files in a bucket of this format are compressed.
+	 */
+	public boolean isCompressed() {
+		return codecExtension != null;
+	}
+
+	/**
+	 * @return format of the bucket when its files are decompressed. The format
+	 *         itself, if it's not compressed.
+	 */
+	public BucketFormat getUncompressedFormat() {
+		return isCompressed() ? uncompressedFormat : this;
+	}
+
+	/**
+	 * @return file extension of the compression codec, e.g. ".gz". null if the
+	 *         format is not compressed.
+	 */
+	public String getCodecExtension() {
+		return codecExtension;
+	}
 
 	/**
 	 * @param directory
@@ -19,7 +19,6 @@ import static com.splunk.shuttl.archiver.LocalFileSystemConstants.*;
 
 import java.io.FileNotFoundException;
 
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.LogFormatter;
@@ -93,19 +92,20 @@ public class BucketFreezer {
 		bucketLocker.callBucketHandlerUnderSharedLock(bucket,
 				new MoveAndArchiveBucketUnderLock(bucketMover, archiveRestHandler));
 
-		failedBucketsArchiver.archiveFailedBuckets(archiveRestHandler);
+		failedBucketsArchiver.archiveFailedBucketsInBatches(archiveRestHandler);
 	}
 
 	/**
 	 * The construction logic for creating a {@link BucketFreezer}
 	 */
 	public static BucketFreezer createWithDefaultHttpClientAndDefaultSafeAndFailLocations() {
-		BucketMover bucketMover = new BucketMover(getSafeDirectory());
+		BucketMover bucketMover = new BucketMover(getSafeDirectory(),
+				SAFE_STAGING_DIRECTORY_NAME);
 		BucketLocker bucketLocker = new ArchiveBucketLocker();
 		FailedBucketsArchiver failedBucketsArchiver = new FailedBucketsArchiver(
 				bucketMover, bucketLocker);
 		ArchiveRestHandler archiveRestHandler = new ArchiveRestHandler(
-				new DefaultHttpClient());
+				ArchiveRestHandler.createPooledHttpClient());
 
 		return new BucketFreezer(bucketMover, bucketLocker, archiveRestHandler,
 				failedBucketsArchiver);
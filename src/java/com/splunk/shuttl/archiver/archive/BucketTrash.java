@@ -0,0 +1,225 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+
+/**
+ * Deletes buckets in the background. A bucket is first renamed into a trash
+ * directory on the same volume, which is atomic, and then its files are
+ * deleted on a low priority thread at a limited rate, so that the deletion
+ * doesn't compete with splunk for disk I/O.
+ */
+public class BucketTrash {
+
+	private static final Logger logger = Logger.getLogger(BucketTrash.class);
+
+	public static final String TRASH_DIRECTORY_NAME = ".shuttl-trash";
+	public static final int DEFAULT_UNLINKS_PER_SECOND = 500;
+
+	private static final BucketTrash sharedInstance = new BucketTrash(
+			Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+					"shuttl-trash", Thread.MIN_PRIORITY)),
+			DEFAULT_UNLINKS_PER_SECOND);
+
+	private final ExecutorService deleteExecutor;
+	private final int unlinksPerSecond;
+	private final AtomicLong trashBytes = new AtomicLong();
+	private final AtomicLong trashBuckets = new AtomicLong();
+	private final AtomicLong trashedCount = new AtomicLong();
+	private final Set<File> knownTrashDirectories = Collections
+			.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+	private long windowStart;
+	private int unlinksInWindow;
+
+	/**
+	 * @param deleteExecutor
+	 *          to delete trashed buckets on. Should be single threaded.
+	 * @param unlinksPerSecond
+	 *          maximum number of files and directories to delete per second.
+	 */
+	public BucketTrash(ExecutorService deleteExecutor, int unlinksPerSecond) {
+		this.deleteExecutor = deleteExecutor;
+		this.unlinksPerSecond = unlinksPerSecond;
+	}
+
+	/**
+	 * Renames the bucket into the trash and schedules it for deletion.
+	 * 
+	 * @return false if the bucket could not be renamed into the trash, in
+	 *         which case the caller has to delete it.
+	 */
+	public boolean trashBucket(Bucket bucket) {
+		File directory = bucket.getDirectory();
+		if (directory == null || !directory.isDirectory())
+			return false;
+		File trashDirectory = getTrashDirectory(directory);
+		if (trashDirectory == null
+				|| (!trashDirectory.isDirectory() && !trashDirectory.mkdirs()))
+			return false;
+		scheduleLeftoversOnce(trashDirectory);
+
+		long size = sizeOf(bucket);
+		File trashed = new File(trashDirectory, directory.getName() + "-"
+				+ System.currentTimeMillis() + "-" + trashedCount.incrementAndGet());
+		if (!directory.renameTo(trashed)) {
+			logger.warn(warn("Renamed bucket into trash", new RuntimeException(
+					"rename failed"), "Will delete the bucket in place", "bucket",
+					bucket, "trash", trashDirectory));
+			return false;
+		}
+		scheduleDeletion(trashed, size);
+		return true;
+	}
+
+	/**
+	 * The trash is beside the bucket's index directory, instead of inside it,
+	 * so that listing the buckets of an index never lists the trash.
+	 * 
+	 * @return trash directory for the bucket, or null if the bucket's index
+	 *         directory has no parent.
+	 */
+	private File getTrashDirectory(File bucketDirectory) {
+		File indexDirectory = bucketDirectory.getAbsoluteFile().getParentFile();
+		File parent = indexDirectory.getParentFile();
+		return parent == null ? null : new File(parent, TRASH_DIRECTORY_NAME);
+	}
+
+	private long sizeOf(Bucket bucket) {
+		Long size = bucket.getSize();
+		if (size != null)
+			return size;
+		return FileUtils.sizeOfDirectory(bucket.getDirectory());
+	}
+
+	/**
+	 * Trash left by a previous run, that was stopped before it was emptied, is
+	 * deleted the first time the trash directory is used.
+	 */
+	private void scheduleLeftoversOnce(File trashDirectory) {
+		if (!knownTrashDirectories.add(trashDirectory))
+			return;
+		File[] leftovers = trashDirectory.listFiles();
+		if (leftovers != null)
+			for (File leftover : leftovers)
+				scheduleDeletion(leftover, FileUtils.sizeOf(leftover));
+	}
+
+	private void scheduleDeletion(final File trashed, long size) {
+		trashBytes.addAndGet(size);
+		trashBuckets.incrementAndGet();
+		deleteExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				deleteTrashed(trashed);
+			}
+		});
+	}
+
+	private void deleteTrashed(File trashed) {
+		long start = System.currentTimeMillis();
+		try {
+			deleteRecursively(trashed);
+			logger.debug(done("Deleted trashed bucket", "directory", trashed,
+					"delete_time_ms", System.currentTimeMillis() - start));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			logger.warn(warn("Deleted trashed bucket", e,
+					"Will leave the rest until next start", "directory", trashed));
+		} finally {
+			trashBuckets.decrementAndGet();
+		}
+	}
+
+	private void deleteRecursively(File file) throws InterruptedException {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				deleteRecursively(child);
+		long length = file.isFile() ? file.length() : 0;
+		throttle();
+		if (file.delete() || !file.exists())
+			trashBytes.addAndGet(-length);
+		else
+			logger.warn(warn("Deleted trashed file", new RuntimeException(
+					"delete failed"), "Will skip it", "file", file));
+	}
+
+	/**
+	 * Only called from the delete thread, so the window doesn't need locking.
+	 */
+	private void throttle() throws InterruptedException {
+		long now = currentTimeMillis();
+		if (now - windowStart >= 1000) {
+			windowStart = now;
+			unlinksInWindow = 0;
+		}
+		if (unlinksInWindow >= unlinksPerSecond) {
+			sleep(1000 - (now - windowStart));
+			windowStart = currentTimeMillis();
+			unlinksInWindow = 0;
+		}
+		unlinksInWindow++;
+	}
+
+	/* package private for testing */long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/* package private for testing */void sleep(long millis)
+			throws InterruptedException {
+		if (millis > 0)
+			Thread.sleep(millis);
+	}
+
+	/**
+	 * @return bytes of buckets in the trash that are not yet deleted.
+	 */
+	public long getTrashBytes() {
+		return Math.max(0, trashBytes.get());
+	}
+
+	/**
+	 * @return number of buckets in the trash that are not yet deleted.
+	 */
+	public long getTrashBuckets() {
+		return trashBuckets.get();
+	}
+
+	/**
+	 * @return trash that deletes on a single low priority thread shared by the
+	 *         whole process.
+	 */
+	public static BucketTrash getSharedInstance() {
+		return sharedInstance;
+	}
+}
@@ -31,6 +31,21 @@ public class PathResolver {
 
 	public static final char SEPARATOR = '/';
 
+	/**
+	 * Directory with metadata about a bucket, relative to the archived bucket.
+	 */
+	public static final String METADATA_DIRECTORY = "archive_meta";
+	/**
+	 * Name of the file with a bucket's size.
+	 */
+	public static final String BUCKET_SIZE_FILE_NAME = "bucket.size";
+	/**
+	 * Path of the file with a bucket's size, relative to the archived bucket.
+	 */
+	public static final String BUCKET_SIZE_FILE_PATH = METADATA_DIRECTORY
+			+ SEPARATOR + BUCKET_SIZE_FILE_NAME;
+	public static final String CATALOGS_DIRECTORY = ".catalog";
+
 	private final ArchiveConfiguration configuration;
 
 	/**
@@ -85,6 +100,17 @@ public class PathResolver {
 		return URI.create(getIndexesHome().toString() + SEPARATOR + index);
 	}
 
+	/**
+	 * @return Catalog home for an index, which is where on the
+	 *         {@link ArchiveFileSystem} the catalog of the index's buckets is
+	 *         stored. It is in the {@link #CATALOGS_DIRECTORY} of the indexes
+	 *         home, which can never be an index name.
+	 */
+	public URI getCatalogHome(String index) {
+		return URI.create(getIndexesHome().toString() + SEPARATOR
+				+ CATALOGS_DIRECTORY + SEPARATOR + index);
+	}
+
 	/**
 	 * Resolves index from a {@link URI} to a bucket.<br/>
 	 * <br/>
@@ -112,6 +138,26 @@ public class PathResolver {
 				.create(getBucketsHome(index).toString() + SEPARATOR + bucketName);
 	}
 
+	/**
+	 * @return glob pattern {@link URI} matching every archived format of every
+	 *         bucket in an index, so that all of them can be listed at once.
+	 * @see ArchiveFileSystem#listPathsMatching(URI)
+	 */
+	public URI getArchivedFormatsPattern(String index) {
+		return URI.create(getBucketsHome(index).toString() + SEPARATOR + "*"
+				+ SEPARATOR + "*");
+	}
+
+	/**
+	 * @return pattern matching the size files of every archived bucket and
+	 *         format in an index.
+	 * @see #getBucketSizeFilePath(long)
+	 */
+	public URI getArchivedSizeFilesPattern(String index) {
+		return URI.create(getArchivedFormatsPattern(index).toString() + SEPARATOR
+				+ BUCKET_SIZE_FILE_PATH + ".*");
+	}
+
 	/**
 	 * {@link URI} to an archived bucket.
 	 * 
@@ -145,7 +191,51 @@ public class PathResolver {
 	 */
 	public URI getBucketSizeFileUriForBucket(Bucket bucket) {
 		return URI.create(resolveArchivePath(bucket).toString() + SEPARATOR
-				+ "archive_meta" + SEPARATOR + "bucket.size");
+				+ BUCKET_SIZE_FILE_PATH);
+	}
+
+	/**
+	 * @return {@link URI} to a bucket's file with local disk size information,
+	 *         which also has the size in its name.
+	 * @see #getBucketSizeFilePath(long)
+	 */
+	public URI getBucketSizeFileUriForBucket(Bucket bucket, long size) {
+		return URI.create(resolveArchivePath(bucket).toString() + SEPARATOR
+				+ getBucketSizeFilePath(size));
+	}
+
+	/**
+	 * @return {@link URI} to the directory with a bucket's metadata.
+	 */
+	public URI getMetadataDirectoryUriForBucket(Bucket bucket) {
+		return URI.create(resolveArchivePath(bucket).toString() + SEPARATOR
+				+ METADATA_DIRECTORY);
+	}
+
+	/**
+	 * @return path of the file with a bucket's size, relative to the archived
+	 *         bucket, with the size in the file name. Listing the metadata
+	 *         directory is then enough to know the size, without opening the
+	 *         file.
+	 */
+	public static String getBucketSizeFilePath(long size) {
+		return BUCKET_SIZE_FILE_PATH + "." + size;
+	}
+
+	/**
+	 * @return the size in the name of a bucket's size file, or null if the file
+	 *         name has no size.
+	 * @see #getBucketSizeFilePath(long)
+	 */
+	public static Long getSizeFromBucketSizeFileName(String fileName) {
+		String prefix = BUCKET_SIZE_FILE_NAME + ".";
+		if (!fileName.startsWith(prefix))
+			return null;
+		try {
+			return Long.parseLong(fileName.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
 	}
 
 }
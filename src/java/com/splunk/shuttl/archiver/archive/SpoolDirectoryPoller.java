@@ -0,0 +1,217 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.recovery.ArchiveBucketLock;
+import com.splunk.shuttl.archiver.bucketlock.BucketLock;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+
+/**
+ * Archives buckets that archiveBucket.sh has renamed into the spool directory,
+ * so that freezing a bucket doesn't start a JVM. The spool directory has one
+ * directory per index, which contains the buckets of that index. Entries
+ * starting with a dot are skipped, since the script renames buckets into the
+ * spool with a dot first and removes the dot once the bucket is complete. <br/>
+ * Buckets that fail to archive stay in the spool and are retried after
+ * {@link #RETRY_DELAY_MILLIS}.
+ */
+public class SpoolDirectoryPoller implements Runnable {
+
+	private static final Logger logger = Logger
+			.getLogger(SpoolDirectoryPoller.class);
+
+	public static final long POLL_INTERVAL_MILLIS = 5 * 1000;
+	public static final long RETRY_DELAY_MILLIS = 5 * 60 * 1000;
+
+	private final File spoolDirectory;
+	private final BucketArchiverExecutor archiverExecutor;
+	private final Map<File, Boolean> queuedBuckets;
+	private final Map<File, Long> failedBuckets;
+
+	/**
+	 * @param spoolDirectory
+	 *          to poll for buckets.
+	 * @param archiverExecutor
+	 *          to queue the buckets for archiving on.
+	 */
+	public SpoolDirectoryPoller(File spoolDirectory,
+			BucketArchiverExecutor archiverExecutor) {
+		this.spoolDirectory = spoolDirectory;
+		this.archiverExecutor = archiverExecutor;
+		this.queuedBuckets = new ConcurrentHashMap<File, Boolean>();
+		this.failedBuckets = new ConcurrentHashMap<File, Long>();
+	}
+
+	@Override
+	public void run() {
+		try {
+			poll();
+		} catch (RuntimeException e) {
+			logger.error(did("Polled spool directory for buckets", e,
+					"to queue spooled buckets", "spool_directory", spoolDirectory));
+		}
+	}
+
+	/**
+	 * Queues the spooled buckets that are not already queued. Stops when the
+	 * archive queue is full, the rest are queued on a later poll.
+	 */
+	public void poll() {
+		File[] indexDirectories = spoolDirectory.listFiles();
+		if (indexDirectories == null)
+			return;
+		for (File indexDirectory : indexDirectories)
+			if (isSpooled(indexDirectory))
+				if (!queueBuckets(indexDirectory))
+					return;
+	}
+
+	private boolean isSpooled(File file) {
+		return file.isDirectory() && !file.getName().startsWith(".");
+	}
+
+	private boolean queueBuckets(File indexDirectory) {
+		File[] bucketDirectories = indexDirectory.listFiles();
+		if (bucketDirectories == null)
+			return true;
+		for (File bucketDirectory : bucketDirectories)
+			if (isSpooled(bucketDirectory) && isDue(bucketDirectory))
+				if (!queueBucket(indexDirectory.getName(), bucketDirectory))
+					return false;
+		return true;
+	}
+
+	private boolean isDue(File bucketDirectory) {
+		if (queuedBuckets.containsKey(bucketDirectory))
+			return false;
+		Long failedAt = failedBuckets.get(bucketDirectory);
+		return failedAt == null
+				|| currentTimeMillis() - failedAt >= RETRY_DELAY_MILLIS;
+	}
+
+	/**
+	 * The archiver is created before the bucket is locked, and the lock is
+	 * closed if the bucket could not be queued, so that a failure never leaves
+	 * the bucket locked or marked as queued.
+	 * 
+	 * @return false if the archive queue was full.
+	 */
+	private boolean queueBucket(String index, File bucketDirectory) {
+		Bucket bucket = BucketFactory.createBucketWithIndexAndDirectory(index,
+				bucketDirectory);
+		BucketArchiver bucketArchiver = createBucketArchiver();
+		BucketLock bucketLock = createBucketLock(bucket);
+		if (!bucketLock.tryLockShared())
+			return true;
+		queuedBuckets.put(bucketDirectory, Boolean.TRUE);
+		try {
+			archiverExecutor.execute(new SpooledBucketRunner(bucketDirectory,
+					createBucketArchiverRunner(bucketArchiver, bucket, bucketLock)));
+			logger.info(done("Queued spooled bucket for archiving", "bucket",
+					bucket));
+			return true;
+		} catch (ArchiveQueueFullException e) {
+			queuedBuckets.remove(bucketDirectory);
+			bucketLock.closeLock();
+			return false;
+		} catch (RuntimeException e) {
+			queuedBuckets.remove(bucketDirectory);
+			bucketLock.closeLock();
+			throw e;
+		}
+	}
+
+	/* package private for testing */BucketLock createBucketLock(Bucket bucket) {
+		return new ArchiveBucketLock(bucket);
+	}
+
+	/* package private for testing */BucketArchiver createBucketArchiver() {
+		return BucketArchiverFactory.createConfiguredArchiver();
+	}
+
+	/* package private for testing */Runnable createBucketArchiverRunner(
+			BucketArchiver bucketArchiver, Bucket bucket, BucketLock bucketLock) {
+		return new BucketArchiverRunner(bucketArchiver, bucket, bucketLock);
+	}
+
+	/* package private for testing */long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * A bucket that is still in the spool after archiving has failed.
+	 */
+	private class SpooledBucketRunner implements Runnable {
+
+		private final File bucketDirectory;
+		private final Runnable bucketArchiverRunner;
+
+		public SpooledBucketRunner(File bucketDirectory,
+				Runnable bucketArchiverRunner) {
+			this.bucketDirectory = bucketDirectory;
+			this.bucketArchiverRunner = bucketArchiverRunner;
+		}
+
+		@Override
+		public void run() {
+			try {
+				bucketArchiverRunner.run();
+			} finally {
+				if (bucketDirectory.exists())
+					failedBuckets.put(bucketDirectory, currentTimeMillis());
+				else
+					failedBuckets.remove(bucketDirectory);
+				queuedBuckets.remove(bucketDirectory);
+			}
+		}
+	}
+
+	/**
+	 * Starts polling the configured spool directory on a daemon thread. Does
+	 * nothing if no spool directory is configured.
+	 */
+	public static void startIfConfigured(ArchiveConfiguration config) {
+		File spoolDirectory = config.getSpoolDirectory();
+		if (spoolDirectory == null)
+			return;
+		if (!spoolDirectory.isDirectory() && !spoolDirectory.mkdirs()) {
+			logger.error(did("Created spool directory", "mkdirs failed",
+					"the directory to be created", "spool_directory", spoolDirectory));
+			return;
+		}
+		logger.info(will("Poll spool directory for frozen buckets",
+				"spool_directory", spoolDirectory, "poll_interval_ms",
+				POLL_INTERVAL_MILLIS));
+		ScheduledExecutorService pollExecutor = Executors
+				.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+						"shuttl-spool-poller"));
+		pollExecutor.scheduleWithFixedDelay(new SpoolDirectoryPoller(
+				spoolDirectory, BucketArchiverExecutor.getSharedInstance()), 0,
+				POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,257 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive.recovery;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemConstants;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Append only journal of the stages that buckets pass while they are archived.
+ * Archiving that is retried, or that is resumed after a restart, can continue
+ * from the last completed stage of each format instead of exporting and
+ * uploading the bucket again. <br/>
+ * The journal is only an optimization. A bucket that isn't in the journal is
+ * archived the same way as without it, and formats that the journal has as
+ * archived are looked up in the archive before the bucket is deleted, so a
+ * lost, corrupt or stale journal is never harmful. Entries of deleted buckets
+ * are dropped when the journal is compacted.
+ */
+public class BucketJournal {
+
+	private static final Logger logger = Logger.getLogger(BucketJournal.class);
+
+	/**
+	 * Stages of archiving, in order. A bucket and its size are put in the
+	 * archive with one rename, so {@link #SIZE_WRITTEN} is also when the bucket
+	 * is uploaded.
+	 */
+	public enum Stage {
+		EXPORTING, SIZE_WRITTEN, DELETED
+	}
+
+	public static final int COMPACT_AFTER_RECORDS = 1000;
+
+	private static final String SEPARATOR = "\t";
+	private static final String NO_FORMAT = "-";
+
+	private final File journalFile;
+	private final Map<String, Map<String, Set<Stage>>> stagesByBucket;
+	private OutputStream journal;
+	private int recordsSinceCompaction;
+
+	/**
+	 * @param journalFile
+	 *          to append records to. It's read and compacted if it exists.
+	 */
+	public BucketJournal(File journalFile) {
+		this.journalFile = journalFile;
+		this.stagesByBucket = new LinkedHashMap<String, Map<String, Set<Stage>>>();
+		replay();
+		compact();
+	}
+
+	/**
+	 * Records that the bucket, in all formats, has passed a stage.
+	 */
+	public void record(Bucket bucket, Stage stage) {
+		record(bucket, stage, null);
+	}
+
+	/**
+	 * Records that the bucket in a format has passed a stage. Recording
+	 * {@link Stage#DELETED} forgets the bucket.
+	 */
+	public synchronized void record(Bucket bucket, Stage stage,
+			BucketFormat format) {
+		String bucketKey = bucketKey(bucket);
+		String formatKey = formatKey(format);
+		apply(bucketKey, formatKey, stage);
+		append(stage + SEPARATOR + bucketKey + SEPARATOR + formatKey + "\n");
+		if (++recordsSinceCompaction >= COMPACT_AFTER_RECORDS)
+			compact();
+	}
+
+	/**
+	 * Forgets the bucket without it being deleted, so that it's archived from
+	 * the start the next time.
+	 */
+	public void forget(Bucket bucket) {
+		record(bucket, Stage.DELETED);
+	}
+
+	/**
+	 * @return true if the bucket in the format has passed the stage, since the
+	 *         bucket was last deleted.
+	 */
+	public synchronized boolean hasCompleted(Bucket bucket, Stage stage,
+			BucketFormat format) {
+		Map<String, Set<Stage>> formats = stagesByBucket.get(bucketKey(bucket));
+		if (formats == null)
+			return false;
+		Set<Stage> stages = formats.get(formatKey(format));
+		return stages != null && stages.contains(stage);
+	}
+
+	/**
+	 * @return number of buckets in the journal that are not deleted.
+	 */
+	public synchronized int size() {
+		return stagesByBucket.size();
+	}
+
+	private String bucketKey(Bucket bucket) {
+		return bucket.getIndex() + SEPARATOR + bucket.getName();
+	}
+
+	private String formatKey(BucketFormat format) {
+		return format == null ? NO_FORMAT : format.name();
+	}
+
+	private void apply(String bucketKey, String formatKey, Stage stage) {
+		if (stage == Stage.DELETED) {
+			stagesByBucket.remove(bucketKey);
+			return;
+		}
+		Map<String, Set<Stage>> formats = stagesByBucket.get(bucketKey);
+		if (formats == null) {
+			formats = new HashMap<String, Set<Stage>>();
+			stagesByBucket.put(bucketKey, formats);
+		}
+		Set<Stage> stages = formats.get(formatKey);
+		if (stages == null) {
+			stages = EnumSet.noneOf(Stage.class);
+			formats.put(formatKey, stages);
+		}
+		stages.add(stage);
+	}
+
+	private void replay() {
+		if (!journalFile.exists())
+			return;
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(
+					journalFile), "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null)
+				replayLine(line);
+		} catch (IOException e) {
+			logger.warn(warn("Read archive journal", e,
+					"Will archive the unread buckets from the start", "journal",
+					journalFile));
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Lines that can't be parsed, like a line that was partially written when
+	 * the process stopped, are skipped.
+	 */
+	private void replayLine(String line) {
+		String[] fields = line.split(SEPARATOR);
+		if (fields.length != 4)
+			return;
+		try {
+			apply(fields[1] + SEPARATOR + fields[2], fields[3],
+					Stage.valueOf(fields[0]));
+		} catch (IllegalArgumentException e) {
+			logger.debug(did("Replayed archive journal line", "unknown stage",
+					"a known stage", "line", line));
+		}
+	}
+
+	private void append(String line) {
+		try {
+			if (journal == null)
+				journal = new FileOutputStream(journalFile, true);
+			journal.write(line.getBytes("UTF-8"));
+			journal.flush();
+		} catch (IOException e) {
+			logger.warn(warn("Appended to archive journal", e,
+					"Will keep the record in memory only", "journal", journalFile));
+			closeJournal();
+		}
+	}
+
+	/**
+	 * Rewrites the journal with only the stages of buckets that aren't deleted.
+	 * The new journal is written next to the old one and renamed over it.
+	 */
+	private void compact() {
+		closeJournal();
+		recordsSinceCompaction = 0;
+		File compacted = new File(journalFile.getPath() + ".compact");
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(compacted);
+			for (Map.Entry<String, Map<String, Set<Stage>>> bucket : stagesByBucket
+					.entrySet())
+				for (Map.Entry<String, Set<Stage>> format : bucket.getValue()
+						.entrySet())
+					for (Stage stage : format.getValue())
+						out.write((stage + SEPARATOR + bucket.getKey() + SEPARATOR
+								+ format.getKey() + "\n").getBytes("UTF-8"));
+			out.close();
+			if (!compacted.renameTo(journalFile)
+					&& !(journalFile.delete() && compacted.renameTo(journalFile)))
+				throw new IOException("Could not rename " + compacted + " to "
+						+ journalFile);
+		} catch (IOException e) {
+			logger.warn(warn("Compacted archive journal", e,
+					"Will keep appending to the uncompacted journal", "journal",
+					journalFile));
+		} finally {
+			IOUtils.closeQuietly(out);
+			compacted.delete();
+		}
+	}
+
+	private void closeJournal() {
+		IOUtils.closeQuietly(journal);
+		journal = null;
+	}
+
+	private static BucketJournal sharedInstance;
+
+	/**
+	 * @return journal in the archiver directory, shared by the whole process.
+	 */
+	public static synchronized BucketJournal getSharedInstance() {
+		if (sharedInstance == null)
+			sharedInstance = new BucketJournal(
+					LocalFileSystemConstants.getArchiveJournalFile());
+		return sharedInstance;
+	}
+}
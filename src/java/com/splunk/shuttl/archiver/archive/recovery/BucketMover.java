@@ -17,9 +17,14 @@ package com.splunk.shuttl.archiver.archive.recovery;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.model.Bucket;
@@ -27,19 +32,41 @@ import com.splunk.shuttl.archiver.model.BucketFactory;
 
 /**
  * Class for moving buckets to the location passed to
- * {@link #BucketMover(String)}
+ * {@link #BucketMover(File)}, or to a staging directory next to each bucket
+ * with {@link #BucketMover(File, String)}.
  */
 public class BucketMover {
 
 	private final static Logger logger = Logger.getLogger(BucketMover.class);
+
+	/**
+	 * File in the moved buckets location that lists the staging directories
+	 * that buckets have been moved to.
+	 */
+	static final String STAGING_DIRECTORIES_FILE = "staging-directories";
+
 	private final File movedBucketsLocation;
+	private final String stagingDirectoryName;
 
 	/**
 	 * @param movedBucketsLocationPath
 	 *          path to the failed buckets location
 	 */
 	public BucketMover(File movedBucketsLocation) {
+		this(movedBucketsLocation, null);
+	}
+
+	/**
+	 * @param stagingDirectoryName
+	 *          when not null, buckets are moved to a directory with this name
+	 *          next to the bucket, so that the move is a rename on the same file
+	 *          system. The staging directories are remembered in the moved
+	 *          buckets location, so that {@link #getMovedBuckets()} finds their
+	 *          buckets.
+	 */
+	public BucketMover(File movedBucketsLocation, String stagingDirectoryName) {
 		this.movedBucketsLocation = movedBucketsLocation;
+		this.stagingDirectoryName = stagingDirectoryName;
 	}
 
 	/**
@@ -51,36 +78,96 @@ public class BucketMover {
 	 * @return the new bucket moved to the new location.
 	 */
 	public Bucket moveBucket(Bucket bucket) {
+		File location = getLocationToMoveTo(bucket);
 		logger.debug(will("moving bucket", "bucket", bucket, "destination",
-				movedBucketsLocation));
-		Bucket movedBucket = moveBucketToMovedBucketsLocationAndPerserveItsIndex(bucket);
+				location));
+		Bucket movedBucket = moveBucketToLocationAndPerserveItsIndex(bucket,
+				location);
 		logger.debug(did("moved bucket", "success", null, "bucket", bucket,
-				"destination", movedBucketsLocation));
+				"destination", location));
 		return movedBucket;
 	}
 
-	private Bucket moveBucketToMovedBucketsLocationAndPerserveItsIndex(
-			Bucket bucket) {
-		File indexDirectory = new File(movedBucketsLocation, bucket.getIndex());
+	private File getLocationToMoveTo(Bucket bucket) {
+		if (stagingDirectoryName == null)
+			return movedBucketsLocation;
+		File stagingDirectory = new File(bucket.getDirectory().getAbsoluteFile()
+				.getParentFile(), stagingDirectoryName);
+		if (stagingDirectory.equals(movedBucketsLocation.getAbsoluteFile()))
+			return movedBucketsLocation;
+		if ((stagingDirectory.isDirectory() || stagingDirectory.mkdirs())
+				&& rememberStagingDirectory(stagingDirectory))
+			return stagingDirectory;
+		logger.warn(warn("Created staging directory next to bucket",
+				"could not create or remember it",
+				"will move bucket to the moved buckets location", "bucket", bucket,
+				"staging_directory", stagingDirectory));
+		return movedBucketsLocation;
+	}
+
+	private boolean rememberStagingDirectory(File stagingDirectory) {
+		if (getStagingDirectories().contains(stagingDirectory))
+			return true;
+		try {
+			FileUtils.writeStringToFile(getStagingDirectoriesFile(),
+					stagingDirectory.getAbsolutePath() + IOUtils.LINE_SEPARATOR, true);
+			return true;
+		} catch (IOException e) {
+			logger.warn(warn("Remembered staging directory", e,
+					"will not use staging directory", "staging_directory",
+					stagingDirectory));
+			return false;
+		}
+	}
+
+	private File getStagingDirectoriesFile() {
+		return new File(movedBucketsLocation, STAGING_DIRECTORIES_FILE);
+	}
+
+	private Set<File> getStagingDirectories() {
+		Set<File> stagingDirectories = new LinkedHashSet<File>();
+		File stagingDirectoriesFile = getStagingDirectoriesFile();
+		if (stagingDirectoriesFile.exists())
+			try {
+				for (Object line : FileUtils.readLines(stagingDirectoriesFile))
+					if (((String) line).trim().length() > 0)
+						stagingDirectories.add(new File(((String) line).trim()));
+			} catch (IOException e) {
+				logger.warn(warn("Read staging directories", e,
+						"will not list buckets in staging directories", "file",
+						stagingDirectoriesFile));
+			}
+		return stagingDirectories;
+	}
+
+	private Bucket moveBucketToLocationAndPerserveItsIndex(Bucket bucket,
+			File location) {
+		File indexDirectory = new File(location, bucket.getIndex());
 		indexDirectory.mkdirs();
 		return bucket.moveBucketToDir(indexDirectory);
 	}
 
 	/**
-	 * @return list of buckets in the failed buckets location that can be
+	 * @return list of buckets in the failed buckets location, and in the
+	 *         staging directories buckets have been moved to, that can be
 	 *         transfered
 	 */
 	public List<Bucket> getMovedBuckets() {
 		ArrayList<Bucket> movedBuckets = new ArrayList<Bucket>();
+		addBucketsFromLocation(movedBuckets, movedBucketsLocation);
+		if (stagingDirectoryName != null)
+			for (File stagingDirectory : getStagingDirectories())
+				addBucketsFromLocation(movedBuckets, stagingDirectory);
+		return movedBuckets;
+	}
 
-		File[] listFiles = movedBucketsLocation.listFiles();
+	private void addBucketsFromLocation(ArrayList<Bucket> movedBuckets,
+			File location) {
+		File[] listFiles = location.listFiles();
 		if (listFiles != null)
 			for (File file : listFiles)
-				if (!file.isFile())
+				if (isMovedDirectory(file))
 					addBucketsFromIndexDirectory(movedBuckets, file);
-				else
-					continue; // Ignore regular files.
-		return movedBuckets;
 	}
 
 	private void addBucketsFromIndexDirectory(ArrayList<Bucket> movedBuckets,
@@ -89,8 +176,17 @@ public class BucketMover {
 		File[] bucketsInIndex = file.listFiles();
 		if (bucketsInIndex != null)
 			for (File bucket : bucketsInIndex)
-				movedBuckets.add(BucketFactory.createBucketWithIndexAndDirectory(index,
-						bucket));
+				if (isMovedDirectory(bucket))
+					movedBuckets.add(BucketFactory.createBucketWithIndexAndDirectory(
+							index, bucket));
+	}
+
+	/**
+	 * Regular files, like locks, and directories starting with a dot, like the
+	 * bucket trash, are not indexes or buckets.
+	 */
+	private boolean isMovedDirectory(File file) {
+		return file.isDirectory() && !file.getName().startsWith(".");
 	}
 
 }
@@ -16,10 +16,13 @@ package com.splunk.shuttl.archiver.archive.recovery;
 
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
+import java.util.List;
+
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketHandler;
+import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketsHandler;
 import com.splunk.shuttl.archiver.model.Bucket;
 
 /**
@@ -29,6 +32,12 @@ import com.splunk.shuttl.archiver.model.Bucket;
  */
 public class FailedBucketsArchiver {
 
+	/**
+	 * Most buckets that are locked and handed to a
+	 * {@link SharedLockBucketsHandler} at once.
+	 */
+	public static final int BATCH_SIZE = 100;
+
 	private final BucketMover bucketMover;
 	private final BucketLocker bucketLocker;
 	private static Logger logger = Logger.getLogger(FailedBucketsArchiver.class);
@@ -59,4 +68,22 @@ public class FailedBucketsArchiver {
 			bucketLocker.callBucketHandlerUnderSharedLock(movedBucket, bucketHandler);
 	}
 
+	/**
+	 * Recover failed buckets in batches of at most {@link #BATCH_SIZE}. Each
+	 * batch contains the buckets that it was possible to get a lock on.
+	 * 
+	 * @param bucketsHandler
+	 *          to handle each batch of moved buckets.
+	 */
+	public void archiveFailedBucketsInBatches(
+			SharedLockBucketsHandler bucketsHandler) {
+		List<Bucket> movedBuckets = bucketMover.getMovedBuckets();
+		logger.debug(will("Archiving failed buckets in batches",
+				"failed buckets", movedBuckets.size(), "batch_size", BATCH_SIZE));
+
+		for (int i = 0; i < movedBuckets.size(); i += BATCH_SIZE)
+			bucketLocker.callBucketsHandlerUnderSharedLocks(movedBuckets.subList(i,
+					Math.min(i + BATCH_SIZE, movedBuckets.size())), bucketsHandler);
+	}
+
 }
@@ -14,6 +14,9 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.bucketlock;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.splunk.shuttl.archiver.model.Bucket;
 
 /**
@@ -60,6 +63,32 @@ public abstract class BucketLocker {
 				bucketHandler.handleSharedLockedBucket(bucket);
 	}
 
+	/**
+	 * Locks the buckets like {@link #callBucketHandlerUnderSharedLock}, and calls
+	 * the handler once with the buckets that could be locked. The locks are
+	 * closed after the handler returns. The handler is not called if no bucket
+	 * could be locked.
+	 */
+	public void callBucketsHandlerUnderSharedLocks(List<Bucket> buckets,
+			SharedLockBucketsHandler bucketsHandler) {
+		List<BucketLock> locks = new ArrayList<BucketLock>();
+		List<Bucket> lockedBuckets = new ArrayList<Bucket>();
+		try {
+			for (Bucket bucket : buckets) {
+				BucketLock bucketLock = getLockForBucket(bucket);
+				locks.add(bucketLock);
+				if (bucketLock.tryLockExclusive()
+						&& bucketLock.tryConvertExclusiveToSharedLock())
+					lockedBuckets.add(bucket);
+			}
+			if (!lockedBuckets.isEmpty())
+				bucketsHandler.handleSharedLockedBuckets(lockedBuckets);
+		} finally {
+			for (BucketLock bucketLock : locks)
+				bucketLock.closeLock();
+		}
+	}
+
 	/**
 	 * Interface for operating on a {@link Bucket} while it's locked with
 	 * {@link BucketLock}.
@@ -73,4 +102,17 @@ public abstract class BucketLocker {
 		void handleSharedLockedBucket(Bucket bucket);
 	}
 
+	/**
+	 * Interface for operating on many {@link Bucket}s at once while they are
+	 * locked with {@link BucketLock}s.
+	 */
+	public interface SharedLockBucketsHandler {
+
+		/**
+		 * Do operations on {@link Bucket}s while they are locked with
+		 * {@link BucketLock}s.
+		 */
+		void handleSharedLockedBuckets(List<Bucket> buckets);
+	}
+
 }
@@ -14,16 +14,23 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.bucketsize;
 
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
 import com.splunk.shuttl.archiver.archive.PathResolver;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
-import com.splunk.shuttl.archiver.filesystem.FileOverwriteException;
+import com.splunk.shuttl.archiver.filesystem.FileEntry;
 import com.splunk.shuttl.archiver.model.Bucket;
 
 /**
@@ -37,6 +44,9 @@ import com.splunk.shuttl.archiver.model.Bucket;
  */
 public class ArchiveBucketSize {
 
+	private static final Logger logger = Logger
+			.getLogger(ArchiveBucketSize.class);
+
 	private final PathResolver pathResolver;
 	private final BucketSizeIO bucketSizeIO;
 	private final ArchiveFileSystem archiveFileSystem;
@@ -55,29 +65,61 @@ public class ArchiveBucketSize {
 	 * @return size of an archived bucket on the local file system.
 	 */
 	public long getSize(Bucket bucket) {
+		Long listedSize = getSizeFromMetadataListing(bucket);
+		if (listedSize != null)
+			return listedSize;
 		URI fileUriForSizeFile = pathResolver.getBucketSizeFileUriForBucket(bucket);
 		return bucketSizeIO.readSizeFromRemoteFile(fileUriForSizeFile);
 	}
 
+	/**
+	 * Buckets archived before the size was put in the size file's name only
+	 * have the size in the file's content, so this returns null for them.
+	 */
+	private Long getSizeFromMetadataListing(Bucket bucket) {
+		for (FileEntry entry : listMetadataDirectory(bucket)) {
+			Long size = PathResolver.getSizeFromBucketSizeFileName(FilenameUtils
+					.getName(entry.getUri().getPath()));
+			if (size != null)
+				return size;
+		}
+		return null;
+	}
+
+	private List<FileEntry> listMetadataDirectory(Bucket bucket) {
+		try {
+			return archiveFileSystem.listEntries(pathResolver
+					.getMetadataDirectoryUriForBucket(bucket));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the file with the bucket's size, keyed by its path relative to the
+	 *         archived bucket. To be put together with the bucket, instead of
+	 *         with {@link #putSize(Bucket)}.
+	 */
+	public Map<String, File> getSizeMetadata(Bucket bucket) {
+		return Collections.singletonMap(
+				PathResolver.getBucketSizeFilePath(bucket.getSize()),
+				bucketSizeIO.getFileWithBucketSize(bucket));
+	}
+
 	/**
 	 * Put metadata on the {@link ArchiveFileSystem} about a bucket's size.
 	 */
 	public void putSize(Bucket bucket) {
 		File fileWithBucketSize = bucketSizeIO.getFileWithBucketSize(bucket);
-		URI bucketSizeFilePath = pathResolver.getBucketSizeFileUriForBucket(bucket);
+		URI bucketSizeFilePath = pathResolver.getBucketSizeFileUriForBucket(bucket,
+				bucket.getSize());
 		try {
 			archiveFileSystem.putFileAtomically(fileWithBucketSize,
 					bucketSizeFilePath);
-			// TODO: This is duplication between ArchiveBucketTransferer. There should
-			// exist a ArchiveTransferer?
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
-		} catch (FileOverwriteException e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
 		} catch (IOException e) {
-			e.printStackTrace();
+			logger.error(did("Put bucket size on archive file system", e,
+					"size to be put", "bucket", bucket, "size_file",
+					bucketSizeFilePath, "exception", e));
 			throw new RuntimeException(e);
 		}
 	}
@@ -0,0 +1,311 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.archive.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Append-only catalog of the buckets archived in an index, stored on the
+ * {@link ArchiveFileSystem} next to the index. Listing an index with the
+ * catalog takes one list and a few reads, instead of a list and a read per
+ * bucket.<br/>
+ * <br/>
+ * The catalog of an index is a directory of segment files with
+ * {@link CatalogEntry} lines. Every archived bucket appends a new segment. When
+ * there are more than {@link #MAX_SEGMENTS} segments, they are merged into one.
+ * Segments are never modified, and entries are unique per bucket and format,
+ * so a reader that sees both merged and unmerged segments gets the same
+ * entries. A reader that lists segments which are merged away before it reads
+ * them lists the catalog again.<br/>
+ * <br/>
+ * Every transferer has its own catalog instance, so merging and replacing
+ * segments is locked per catalog directory for the whole process, and the
+ * number of segments is counted there instead of listed after every add.
+ */
+public class ArchiveCatalog {
+
+	private static final Logger logger = Logger.getLogger(ArchiveCatalog.class);
+
+	/* package private */static final int MAX_SEGMENTS = 16;
+	private static final String SEGMENT_SUFFIX = ".segment";
+
+	private static final int MAX_READ_ATTEMPTS = 3;
+
+	private static final ConcurrentMap<String, CatalogSegments> catalogSegments = new ConcurrentHashMap<String, CatalogSegments>();
+
+	private final ArchiveFileSystem archiveFileSystem;
+	private final PathResolver pathResolver;
+
+	public ArchiveCatalog(ArchiveFileSystem archiveFileSystem,
+			PathResolver pathResolver) {
+		this.archiveFileSystem = archiveFileSystem;
+		this.pathResolver = pathResolver;
+	}
+
+	/**
+	 * @return false if the catalog is disabled and neither records nor lists
+	 *         any buckets.
+	 */
+	public boolean isEnabled() {
+		return true;
+	}
+
+	/**
+	 * Appends an archived bucket to the catalog of its index.
+	 */
+	public void add(Bucket bucket) throws IOException {
+		String index = bucket.getIndex();
+		writeSegment(index,
+				Collections.singletonList(CatalogEntry.fromBucket(bucket)));
+		mergeSegmentsIfTooMany(index);
+	}
+
+	/**
+	 * @return true if the index has a catalog.
+	 */
+	public boolean hasCatalog(String index) throws IOException {
+		return !listSegments(index).isEmpty();
+	}
+
+	/**
+	 * @return all entries in the catalog of an index. Empty if there is no
+	 *         catalog.
+	 */
+	public List<CatalogEntry> getEntries(String index) throws IOException {
+		for (int attempt = 1;; attempt++) {
+			Map<String, CatalogEntry> entries = new LinkedHashMap<String, CatalogEntry>();
+			if (readSegments(listSegments(index), entries)
+					|| attempt == MAX_READ_ATTEMPTS)
+				return new ArrayList<CatalogEntry>(entries.values());
+		}
+	}
+
+	/**
+	 * Replaces the catalog of an index with the specified entries.
+	 */
+	public void replace(String index, List<CatalogEntry> entries)
+			throws IOException {
+		CatalogSegments segments = getCatalogSegments(index);
+		synchronized (segments) {
+			List<URI> oldSegments = listSegments(index);
+			writeSegment(index, entries);
+			deleteSegments(oldSegments);
+			segments.count = 1;
+			logger.info(done("replaced archive catalog", "index", index,
+					"entries", entries.size(), "replaced_segments", oldSegments.size()));
+		}
+	}
+
+	private void mergeSegmentsIfTooMany(String index) throws IOException {
+		CatalogSegments segments = getCatalogSegments(index);
+		synchronized (segments) {
+			if (segments.count == CatalogSegments.UNKNOWN)
+				segments.count = listSegments(index).size();
+			else
+				segments.count++;
+			if (segments.count > MAX_SEGMENTS)
+				mergeSegments(index, segments);
+		}
+	}
+
+	private void mergeSegments(String index, CatalogSegments segments)
+			throws IOException {
+		List<URI> merged = listSegments(index);
+		Map<String, CatalogEntry> entries = new LinkedHashMap<String, CatalogEntry>();
+		readSegments(merged, entries);
+		writeSegment(index, new ArrayList<CatalogEntry>(entries.values()));
+		deleteSegments(merged);
+		segments.count = 1;
+		logger.debug(done("merged archive catalog segments", "index", index,
+				"segments", merged.size(), "entries", entries.size()));
+	}
+
+	private CatalogSegments getCatalogSegments(String index) {
+		String catalogHome = pathResolver.getCatalogHome(index).toString();
+		CatalogSegments segments = catalogSegments.get(catalogHome);
+		if (segments == null) {
+			CatalogSegments created = new CatalogSegments();
+			segments = catalogSegments.putIfAbsent(catalogHome, created);
+			if (segments == null)
+				segments = created;
+		}
+		return segments;
+	}
+
+	/**
+	 * Lock and segment count of a catalog directory. The count is what this
+	 * process has written since it last listed the segments, so segments
+	 * written by other processes only delay a merge.
+	 */
+	private static class CatalogSegments {
+
+		static final int UNKNOWN = -1;
+
+		int count = UNKNOWN;
+	}
+
+	private List<URI> listSegments(String index) throws IOException {
+		List<URI> segments = new ArrayList<URI>();
+		for (URI uri : archiveFileSystem.listPath(pathResolver
+				.getCatalogHome(index)))
+			if (uri.getPath().endsWith(SEGMENT_SUFFIX))
+				segments.add(uri);
+		return segments;
+	}
+
+	/**
+	 * @return false if a segment was removed before it was read, by a merge or
+	 *         a replace.
+	 */
+	private boolean readSegments(List<URI> segments,
+			Map<String, CatalogEntry> entries) throws IOException {
+		boolean readAll = true;
+		for (URI segment : segments)
+			try {
+				for (String line : readLines(segment))
+					if (!line.isEmpty()) {
+						CatalogEntry entry = CatalogEntry.fromLine(line);
+						entries.put(entry.getKey(), entry);
+					}
+			} catch (FileNotFoundException e) {
+				logger.debug(did("read archive catalog segment", e,
+						"segment to exist", "segment", segment));
+				readAll = false;
+			}
+		return readAll;
+	}
+
+	private List<String> readLines(URI segment) throws IOException {
+		InputStream input = archiveFileSystem.openFile(segment);
+		try {
+			return IOUtils.readLines(input, "UTF-8");
+		} finally {
+			input.close();
+		}
+	}
+
+	private void writeSegment(String index, List<CatalogEntry> entries)
+			throws IOException {
+		List<String> lines = new ArrayList<String>(entries.size());
+		for (CatalogEntry entry : entries)
+			lines.add(entry.toLine());
+		File localSegment = File.createTempFile("catalog-" + index,
+				SEGMENT_SUFFIX);
+		try {
+			FileUtils.writeLines(localSegment, "UTF-8", lines, "\n");
+			archiveFileSystem.putFileAtomically(localSegment,
+					createSegmentUri(index));
+		} finally {
+			FileUtils.deleteQuietly(localSegment);
+		}
+	}
+
+	private URI createSegmentUri(String index) {
+		return URI.create(pathResolver.getCatalogHome(index).toString()
+				+ PathResolver.SEPARATOR + System.currentTimeMillis() + "-"
+				+ UUID.randomUUID() + SEGMENT_SUFFIX);
+	}
+
+	private void deleteSegments(List<URI> segments) throws IOException {
+		for (URI segment : segments)
+			archiveFileSystem.deletePath(segment);
+	}
+
+	/**
+	 * Catalog to use when the catalog is disabled in the configuration.
+	 */
+	private static class DisabledArchiveCatalog extends ArchiveCatalog {
+
+		public DisabledArchiveCatalog() {
+			super(null, null);
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void add(Bucket bucket) {
+		}
+
+		@Override
+		public boolean hasCatalog(String index) {
+			return false;
+		}
+
+		@Override
+		public List<CatalogEntry> getEntries(String index) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void replace(String index, List<CatalogEntry> entries) {
+			throw new UnsupportedOperationException("Archive catalog is disabled");
+		}
+	}
+
+	/**
+	 * @return catalog that records no buckets and has no entries.
+	 */
+	public static ArchiveCatalog disabled() {
+		return new DisabledArchiveCatalog();
+	}
+
+	/**
+	 * @return catalog on the configured archive file system, or a
+	 *         {@link #disabled()} catalog if it is not enabled in the
+	 *         configuration.
+	 */
+	public static ArchiveCatalog createIfEnabled(ArchiveConfiguration config) {
+		if (config.isCatalogEnabled())
+			return create(config);
+		else
+			return disabled();
+	}
+
+	/**
+	 * @return catalog on the configured archive file system.
+	 */
+	public static ArchiveCatalog create(ArchiveConfiguration config) {
+		return new ArchiveCatalog(
+				ArchiveFileSystemFactory.getWithConfiguration(config),
+				new PathResolver(config));
+	}
+}
@@ -0,0 +1,145 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.archive.PathResolver;
+import com.splunk.shuttl.archiver.bucketsize.ArchiveBucketSize;
+import com.splunk.shuttl.archiver.listers.ArchiveBucketsLister;
+import com.splunk.shuttl.archiver.listers.ArchiveBucketsListerFactory;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolverFactory;
+
+/**
+ * Regenerates the {@link ArchiveCatalog} of indexes by walking the archive. Used
+ * when the catalog is enabled on an existing archive, or when buckets failed to
+ * be added to the catalog.
+ */
+public class ArchiveCatalogRebuilder {
+
+	private static final Logger logger = Logger
+			.getLogger(ArchiveCatalogRebuilder.class);
+
+	private final ArchiveBucketsLister bucketsLister;
+	private final BucketFormatResolver bucketFormatResolver;
+	private final ArchiveBucketSize archiveBucketSize;
+	private final PathResolver pathResolver;
+	private final ArchiveCatalog archiveCatalog;
+
+	public ArchiveCatalogRebuilder(ArchiveBucketsLister bucketsLister,
+			BucketFormatResolver bucketFormatResolver,
+			ArchiveBucketSize archiveBucketSize, PathResolver pathResolver,
+			ArchiveCatalog archiveCatalog) {
+		this.bucketsLister = bucketsLister;
+		this.bucketFormatResolver = bucketFormatResolver;
+		this.archiveBucketSize = archiveBucketSize;
+		this.pathResolver = pathResolver;
+		this.archiveCatalog = archiveCatalog;
+	}
+
+	/**
+	 * Rebuilds the catalog of every archived index.
+	 * 
+	 * @return number of catalog entries per index.
+	 */
+	public Map<String, Integer> rebuildAll() throws IOException {
+		Map<String, Integer> entriesPerIndex = new LinkedHashMap<String, Integer>();
+		for (String index : listIndexes())
+			entriesPerIndex.put(index, rebuild(index));
+		return entriesPerIndex;
+	}
+
+	/**
+	 * Rebuilds the catalog of an index.
+	 * 
+	 * @return number of entries in the rebuilt catalog.
+	 */
+	public int rebuild(String index) throws IOException {
+		logger.info(will("rebuild archive catalog", "index", index));
+		List<CatalogEntry> entries = walkIndex(index);
+		archiveCatalog.replace(index, entries);
+		logger.info(done("rebuilt archive catalog", "index", index, "entries",
+				entries.size()));
+		return entries.size();
+	}
+
+	/**
+	 * @return indexes that have archived buckets.
+	 */
+	public List<String> listIndexes() {
+		return bucketsLister.listIndexes();
+	}
+
+	/**
+	 * Creates the catalog entries of an index by walking the archive, without
+	 * reading or changing the catalog.
+	 * 
+	 * @return an entry for every archived format of every bucket in the index.
+	 */
+	public List<CatalogEntry> walkIndex(String index) throws IOException {
+		List<CatalogEntry> entries = new ArrayList<CatalogEntry>();
+		for (Bucket bucket : bucketsLister.listBucketsInIndex(index))
+			if (bucket != null)
+				for (BucketFormat format : bucketFormatResolver
+						.listArchivedFormats(bucket))
+					entries.add(createEntry(bucket, format));
+		return entries;
+	}
+
+	private CatalogEntry createEntry(Bucket bucket, BucketFormat format)
+			throws IOException {
+		URI uri = pathResolver.resolveArchivedBucketURI(bucket.getIndex(),
+				bucket.getName(), format);
+		Bucket bucketInFormat = new Bucket(uri, bucket.getIndex(),
+				bucket.getName(), format);
+		return new CatalogEntry(bucket.getName(), format, bucket.getEarliest(),
+				bucket.getLatest(), getSizeOrNull(bucketInFormat));
+	}
+
+	private Long getSizeOrNull(Bucket bucket) {
+		try {
+			return archiveBucketSize.getSize(bucket);
+		} catch (RuntimeException e) {
+			logger.warn(warn("Read the size of an archived bucket", e,
+					"Will catalog the bucket without size", "bucket", bucket,
+					"exception", e));
+			return null;
+		}
+	}
+
+	/**
+	 * @return rebuilder for the configured archive.
+	 */
+	public static ArchiveCatalogRebuilder create(ArchiveConfiguration config) {
+		return new ArchiveCatalogRebuilder(
+				ArchiveBucketsListerFactory.create(config),
+				BucketFormatResolverFactory.create(config),
+				ArchiveBucketSize.create(config), new PathResolver(config),
+				ArchiveCatalog.create(config));
+	}
+}
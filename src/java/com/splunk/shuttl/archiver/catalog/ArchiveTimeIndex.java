@@ -0,0 +1,231 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+
+/**
+ * In memory time index over all archived buckets, with a
+ * {@link BucketIntervalIndex} per index. It is warmed once by reading the
+ * archive and then kept up to date by adding every archived bucket, so that
+ * listing and thawing buckets in a time range does not list the archive.<br/>
+ * <br/>
+ * Until it is warm, buckets are added to it but it should not be used for
+ * lookups, since it doesn't know about the buckets that were archived before
+ * it was created.<br/>
+ * <br/>
+ * Rebuilding a {@link BucketIntervalIndex} for every archived bucket would
+ * cost as much as the whole index, so single buckets are added to a small
+ * list of recent entries that lookups scan. The recent entries are merged
+ * into the interval index when there are too many of them, and when a batch
+ * of entries is added.
+ */
+public class ArchiveTimeIndex {
+
+	private static final Logger logger = Logger
+			.getLogger(ArchiveTimeIndex.class);
+
+	private static final int MAX_RECENT_ENTRIES = 256;
+
+	private static final ArchiveTimeIndex sharedInstance = new ArchiveTimeIndex();
+
+	private final ConcurrentMap<String, IndexedBuckets> indexes;
+	private volatile boolean warm;
+
+	public ArchiveTimeIndex() {
+		indexes = new ConcurrentHashMap<String, IndexedBuckets>();
+	}
+
+	/**
+	 * @return true when the index has been warmed and can answer lookups.
+	 */
+	public boolean isWarm() {
+		return warm;
+	}
+
+	/**
+	 * Adds the entry of a bucket that was archived. The entry replaces an
+	 * existing entry of the same bucket and format.
+	 */
+	public synchronized void add(String index, CatalogEntry entry) {
+		indexes.put(index, getBuckets(index).withRecentEntry(entry));
+	}
+
+	/**
+	 * Adds the entries of buckets in an index. Entries replace existing entries
+	 * of the same bucket and format.
+	 */
+	public synchronized void addAll(String index, List<CatalogEntry> entries) {
+		indexes.put(index, getBuckets(index).withMergedEntries(entries));
+	}
+
+	private IndexedBuckets getBuckets(String index) {
+		IndexedBuckets buckets = indexes.get(index);
+		return buckets == null ? IndexedBuckets.EMPTY : buckets;
+	}
+
+	/**
+	 * @return indexes with archived buckets.
+	 */
+	public List<String> getIndexes() {
+		return new ArrayList<String>(indexes.keySet());
+	}
+
+	/**
+	 * @return entries of the buckets in the index that overlap the time range.
+	 */
+	public List<CatalogEntry> find(String index, Date earliest, Date latest) {
+		List<CatalogEntry> found = new ArrayList<CatalogEntry>();
+		getBuckets(index).find(earliest.getTime(), latest.getTime(), found);
+		return found;
+	}
+
+	/**
+	 * Immutable interval index of an index's buckets, with the entries added
+	 * since it was built.
+	 */
+	private static class IndexedBuckets {
+
+		static final IndexedBuckets EMPTY = new IndexedBuckets(
+				BucketIntervalIndex.empty(),
+				Collections.<String, CatalogEntry> emptyMap());
+
+		private final BucketIntervalIndex intervals;
+		private final Map<String, CatalogEntry> recentEntries;
+
+		private IndexedBuckets(BucketIntervalIndex intervals,
+				Map<String, CatalogEntry> recentEntries) {
+			this.intervals = intervals;
+			this.recentEntries = recentEntries;
+		}
+
+		IndexedBuckets withRecentEntry(CatalogEntry entry) {
+			Map<String, CatalogEntry> recent = new LinkedHashMap<String, CatalogEntry>(
+					recentEntries);
+			recent.put(getKey(entry), entry);
+			if (recent.size() > MAX_RECENT_ENTRIES)
+				return new IndexedBuckets(intervals.withEntries(recent.values()),
+						Collections.<String, CatalogEntry> emptyMap());
+			return new IndexedBuckets(intervals, recent);
+		}
+
+		IndexedBuckets withMergedEntries(List<CatalogEntry> entries) {
+			List<CatalogEntry> merged = new ArrayList<CatalogEntry>(
+					recentEntries.values());
+			merged.addAll(entries);
+			return new IndexedBuckets(intervals.withEntries(merged),
+					Collections.<String, CatalogEntry> emptyMap());
+		}
+
+		/**
+		 * Recent entries replace the interval index's entries of the same
+		 * bucket and format.
+		 */
+		void find(long earliestTime, long latestTime, List<CatalogEntry> out) {
+			if (earliestTime > latestTime)
+				return;
+			if (recentEntries.isEmpty()) {
+				intervals.find(earliestTime, latestTime, out);
+				return;
+			}
+			List<CatalogEntry> found = new ArrayList<CatalogEntry>();
+			intervals.find(earliestTime, latestTime, found);
+			for (CatalogEntry entry : found)
+				if (!recentEntries.containsKey(getKey(entry)))
+					out.add(entry);
+			for (CatalogEntry entry : recentEntries.values())
+				if (entry.getLatest().getTime() >= earliestTime
+						&& entry.getEarliest().getTime() <= latestTime)
+					out.add(entry);
+		}
+
+		/**
+		 * @return number of buckets, not counting the recent entries.
+		 */
+		int size() {
+			return intervals.size();
+		}
+
+		private static String getKey(CatalogEntry entry) {
+			return entry.getBucketName() + "/" + entry.getFormat();
+		}
+	}
+
+	/**
+	 * Warms the index with every archived bucket. Indexes with an
+	 * {@link ArchiveCatalog} are read from the catalog, the others are walked.
+	 * 
+	 * @param archiveCatalog
+	 *          to read indexes from.
+	 */
+	public void warm(ArchiveCatalogRebuilder archiveWalker,
+			ArchiveCatalog archiveCatalog) throws IOException {
+		logger.info(will("warm archive time index"));
+		int buckets = 0;
+		for (String index : archiveWalker.listIndexes()) {
+			List<CatalogEntry> entries = archiveCatalog.getEntries(index);
+			if (entries.isEmpty())
+				entries = archiveWalker.walkIndex(index);
+			addAll(index, entries);
+			buckets += indexes.get(index).size();
+		}
+		warm = true;
+		logger.info(done("warmed archive time index", "indexes", indexes.size(),
+				"buckets", buckets));
+	}
+
+	/**
+	 * Warms the shared instance on a background thread. Lookups fall back to
+	 * listing the archive until it is done, or if it fails.
+	 */
+	public static void warmSharedInstanceInBackground(
+			final ArchiveConfiguration config) {
+		new DaemonThreadFactory("shuttl-time-index-warmer").newThread(
+				new Runnable() {
+					@Override
+					public void run() {
+						try {
+							sharedInstance.warm(ArchiveCatalogRebuilder.create(config),
+									ArchiveCatalog.createIfEnabled(config));
+						} catch (Exception e) {
+							logger.warn(warn("Warmed archive time index", e,
+									"Buckets will be listed from the archive", "exception", e));
+						}
+					}
+				}).start();
+	}
+
+	/**
+	 * @return the time index that is shared by the whole server.
+	 */
+	public static ArchiveTimeIndex getSharedInstance() {
+		return sharedInstance;
+	}
+}
@@ -0,0 +1,167 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+
+/**
+ * Immutable index over the time ranges of the archived buckets in one index.
+ * Buckets are stored in primitive columns sorted by earliest time, with a max
+ * tree over the latest times. Finding the buckets overlapping a time range is
+ * a binary search followed by a walk of the tree that only visits subtrees
+ * containing matches, and it does not parse bucket names or allocate dates.
+ */
+public class BucketIntervalIndex {
+
+	private static final BucketIntervalIndex EMPTY = new BucketIntervalIndex(
+			new ArrayList<CatalogEntry[]>());
+
+	private final long[] earliest;
+	private final long[] latest;
+	private final long[] maxLatestTree;
+	private final CatalogEntry[][] entries;
+
+	private BucketIntervalIndex(List<CatalogEntry[]> bucketsSortedByEarliest) {
+		int size = bucketsSortedByEarliest.size();
+		earliest = new long[size];
+		latest = new long[size];
+		entries = bucketsSortedByEarliest.toArray(new CatalogEntry[size][]);
+		for (int i = 0; i < size; i++) {
+			earliest[i] = entries[i][0].getEarliest().getTime();
+			latest[i] = entries[i][0].getLatest().getTime();
+		}
+		maxLatestTree = new long[Math.max(1, 4 * size)];
+		if (size > 0)
+			buildTree(1, 0, size);
+	}
+
+	private long buildTree(int node, int from, int to) {
+		if (to - from == 1)
+			return maxLatestTree[node] = latest[from];
+		int middle = (from + to) >>> 1;
+		return maxLatestTree[node] = Math.max(buildTree(2 * node, from, middle),
+				buildTree(2 * node + 1, middle, to));
+	}
+
+	/**
+	 * @return index without buckets.
+	 */
+	public static BucketIntervalIndex empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @return index of the entries. Entries with the same bucket name are
+	 *         formats of the same bucket.
+	 */
+	public static BucketIntervalIndex create(Collection<CatalogEntry> entries) {
+		return EMPTY.withEntries(entries);
+	}
+
+	/**
+	 * @return a new index with the entries added. Entries replace existing
+	 *         entries of the same bucket and format.
+	 */
+	public BucketIntervalIndex withEntries(Collection<CatalogEntry> added) {
+		Map<String, Map<BucketFormat, CatalogEntry>> buckets = new LinkedHashMap<String, Map<BucketFormat, CatalogEntry>>();
+		for (CatalogEntry[] formats : entries)
+			for (CatalogEntry entry : formats)
+				putEntry(buckets, entry);
+		for (CatalogEntry entry : added)
+			putEntry(buckets, entry);
+
+		List<CatalogEntry[]> sorted = new ArrayList<CatalogEntry[]>(
+				buckets.size());
+		for (Map<BucketFormat, CatalogEntry> formats : buckets.values())
+			sorted.add(formats.values().toArray(new CatalogEntry[formats.size()]));
+		Collections.sort(sorted, BY_EARLIEST);
+		return new BucketIntervalIndex(sorted);
+	}
+
+	private static void putEntry(Map<String, Map<BucketFormat, CatalogEntry>> buckets,
+			CatalogEntry entry) {
+		Map<BucketFormat, CatalogEntry> formats = buckets.get(entry.getBucketName());
+		if (formats == null) {
+			formats = new LinkedHashMap<BucketFormat, CatalogEntry>();
+			buckets.put(entry.getBucketName(), formats);
+		}
+		formats.put(entry.getFormat(), entry);
+	}
+
+	private static final Comparator<CatalogEntry[]> BY_EARLIEST = new Comparator<CatalogEntry[]>() {
+		@Override
+		public int compare(CatalogEntry[] a, CatalogEntry[] b) {
+			long x = a[0].getEarliest().getTime();
+			long y = b[0].getEarliest().getTime();
+			return x < y ? -1 : (x == y ? 0 : 1);
+		}
+	};
+
+	/**
+	 * @return number of buckets in the index.
+	 */
+	public int size() {
+		return earliest.length;
+	}
+
+	/**
+	 * Adds the entries of all buckets that overlap the time range to the
+	 * output. A bucket overlaps when its latest time is not before earliest and
+	 * its earliest time is not after latest, which is the same condition as
+	 * {@link com.splunk.shuttl.archiver.thaw.BucketFilter}.
+	 */
+	public void find(long earliestTime, long latestTime, List<CatalogEntry> out) {
+		if (earliestTime > latestTime)
+			return;
+		int candidates = countEarliestNotAfter(latestTime);
+		if (candidates > 0)
+			collect(1, 0, size(), candidates, earliestTime, out);
+	}
+
+	private int countEarliestNotAfter(long time) {
+		int low = 0;
+		int high = earliest.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (earliest[middle] <= time)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private void collect(int node, int from, int to, int candidates,
+			long earliestTime, List<CatalogEntry> out) {
+		if (from >= candidates || maxLatestTree[node] < earliestTime)
+			return;
+		if (to - from == 1) {
+			for (CatalogEntry entry : entries[from])
+				out.add(entry);
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		collect(2 * node, from, middle, candidates, earliestTime, out);
+		collect(2 * node + 1, middle, to, candidates, earliestTime, out);
+	}
+}
@@ -0,0 +1,116 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import java.util.Date;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * One archived format of a bucket, as recorded in the {@link ArchiveCatalog}.
+ * Stored as a tab separated line.
+ */
+public class CatalogEntry {
+
+	private static final String SEPARATOR = "\t";
+	private static final int FIELDS = 5;
+
+	private final String bucketName;
+	private final BucketFormat format;
+	private final Date earliest;
+	private final Date latest;
+	private final Long size;
+
+	public CatalogEntry(String bucketName, BucketFormat format, Date earliest,
+			Date latest, Long size) {
+		this.bucketName = bucketName;
+		this.format = format;
+		this.earliest = earliest;
+		this.latest = latest;
+		this.size = size;
+	}
+
+	/**
+	 * @return entry for an archived bucket.
+	 */
+	public static CatalogEntry fromBucket(Bucket bucket) {
+		return new CatalogEntry(bucket.getName(), bucket.getFormat(),
+				bucket.getEarliest(), bucket.getLatest(), bucket.getSize());
+	}
+
+	/**
+	 * @return entry from a line created with {@link #toLine()}.
+	 * @throws IllegalArgumentException
+	 *           if the line is not an entry.
+	 */
+	public static CatalogEntry fromLine(String line) {
+		String[] fields = line.split(SEPARATOR, -1);
+		if (fields.length != FIELDS)
+			throw new IllegalArgumentException("Not a catalog entry: " + line);
+		try {
+			return new CatalogEntry(fields[0], BucketFormat.valueOf(fields[1]),
+					new Date(Long.parseLong(fields[2])), new Date(
+							Long.parseLong(fields[3])), fields[4].isEmpty() ? null
+							: Long.valueOf(fields[4]));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a catalog entry: " + line, e);
+		}
+	}
+
+	/**
+	 * @return the entry as a line without line separator.
+	 */
+	public String toLine() {
+		return bucketName + SEPARATOR + format + SEPARATOR + earliest.getTime()
+				+ SEPARATOR + latest.getTime() + SEPARATOR
+				+ (size == null ? "" : size.toString());
+	}
+
+	/**
+	 * @return key that is unique per bucket and format.
+	 */
+	public String getKey() {
+		return bucketName + SEPARATOR + format;
+	}
+
+	public String getBucketName() {
+		return bucketName;
+	}
+
+	public BucketFormat getFormat() {
+		return format;
+	}
+
+	public Date getEarliest() {
+		return earliest;
+	}
+
+	public Date getLatest() {
+		return latest;
+	}
+
+	/**
+	 * @return size of the bucket on local disk, or null if it is unknown.
+	 */
+	public Long getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogEntry [" + toLine().replace(SEPARATOR, ", ") + "]";
+	}
+}
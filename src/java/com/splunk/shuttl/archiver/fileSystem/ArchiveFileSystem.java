@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 /**
  * With this interface code can put, retrieve and list files in any system that
@@ -67,6 +68,115 @@ public interface ArchiveFileSystem {
 	void putFileAtomically(File fileOnLocalFileSystem, URI fileOnArchiveFileSystem)
 			throws FileNotFoundException, FileOverwriteException, IOException;
 
+	/**
+	 * Puts a directory like {@link #putFileAtomically(File, URI)}, together with
+	 * metadata files that become visible in the same atomic step.
+	 * 
+	 * @param metadataFiles
+	 *          local files keyed by their path relative to the directory on the
+	 *          archive file system.
+	 * @throws IllegalArgumentException
+	 *           If there is metadata and the local file is not a directory.
+	 */
+	void putFileAtomically(File fileOnLocalFileSystem,
+			URI fileOnArchiveFileSystem, Map<String, File> metadataFiles)
+			throws FileNotFoundException, FileOverwriteException, IOException;
+
+	/**
+	 * Writes the content of the stream to a file in a directory on the archiving
+	 * file system atomically. The file is written in a temporary directory which
+	 * is renamed to the specified directory once the stream is fully read. If
+	 * reading the stream fails, nothing is left on the specified path.
+	 * 
+	 * @param input
+	 *          stream to read until its end. It is not closed.
+	 * @param directoryOnArchiveFileSystem
+	 *          Path pointing for an non exiting directory on the archive file
+	 *          system.
+	 * @param fileName
+	 *          name of the file in the directory that gets the content.
+	 * 
+	 * @throws FileOverwriteException
+	 *           If there is already a directory on the specified path.
+	 * @throws IOException
+	 *           If there was any other problem with the operation, including
+	 *           reading the stream.
+	 */
+	void putStreamAtomically(InputStream input,
+			URI directoryOnArchiveFileSystem, String fileName)
+			throws FileOverwriteException, IOException;
+
+	/**
+	 * Like {@link #putStreamAtomically(InputStream, URI, String)}, together with
+	 * metadata files that become visible in the same atomic step.
+	 * 
+	 * @param metadataFiles
+	 *          local files keyed by their path relative to the directory on the
+	 *          archive file system. Is read after the stream, so the metadata
+	 *          can describe what was streamed.
+	 */
+	void putStreamAtomically(InputStream input,
+			URI directoryOnArchiveFileSystem, String fileName,
+			Map<String, File> metadataFiles) throws FileOverwriteException,
+			IOException;
+
+	/**
+	 * Packs the specified directory on local file system into a single
+	 * {@link DirectoryContainer} file, which is put atomically in the specified
+	 * directory on the archiving file system.
+	 * 
+	 * @param directoryOnLocalFileSystem
+	 *          An existing directory on the local file system.
+	 * @param directoryOnArchiveFileSystem
+	 *          Path pointing for an non exiting directory on the archive file
+	 *          system.
+	 * 
+	 * @throws FileNotFoundException
+	 *           If specified directory on the local file system doesn't exist.
+	 * @throws FileOverwriteException
+	 *           If there is already a directory on the specified path.
+	 * @throws IOException
+	 *           If there was any other problem with the operation.
+	 */
+	void putDirectoryPackedAtomically(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem) throws FileNotFoundException,
+			FileOverwriteException, IOException;
+
+	/**
+	 * Like {@link #putDirectoryPackedAtomically(File, URI)}, together with
+	 * metadata files that become visible in the same atomic step.
+	 * 
+	 * @param metadataFiles
+	 *          local files keyed by their path relative to the directory on the
+	 *          archive file system.
+	 */
+	void putDirectoryPackedAtomically(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem, Map<String, File> metadataFiles)
+			throws FileNotFoundException, FileOverwriteException, IOException;
+
+	/**
+	 * Unpacks a directory that was put with
+	 * {@link #putDirectoryPackedAtomically(File, URI)} to the specified directory
+	 * on local file system. If unpacking fails, nothing is left on the local
+	 * file system.
+	 * 
+	 * @param directoryOnLocalFileSystem
+	 *          A non exiting directory on the local file system.
+	 * @param directoryOnArchiveFileSystem
+	 *          A path to an existing packed directory on the archiving file
+	 *          system.
+	 * @throws FileNotFoundException
+	 *           If there isn't a packed directory on the archiving file system
+	 *           with the specified path.
+	 * @throws FileOverwriteException
+	 *           If there is already a file on the local file system.
+	 * @throws IOException
+	 *           If there was any other problem with the operation.
+	 */
+	void getPackedDirectory(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem) throws FileNotFoundException,
+			FileOverwriteException, IOException;
+
 	/**
 	 * Retrieves the file from specified path on archiving file system and stores
 	 * it to the specified file on local file system.
@@ -99,6 +209,53 @@ public interface ArchiveFileSystem {
 	 */
 	List<URI> listPath(URI pathToBeListed) throws IOException;
 
+	/**
+	 * Lists all paths matching a glob pattern, with one call to the archiving
+	 * file system, no matter how many directories the pattern spans.
+	 * 
+	 * @param pathPattern
+	 *          path where any component can be a glob, such as "*".
+	 * @return the matching paths, or an empty list if nothing matches.
+	 * @throws IOException
+	 *           If there was any other problem with the operation.
+	 */
+	List<URI> listPathsMatching(URI pathPattern) throws IOException;
+
+	/**
+	 * Lists the contents of the specified path like {@link #listPath(URI)}, but
+	 * keeps the length, modification time and directory flag that the archiving
+	 * file system returns with the listing, so callers don't have to ask for
+	 * them path by path.
+	 * 
+	 * @return entries for the same paths as {@link #listPath(URI)} returns.
+	 * @throws IOException
+	 *           If there was any other problem with the operation.
+	 */
+	List<FileEntry> listEntries(URI pathToBeListed) throws IOException;
+
+	/**
+	 * Sums the length of all files under a path, recursively, with one call to
+	 * the archiving file system.
+	 * 
+	 * @return the summed length in bytes, or the length of the path itself if
+	 *         it's a file.
+	 * @throws FileNotFoundException
+	 *           If the path does not exist.
+	 * @throws IOException
+	 *           If there was any other problem with the operation.
+	 */
+	long getContentLength(URI pathOnArchiveFileSystem)
+			throws FileNotFoundException, IOException;
+
+	/**
+	 * Deletes a file, or a directory with all its content, on the archiving
+	 * file system. Does nothing if the path does not exist.
+	 * 
+	 * @throws IOException
+	 *           If there was any other problem with the operation.
+	 */
+	void deletePath(URI pathOnArchiveFileSystem) throws IOException;
+
 	/**
 	 * @param fileOnArchiveFileSystem
 	 *          A path to an existing file on the archiving file system.
@@ -16,10 +16,12 @@ package com.splunk.shuttl.archiver.filesystem;
 
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -67,7 +69,30 @@ public class ArchiveFileSystemFactory {
 	 */
 	public static ArchiveFileSystem getWithConfiguration(
 			ArchiveConfiguration config) {
-		return getForUriToTmpDir(config.getTmpDirectory());
+		URI tmpDirectory = config.getTmpDirectory();
+		throwIfUnsupportedUri(tmpDirectory);
+		if (isLocalUri(tmpDirectory))
+			return createLocalFileSystem(tmpDirectory);
+		FileSystem hadoopFs = getHadoopFileSystemSafe(tmpDirectory);
+		ParallelFileUploader fileUploader = new ParallelFileUploader(hadoopFs,
+				getSharedUploadExecutor(config.getUploadStreams()),
+				config.getUploadBufferSize());
+		return new HadoopFileSystemArchive(hadoopFs, new Path(
+				tmpDirectory.getPath()), fileUploader);
+	}
+
+	private static ExecutorService sharedUploadExecutor;
+
+	/**
+	 * All uploads share the same streams, so that the number of concurrent
+	 * uploads is bounded no matter how many buckets are archived at once.
+	 */
+	private static synchronized ExecutorService getSharedUploadExecutor(
+			int streams) {
+		if (sharedUploadExecutor == null)
+			sharedUploadExecutor = ParallelFileUploader
+					.createUploadExecutor(streams);
+		return sharedUploadExecutor;
 	}
 
 	/**
@@ -79,21 +104,38 @@ public class ArchiveFileSystemFactory {
 	 * @return
 	 */
 	public static ArchiveFileSystem getForUriToTmpDir(URI uri) {
+		throwIfUnsupportedUri(uri);
+		return supportedArchiveFileSystem(uri);
+	}
+
+	private static void throwIfUnsupportedUri(URI uri) {
 		if (!supportedUriSchemas.contains(uri.getScheme()))
 			throw new UnsupportedUriException("Supported Uri schemas are: "
 					+ supportedUriSchemas);
-		else
-			return supportedArchiveFileSystem(uri);
 	}
 
 	private static ArchiveFileSystem supportedArchiveFileSystem(URI uri) {
-		if (uri.getScheme().equals("file") || uri.getScheme().equals("hdfs"))
+		if (isLocalUri(uri))
+			return createLocalFileSystem(uri);
+		if (uri.getScheme().equals("hdfs"))
 			return createHadoopFileSystem(uri);
 
 		throw new IllegalStateException(
 				"Supported URI schemas should return a ArchiveFileSystem.");
 	}
 
+	private static boolean isLocalUri(URI uri) {
+		return uri.getScheme().equals("file");
+	}
+
+	/**
+	 * Local archives, such as a mounted NAS, don't need Hadoop's checksums and
+	 * stream buffers.
+	 */
+	private static ArchiveFileSystem createLocalFileSystem(URI uri) {
+		return new LocalFileSystemArchive(new File(uri.getPath()));
+	}
+
 	private static ArchiveFileSystem createHadoopFileSystem(URI uri) {
 		FileSystem hadoopFs = getHadoopFileSystemSafe(uri);
 		return new HadoopFileSystemArchive(hadoopFs, new Path(uri.getPath()));
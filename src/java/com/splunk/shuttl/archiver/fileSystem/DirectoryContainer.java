@@ -0,0 +1,249 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.hadoop.fs.FSDataInputStream;
+
+/**
+ * Packs a directory and all its files into a single container file, so that a
+ * bucket is stored as one file on the archive file system instead of one file
+ * per bucket file.<br/>
+ * <br/>
+ * Layout: a magic number, then every member as its relative path, its length
+ * and its content. The members are followed by an index with the offset of
+ * each member's content and a trailer pointing at the index. The members can
+ * therefore be unpacked by reading the container from start to end, and a
+ * single member can be read by seeking to it with the index.<br/>
+ * Directories are members with length {@link #DIRECTORY_LENGTH}, so that empty
+ * directories are preserved.
+ */
+public class DirectoryContainer {
+
+	/**
+	 * Name of the container file in a directory on the archive file system.
+	 */
+	public static final String FILE_NAME = "bucket.container";
+
+	private static final int MAGIC = 0x5348504b; // "SHPK"
+	private static final long DIRECTORY_LENGTH = -1;
+	private static final int TRAILER_SIZE = 8 + 4;
+	private static final String END_OF_MEMBERS = "";
+
+	/**
+	 * A file or directory in the container.
+	 */
+	public static class Member {
+
+		private final String path;
+		private final long offset;
+		private final long length;
+
+		public Member(String path, long offset, long length) {
+			this.path = path;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * @return path relative to the packed directory, separated by '/'.
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @return offset of the member's content in the container.
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public boolean isDirectory() {
+			return length == DIRECTORY_LENGTH;
+		}
+	}
+
+	/**
+	 * Writes the content of the directory as a container to the output stream.
+	 * The stream is not closed.
+	 * 
+	 * @return number of bytes written.
+	 */
+	public static long pack(File directory, OutputStream output)
+			throws IOException {
+		if (!directory.isDirectory())
+			throw new FileNotFoundException(directory + " is not a directory.");
+		CountingOutputStream counter = new CountingOutputStream(output);
+		DataOutputStream out = new DataOutputStream(counter);
+		out.writeInt(MAGIC);
+		List<Member> index = new ArrayList<Member>();
+		packChildren(directory, "", out, counter, index);
+		out.writeUTF(END_OF_MEMBERS);
+		writeIndex(out, counter, index);
+		out.flush();
+		return counter.getByteCount();
+	}
+
+	private static void packChildren(File directory, String parentPath,
+			DataOutputStream out, CountingOutputStream counter, List<Member> index)
+			throws IOException {
+		File[] children = directory.listFiles();
+		if (children == null)
+			throw new IOException("Could not list directory " + directory);
+		Arrays.sort(children);
+		for (File child : children) {
+			String path = parentPath + child.getName();
+			if (child.isDirectory()) {
+				writeMemberHeader(out, path, DIRECTORY_LENGTH);
+				index.add(new Member(path, counter.getByteCount(), DIRECTORY_LENGTH));
+				packChildren(child, path + "/", out, counter, index);
+			} else {
+				long length = child.length();
+				writeMemberHeader(out, path, length);
+				index.add(new Member(path, counter.getByteCount(), length));
+				writeFileContent(child, length, out);
+			}
+		}
+	}
+
+	private static void writeMemberHeader(DataOutputStream out, String path,
+			long length) throws IOException {
+		out.writeUTF(path);
+		out.writeLong(length);
+	}
+
+	private static void writeFileContent(File file, long length,
+			OutputStream out) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			long copied = IOUtils.copyLarge(in, out);
+			if (copied != length)
+				throw new IOException("File " + file + " changed size while packing.");
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeIndex(DataOutputStream out,
+			CountingOutputStream counter, List<Member> index) throws IOException {
+		long indexOffset = counter.getByteCount();
+		out.writeInt(index.size());
+		for (Member member : index) {
+			out.writeUTF(member.getPath());
+			out.writeLong(member.getOffset());
+			out.writeLong(member.getLength());
+		}
+		out.writeLong(indexOffset);
+		out.writeInt(MAGIC);
+	}
+
+	/**
+	 * Unpacks a container by reading the stream sequentially from its start. The
+	 * index at the end of the container is not read. The stream is not closed.
+	 * 
+	 * @param directory
+	 *          to unpack the members in. Created if it does not exist.
+	 */
+	public static void unpack(InputStream input, File directory)
+			throws IOException {
+		DataInputStream in = new DataInputStream(input);
+		throwIfNotContainer(in.readInt());
+		createDirectory(directory);
+		String path;
+		while (!(path = in.readUTF()).equals(END_OF_MEMBERS)) {
+			long length = in.readLong();
+			throwIfOutsideDirectory(path);
+			File member = new File(directory, path);
+			if (length == DIRECTORY_LENGTH)
+				createDirectory(member);
+			else
+				writeMemberToFile(in, length, member);
+		}
+	}
+
+	private static void throwIfOutsideDirectory(String path) throws IOException {
+		if (path.startsWith("/") || ("/" + path + "/").contains("/../"))
+			throw new IOException("Member path outside of directory: " + path);
+	}
+
+	private static void writeMemberToFile(InputStream in, long length, File file)
+			throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			long copied = IOUtils.copyLarge(new BoundedInputStream(in, length), out);
+			if (copied != length)
+				throw new IOException("Container ended in the middle of " + file);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void createDirectory(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not create directory " + directory);
+	}
+
+	/**
+	 * Reads the index at the end of a container.
+	 * 
+	 * @param containerLength
+	 *          length of the container file.
+	 * @return members of the container by their path, in the order they were
+	 *         packed.
+	 */
+	public static Map<String, Member> readIndex(FSDataInputStream in,
+			long containerLength) throws IOException {
+		if (containerLength < TRAILER_SIZE)
+			throw new IOException("Too short to be a container: " + containerLength);
+		in.seek(containerLength - TRAILER_SIZE);
+		long indexOffset = in.readLong();
+		throwIfNotContainer(in.readInt());
+		in.seek(indexOffset);
+		int size = in.readInt();
+		Map<String, Member> index = new LinkedHashMap<String, Member>();
+		for (int i = 0; i < size; i++) {
+			Member member = new Member(in.readUTF(), in.readLong(), in.readLong());
+			index.put(member.getPath(), member);
+		}
+		return index;
+	}
+
+	private static void throwIfNotContainer(int magic) throws IOException {
+		if (magic != MAGIC)
+			throw new IOException("Not a bucket container.");
+	}
+}
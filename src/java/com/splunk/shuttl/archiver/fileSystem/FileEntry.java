@@ -0,0 +1,70 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import java.net.URI;
+
+/**
+ * A path on an {@link ArchiveFileSystem}, with the metadata that the archive
+ * file system returns when listing it.
+ */
+public class FileEntry {
+
+	private final URI uri;
+	private final long length;
+	private final long modificationTime;
+	private final boolean directory;
+
+	/**
+	 * @param uri
+	 *          to the path on the archive file system.
+	 * @param length
+	 *          of the file in bytes. 0 for directories.
+	 * @param modificationTime
+	 *          in milliseconds since the epoch.
+	 * @param directory
+	 *          true if the path is a directory.
+	 */
+	public FileEntry(URI uri, long length, long modificationTime,
+			boolean directory) {
+		this.uri = uri;
+		this.length = length;
+		this.modificationTime = modificationTime;
+		this.directory = directory;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getModificationTime() {
+		return modificationTime;
+	}
+
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	@Override
+	public String toString() {
+		return "FileEntry [uri=" + uri + ", length=" + length
+				+ ", modificationTime=" + modificationTime + ", directory="
+				+ directory + "]";
+	}
+}
@@ -0,0 +1,56 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import java.util.AbstractList;
+
+import org.apache.hadoop.fs.FileStatus;
+
+/**
+ * Wraps around {@link FileStatus} and provides a list of {@link FileEntry}
+ * objects, keeping the length and modification time that was listed.
+ */
+public class FileStatusBackedEntryList extends AbstractList<FileEntry> {
+
+	private FileStatus[] fileStatus;
+	private FileEntry[] entryCache;
+
+	/**
+	 * Creates a list backed by the specified FileStatus array.
+	 */
+	public FileStatusBackedEntryList(FileStatus... fileStatus) {
+		super();
+		this.fileStatus = fileStatus;
+		entryCache = new FileEntry[fileStatus.length];
+	}
+
+	@Override
+	public FileEntry get(int index) {
+		if (entryCache[index] == null)
+			entryCache[index] = createEntry(fileStatus[index]);
+		return entryCache[index];
+	}
+
+	private FileEntry createEntry(FileStatus status) {
+		return new FileEntry(status.getPath().toUri(), status.getLen(),
+				status.getModificationTime(), status.isDir());
+	}
+
+	@Override
+	public int size() {
+		return fileStatus.length;
+	}
+
+}
@@ -15,14 +15,22 @@
 
 package com.splunk.shuttl.archiver.filesystem;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -34,13 +42,32 @@ public class HadoopFileSystemArchive implements ArchiveFileSystem {
 
 	private final Path atomicPutTmpPath;
 	private final FileSystem hadoopFileSystem;
+	private final ParallelFileUploader fileUploader;
+
+	private static final int CONTAINER_BUFFER_SIZE = 64 * 1024;
+
+	private static final Map<String, File> NO_METADATA = Collections.emptyMap();
 
 	private static Logger logger = Logger
 			.getLogger(HadoopFileSystemArchive.class);
 
+	/**
+	 * Uploads the files of a directory one at a time.
+	 */
 	public HadoopFileSystemArchive(FileSystem hadoopFileSystem, Path path) {
+		this(hadoopFileSystem, path, ParallelFileUploader
+				.createSequential(hadoopFileSystem));
+	}
+
+	/**
+	 * @param fileUploader
+	 *          for uploading the files of a directory concurrently.
+	 */
+	public HadoopFileSystemArchive(FileSystem hadoopFileSystem, Path path,
+			ParallelFileUploader fileUploader) {
 		atomicPutTmpPath = path;
 		this.hadoopFileSystem = hadoopFileSystem;
+		this.fileUploader = fileUploader;
 	}
 
 	@Override
@@ -49,29 +76,204 @@ public class HadoopFileSystemArchive implements ArchiveFileSystem {
 		throwExceptionIfFileDoNotExist(fileOnLocalFileSystem);
 		Path hadoopPath = createPathFromURI(fileOnArchiveFileSystem);
 		throwExceptionIfRemotePathAlreadyExist(hadoopPath);
-		Path localPath = createPathFromFile(fileOnLocalFileSystem);
-		hadoopFileSystem.copyFromLocalFile(localPath, hadoopPath);
+		copyFromLocal(fileOnLocalFileSystem, hadoopPath);
 	}
 
 	@Override
 	public void putFileAtomically(File fileOnLocalFileSystem,
 			URI fileOnArchiveFileSystem) throws FileNotFoundException,
 			FileOverwriteException, IOException {
-		Path hadoopPath = createPathFromURI(fileOnArchiveFileSystem);
-		throwExceptionIfRemotePathAlreadyExist(hadoopPath);
-		Path tmpLocation = putFileToTmpDirectoryOverwirtingOldFilesAppendingPath(
-				fileOnLocalFileSystem, fileOnArchiveFileSystem);
-		move(tmpLocation, hadoopPath);
+		putFileAtomically(fileOnLocalFileSystem, fileOnArchiveFileSystem,
+				NO_METADATA);
+	}
+
+	@Override
+	public void putFileAtomically(File fileOnLocalFileSystem,
+			URI fileOnArchiveFileSystem, Map<String, File> metadataFiles)
+			throws FileNotFoundException, FileOverwriteException, IOException {
+		throwExceptionIfFileDoNotExist(fileOnLocalFileSystem);
+		if (!metadataFiles.isEmpty() && !fileOnLocalFileSystem.isDirectory())
+			throw new IllegalArgumentException("Metadata can only be put with "
+					+ "a directory, not with file: " + fileOnLocalFileSystem);
+		AtomicPut put = new AtomicPut(fileOnArchiveFileSystem);
+		put.begin();
+		try {
+			copyFromLocal(fileOnLocalFileSystem, put.tmpPath);
+			put.writeMetadata(metadataFiles);
+		} catch (IOException e) {
+			put.abort();
+			throw e;
+		} catch (RuntimeException e) {
+			put.abort();
+			throw e;
+		}
+		put.commit();
+	}
+
+	private void copyFromLocal(File fileOnLocalFileSystem, Path hadoopPath)
+			throws IOException {
+		fileUploader.upload(fileOnLocalFileSystem, hadoopPath);
+	}
+
+	@Override
+	public void putStreamAtomically(InputStream input,
+			URI directoryOnArchiveFileSystem, String fileName)
+			throws FileOverwriteException, IOException {
+		putStreamAtomically(input, directoryOnArchiveFileSystem, fileName,
+				NO_METADATA);
+	}
+
+	@Override
+	public void putStreamAtomically(InputStream input,
+			URI directoryOnArchiveFileSystem, String fileName,
+			Map<String, File> metadataFiles) throws FileOverwriteException,
+			IOException {
+		AtomicPut put = new AtomicPut(directoryOnArchiveFileSystem);
+		put.begin();
+		try {
+			writeStreamToPath(input, new Path(put.tmpPath, fileName));
+			put.writeMetadata(metadataFiles);
+		} catch (IOException e) {
+			put.abort();
+			throw e;
+		} catch (RuntimeException e) {
+			put.abort();
+			throw e;
+		}
+		put.commit();
+	}
+
+	@Override
+	public void putDirectoryPackedAtomically(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem) throws FileNotFoundException,
+			FileOverwriteException, IOException {
+		putDirectoryPackedAtomically(directoryOnLocalFileSystem,
+				directoryOnArchiveFileSystem, NO_METADATA);
+	}
+
+	@Override
+	public void putDirectoryPackedAtomically(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem, Map<String, File> metadataFiles)
+			throws FileNotFoundException, FileOverwriteException, IOException {
+		throwExceptionIfFileDoNotExist(directoryOnLocalFileSystem);
+		AtomicPut put = new AtomicPut(directoryOnArchiveFileSystem);
+		put.begin();
+		try {
+			writeContainerToPath(directoryOnLocalFileSystem, new Path(put.tmpPath,
+					DirectoryContainer.FILE_NAME));
+			put.writeMetadata(metadataFiles);
+		} catch (IOException e) {
+			put.abort();
+			throw e;
+		} catch (RuntimeException e) {
+			put.abort();
+			throw e;
+		}
+		put.commit();
 	}
 
 	/**
-	 * Do NOT call nor override this method outside this class.It's meant to be
-	 * private but is package private for testing purposes. If you want to expose
-	 * this method make it public or protected!
+	 * Writes everything that is put in one temporary directory and publishes
+	 * it with a single rename. Counts the name node calls it makes, not
+	 * counting the calls made while writing data, and logs them as a metric
+	 * when committed.
 	 */
-	/* package private */void deletePathRecursivly(Path fileOnArchiveFileSystem)
+	private class AtomicPut {
+
+		private final Path destination;
+		private final Path tmpPath;
+		private int rpcs;
+
+		public AtomicPut(URI destination) {
+			this.destination = createPathFromURI(destination);
+			this.tmpPath = UtilsPath.createPathByAppending(atomicPutTmpPath,
+					this.destination);
+		}
+
+		/**
+		 * Rename would move the temporary directory into an existing directory,
+		 * instead of failing, so the destination has to be checked once.
+		 */
+		public void begin() throws IOException {
+			rpcs++;
+			throwExceptionIfRemotePathAlreadyExist(destination);
+			rpcs++;
+			deletePathRecursivly(tmpPath);
+		}
+
+		public void writeMetadata(Map<String, File> metadataFiles)
+				throws IOException {
+			for (Map.Entry<String, File> metadata : metadataFiles.entrySet()) {
+				rpcs++;
+				writeFileToPath(metadata.getValue(), new Path(tmpPath,
+						metadata.getKey()));
+			}
+		}
+
+		public void commit() throws IOException {
+			rpcs += 2;
+			move(tmpPath, destination);
+			logger.info(String.format(
+					" Metrics - group=archive series=atomic_put rpcs=%d path=%s", rpcs,
+					destination));
+		}
+
+		public void abort() throws IOException {
+			deletePathRecursivly(tmpPath);
+		}
+	}
+
+	private void writeFileToPath(File file, Path path) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			writeStreamToPath(input, path);
+		} finally {
+			input.close();
+		}
+	}
+
+	private void writeContainerToPath(File directory, Path path)
 			throws IOException {
-		hadoopFileSystem.delete(fileOnArchiveFileSystem, true);
+		FSDataOutputStream output = hadoopFileSystem.create(path);
+		try {
+			DirectoryContainer.pack(directory, new BufferedOutputStream(output,
+					CONTAINER_BUFFER_SIZE));
+		} finally {
+			output.close();
+		}
+	}
+
+	@Override
+	public void getPackedDirectory(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem) throws FileNotFoundException,
+			FileOverwriteException, IOException {
+		throwExceptionIfFileAlreadyExist(directoryOnLocalFileSystem);
+		FSDataInputStream input = hadoopFileSystem
+				.open(getContainerPath(directoryOnArchiveFileSystem));
+		try {
+			DirectoryContainer.unpack(new BufferedInputStream(input,
+					CONTAINER_BUFFER_SIZE), directoryOnLocalFileSystem);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(directoryOnLocalFileSystem);
+			throw e;
+		} finally {
+			input.close();
+		}
+	}
+
+	private Path getContainerPath(URI directoryOnArchiveFileSystem) {
+		return new Path(createPathFromURI(directoryOnArchiveFileSystem),
+				DirectoryContainer.FILE_NAME);
+	}
+
+	private void writeStreamToPath(InputStream input, Path path)
+			throws IOException {
+		FSDataOutputStream output = hadoopFileSystem.create(path);
+		try {
+			IOUtils.copyLarge(input, output);
+		} finally {
+			output.close();
+		}
 	}
 
 	/**
@@ -79,36 +281,20 @@ public class HadoopFileSystemArchive implements ArchiveFileSystem {
 	 * private but is package private for testing purposes. If you want to expose
 	 * this method make it public or protected!
 	 */
-	/* package private */void move(Path src, Path dst) throws IOException {
-		hadoopFileSystem.mkdirs(dst.getParent());
-		hadoopFileSystem.rename(src, dst);
-
+	/* package private */void deletePathRecursivly(Path fileOnArchiveFileSystem)
+			throws IOException {
+		hadoopFileSystem.delete(fileOnArchiveFileSystem, true);
 	}
 
 	/**
 	 * Do NOT call nor override this method outside this class.It's meant to be
 	 * private but is package private for testing purposes. If you want to expose
 	 * this method make it public or protected!
-	 * 
-	 * The specified file will be copied from local file system in to the tmp
-	 * directory on hadoop. The tmp directory will be the base and the full path
-	 * of the file on hadoop will contains the specified URI.
 	 */
-	/* package private */Path putFileToTmpDirectoryOverwirtingOldFilesAppendingPath(
-			File fileOnLocalFileSystem, URI appendPathToTmpDirectory)
-			throws FileNotFoundException, IOException {
-
-		Path hadoopPath = UtilsPath.createPathByAppending(atomicPutTmpPath,
-				createPathFromURI(appendPathToTmpDirectory));
-		deletePathRecursivly(hadoopPath);
-		try {
-			putFile(fileOnLocalFileSystem, hadoopPath.toUri());
-
-		} catch (FileOverwriteException e) {
-			throw new IOException(
-					"The old tmp path was not deleted this shouldn't happen!", e);
-		}
-		return hadoopPath;
+	/* package private */void move(Path src, Path dst) throws IOException {
+		hadoopFileSystem.mkdirs(dst.getParent());
+		if (!hadoopFileSystem.rename(src, dst))
+			throw new IOException("Could not rename " + src + " to " + dst);
 	}
 
 	@Override
@@ -131,6 +317,34 @@ public class HadoopFileSystemArchive implements ArchiveFileSystem {
 			return Collections.emptyList();
 	}
 
+	@Override
+	public List<URI> listPathsMatching(URI pathPattern) throws IOException {
+		FileStatus[] matchingStatus = hadoopFileSystem
+				.globStatus(createPathFromURI(pathPattern));
+		if (matchingStatus != null)
+			return new FileStatusBackedList(matchingStatus);
+		else
+			return Collections.emptyList();
+	}
+
+	@Override
+	public List<FileEntry> listEntries(URI pathToBeListed) throws IOException {
+		FileStatus[] fileStatusOfPath = hadoopFileSystem
+				.listStatus(createPathFromURI(pathToBeListed));
+		if (fileStatusOfPath != null)
+			return new FileStatusBackedEntryList(fileStatusOfPath);
+		else
+			return Collections.emptyList();
+	}
+
+	@Override
+	public long getContentLength(URI pathOnArchiveFileSystem)
+			throws FileNotFoundException, IOException {
+		// FileNotFoundException is already thrown by getContentSummary.
+		return hadoopFileSystem.getContentSummary(
+				createPathFromURI(pathOnArchiveFileSystem)).getLength();
+	}
+
 	private Path createPathFromURI(URI uri) {
 		return new Path(uri);
 	}
@@ -157,6 +371,11 @@ public class HadoopFileSystemArchive implements ArchiveFileSystem {
 			throw new FileOverwriteException(path.toString() + " already exist.");
 	}
 
+	@Override
+	public void deletePath(URI pathOnArchiveFileSystem) throws IOException {
+		deletePathRecursivly(createPathFromURI(pathOnArchiveFileSystem));
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,502 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * {@link ArchiveFileSystem} for archives on a local file system, such as a
+ * mounted NAS. Copies with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} and publishes atomic puts with a
+ * rename, without the checksum files and stream buffers of Hadoop's local file
+ * system.<br/>
+ * <br/>
+ * Archives written by Hadoop's local file system have a hidden .crc file next
+ * to every file. They are never listed, so both can read the same archive.
+ */
+public class LocalFileSystemArchive implements ArchiveFileSystem {
+
+	private static final int CONTAINER_BUFFER_SIZE = 64 * 1024;
+	private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private static final Map<String, File> NO_METADATA = Collections.emptyMap();
+
+	private final File atomicPutTmpDirectory;
+
+	/**
+	 * @param atomicPutTmpDirectory
+	 *          where atomic puts are written before they are renamed in place.
+	 */
+	public LocalFileSystemArchive(File atomicPutTmpDirectory) {
+		this.atomicPutTmpDirectory = atomicPutTmpDirectory;
+	}
+
+	@Override
+	public void putFile(File fileOnLocalFileSystem, URI fileOnArchiveFileSystem)
+			throws FileNotFoundException, FileOverwriteException, IOException {
+		throwExceptionIfFileDoNotExist(fileOnLocalFileSystem);
+		File file = createFileFromURI(fileOnArchiveFileSystem);
+		throwExceptionIfFileAlreadyExist(file);
+		copy(fileOnLocalFileSystem, file);
+	}
+
+	@Override
+	public void putFileAtomically(File fileOnLocalFileSystem,
+			URI fileOnArchiveFileSystem) throws FileNotFoundException,
+			FileOverwriteException, IOException {
+		putFileAtomically(fileOnLocalFileSystem, fileOnArchiveFileSystem,
+				NO_METADATA);
+	}
+
+	@Override
+	public void putFileAtomically(File fileOnLocalFileSystem,
+			URI fileOnArchiveFileSystem, Map<String, File> metadataFiles)
+			throws FileNotFoundException, FileOverwriteException, IOException {
+		throwExceptionIfFileDoNotExist(fileOnLocalFileSystem);
+		if (!metadataFiles.isEmpty() && !fileOnLocalFileSystem.isDirectory())
+			throw new IllegalArgumentException("Metadata can only be put with "
+					+ "a directory, not with file: " + fileOnLocalFileSystem);
+		File destination = createFileFromURI(fileOnArchiveFileSystem);
+		File tmp = beginAtomicPut(destination);
+		try {
+			copy(fileOnLocalFileSystem, tmp);
+			writeMetadata(tmp, metadataFiles);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(tmp);
+			throw e;
+		} catch (RuntimeException e) {
+			FileUtils.deleteQuietly(tmp);
+			throw e;
+		}
+		commitAtomicPut(tmp, destination);
+	}
+
+	@Override
+	public void putStreamAtomically(InputStream input,
+			URI directoryOnArchiveFileSystem, String fileName)
+			throws FileOverwriteException, IOException {
+		putStreamAtomically(input, directoryOnArchiveFileSystem, fileName,
+				NO_METADATA);
+	}
+
+	@Override
+	public void putStreamAtomically(InputStream input,
+			URI directoryOnArchiveFileSystem, String fileName,
+			Map<String, File> metadataFiles) throws FileOverwriteException,
+			IOException {
+		File destination = createFileFromURI(directoryOnArchiveFileSystem);
+		File tmp = beginAtomicPut(destination);
+		try {
+			writeStreamToFile(input, new File(tmp, fileName));
+			writeMetadata(tmp, metadataFiles);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(tmp);
+			throw e;
+		} catch (RuntimeException e) {
+			FileUtils.deleteQuietly(tmp);
+			throw e;
+		}
+		commitAtomicPut(tmp, destination);
+	}
+
+	@Override
+	public void putDirectoryPackedAtomically(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem) throws FileNotFoundException,
+			FileOverwriteException, IOException {
+		putDirectoryPackedAtomically(directoryOnLocalFileSystem,
+				directoryOnArchiveFileSystem, NO_METADATA);
+	}
+
+	@Override
+	public void putDirectoryPackedAtomically(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem, Map<String, File> metadataFiles)
+			throws FileNotFoundException, FileOverwriteException, IOException {
+		throwExceptionIfFileDoNotExist(directoryOnLocalFileSystem);
+		File destination = createFileFromURI(directoryOnArchiveFileSystem);
+		File tmp = beginAtomicPut(destination);
+		try {
+			writeContainerToFile(directoryOnLocalFileSystem, new File(tmp,
+					DirectoryContainer.FILE_NAME));
+			writeMetadata(tmp, metadataFiles);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(tmp);
+			throw e;
+		} catch (RuntimeException e) {
+			FileUtils.deleteQuietly(tmp);
+			throw e;
+		}
+		commitAtomicPut(tmp, destination);
+	}
+
+	/**
+	 * @return an empty temporary path for the destination.
+	 */
+	private File beginAtomicPut(File destination) throws IOException {
+		throwExceptionIfFileAlreadyExist(destination);
+		File tmp = new File(atomicPutTmpDirectory, destination.getPath());
+		deleteIfExists(tmp);
+		return tmp;
+	}
+
+	private void writeMetadata(File tmp, Map<String, File> metadataFiles)
+			throws IOException {
+		for (Map.Entry<String, File> metadata : metadataFiles.entrySet())
+			copyFile(metadata.getValue(), new File(tmp, metadata.getKey()));
+	}
+
+	/**
+	 * Renames the temporary path in place. When the temporary directory is on
+	 * another volume than the destination, the rename fails, so the temporary
+	 * path is copied next to the destination and renamed from there instead.
+	 */
+	private void commitAtomicPut(File tmp, File destination) throws IOException {
+		File parent = destination.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Could not create directory: " + parent);
+		if (rename(tmp, destination))
+			return;
+		File sibling = new File(parent, "." + destination.getName() + ".put");
+		try {
+			deleteIfExists(sibling);
+			copy(tmp, sibling);
+			if (!rename(sibling, destination))
+				throw new IOException("Could not rename " + sibling + " to "
+						+ destination);
+		} finally {
+			FileUtils.deleteQuietly(sibling);
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+
+	/* package private for testing */boolean rename(File source,
+			File destination) {
+		return source.renameTo(destination);
+	}
+
+	private void writeContainerToFile(File directory, File file)
+			throws IOException {
+		OutputStream output = new BufferedOutputStream(
+				openOutputStreamCreatingParents(file), CONTAINER_BUFFER_SIZE);
+		try {
+			DirectoryContainer.pack(directory, output);
+		} finally {
+			output.close();
+		}
+	}
+
+	private void writeStreamToFile(InputStream input, File file)
+			throws IOException {
+		OutputStream output = openOutputStreamCreatingParents(file);
+		try {
+			IOUtils.copyLarge(input, output);
+		} finally {
+			output.close();
+		}
+	}
+
+	private FileOutputStream openOutputStreamCreatingParents(File file)
+			throws IOException {
+		File parent = file.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Could not create directory: " + parent);
+		return new FileOutputStream(file);
+	}
+
+	/**
+	 * Copies a file, or a directory with all its content.
+	 */
+	private void copy(File source, File destination) throws IOException {
+		if (source.isDirectory()) {
+			if (!destination.isDirectory() && !destination.mkdirs())
+				throw new IOException("Could not create directory: " + destination);
+			File[] children = source.listFiles();
+			if (children == null)
+				throw new IOException("Could not list directory: " + source);
+			for (File child : children)
+				copy(child, new File(destination, child.getName()));
+		} else {
+			copyFile(source, destination);
+		}
+	}
+
+	/**
+	 * Lets the operating system copy the bytes, without passing them through
+	 * the JVM's heap.
+	 */
+	private void copyFile(File source, File destination) throws IOException {
+		FileInputStream input = new FileInputStream(source);
+		try {
+			FileOutputStream output = openOutputStreamCreatingParents(destination);
+			try {
+				transfer(input.getChannel(), output.getChannel());
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private void transfer(FileChannel source, FileChannel destination)
+			throws IOException {
+		long size = source.size();
+		long position = 0;
+		while (position < size)
+			position += source.transferTo(position,
+					Math.min(TRANSFER_CHUNK_SIZE, size - position), destination);
+	}
+
+	@Override
+	public void getPackedDirectory(File directoryOnLocalFileSystem,
+			URI directoryOnArchiveFileSystem) throws FileNotFoundException,
+			FileOverwriteException, IOException {
+		throwExceptionIfFileAlreadyExist(directoryOnLocalFileSystem);
+		InputStream input = new FileInputStream(
+				getContainerFile(directoryOnArchiveFileSystem));
+		try {
+			DirectoryContainer.unpack(new BufferedInputStream(input,
+					CONTAINER_BUFFER_SIZE), directoryOnLocalFileSystem);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(directoryOnLocalFileSystem);
+			throw e;
+		} finally {
+			input.close();
+		}
+	}
+
+	private File getContainerFile(URI directoryOnArchiveFileSystem) {
+		return new File(createFileFromURI(directoryOnArchiveFileSystem),
+				DirectoryContainer.FILE_NAME);
+	}
+
+	@Override
+	public void getFile(File fileOnLocalFileSystem, URI fileOnArchiveFileSystem)
+			throws FileNotFoundException, FileOverwriteException, IOException {
+		throwExceptionIfFileAlreadyExist(fileOnLocalFileSystem);
+		File file = createFileFromURI(fileOnArchiveFileSystem);
+		throwExceptionIfFileDoNotExist(file);
+		copy(file, fileOnLocalFileSystem);
+	}
+
+	@Override
+	public List<URI> listPath(URI pathToBeListed) throws IOException {
+		List<URI> uris = new ArrayList<URI>();
+		for (File file : listFiles(createFileFromURI(pathToBeListed)))
+			uris.add(createURIFromFile(file));
+		return uris;
+	}
+
+	@Override
+	public List<FileEntry> listEntries(URI pathToBeListed) throws IOException {
+		List<FileEntry> entries = new ArrayList<FileEntry>();
+		for (File file : listFiles(createFileFromURI(pathToBeListed))) {
+			boolean directory = file.isDirectory();
+			entries.add(new FileEntry(createURIFromFile(file), directory ? 0
+					: file.length(), file.lastModified(), directory));
+		}
+		return entries;
+	}
+
+	/**
+	 * @return the children of a directory, a list with only the file itself if
+	 *         it's a file or an empty list if it does not exist.
+	 */
+	private List<File> listFiles(File file) {
+		if (!file.exists())
+			return Collections.emptyList();
+		if (!file.isDirectory())
+			return Collections.singletonList(file);
+		List<File> files = new ArrayList<File>();
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				if (!isChecksumFile(child))
+					files.add(child);
+		return files;
+	}
+
+	/**
+	 * Hadoop's local file system keeps the checksum of a file in a hidden file
+	 * called .[name].crc next to it.
+	 */
+	private boolean isChecksumFile(File file) {
+		String name = file.getName();
+		return name.startsWith(".") && name.endsWith(".crc");
+	}
+
+	@Override
+	public List<URI> listPathsMatching(URI pathPattern) throws IOException {
+		List<File> matches = Collections.singletonList(new File("/"));
+		for (String component : createFileFromURI(pathPattern).getPath().split(
+				"/"))
+			if (!component.isEmpty())
+				matches = matchChildren(matches, component);
+		List<URI> uris = new ArrayList<URI>();
+		for (File match : matches)
+			uris.add(createURIFromFile(match));
+		Collections.sort(uris);
+		return uris;
+	}
+
+	private List<File> matchChildren(List<File> directories, String component) {
+		List<File> matches = new ArrayList<File>();
+		if (!isGlob(component)) {
+			for (File directory : directories) {
+				File child = new File(directory, component);
+				if (child.exists())
+					matches.add(child);
+			}
+		} else {
+			Pattern pattern = Pattern.compile(globToRegex(component));
+			for (File directory : directories) {
+				File[] children = directory.listFiles();
+				if (children != null)
+					for (File child : children)
+						if (!isChecksumFile(child)
+								&& pattern.matcher(child.getName()).matches())
+							matches.add(child);
+			}
+		}
+		return matches;
+	}
+
+	private boolean isGlob(String component) {
+		for (char c : component.toCharArray())
+			if ("*?[{\\".indexOf(c) >= 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Supports the same path component globs as Hadoop: *, ?, [abc], [a-c],
+	 * [^a], {a,b} and escaping with \.
+	 */
+	/* package private for testing */static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder();
+		int openCurlies = 0;
+		boolean inBrackets = false;
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '\\' && i + 1 < glob.length()) {
+				regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+			} else if (inBrackets) {
+				if (c == ']')
+					inBrackets = false;
+				regex.append(c == '\\' ? "\\\\" : String.valueOf(c));
+			} else if (c == '[') {
+				inBrackets = true;
+				regex.append('[');
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '^') {
+					regex.append('^');
+					i++;
+				}
+			} else if (c == '*') {
+				regex.append(".*");
+			} else if (c == '?') {
+				regex.append('.');
+			} else if (c == '{') {
+				openCurlies++;
+				regex.append("(?:");
+			} else if (c == '}' && openCurlies > 0) {
+				openCurlies--;
+				regex.append(')');
+			} else if (c == ',' && openCurlies > 0) {
+				regex.append('|');
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return regex.toString();
+	}
+
+	@Override
+	public long getContentLength(URI pathOnArchiveFileSystem)
+			throws FileNotFoundException, IOException {
+		File file = createFileFromURI(pathOnArchiveFileSystem);
+		throwExceptionIfFileDoNotExist(file);
+		return sumLengths(file);
+	}
+
+	private long sumLengths(File file) {
+		if (!file.isDirectory())
+			return file.length();
+		long length = 0;
+		for (File child : listFiles(file))
+			length += sumLengths(child);
+		return length;
+	}
+
+	@Override
+	public void deletePath(URI pathOnArchiveFileSystem) throws IOException {
+		deleteIfExists(createFileFromURI(pathOnArchiveFileSystem));
+	}
+
+	private void deleteIfExists(File file) throws IOException {
+		if (file.exists())
+			FileUtils.forceDelete(file);
+	}
+
+	@Override
+	public InputStream openFile(URI fileOnArchiveFileSystem) throws IOException {
+		return new FileInputStream(createFileFromURI(fileOnArchiveFileSystem));
+	}
+
+	private File createFileFromURI(URI uri) {
+		return new File(uri.getPath());
+	}
+
+	/**
+	 * Same form as the URIs listed by Hadoop's local file system, which don't
+	 * end with a separator for directories, unlike {@link File#toURI()}.
+	 */
+	private URI createURIFromFile(File file) {
+		try {
+			return new URI("file", null, file.getAbsolutePath(), null);
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void throwExceptionIfFileDoNotExist(File file)
+			throws FileNotFoundException {
+		if (!file.exists())
+			throw new FileNotFoundException(file.toString() + " doesn't exist.");
+	}
+
+	private void throwExceptionIfFileAlreadyExist(File file)
+			throws FileOverwriteException {
+		if (file.exists())
+			throw new FileOverwriteException(file.toString() + " already exist.");
+	}
+}
@@ -0,0 +1,197 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+import com.splunk.shuttl.archiver.util.SameThreadExecutorService;
+
+/**
+ * Uploads a file or all the files in a directory to a hadoop file system. The
+ * files of a directory are uploaded concurrently, so that a bucket's rawdata,
+ * tsidx and metadata files use more than one write pipeline.
+ */
+public class ParallelFileUploader {
+
+	private static final Logger logger = Logger
+			.getLogger(ParallelFileUploader.class);
+
+	private final FileSystem fileSystem;
+	private final ExecutorService uploadExecutor;
+	private final int bufferSize;
+
+	/**
+	 * @param fileSystem
+	 *          to upload to.
+	 * @param uploadExecutor
+	 *          that runs the uploads. Its number of threads is the number of
+	 *          concurrent upload streams.
+	 * @param bufferSize
+	 *          size in bytes of the buffer used by each upload stream.
+	 */
+	public ParallelFileUploader(FileSystem fileSystem,
+			ExecutorService uploadExecutor, int bufferSize) {
+		this.fileSystem = fileSystem;
+		this.uploadExecutor = uploadExecutor;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Uploads the local file or directory to the path, keeping the directory
+	 * structure.
+	 * 
+	 * @return number of bytes uploaded.
+	 * @throws FileNotFoundException
+	 *           if the local file doesn't exist.
+	 * @throws IOException
+	 *           if any of the files failed to upload.
+	 */
+	public long upload(File local, Path destination) throws IOException {
+		if (!local.exists())
+			throw new FileNotFoundException(local + " doesn't exist.");
+		long start = System.currentTimeMillis();
+		List<Future<Long>> uploads = new ArrayList<Future<Long>>();
+		submitUploads(local, destination, uploads);
+		long bytes = waitForUploads(uploads);
+		logThroughput(local, destination, uploads.size(), bytes,
+				System.currentTimeMillis() - start);
+		return bytes;
+	}
+
+	private void submitUploads(File local, Path destination,
+			List<Future<Long>> uploads) throws IOException {
+		if (local.isDirectory()) {
+			fileSystem.mkdirs(destination);
+			File[] children = local.listFiles();
+			if (children != null)
+				for (File child : children)
+					submitUploads(child, new Path(destination, child.getName()),
+							uploads);
+		} else {
+			uploads.add(uploadExecutor.submit(new FileUpload(local, destination)));
+		}
+	}
+
+	private long waitForUploads(List<Future<Long>> uploads) throws IOException {
+		long bytes = 0;
+		IOException failure = null;
+		for (Future<Long> upload : uploads) {
+			try {
+				bytes += upload.get();
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = asIOException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (failure == null)
+					failure = new IOException("Interrupted while uploading files");
+			}
+		}
+		if (failure != null)
+			throw failure;
+		return bytes;
+	}
+
+	private IOException asIOException(Throwable cause) {
+		if (cause instanceof IOException)
+			return (IOException) cause;
+		else
+			return new IOException("Upload failed", cause);
+	}
+
+	private void logThroughput(File local, Path destination, int files,
+			long bytes, long millis) {
+		long bytesPerSecond = bytes * 1000 / Math.max(1, millis);
+		logger.info(done("Uploaded files", "local", local, "destination",
+				destination, "files", files, "bytes", bytes, "millis", millis,
+				"bytes_per_second", bytesPerSecond));
+	}
+
+	private class FileUpload implements Callable<Long> {
+
+		private final File local;
+		private final Path destination;
+
+		public FileUpload(File local, Path destination) {
+			this.local = local;
+			this.destination = destination;
+		}
+
+		@Override
+		public Long call() throws IOException {
+			InputStream input = new FileInputStream(local);
+			try {
+				OutputStream output = fileSystem.create(destination, false,
+						bufferSize);
+				try {
+					return copy(input, output);
+				} finally {
+					output.close();
+				}
+			} finally {
+				input.close();
+			}
+		}
+
+		private long copy(InputStream input, OutputStream output)
+				throws IOException {
+			byte[] buffer = new byte[bufferSize];
+			long count = 0;
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+				count += read;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * @return uploader that uploads one file at a time, on the calling thread.
+	 */
+	public static ParallelFileUploader createSequential(FileSystem fileSystem) {
+		return new ParallelFileUploader(fileSystem,
+				new SameThreadExecutorService(),
+				ArchiveConfiguration.DEFAULT_UPLOAD_BUFFER_SIZE);
+	}
+
+	/**
+	 * @return executor with a fixed number of upload streams.
+	 */
+	public static ExecutorService createUploadExecutor(int streams) {
+		return Executors.newFixedThreadPool(streams, new DaemonThreadFactory(
+				"shuttl-upload"));
+	}
+}
@@ -0,0 +1,288 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+
+/**
+ * Compresses and decompresses the files of {@link Bucket}s in a compressed
+ * {@link BucketFormat}. The codec is looked up with the format's codec
+ * extension in hadoop's {@link CompressionCodecFactory}.
+ */
+public class BucketCompressor {
+
+	private static final Logger logger = Logger
+			.getLogger(BucketCompressor.class);
+
+	private static final ExecutorService sharedCompressionExecutor = Executors
+			.newCachedThreadPool(new DaemonThreadFactory("shuttl-compression"));
+
+	private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+	private final CompressionCodecFactory codecFactory;
+	private final ExecutorService compressionExecutor;
+
+	/**
+	 * @param codecFactory
+	 *          for looking up codecs by file extension.
+	 * @param compressionExecutor
+	 *          for compressing streams while they are read.
+	 */
+	public BucketCompressor(CompressionCodecFactory codecFactory,
+			ExecutorService compressionExecutor) {
+		this.codecFactory = codecFactory;
+		this.compressionExecutor = compressionExecutor;
+	}
+
+	/**
+	 * Compresses every file in the bucket with the format's codec and removes
+	 * the uncompressed files.
+	 * 
+	 * @return the same bucket directory in the compressed format.
+	 */
+	public Bucket compressBucket(Bucket bucket, BucketFormat compressedFormat)
+			throws IOException {
+		verifyCompressedFormatOf(bucket.getFormat(), compressedFormat);
+		CompressionCodec codec = getCodec(compressedFormat);
+		for (File file : bucket.getDirectory().listFiles())
+			if (file.isFile())
+				compressFile(codec, file, new File(file.getParentFile(),
+						file.getName() + compressedFormat.getCodecExtension()));
+		return new Bucket(bucket.getIndex(), bucket.getDirectory(),
+				compressedFormat, bucket.getSize());
+	}
+
+	private void compressFile(CompressionCodec codec, File file,
+			File compressedFile) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			OutputStream output = codec.createOutputStream(new FileOutputStream(
+					compressedFile));
+			try {
+				IOUtils.copyLarge(input, output);
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+		file.delete();
+	}
+
+	/**
+	 * Decompresses every file in the bucket that has the codec extension of its
+	 * format and removes the compressed files.
+	 * 
+	 * @return the same bucket directory in the uncompressed format.
+	 */
+	public Bucket decompressBucket(Bucket bucket) throws IOException {
+		BucketFormat format = bucket.getFormat();
+		if (!format.isCompressed())
+			throw new IllegalArgumentException("Bucket is not compressed: " + bucket);
+		CompressionCodec codec = getCodec(format);
+		String extension = format.getCodecExtension();
+		for (File file : bucket.getDirectory().listFiles())
+			if (file.isFile() && file.getName().endsWith(extension))
+				decompressFile(codec, file, new File(file.getParentFile(), file
+						.getName().substring(0,
+								file.getName().length() - extension.length())));
+		return new Bucket(bucket.getIndex(), bucket.getDirectory(),
+				format.getUncompressedFormat(), bucket.getSize());
+	}
+
+	private void decompressFile(CompressionCodec codec, File compressedFile,
+			File file) throws IOException {
+		InputStream input = codec.createInputStream(new FileInputStream(
+				compressedFile));
+		try {
+			OutputStream output = new FileOutputStream(file);
+			try {
+				IOUtils.copyLarge(input, output);
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+		compressedFile.delete();
+	}
+
+	/**
+	 * Compresses the stream while it's read. The returned stream throws an
+	 * {@link IOException} at its end if reading or compressing the original
+	 * stream failed.
+	 * 
+	 * @return stream with the bucket in the compressed format.
+	 */
+	public BucketExportStream compressStream(BucketExportStream stream,
+			BucketFormat compressedFormat) throws IOException {
+		Bucket bucket = stream.getBucket();
+		verifyCompressedFormatOf(bucket.getFormat(), compressedFormat);
+		CompressionCodec codec = getCodec(compressedFormat);
+
+		PipedInputStream compressed = new PipedInputStream(PIPE_BUFFER_SIZE);
+		PipedOutputStream pipe = new PipedOutputStream(compressed);
+		Future<Void> compression = compressionExecutor.submit(new StreamCompression(
+				codec, stream.getInputStream(), pipe));
+
+		Bucket compressedBucket = new Bucket(null, bucket.getIndex(),
+				bucket.getName(), compressedFormat, null);
+		return new BucketExportStream(compressedBucket, stream.getFileName()
+				+ compressedFormat.getCodecExtension(), new CompressedInputStream(
+				compressed, compression, stream));
+	}
+
+	private void verifyCompressedFormatOf(BucketFormat format,
+			BucketFormat compressedFormat) {
+		if (!compressedFormat.isCompressed()
+				|| !compressedFormat.getUncompressedFormat().equals(format))
+			throw new IllegalArgumentException("Cannot compress format " + format
+					+ " to " + compressedFormat);
+	}
+
+	private CompressionCodec getCodec(BucketFormat format)
+			throws FileNotFoundException {
+		CompressionCodec codec = codecFactory.getCodec(new Path("bucket"
+				+ format.getCodecExtension()));
+		if (codec == null) {
+			logger.error(did("Looked up compression codec", "found no codec",
+					"a codec for the format", "format", format, "extension",
+					format.getCodecExtension()));
+			throw new FileNotFoundException("No compression codec for format: "
+					+ format);
+		}
+		return codec;
+	}
+
+	private static class StreamCompression implements Callable<Void> {
+
+		private final CompressionCodec codec;
+		private final InputStream input;
+		private final PipedOutputStream pipe;
+
+		public StreamCompression(CompressionCodec codec, InputStream input,
+				PipedOutputStream pipe) {
+			this.codec = codec;
+			this.input = input;
+			this.pipe = pipe;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			try {
+				OutputStream output = codec.createOutputStream(pipe);
+				IOUtils.copyLarge(input, output);
+				output.close();
+			} finally {
+				IOUtils.closeQuietly(pipe);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Reports failures of the compression at the end of the stream.
+	 */
+	private static class CompressedInputStream extends FilterInputStream {
+
+		private final Future<Void> compression;
+		private final BucketExportStream uncompressed;
+
+		public CompressedInputStream(InputStream in, Future<Void> compression,
+				BucketExportStream uncompressed) {
+			super(in);
+			this.compression = compression;
+			this.uncompressed = uncompressed;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if (read == -1)
+				throwIfCompressionFailed();
+			return read;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read == -1)
+				throwIfCompressionFailed();
+			return read;
+		}
+
+		private void throwIfCompressionFailed() throws IOException {
+			try {
+				compression.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while compressing stream");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+				throw new IOException("Compression failed: " + cause);
+			}
+		}
+
+		/**
+		 * Closing the original stream stops a compression that is still running.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				uncompressed.close();
+			}
+		}
+	}
+
+	/**
+	 * @return a {@link BucketCompressor} with the codecs configured in hadoop.
+	 */
+	public static BucketCompressor create() {
+		return new BucketCompressor(
+				new CompressionCodecFactory(new Configuration()),
+				sharedCompressionExecutor);
+	}
+}
@@ -0,0 +1,87 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * A {@link Bucket} exported to a new format as a stream, instead of as a
+ * directory on the local file system. The content of the stream is the single
+ * file of the exported bucket. The size of the exported bucket is only known
+ * when the stream has been read, so the stream counts the bytes read.
+ */
+public class BucketExportStream implements Closeable {
+
+	private final Bucket bucket;
+	private final String fileName;
+	private final CountingInputStream inputStream;
+
+	/**
+	 * @param bucket
+	 *          in the exported format, without a local directory or size.
+	 * @param fileName
+	 *          of the exported file.
+	 * @param inputStream
+	 *          with the content of the exported file.
+	 */
+	public BucketExportStream(Bucket bucket, String fileName,
+			InputStream inputStream) {
+		this.bucket = bucket;
+		this.fileName = fileName;
+		this.inputStream = new CountingInputStream(inputStream);
+	}
+
+	/**
+	 * @return the exported bucket.
+	 */
+	public Bucket getBucket() {
+		return bucket;
+	}
+
+	/**
+	 * @return the exported bucket, with the number of bytes read from the stream
+	 *         as its size. Is the bucket's size when the stream has been read to
+	 *         the end.
+	 */
+	public Bucket getStreamedBucket() throws IOException {
+		return new Bucket(null, bucket.getIndex(), bucket.getName(),
+				bucket.getFormat(), inputStream.getByteCount());
+	}
+
+	/**
+	 * @return name of the exported file.
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @return stream with the exported file's content.
+	 */
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+}
@@ -18,6 +18,7 @@ package com.splunk.shuttl.archiver.importexport;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.log4j.Logger;
 
@@ -25,28 +26,44 @@ import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.archive.UnknownBucketFormatException;
 import com.splunk.shuttl.archiver.importexport.csv.CsvBucketCreator;
 import com.splunk.shuttl.archiver.importexport.csv.CsvExporter;
+import com.splunk.shuttl.archiver.importexport.csv.CsvStreamingExporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 
 /**
  * For exporting a {@link Bucket} to {@link BucketFormat#CSV}, since it's
- * currently the only other format to export to.
+ * currently the only other format to export to. The .csv can also be
+ * compressed, with the compressed csv formats.
  */
 public class BucketExporter {
 
 	private final static Logger logger = Logger.getLogger(BucketExporter.class);
 	private final CsvExporter csvExporter;
 	private final CsvBucketCreator csvBucketCreator;
+	private final CsvStreamingExporter csvStreamingExporter;
+	private final boolean streamCsvExports;
+	private final BucketCompressor bucketCompressor;
 
 	/**
 	 * @param csvExporter
 	 *          for exporting the bucket to a .csv file.
 	 * @param csvBucketCreator
 	 *          for creating a {@link Bucket} from the .csv file.
+	 * @param csvStreamingExporter
+	 *          for streaming .csv exports.
+	 * @param streamCsvExports
+	 *          true if .csv exports should be streamed.
+	 * @param bucketCompressor
+	 *          for exporting to compressed formats.
 	 */
 	public BucketExporter(CsvExporter csvExporter,
-			CsvBucketCreator csvBucketCreator) {
+			CsvBucketCreator csvBucketCreator,
+			CsvStreamingExporter csvStreamingExporter, boolean streamCsvExports,
+			BucketCompressor bucketCompressor) {
 		this.csvExporter = csvExporter;
 		this.csvBucketCreator = csvBucketCreator;
+		this.csvStreamingExporter = csvStreamingExporter;
+		this.streamCsvExports = streamCsvExports;
+		this.bucketCompressor = bucketCompressor;
 	}
 
 	/**
@@ -78,21 +95,99 @@ public class BucketExporter {
 		if (bucket.getFormat().equals(BucketFormat.SPLUNK_BUCKET)
 				&& newFormat.equals(BucketFormat.CSV))
 			return getBucketInCsvFormat(bucket);
+		else if (isCompressedCsv(newFormat))
+			return getBucketInCompressedFormat(bucket, newFormat);
 		else
 			throw new UnsupportedOperationException();
 	}
 
+	private boolean isCompressedCsv(BucketFormat newFormat) {
+		return newFormat.isCompressed()
+				&& newFormat.getUncompressedFormat().equals(BucketFormat.CSV);
+	}
+
+	private Bucket getBucketInCompressedFormat(Bucket bucket,
+			BucketFormat newFormat) {
+		Bucket uncompressed = exportBucket(bucket,
+				newFormat.getUncompressedFormat());
+		try {
+			return bucketCompressor.compressBucket(uncompressed, newFormat);
+		} catch (IOException e) {
+			logger.error(did("Compressed exported bucket", e,
+					"bucket to be compressed", "bucket", uncompressed, "format",
+					newFormat));
+			deleteExportedBucket(uncompressed);
+			throw new BucketCompressionFailedException(e);
+		}
+	}
+
+	private void deleteExportedBucket(Bucket exportedBucket) {
+		try {
+			exportedBucket.deleteBucket();
+		} catch (IOException e) {
+			logger.warn(warn("Deleted exported bucket", e,
+					"bucket is left on disk", "bucket", exportedBucket));
+		}
+	}
+
 	private Bucket getBucketInCsvFormat(Bucket bucket) {
 		File csvFile = csvExporter.exportBucketToCsv(bucket);
 		return csvBucketCreator.createBucketWithCsvFile(csvFile, bucket);
 	}
 
+	/**
+	 * @return true if the bucket can be exported to the new format with
+	 *         {@link #exportBucketToStream(Bucket, BucketFormat)}.
+	 */
+	public boolean canExportBucketToStream(Bucket bucket, BucketFormat newFormat) {
+		return streamCsvExports
+				&& bucket.getFormat().equals(BucketFormat.SPLUNK_BUCKET)
+				&& (newFormat.equals(BucketFormat.CSV) || isCompressedCsv(newFormat));
+	}
+
+	/**
+	 * @return a stream with the {@link Bucket} in the new format, which has to be
+	 *         closed.
+	 * @throws IOException
+	 *           if the export could not be started.
+	 */
+	public BucketExportStream exportBucketToStream(Bucket bucket,
+			BucketFormat newFormat) throws IOException {
+		if (!canExportBucketToStream(bucket, newFormat))
+			throw new UnsupportedOperationException();
+		BucketExportStream csvStream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		if (newFormat.isCompressed())
+			return compressStream(csvStream, newFormat);
+		else
+			return csvStream;
+	}
+
+	private BucketExportStream compressStream(BucketExportStream csvStream,
+			BucketFormat newFormat) throws IOException {
+		try {
+			return bucketCompressor.compressStream(csvStream, newFormat);
+		} catch (IOException e) {
+			csvStream.close();
+			throw e;
+		}
+	}
+
 	/**
 	 * @return an instance of the {@link BucketExporter}
 	 */
 	public static BucketExporter create() {
-		return new BucketExporter(CsvExporter.create(),
-				new CsvBucketCreator());
+		return new BucketExporter(CsvExporter.create(), new CsvBucketCreator(),
+				CsvStreamingExporter.create(), false, BucketCompressor.create());
+	}
+
+	/**
+	 * @return an instance of the {@link BucketExporter} that streams .csv
+	 *         exports.
+	 */
+	public static BucketExporter createStreaming() {
+		return new BucketExporter(CsvExporter.create(), new CsvBucketCreator(),
+				CsvStreamingExporter.create(), true, BucketCompressor.create());
 	}
 
 }
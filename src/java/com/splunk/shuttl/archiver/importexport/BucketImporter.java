@@ -14,6 +14,12 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.importexport;
 
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.importexport.csv.CsvImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
@@ -24,14 +30,21 @@ import com.splunk.shuttl.archiver.model.Bucket;
  */
 public class BucketImporter {
 
+	private static final Logger logger = Logger.getLogger(BucketImporter.class);
+
 	private final CsvImporter csvImporter;
+	private final BucketCompressor bucketCompressor;
 
 	/**
 	 * @param csvImporter
 	 *          to import buckets from CSV to SPLUNK_BUCKET.
+	 * @param bucketCompressor
+	 *          to decompress buckets in compressed formats.
 	 */
-	public BucketImporter(CsvImporter csvImporter) {
+	public BucketImporter(CsvImporter csvImporter,
+			BucketCompressor bucketCompressor) {
 		this.csvImporter = csvImporter;
+		this.bucketCompressor = bucketCompressor;
 	}
 
 	/**
@@ -40,7 +53,9 @@ public class BucketImporter {
 	 * @return bucket in {@link BucketFormat#SPLUNK_BUCKET}
 	 */
 	public Bucket restoreToSplunkBucketFormat(Bucket bucket) {
-		if (bucket.getFormat().equals(BucketFormat.SPLUNK_BUCKET))
+		if (bucket.getFormat().isCompressed())
+			return restoreToSplunkBucketFormat(decompress(bucket));
+		else if (bucket.getFormat().equals(BucketFormat.SPLUNK_BUCKET))
 			return bucket;
 		else if (bucket.getFormat().equals(BucketFormat.CSV))
 			return csvImporter.importBucketFromCsv(bucket);
@@ -48,11 +63,21 @@ public class BucketImporter {
 			throw new UnsupportedOperationException();
 	}
 
+	private Bucket decompress(Bucket bucket) {
+		try {
+			return bucketCompressor.decompressBucket(bucket);
+		} catch (IOException e) {
+			logger.error(did("Decompressed thawed bucket", e,
+					"bucket to be decompressed", "bucket", bucket));
+			throw new BucketCompressionFailedException(e);
+		}
+	}
+
 	/**
 	 * Convenience method for creating an instance.
 	 */
 	public static BucketImporter create() {
-		return new BucketImporter(CsvImporter.create());
+		return new BucketImporter(CsvImporter.create(), BucketCompressor.create());
 	}
 
 }
@@ -0,0 +1,174 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * A named pipe between this process and a splunk tool that runs while the
+ * pipe is read or written.<br/>
+ * <br/>
+ * Opening one end of a named pipe blocks until the other end is opened, so if
+ * the tool exits before it opens its end, this process would block forever.
+ * The pipe is therefore held open for both reading and writing, which never
+ * blocks on Linux, before this process opens its end and before the tool is
+ * started. {@link #release()} closes the held handle: when the tool has
+ * exited, so that a reader gets the end of the stream and a writer fails, and
+ * when a writer is done, so that the tool gets the end of the stream.<br/>
+ * <br/>
+ * If this process closes its end before the tool has opened the pipe, the
+ * tool would block instead. {@link #releaseAndWaitFor(Future)} therefore
+ * opens and closes the pipe until the tool has exited, which lets the tool
+ * open its end, read the end of the stream or fail its write, and exit. What's
+ * written to a pipe is discarded when nothing holds it open, so a writer has
+ * to {@link #waitUntilReadBy(Future)} the tool before it releases the pipe.
+ */
+public class NamedPipe {
+
+	private static final Logger logger = Logger.getLogger(NamedPipe.class);
+
+	private static final long TOOL_EXIT_POLL_MILLIS = 100;
+	private static final long PIPE_READ_POLL_MILLIS = 10;
+
+	private final File file;
+	private RandomAccessFile heldOpen;
+	private FileInputStream heldOpenInput;
+
+	private NamedPipe(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Creates a named pipe with mkfifo, replacing any file at the path.
+	 * 
+	 * @throws IOException
+	 *           if the pipe could not be created.
+	 */
+	public static NamedPipe create(File file, ShellExecutor shellExecutor)
+			throws IOException {
+		file.delete();
+		List<String> mkfifo = Arrays.asList("mkfifo", file.getAbsolutePath());
+		int exit = shellExecutor.executeCommand(System.getenv(), mkfifo);
+		if (exit != 0 || !file.exists()) {
+			logger.error(did("Created named pipe", "mkfifo failed",
+					"named pipe to be created", "exit_code", exit, "fifo", file));
+			throw new IOException("Could not create named pipe: " + file);
+		}
+		return new NamedPipe(file);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the reading end of the pipe, opened without waiting for a writer.
+	 */
+	public FileInputStream openForReading() throws IOException {
+		holdOpen();
+		return new FileInputStream(file);
+	}
+
+	/**
+	 * @return the writing end of the pipe, opened without waiting for a reader.
+	 */
+	public FileOutputStream openForWriting() throws IOException {
+		holdOpen();
+		return new FileOutputStream(file);
+	}
+
+	private synchronized void holdOpen() throws IOException {
+		if (heldOpen == null) {
+			heldOpen = new RandomAccessFile(file, "rw");
+			heldOpenInput = new FileInputStream(heldOpen.getFD());
+		}
+	}
+
+	/**
+	 * Closes the handle that holds the pipe open. Can be called more than once.
+	 */
+	public synchronized void release() {
+		IOUtils.closeQuietly(heldOpenInput);
+		IOUtils.closeQuietly(heldOpen);
+		heldOpenInput = null;
+		heldOpen = null;
+	}
+
+	/**
+	 * Waits until the tool has read everything that was written to the pipe, or
+	 * the tool has exited. Should be called when the writing end is closed.
+	 */
+	public void waitUntilReadBy(Future<?> tool) throws InterruptedException {
+		while (!tool.isDone() && hasUnreadBytes())
+			Thread.sleep(PIPE_READ_POLL_MILLIS);
+	}
+
+	private synchronized boolean hasUnreadBytes() {
+		try {
+			return heldOpenInput != null && heldOpenInput.available() > 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Releases the pipe and waits for the tool to exit, after this process has
+	 * closed its end of the pipe.
+	 * 
+	 * @return the result of the tool.
+	 */
+	public <T> T releaseAndWaitFor(Future<T> tool) throws InterruptedException,
+			ExecutionException {
+		release();
+		while (true) {
+			try {
+				return tool.get(TOOL_EXIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				unblockToolOpeningThePipe();
+			}
+		}
+	}
+
+	private void unblockToolOpeningThePipe() {
+		try {
+			new RandomAccessFile(file, "rw").close();
+		} catch (IOException e) {
+			// The pipe is gone, so the tool can't block on it.
+		}
+	}
+
+	/**
+	 * Releases and removes the pipe.
+	 */
+	public void delete() {
+		release();
+		file.delete();
+	}
+}
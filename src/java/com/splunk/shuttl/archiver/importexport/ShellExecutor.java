@@ -48,8 +48,9 @@ public class ShellExecutor {
 	 * @return exit code of the executed command.
 	 */
 	public int executeCommand(Map<String, String> env, List<String> command) {
-		process = runCommand(command, env);
-		return waitForProcessToExit();
+		Process executed = runCommand(command, env);
+		process = executed;
+		return waitForProcessToExit(executed);
 	}
 
 	private Process runCommand(List<String> command, Map<String, String> env) {
@@ -74,7 +75,7 @@ public class ShellExecutor {
 		return kvs;
 	}
 
-	private int waitForProcessToExit() {
+	private int waitForProcessToExit(Process process) {
 		try {
 			return process.waitFor();
 		} catch (InterruptedException e) {
@@ -0,0 +1,234 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.csv;
+
+import static com.splunk.shuttl.archiver.LocalFileSystemConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.BucketExportStream;
+import com.splunk.shuttl.archiver.importexport.NamedPipe;
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.archiver.importexport.csv.splunk.SplunkExportTool;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+import com.splunk.shuttl.archiver.util.UtilsList;
+
+/**
+ * Exports a bucket to .csv format as a stream. The exporttool writes to a
+ * named pipe, which is read by the caller while the exporttool is running, so
+ * the .csv is never written to the local disk.<br/>
+ * <br/>
+ * The stream throws an {@link IOException} at its end if the exporttool
+ * failed, so a consumer that reads the stream to the end can discard what it
+ * read.
+ */
+public class CsvStreamingExporter {
+
+	private static final Logger logger = Logger
+			.getLogger(CsvStreamingExporter.class);
+
+	private static final ExecutorService sharedExportToolExecutor = Executors
+			.newCachedThreadPool(new DaemonThreadFactory("shuttl-csv-export"));
+
+	private final SplunkExportTool exportTool;
+	private final GetsBucketsCsvExportFile getsBucketsCsvExportFile;
+	private final ShellExecutor shellExecutor;
+	private final ExecutorService exportToolExecutor;
+
+	/**
+	 * @param exportTool
+	 *          for the exporttool command and environment.
+	 * @param getsBucketsCsvExportFile
+	 *          for the path of the named pipe.
+	 * @param shellExecutor
+	 *          for creating the named pipe and running the exporttool.
+	 * @param exportToolExecutor
+	 *          for running the exporttool while the pipe is read.
+	 */
+	public CsvStreamingExporter(SplunkExportTool exportTool,
+			GetsBucketsCsvExportFile getsBucketsCsvExportFile,
+			ShellExecutor shellExecutor, ExecutorService exportToolExecutor) {
+		this.exportTool = exportTool;
+		this.getsBucketsCsvExportFile = getsBucketsCsvExportFile;
+		this.shellExecutor = shellExecutor;
+		this.exportToolExecutor = exportToolExecutor;
+	}
+
+	/**
+	 * @return stream of the bucket exported as .csv. Has to be closed.
+	 */
+	public BucketExportStream exportBucketToCsvStream(Bucket bucket)
+			throws IOException {
+		File fifo = getsBucketsCsvExportFile.getCsvFile(bucket);
+		NamedPipe pipe = NamedPipe.create(fifo, shellExecutor);
+		FileInputStream pipeInput = null;
+		try {
+			pipeInput = pipe.openForReading();
+			Future<Integer> exit = exportToolExecutor.submit(new ExportToPipe(
+					bucket, pipe));
+			InputStream csvStream = new ExportToolInputStream(pipeInput, exit, pipe);
+			return new BucketExportStream(createCsvBucket(bucket), fifo.getName(),
+					csvStream);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(pipeInput);
+			pipe.delete();
+			throw e;
+		} catch (RuntimeException e) {
+			IOUtils.closeQuietly(pipeInput);
+			pipe.delete();
+			throw e;
+		}
+	}
+
+	private Bucket createCsvBucket(Bucket bucket) throws IOException {
+		return new Bucket(null, bucket.getIndex(), bucket.getName(),
+				BucketFormat.CSV, null);
+	}
+
+	private class ExportToPipe implements Callable<Integer> {
+
+		private final Bucket bucket;
+		private final NamedPipe pipe;
+
+		public ExportToPipe(Bucket bucket, NamedPipe pipe) {
+			this.bucket = bucket;
+			this.pipe = pipe;
+		}
+
+		/**
+		 * Releases the pipe when the exporttool exits, so that the reader gets
+		 * the end of the stream even if the exporttool never opened the pipe.
+		 */
+		@Override
+		public Integer call() throws IOException {
+			try {
+				List<String> command = UtilsList.join(
+						exportTool.getExecutableCommand(),
+						Arrays.asList(bucket.getDirectory().getAbsolutePath(), pipe
+								.getFile().getAbsolutePath(), "-csv"));
+				Map<String, String> env = exportTool.getEnvironment();
+				return shellExecutor.executeCommand(env, command);
+			} finally {
+				pipe.release();
+			}
+		}
+	}
+
+	/**
+	 * Checks the exit code of the exporttool when the stream ends.
+	 */
+	private static class ExportToolInputStream extends FilterInputStream {
+
+		private final Future<Integer> exit;
+		private final NamedPipe pipe;
+
+		public ExportToolInputStream(InputStream in, Future<Integer> exit,
+				NamedPipe pipe) {
+			super(in);
+			this.exit = exit;
+			this.pipe = pipe;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if (read == -1)
+				throwIfExportFailed();
+			return read;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read == -1)
+				throwIfExportFailed();
+			return read;
+		}
+
+		private void throwIfExportFailed() throws IOException {
+			int exitCode = getExitCode();
+			if (exitCode != 0) {
+				logger.error(did("Streamed a bucket export as csv",
+						"Got a non zero exit code from export tool",
+						"Zero exit code from export tool.", "exit_code", exitCode,
+						"fifo", pipe.getFile()));
+				throw new IOException("Exporttool exited with non zero exit status: "
+						+ exitCode);
+			}
+		}
+
+		private int getExitCode() throws IOException {
+			try {
+				return exit.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for exporttool");
+			} catch (ExecutionException e) {
+				throw new IOException("Exporttool failed to run: " + e.getCause());
+			}
+		}
+
+		/**
+		 * Closing the reading end makes a still running exporttool fail on its
+		 * next write, so it's safe to wait for it.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+				waitForExportToolQuietly();
+			} finally {
+				pipe.delete();
+			}
+		}
+
+		private void waitForExportToolQuietly() {
+			try {
+				pipe.releaseAndWaitFor(exit);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				// Already reported when reading the end of the stream.
+			}
+		}
+	}
+
+	/**
+	 * @return a CsvStreamingExporter
+	 */
+	public static CsvStreamingExporter create() {
+		return new CsvStreamingExporter(new SplunkExportTool(),
+				new GetsBucketsCsvExportFile(getCsvDirectory()),
+				ShellExecutor.getInstance(), sharedExportToolExecutor);
+	}
+}
@@ -0,0 +1,219 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.csv;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.importexport.NamedPipe;
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.archiver.importexport.csv.splunk.SplunkImportTool;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+import com.splunk.shuttl.archiver.util.UtilsList;
+
+/**
+ * Imports a bucket from a .csv stream. The stream is written to a named pipe,
+ * which is read by the importtool while the stream is still being read, so the
+ * .csv is never written to the local disk.
+ */
+public class CsvStreamingImporter {
+
+	private static final Logger logger = Logger
+			.getLogger(CsvStreamingImporter.class);
+
+	private static final ExecutorService sharedImportToolExecutor = Executors
+			.newCachedThreadPool(new DaemonThreadFactory("shuttl-csv-import"));
+
+	private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+	private final SplunkImportTool importTool;
+	private final ShellExecutor shellExecutor;
+	private final BucketFactory bucketFactory;
+	private final ExecutorService importToolExecutor;
+
+	/**
+	 * @param importTool
+	 *          for the importtool command and environment.
+	 * @param shellExecutor
+	 *          for creating the named pipe and running the importtool.
+	 * @param bucketFactory
+	 *          for creating the imported bucket.
+	 * @param importToolExecutor
+	 *          for running the importtool while the pipe is written.
+	 */
+	public CsvStreamingImporter(SplunkImportTool importTool,
+			ShellExecutor shellExecutor, BucketFactory bucketFactory,
+			ExecutorService importToolExecutor) {
+		this.importTool = importTool;
+		this.shellExecutor = shellExecutor;
+		this.bucketFactory = bucketFactory;
+		this.importToolExecutor = importToolExecutor;
+	}
+
+	/**
+	 * Imports a bucket from a .csv stream into a bucket directory. The named
+	 * pipe is created next to the bucket directory and deleted when the import
+	 * is done. The bucket directory is deleted if the import fails.
+	 * 
+	 * @param csvStream
+	 *          with the bucket exported as .csv. Is read to the end, but not
+	 *          closed.
+	 * @return the imported bucket, in the bucket directory.
+	 * @throws IOException
+	 *           if the stream could not be read, or the importtool failed.
+	 */
+	public Bucket importBucketFromCsvStream(String index, File bucketDirectory,
+			InputStream csvStream) throws IOException {
+		File fifo = new File(bucketDirectory.getParentFile(),
+				bucketDirectory.getName() + ".csv");
+		createBucketDirectory(bucketDirectory);
+		NamedPipe pipe = NamedPipe.create(fifo, shellExecutor);
+		try {
+			OutputStream pipeOutput = pipe.openForWriting();
+			Future<Integer> exit;
+			try {
+				exit = importToolExecutor.submit(new ImportFromPipe(bucketDirectory,
+						pipe));
+			} catch (RuntimeException e) {
+				IOUtils.closeQuietly(pipeOutput);
+				throw e;
+			}
+			writeToPipe(csvStream, pipeOutput, pipe, exit);
+			throwIfImportFailed(bucketDirectory, waitForImportTool(pipe, exit));
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(bucketDirectory);
+			throw e;
+		} finally {
+			pipe.delete();
+		}
+		return bucketFactory.createWithIndexAndDirectory(index, bucketDirectory);
+	}
+
+	private void createBucketDirectory(File bucketDirectory) throws IOException {
+		FileUtils.deleteDirectory(bucketDirectory);
+		if (!bucketDirectory.mkdirs())
+			throw new IOException("Could not create bucket directory: "
+					+ bucketDirectory);
+	}
+
+	/**
+	 * Writing fails if the importtool exits before reading everything. The
+	 * importtool gets the end of the stream when the pipe is released.
+	 */
+	private void writeToPipe(InputStream csvStream, OutputStream pipeOutput,
+			NamedPipe pipe, Future<Integer> exit) throws IOException {
+		try {
+			byte[] buffer = new byte[PIPE_BUFFER_SIZE];
+			int read;
+			while ((read = csvStream.read(buffer)) != -1)
+				pipeOutput.write(buffer, 0, read);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(pipeOutput);
+			waitForImportToolQuietly(pipe, exit);
+			throw e;
+		}
+		pipeOutput.close();
+	}
+
+	private void throwIfImportFailed(File bucketDirectory, int exitCode)
+			throws IOException {
+		if (exitCode != 0) {
+			logger.error(did("Imported a bucket from a csv stream",
+					"Got a non zero exit code from import tool",
+					"Zero exit code from import tool.", "exit_code", exitCode,
+					"bucket_directory", bucketDirectory));
+			throw new IOException("Importtool exited with non zero exit status: "
+					+ exitCode);
+		}
+	}
+
+	private int waitForImportTool(NamedPipe pipe, Future<Integer> exit)
+			throws IOException {
+		try {
+			pipe.waitUntilReadBy(exit);
+			return pipe.releaseAndWaitFor(exit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for importtool");
+		} catch (ExecutionException e) {
+			throw new IOException("Importtool failed to run: " + e.getCause());
+		}
+	}
+
+	private void waitForImportToolQuietly(NamedPipe pipe, Future<Integer> exit) {
+		try {
+			pipe.releaseAndWaitFor(exit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// The write failure is reported instead.
+		}
+	}
+
+	private class ImportFromPipe implements Callable<Integer> {
+
+		private final File bucketDirectory;
+		private final NamedPipe pipe;
+
+		public ImportFromPipe(File bucketDirectory, NamedPipe pipe) {
+			this.bucketDirectory = bucketDirectory;
+			this.pipe = pipe;
+		}
+
+		/**
+		 * Releases the pipe when the importtool exits, so that writing fails
+		 * instead of blocking if the importtool didn't read everything.
+		 */
+		@Override
+		public Integer call() throws IOException {
+			try {
+				List<String> command = UtilsList.join(
+						importTool.getExecutableCommand(),
+						Arrays.asList(bucketDirectory.getAbsolutePath(), pipe.getFile()
+								.getAbsolutePath()));
+				return shellExecutor.executeCommand(importTool.getEnvironment(),
+						command);
+			} finally {
+				pipe.release();
+			}
+		}
+	}
+
+	/**
+	 * @return a CsvStreamingImporter
+	 */
+	public static CsvStreamingImporter create() {
+		return new CsvStreamingImporter(new SplunkImportTool(),
+				ShellExecutor.getInstance(), new BucketFactory(),
+				sharedImportToolExecutor);
+	}
+}
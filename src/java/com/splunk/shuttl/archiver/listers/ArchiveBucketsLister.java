@@ -59,6 +59,13 @@ public class ArchiveBucketsLister {
 		this.pathResolver = pathResolver;
 	}
 
+	/**
+	 * @return indexes that have archived buckets.
+	 */
+	public List<String> listIndexes() {
+		return indexesLister.listIndexes();
+	}
+
 	/**
 	 * List buckets in an {@link ArchiveFileSystem}.<br/>
 	 * Note: Buckets returned will have {@link BucketFormat} = null;
@@ -67,7 +74,7 @@ public class ArchiveBucketsLister {
 	 */
 	public List<Bucket> listBuckets() {
 		List<Bucket> buckets = new ArrayList<Bucket>();
-		for (String index : indexesLister.listIndexes())
+		for (String index : listIndexes())
 			buckets.addAll(listBucketsInIndex(index));
 		return buckets;
 	}
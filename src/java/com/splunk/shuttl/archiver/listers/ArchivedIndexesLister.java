@@ -57,8 +57,11 @@ public class ArchivedIndexesLister {
 		URI indexesHome = pathResolver.getIndexesHome();
 		List<URI> indexUris = listIndexesUrisOnArchiveFileSystem(indexesHome);
 		List<String> indexes = new ArrayList<String>();
-		for (URI uri : indexUris)
-			indexes.add(FilenameUtils.getName(uri.getPath()));
+		for (URI uri : indexUris) {
+			String name = FilenameUtils.getName(uri.getPath());
+			if (!name.equals(PathResolver.CATALOGS_DIRECTORY))
+				indexes.add(name);
+		}
 		return indexes;
 	}
 
@@ -0,0 +1,60 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Iterates over buckets that are listed in batches, such as one batch per
+ * index, listing the next batch when the previous one has been iterated.
+ */
+public abstract class BucketBatchesIterator implements Iterator<Bucket> {
+
+	private Iterator<Bucket> batch;
+	private boolean exhausted;
+
+	/**
+	 * @return the next batch of buckets, or null when there are no more batches.
+	 */
+	protected abstract List<Bucket> nextBatch();
+
+	@Override
+	public boolean hasNext() {
+		while (!exhausted && (batch == null || !batch.hasNext())) {
+			List<Bucket> buckets = nextBatch();
+			if (buckets == null)
+				exhausted = true;
+			else
+				batch = buckets.iterator();
+		}
+		return !exhausted;
+	}
+
+	@Override
+	public Bucket next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return batch.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,236 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.BucketName;
+
+/**
+ * Picks one page of buckets out of buckets that are iterated once, in any
+ * order, holding no more than a page of buckets in memory.<br/>
+ * <br/>
+ * Pages are sorted by index and bucket name, or by earliest or latest time.
+ * The cursor of the next page is the index and name of the last bucket on this
+ * page, so a page starts right after the bucket where the previous one ended,
+ * even if buckets have been archived in between.
+ */
+public class BucketPager {
+
+	public static final String SORT_INDEX = "index";
+	public static final String SORT_EARLIEST = "earliest";
+	public static final String SORT_LATEST = "latest";
+	public static final String DESCENDING_PREFIX = "-";
+
+	private static final char CURSOR_SEPARATOR = '/';
+
+	private final Comparator<Key> order;
+	private final Key cursor;
+	private final int limit;
+	private String nextCursor;
+
+	private BucketPager(Comparator<Key> order, Key cursor, int limit) {
+		this.order = order;
+		this.cursor = cursor;
+		this.limit = limit;
+	}
+
+	/**
+	 * @param sort
+	 *          one of {@link #SORT_INDEX}, {@link #SORT_EARLIEST} or
+	 *          {@link #SORT_LATEST}, optionally prefixed with
+	 *          {@link #DESCENDING_PREFIX}. Sorts by index when null.
+	 * @param cursor
+	 *          from {@link #getNextCursor()} of the previous page, or null for
+	 *          the first page.
+	 * @param limit
+	 *          max number of buckets on the page, or null for all buckets.
+	 * @throws IllegalArgumentException
+	 *           if the sort, cursor or limit is not valid.
+	 */
+	public static BucketPager create(String sort, String cursor, Integer limit) {
+		if (limit != null && limit < 1)
+			throw new IllegalArgumentException("Limit has to be positive, was: "
+					+ limit);
+		return new BucketPager(getOrder(sort), parseCursor(cursor),
+				limit == null ? Integer.MAX_VALUE : limit);
+	}
+
+	private static Comparator<Key> getOrder(String sort) {
+		if (sort == null)
+			return BY_INDEX;
+		boolean descending = sort.startsWith(DESCENDING_PREFIX);
+		String sortKey = descending ? sort.substring(DESCENDING_PREFIX.length())
+				: sort;
+		Comparator<Key> order;
+		if (sortKey.equals(SORT_INDEX))
+			order = BY_INDEX;
+		else if (sortKey.equals(SORT_EARLIEST))
+			order = BY_EARLIEST;
+		else if (sortKey.equals(SORT_LATEST))
+			order = BY_LATEST;
+		else
+			throw new IllegalArgumentException("Can not sort buckets by: " + sort);
+		return descending ? Collections.reverseOrder(order) : order;
+	}
+
+	private static Key parseCursor(String cursor) {
+		if (cursor == null)
+			return null;
+		int separator = cursor.indexOf(CURSOR_SEPARATOR);
+		if (separator < 1 || separator == cursor.length() - 1)
+			throw new IllegalArgumentException("Not a bucket cursor: " + cursor);
+		Key key = new Key(cursor.substring(0, separator),
+				cursor.substring(separator + 1));
+		try {
+			key.getEarliest();
+			key.getLatest();
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Not a bucket cursor: " + cursor, e);
+		}
+		return key;
+	}
+
+	/**
+	 * Iterates through all the buckets, keeping the ones that belong on the
+	 * page.
+	 * 
+	 * @return the buckets after the cursor, sorted, and no more than the limit.
+	 */
+	public List<Bucket> page(Iterator<Bucket> buckets) {
+		Comparator<KeyedBucket> bucketOrder = new Comparator<KeyedBucket>() {
+
+			@Override
+			public int compare(KeyedBucket b1, KeyedBucket b2) {
+				return order.compare(b1.key, b2.key);
+			}
+		};
+		PriorityQueue<KeyedBucket> lastOnPageFirst = new PriorityQueue<KeyedBucket>(
+				11, Collections.reverseOrder(bucketOrder));
+		boolean hasMore = false;
+		while (buckets.hasNext()) {
+			KeyedBucket bucket = new KeyedBucket(buckets.next());
+			if (cursor != null && order.compare(bucket.key, cursor) <= 0)
+				continue;
+			lastOnPageFirst.add(bucket);
+			if (lastOnPageFirst.size() > limit) {
+				lastOnPageFirst.poll();
+				hasMore = true;
+			}
+		}
+		List<KeyedBucket> sorted = new ArrayList<KeyedBucket>(lastOnPageFirst);
+		Collections.sort(sorted, bucketOrder);
+		List<Bucket> page = new ArrayList<Bucket>(sorted.size());
+		for (KeyedBucket bucket : sorted)
+			page.add(bucket.bucket);
+		nextCursor = hasMore ? toCursor(sorted.get(sorted.size() - 1).key) : null;
+		return page;
+	}
+
+	private static String toCursor(Key key) {
+		return key.index + CURSOR_SEPARATOR + key.bucketName.getName();
+	}
+
+	/**
+	 * @return cursor to the page after the last listed page, or null if it was
+	 *         the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Bucket with its key, which is created once per bucket instead of on
+	 * every comparison.
+	 */
+	private static class KeyedBucket {
+
+		private final Bucket bucket;
+		private final Key key;
+
+		public KeyedBucket(Bucket bucket) {
+			this.bucket = bucket;
+			this.key = new Key(bucket.getIndex(), bucket.getName());
+		}
+	}
+
+	/**
+	 * Parses the times from the bucket name when they are first compared, so
+	 * that sorting by index works for any bucket name.
+	 */
+	private static class Key {
+
+		private final String index;
+		private final BucketName bucketName;
+		private Long earliest;
+		private Long latest;
+
+		public Key(String index, String bucketName) {
+			this.index = index;
+			this.bucketName = new BucketName(bucketName);
+		}
+
+		public long getEarliest() {
+			if (earliest == null)
+				earliest = bucketName.getEarliest();
+			return earliest;
+		}
+
+		public long getLatest() {
+			if (latest == null)
+				latest = bucketName.getLatest();
+			return latest;
+		}
+	}
+
+	private static final Comparator<Key> BY_INDEX = new Comparator<Key>() {
+
+		@Override
+		public int compare(Key k1, Key k2) {
+			int byIndex = k1.index.compareTo(k2.index);
+			if (byIndex != 0)
+				return byIndex;
+			return k1.bucketName.getName().compareTo(k2.bucketName.getName());
+		}
+	};
+
+	private static final Comparator<Key> BY_EARLIEST = new Comparator<Key>() {
+
+		@Override
+		public int compare(Key k1, Key k2) {
+			int byEarliest = compareLongs(k1.getEarliest(), k2.getEarliest());
+			return byEarliest != 0 ? byEarliest : BY_INDEX.compare(k1, k2);
+		}
+	};
+
+	private static final Comparator<Key> BY_LATEST = new Comparator<Key>() {
+
+		@Override
+		public int compare(Key k1, Key k2) {
+			int byLatest = compareLongs(k1.getLatest(), k2.getLatest());
+			return byLatest != 0 ? byLatest : BY_INDEX.compare(k1, k2);
+		}
+	};
+
+	private static int compareLongs(long l1, long l2) {
+		return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+	}
+}
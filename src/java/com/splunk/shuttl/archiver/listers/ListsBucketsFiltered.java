@@ -14,9 +14,20 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.listers;
 
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.ArchiveTimeIndex;
+import com.splunk.shuttl.archiver.catalog.CatalogEntry;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.thaw.BucketFilter;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
@@ -26,15 +37,41 @@ import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
  */
 public class ListsBucketsFiltered {
 
+	private static final Logger logger = Logger
+			.getLogger(ListsBucketsFiltered.class);
+
 	private final ArchiveBucketsLister bucketsLister;
 	private final BucketFilter bucketFilter;
 	private final BucketFormatResolver bucketFormatResolver;
+	private final ArchiveCatalog archiveCatalog;
+	private final ArchiveTimeIndex archiveTimeIndex;
+	private final ParallelBucketsLister parallelBucketsLister;
 
+	/**
+	 * @param archiveCatalog
+	 *          to list the buckets of indexes that have a catalog. Indexes
+	 *          without a catalog are listed by walking the archive.
+	 * @param archiveTimeIndex
+	 *          to look up buckets in, once it is warm. Until then, buckets are
+	 *          listed from the catalog or the archive.
+	 * @param parallelBucketsLister
+	 *          to walk the archive with, listing all indexes in parallel and
+	 *          each index with one listing.
+	 */
 	public ListsBucketsFiltered(ArchiveBucketsLister bucketsLister,
-			BucketFilter bucketFilter, BucketFormatResolver bucketFormatResolver) {
+			BucketFilter bucketFilter, BucketFormatResolver bucketFormatResolver,
+			ArchiveCatalog archiveCatalog, ArchiveTimeIndex archiveTimeIndex,
+			ParallelBucketsLister parallelBucketsLister) {
 		this.bucketsLister = bucketsLister;
 		this.bucketFilter = bucketFilter;
 		this.bucketFormatResolver = bucketFormatResolver;
+		this.archiveCatalog = archiveCatalog;
+		this.archiveTimeIndex = archiveTimeIndex;
+		this.parallelBucketsLister = parallelBucketsLister;
+	}
+
+	private boolean isTimeIndexWarm() {
+		return archiveTimeIndex.isWarm();
 	}
 
 	/**
@@ -43,8 +80,48 @@ public class ListsBucketsFiltered {
 	 * @see ListsBucketsFiltered#listFilteredBucketsAtIndex(String, Date, Date)
 	 */
 	public List<Bucket> listFilteredBuckets(Date earliestTime, Date latestTime) {
-		List<Bucket> allBuckets = bucketsLister.listBuckets();
-		return filterBucketsAndGiveThemFormats(allBuckets, earliestTime, latestTime);
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		Iterator<Bucket> filteredBuckets = iterateFilteredBuckets(earliestTime,
+				latestTime);
+		while (filteredBuckets.hasNext())
+			buckets.add(filteredBuckets.next());
+		return buckets;
+	}
+
+	/**
+	 * Lists the archived buckets lazily, one index at a time, so that only the
+	 * buckets of one index are held in memory while iterating.
+	 * 
+	 * @return iterator over all archived buckets filtered by earliest and latest
+	 *         time.
+	 */
+	public Iterator<Bucket> iterateFilteredBuckets(final Date earliestTime,
+			final Date latestTime) {
+		if (isTimeIndexWarm() || archiveCatalog.isEnabled()) {
+			final Iterator<String> indexes = listIndexes().iterator();
+			return new BucketBatchesIterator() {
+
+				@Override
+				protected List<Bucket> nextBatch() {
+					if (!indexes.hasNext())
+						return null;
+					return listFilteredBucketsAtIndex(indexes.next(), earliestTime,
+							latestTime);
+				}
+			};
+		}
+		final Iterator<List<Bucket>> bucketsPerIndex = parallelBucketsLister
+				.listBucketsPerIndex(parallelBucketsLister.listIndexes());
+		return new BucketBatchesIterator() {
+
+			@Override
+			protected List<Bucket> nextBatch() {
+				if (!bucketsPerIndex.hasNext())
+					return null;
+				return bucketFilter.filterBucketsByTimeRange(bucketsPerIndex.next(),
+						earliestTime, latestTime);
+			}
+		};
 	}
 
 	/**
@@ -55,16 +132,35 @@ public class ListsBucketsFiltered {
 	 */
 	public List<Bucket> listFilteredBucketsAtIndex(String index,
 			Date earliestTime, Date latestTime) {
-		List<Bucket> bucketsInIndex = bucketsLister.listBucketsInIndex(index);
-		return filterBucketsAndGiveThemFormats(bucketsInIndex, earliestTime,
+		if (isTimeIndexWarm())
+			return bucketFormatResolver.resolveCatalogedBucketsFormats(index,
+					archiveTimeIndex.find(index, earliestTime, latestTime));
+		List<CatalogEntry> catalogEntries = getCatalogEntries(index);
+		if (!catalogEntries.isEmpty())
+			return bucketFilter.filterBucketsByTimeRange(
+					bucketFormatResolver.resolveCatalogedBucketsFormats(index,
+							catalogEntries), earliestTime, latestTime);
+		return bucketFilter.filterBucketsByTimeRange(
+				bucketFormatResolver.resolveIndexBucketsFormats(index), earliestTime,
 				latestTime);
 	}
 
-	private List<Bucket> filterBucketsAndGiveThemFormats(
-			List<Bucket> bucketsToFilter, Date earliestTime, Date latestTime) {
-		List<Bucket> filteredBuckets = bucketFilter.filterBucketsByTimeRange(
-				bucketsToFilter, earliestTime, latestTime);
-		return bucketFormatResolver.resolveBucketsFormats(filteredBuckets);
+	private List<String> listIndexes() {
+		if (isTimeIndexWarm())
+			return archiveTimeIndex.getIndexes();
+		else
+			return bucketsLister.listIndexes();
+	}
+
+	private List<CatalogEntry> getCatalogEntries(String index) {
+		try {
+			return archiveCatalog.getEntries(index);
+		} catch (IOException e) {
+			logger.warn(warn("Read the archive catalog of an index", e,
+					"Will list the index by walking the archive", "index", index,
+					"exception", e));
+			return Collections.emptyList();
+		}
 	}
 
 }
@@ -15,6 +15,8 @@
 package com.splunk.shuttl.archiver.listers;
 
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.ArchiveTimeIndex;
 import com.splunk.shuttl.archiver.thaw.BucketFilter;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolverFactory;
@@ -35,7 +37,9 @@ public class ListsBucketsFilteredFactory {
 		BucketFormatResolver bucketFormatResolver = BucketFormatResolverFactory
 				.create(config);
 		return new ListsBucketsFiltered(bucketsLister, bucketFilter,
-				bucketFormatResolver);
+				bucketFormatResolver, ArchiveCatalog.createIfEnabled(config),
+				ArchiveTimeIndex.getSharedInstance(),
+				ParallelBucketsLister.create(config));
 	}
 
 }
@@ -0,0 +1,179 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolverFactory;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+
+/**
+ * Lists the buckets of many indexes at once, with their formats resolved. Each
+ * index is listed on a bounded pool of threads, with one listing of the
+ * archive per index, and the buckets are handed out index by index in the
+ * order the listings complete.
+ */
+public class ParallelBucketsLister {
+
+	private static final Logger logger = Logger
+			.getLogger(ParallelBucketsLister.class);
+
+	/**
+	 * Number of indexes that are listed at the same time.
+	 */
+	public static final int LISTING_THREADS = 8;
+
+	private static final ExecutorService sharedExecutor = Executors
+			.newFixedThreadPool(LISTING_THREADS, new DaemonThreadFactory(
+					"shuttl-bucket-lister"));
+
+	private final ArchiveBucketsLister bucketsLister;
+	private final BucketFormatResolver bucketFormatResolver;
+	private final ExecutorService executor;
+
+	/**
+	 * @param bucketsLister
+	 *          to list the archived indexes.
+	 * @param bucketFormatResolver
+	 *          to list the buckets of an index with their formats.
+	 * @param executor
+	 *          to list the indexes on.
+	 */
+	public ParallelBucketsLister(ArchiveBucketsLister bucketsLister,
+			BucketFormatResolver bucketFormatResolver, ExecutorService executor) {
+		this.bucketsLister = bucketsLister;
+		this.bucketFormatResolver = bucketFormatResolver;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return indexes that have archived buckets.
+	 */
+	public List<String> listIndexes() {
+		return bucketsLister.listIndexes();
+	}
+
+	/**
+	 * @return all archived buckets with {@link BucketFormat} set.
+	 */
+	public List<Bucket> listBuckets() {
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		Iterator<List<Bucket>> bucketsPerIndex = listBucketsPerIndex(listIndexes());
+		while (bucketsPerIndex.hasNext())
+			buckets.addAll(bucketsPerIndex.next());
+		return buckets;
+	}
+
+	/**
+	 * Starts listing all the indexes and returns right away. The buckets of an
+	 * index can be used as soon as its listing completes, while the other
+	 * indexes are still being listed.
+	 * 
+	 * @return the buckets of each index, with {@link BucketFormat} set, in the
+	 *         order the listings complete. {@link Iterator#next()} blocks until
+	 *         the next listing completes and throws a {@link RuntimeException}
+	 *         if it failed.
+	 */
+	public Iterator<List<Bucket>> listBucketsPerIndex(List<String> indexes) {
+		CompletionService<List<Bucket>> completionService = new ExecutorCompletionService<List<Bucket>>(
+				executor);
+		List<Future<List<Bucket>>> listings = new ArrayList<Future<List<Bucket>>>();
+		for (final String index : indexes)
+			listings.add(completionService.submit(new Callable<List<Bucket>>() {
+
+				@Override
+				public List<Bucket> call() {
+					return bucketFormatResolver.resolveIndexBucketsFormats(index);
+				}
+			}));
+		return new CompletedListings(completionService, listings);
+	}
+
+	private static class CompletedListings implements Iterator<List<Bucket>> {
+
+		private final CompletionService<List<Bucket>> completionService;
+		private final List<Future<List<Bucket>>> listings;
+		private int remaining;
+
+		public CompletedListings(
+				CompletionService<List<Bucket>> completionService,
+				List<Future<List<Bucket>>> listings) {
+			this.completionService = completionService;
+			this.listings = listings;
+			this.remaining = listings.size();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public List<Bucket> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			remaining--;
+			try {
+				return completionService.take().get();
+			} catch (InterruptedException e) {
+				cancelRemaining();
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				cancelRemaining();
+				logger.debug(did("Listed buckets of an index", e.getCause(),
+						"To list the buckets", "exception", e.getCause()));
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		private void cancelRemaining() {
+			remaining = 0;
+			for (Future<List<Bucket>> listing : listings)
+				listing.cancel(true);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * @return instance listing on a pool that is shared by all instances.
+	 */
+	public static ParallelBucketsLister create(ArchiveConfiguration config) {
+		return new ParallelBucketsLister(ArchiveBucketsListerFactory.create(config),
+				BucketFormatResolverFactory.create(config), sharedExecutor);
+	}
+}
@@ -27,6 +27,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.util.DirectoryMover;
 
 /**
  * Model representing a Splunk bucket
@@ -197,7 +198,8 @@ public class Bucket {
 	}
 
 	/**
-	 * Moves the bucket.
+	 * Moves the bucket. It's a rename when the destination is on the same file
+	 * system as the bucket, and a copy otherwise.
 	 * 
 	 * @param destinationDirectory
 	 *          destination directory
@@ -219,16 +221,21 @@ public class Bucket {
 				"destination", destinationDirectory));
 		File originDirectory = getDirectory();
 		File newName = new File(destinationDirectory, originDirectory.getName());
-		if (!originDirectory.renameTo(newName))
-			logMoveFailureAndThrowException(destinationDirectory);
+		try {
+			DirectoryMover.getSharedInstance().moveDirectory(originDirectory,
+					newName);
+		} catch (IOException e) {
+			logMoveFailureAndThrowException(destinationDirectory, e);
+		}
 		return BucketFactory.createBucketWithIndexAndDirectory(getIndex(), newName);
 	}
 
-	private void logMoveFailureAndThrowException(File destinationDirectory) {
-		logger.error(did("Attempted to move bucket", "move failed", null, "bucket",
-				this, "destination", destinationDirectory));
+	private void logMoveFailureAndThrowException(File destinationDirectory,
+			IOException e) {
+		logger.error(did("Attempted to move bucket", e, null, "bucket", this,
+				"destination", destinationDirectory));
 		throw new RuntimeException("Couldn't move bucket to destination: "
-				+ destinationDirectory);
+				+ destinationDirectory, e);
 	}
 
 	/**
@@ -20,12 +20,17 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.archive.PathResolver;
+import com.splunk.shuttl.archiver.catalog.CatalogEntry;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.util.UtilsURI;
@@ -71,8 +76,166 @@ public class BucketFormatResolver {
 		return bucketsWithFormat;
 	}
 
+	/**
+	 * Chooses formats for buckets from the entries of an index's catalog,
+	 * without listing the archive.
+	 * 
+	 * @return buckets with {@link BucketFormat} and size set.
+	 */
+	public List<Bucket> resolveCatalogedBucketsFormats(String index,
+			List<CatalogEntry> entries) {
+		Map<String, Map<BucketFormat, CatalogEntry>> entriesByBucket = new LinkedHashMap<String, Map<BucketFormat, CatalogEntry>>();
+		for (CatalogEntry entry : entries) {
+			Map<BucketFormat, CatalogEntry> formats = entriesByBucket.get(entry
+					.getBucketName());
+			if (formats == null) {
+				formats = new LinkedHashMap<BucketFormat, CatalogEntry>();
+				entriesByBucket.put(entry.getBucketName(), formats);
+			}
+			formats.put(entry.getFormat(), entry);
+		}
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for (Map<BucketFormat, CatalogEntry> formats : entriesByBucket.values())
+			buckets.add(getCatalogedBucketWithChosenFormat(index, formats));
+		return buckets;
+	}
+
+	/**
+	 * Lists all buckets of an index with their formats chosen, using one listing
+	 * of the archive for the whole index instead of one per bucket. The sizes
+	 * are in the names of the size files, so they are listed for the whole
+	 * index as well.
+	 * 
+	 * @return buckets with {@link BucketFormat} set, and size set if the bucket
+	 *         was archived with the size in its size file's name.
+	 */
+	public List<Bucket> resolveIndexBucketsFormats(String index) {
+		Map<String, List<BucketFormat>> formatsByBucket = new LinkedHashMap<String, List<BucketFormat>>();
+		for (URI formatUri : listAllArchivedFormats(index)) {
+			BucketFormat format = getBucketFormat(formatUri);
+			if (format == null)
+				continue;
+			String bucketName = FilenameUtils.getName(FilenameUtils
+					.getPathNoEndSeparator(UtilsURI
+							.getPathByTrimmingEndingFileSeparator(formatUri)));
+			List<BucketFormat> formats = formatsByBucket.get(bucketName);
+			if (formats == null) {
+				formats = new ArrayList<BucketFormat>();
+				formatsByBucket.put(bucketName, formats);
+			}
+			formats.add(format);
+		}
+		Map<String, Long> sizes = listAllArchivedSizes(index);
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for (Map.Entry<String, List<BucketFormat>> bucketFormats : formatsByBucket
+				.entrySet())
+			buckets.add(getListedBucketWithChosenFormat(index,
+					bucketFormats.getKey(), bucketFormats.getValue(), sizes));
+		return buckets;
+	}
+
+	/**
+	 * @return sizes keyed by {@link #getSizeKey(String, String)}. Empty if
+	 *         the sizes could not be listed, so that they are read per bucket.
+	 */
+	private Map<String, Long> listAllArchivedSizes(String index) {
+		URI sizeFilesPattern = pathResolver.getArchivedSizeFilesPattern(index);
+		List<URI> sizeFiles;
+		try {
+			sizeFiles = archiveFileSystem.listPathsMatching(sizeFilesPattern);
+		} catch (IOException e) {
+			logger.warn(warn("Listed size files of all buckets in index", e,
+					"Sizes will be read per bucket", "index", index,
+					"size_files_pattern", sizeFilesPattern, "exception", e));
+			return Collections.emptyMap();
+		}
+		Map<String, Long> sizes = new HashMap<String, Long>();
+		for (URI sizeFile : sizeFiles) {
+			String path = UtilsURI.getPathByTrimmingEndingFileSeparator(sizeFile);
+			Long size = PathResolver.getSizeFromBucketSizeFileName(FilenameUtils
+					.getName(path));
+			if (size != null)
+				sizes.put(getSizeKey(path), size);
+		}
+		return sizes;
+	}
+
+	/**
+	 * @return the format's path relative to the index, from the path of its
+	 *         size file, which is in the format's metadata directory.
+	 */
+	private static String getSizeKey(String sizeFilePath) {
+		String formatPath = FilenameUtils.getPathNoEndSeparator(FilenameUtils
+				.getPathNoEndSeparator(sizeFilePath));
+		String bucketPath = FilenameUtils.getPathNoEndSeparator(formatPath);
+		return getSizeKey(FilenameUtils.getName(bucketPath),
+				FilenameUtils.getName(formatPath));
+	}
+
+	private static String getSizeKey(String bucketName, String formatName) {
+		return bucketName + PathResolver.SEPARATOR + formatName;
+	}
+
+	private List<URI> listAllArchivedFormats(String index) {
+		URI formatsPattern = pathResolver.getArchivedFormatsPattern(index);
+		try {
+			return archiveFileSystem.listPathsMatching(formatsPattern);
+		} catch (IOException e) {
+			logger.debug(did("Listed formats of all buckets in index", e,
+					"To list the archived formats", "index", index, "formats_pattern",
+					formatsPattern, "exception", e));
+			throw new RuntimeException(e);
+		}
+	}
+
+	private BucketFormat getBucketFormat(URI formatUri) {
+		String formatName = UtilsURI
+				.getFileNameWithTrimmedEndingFileSeparator(formatUri);
+		try {
+			return BucketFormat.valueOf(formatName);
+		} catch (IllegalArgumentException e) {
+			logger.debug(happened("Listed a path that is not a bucket format",
+					"path", formatUri));
+			return null;
+		}
+	}
+
+	private Bucket getListedBucketWithChosenFormat(String index,
+			String bucketName, List<BucketFormat> formats, Map<String, Long> sizes) {
+		BucketFormat chosenFormat = bucketFormatChooser.chooseBucketFormat(formats);
+		URI uri = pathResolver.resolveArchivedBucketURI(index, bucketName,
+				chosenFormat);
+		try {
+			return new Bucket(uri, index, bucketName, chosenFormat,
+					sizes.get(getSizeKey(bucketName, chosenFormat.name())));
+		} catch (IOException e) {
+			logger.debug(did("Created bucket with chosen format", e,
+					"To create bucket from the listed formats.", "index", index,
+					"bucket_name", bucketName, "bucket_format", chosenFormat,
+					"exception", e));
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Bucket getCatalogedBucketWithChosenFormat(String index,
+			Map<BucketFormat, CatalogEntry> formats) {
+		BucketFormat chosenFormat = bucketFormatChooser
+				.chooseBucketFormat(new ArrayList<BucketFormat>(formats.keySet()));
+		CatalogEntry entry = formats.get(chosenFormat);
+		URI uri = pathResolver.resolveArchivedBucketURI(index,
+				entry.getBucketName(), chosenFormat);
+		try {
+			return new Bucket(uri, index, entry.getBucketName(), chosenFormat,
+					entry.getSize());
+		} catch (IOException e) {
+			logger.debug(did("Created bucket from catalog entry", e,
+					"To create bucket from the entry.", "entry", entry, "exception", e));
+			throw new RuntimeException(e);
+		}
+	}
+
 	private Bucket getBucketWithResolvedFormat(Bucket bucket) {
-		List<BucketFormat> availableFormats = getAvailableFormatsForBucket(bucket);
+		List<BucketFormat> availableFormats = listArchivedFormats(bucket);
 		BucketFormat chosenFormat = bucketFormatChooser
 				.chooseBucketFormat(availableFormats);
 		URI uriToBucketWithChosenBucket = pathResolver.resolveArchivedBucketURI(
@@ -81,7 +244,10 @@ public class BucketFormatResolver {
 				uriToBucketWithChosenBucket);
 	}
 
-	private List<BucketFormat> getAvailableFormatsForBucket(Bucket bucket) {
+	/**
+	 * @return formats that the bucket is archived in.
+	 */
+	public List<BucketFormat> listArchivedFormats(Bucket bucket) {
 		URI formatsHomeForBucket = pathResolver.getFormatsHome(bucket.getIndex(),
 				bucket.getName());
 		List<URI> archivedFormats = listArchivedFormatsWithErrorHandling(
@@ -19,8 +19,15 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -35,12 +42,18 @@ import com.splunk.shuttl.archiver.model.Bucket;
  */
 public class BucketThawer {
 
+	private static final Logger logger = Logger.getLogger(BucketThawer.class);
+
 	private final ListsBucketsFiltered listsBucketsFiltered;
 	private final GetsBucketsFromArchive getsBucketsFromArchive;
 	private final ThawLocationProvider thawLocationProvider;
 	private final List<Bucket> successfulThawedBuckets;
 	private final List<FailedBucket> failedBuckets;
 	private final BucketLocker thawBucketLocker;
+	private final ExecutorService thawExecutor;
+	private final Map<String, Long> thawTimesMillis;
+	private final InFlightThaws inFlightThaws;
+	private final ThawedBucketCache thawedBucketCache;
 
 	public static class FailedBucket {
 
@@ -63,41 +76,178 @@ public class BucketThawer {
 	 *          for getting the location on local disk for the thawed bucket.
 	 * @param thawBucketLocker
 	 *          to handle parallel thawing synchronization.
+	 * @param thawExecutor
+	 *          to thaw buckets on, so that the transfer and import of many
+	 *          buckets overlap. Its number of threads limits how many buckets
+	 *          are thawed at the same time.
+	 * @param inFlightThaws
+	 *          shared with other thawers, so that a bucket that is already being
+	 *          thawed by someone else is waited for instead of thawed again.
+	 * @param thawedBucketCache
+	 *          keeps the thawed buckets within a disk budget.
 	 */
 	public BucketThawer(ListsBucketsFiltered listsBucketsFiltered,
 			GetsBucketsFromArchive getsBucketsFromArchive,
-			ThawLocationProvider thawLocationProvider, BucketLocker thawBucketLocker) {
+			ThawLocationProvider thawLocationProvider,
+			BucketLocker thawBucketLocker, ExecutorService thawExecutor,
+			InFlightThaws inFlightThaws, ThawedBucketCache thawedBucketCache) {
 		this.listsBucketsFiltered = listsBucketsFiltered;
 		this.getsBucketsFromArchive = getsBucketsFromArchive;
 		this.thawLocationProvider = thawLocationProvider;
 		this.thawBucketLocker = thawBucketLocker;
+		this.thawExecutor = thawExecutor;
+		this.inFlightThaws = inFlightThaws;
+		this.thawedBucketCache = thawedBucketCache;
 
-		this.successfulThawedBuckets = new ArrayList<Bucket>();
-		this.failedBuckets = new ArrayList<FailedBucket>();
+		this.successfulThawedBuckets = Collections
+				.synchronizedList(new ArrayList<Bucket>());
+		this.failedBuckets = Collections
+				.synchronizedList(new ArrayList<FailedBucket>());
+		this.thawTimesMillis = Collections
+				.synchronizedMap(new LinkedHashMap<String, Long>());
 	}
 
 	/**
-	 * Thaws bucket for a specific index within a time range.
+	 * Thaws bucket for a specific index within a time range. Returns when all
+	 * buckets have been thawed, or failed to thaw.
 	 */
 	public void thawBuckets(String index, Date earliestTime, Date latestTime) {
+		thawBuckets(index, earliestTime, latestTime, new NullThawListener());
+	}
+
+	/**
+	 * @param thawListener
+	 *          told how the thawing of each bucket progresses.
+	 * @see #thawBuckets(String, Date, Date)
+	 */
+	public void thawBuckets(String index, Date earliestTime, Date latestTime,
+			ThawListener thawListener) {
 		List<Bucket> bucketsToThaw = listsBucketsFiltered
 				.listFilteredBucketsAtIndex(index, earliestTime, latestTime);
 		for (Bucket bucket : bucketsToThaw)
-			if (!isBucketAlreadyThawed(bucket))
-				thawBucketLocker.callBucketHandlerUnderSharedLock(bucket,
-						new ThawBucketFromArchive());
+			thawListener.bucketQueued(bucket);
+		List<Future<?>> thaws = new ArrayList<Future<?>>();
+		for (Bucket bucket : bucketsToThaw)
+			thaws.add(thawExecutor.submit(new ThawBucketUnderLock(bucket,
+					thawListener)));
+		waitForThaws(bucketsToThaw, thaws, thawListener);
+	}
+
+	private class ThawBucketUnderLock implements Runnable {
+
+		private final Bucket bucket;
+		private final ThawListener thawListener;
+
+		public ThawBucketUnderLock(Bucket bucket, ThawListener thawListener) {
+			this.bucket = bucket;
+			this.thawListener = thawListener;
+		}
+
+		@Override
+		public void run() {
+			long start = System.currentTimeMillis();
+			try {
+				Bucket thawedBucket = inFlightThaws.thawOnce(bucket,
+						new Callable<Bucket>() {
+
+							@Override
+							public Bucket call() throws Exception {
+								return thawBucketUnderLock(bucket, thawListener);
+							}
+						});
+				if (thawedBucket != null) {
+					successfulThawedBuckets.add(thawedBucket);
+					thawListener.bucketThawed(bucket, thawedBucket);
+				} else if (isThawLocationPresent(bucket)) {
+					thawListener.bucketAlreadyThawed(bucket);
+				}
+			} catch (ThawTransferFailException e) {
+				addFailedBucket(bucket, e, thawListener);
+			} catch (ImportThawedBucketFailException e) {
+				addFailedBucket(bucket, e, thawListener);
+			} finally {
+				long thawTime = System.currentTimeMillis() - start;
+				thawTimesMillis.put(bucket.getName(), thawTime);
+				logger.info(done("Thawing bucket", "bucket", bucket, "thaw_time_ms",
+						thawTime));
+			}
+		}
+	}
+
+	/**
+	 * Checks if the bucket is already thawed under the same single-flight key as
+	 * the thaw, so that a thaw that just finished, or is still writing the
+	 * bucket to its thaw location, is never mistaken for a thawed bucket.
+	 * 
+	 * @return thawed bucket, or null if the bucket was already thawed or could
+	 *         not be locked.
+	 */
+	private Bucket thawBucketUnderLock(Bucket bucket, ThawListener thawListener)
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		if (isBucketAlreadyThawed(bucket, thawListener))
+			return null;
+		ThawBucketFromArchive thawBucketFromArchive = new ThawBucketFromArchive(
+				thawListener);
+		thawedBucketCache.makeRoomForBucket(bucket);
+		thawBucketLocker.callBucketHandlerUnderSharedLock(bucket,
+				thawBucketFromArchive);
+		if (thawBucketFromArchive.transferFailure != null)
+			throw thawBucketFromArchive.transferFailure;
+		if (thawBucketFromArchive.importFailure != null)
+			throw thawBucketFromArchive.importFailure;
+		if (thawBucketFromArchive.thawedBucket != null)
+			thawedBucketCache.bucketUsed(bucket);
+		return thawBucketFromArchive.thawedBucket;
+	}
+
+	private void waitForThaws(List<Bucket> thawingBuckets,
+			List<Future<?>> thaws, ThawListener thawListener) {
+		for (int i = 0; i < thaws.size(); i++)
+			try {
+				thaws.get(i).get();
+			} catch (InterruptedException e) {
+				for (Future<?> thaw : thaws)
+					thaw.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Error)
+					throw (Error) cause;
+				logger.warn(warn("Thawed bucket", cause,
+						"Will add the bucket to the failed buckets", "bucket",
+						thawingBuckets.get(i), "exception", cause));
+				addFailedBucket(thawingBuckets.get(i), (Exception) cause,
+						thawListener);
+			}
 	}
 
 	/**
 	 * Class to call from the {@link BucketLocker}. Thaws bucket from archive
-	 * during bucket lock. It simply calls a method in this class. It is all
-	 * synchronous and not asynchronous as it might seem.
+	 * during bucket lock and keeps the result. It is all synchronous and not
+	 * asynchronous as it might seem.
 	 */
 	private class ThawBucketFromArchive implements SharedLockBucketHandler {
 
+		private final ThawListener thawListener;
+		private Bucket thawedBucket;
+		private ThawTransferFailException transferFailure;
+		private ImportThawedBucketFailException importFailure;
+
+		public ThawBucketFromArchive(ThawListener thawListener) {
+			this.thawListener = thawListener;
+		}
+
 		@Override
 		public void handleSharedLockedBucket(Bucket bucket) {
-			BucketThawer.this.thawBucketFromArchive(bucket);
+			try {
+				thawedBucket = getsBucketsFromArchive.getBucketFromArchive(bucket,
+						thawListener);
+			} catch (ThawTransferFailException e) {
+				transferFailure = e;
+			} catch (ImportThawedBucketFailException e) {
+				importFailure = e;
+			}
 		}
 
 	}
@@ -105,37 +255,49 @@ public class BucketThawer {
 	/**
 	 * @return true if the bucket already exists on local disk.
 	 */
-	private boolean isBucketAlreadyThawed(Bucket bucket) {
+	private boolean isBucketAlreadyThawed(Bucket bucket,
+			ThawListener thawListener) {
 		try {
 			File thawLocation = thawLocationProvider
 					.getLocationInThawForBucket(bucket);
-			return thawLocation != null && thawLocation.exists();
+			boolean isThawed = thawLocation != null && thawLocation.exists();
+			if (isThawed)
+				thawedBucketCache.bucketUsed(bucket);
+			return isThawed;
 		} catch (IOException e) {
 			logWarningForAssumingBucketAlreadyExists(bucket, e);
-			failedBuckets.add(new FailedBucket(bucket, e));
+			addFailedBucket(bucket, e, thawListener);
 			return true;
 		}
 	}
 
-	private void logWarningForAssumingBucketAlreadyExists(Bucket bucket,
-			IOException e) {
-		Logger.getLogger(getClass()).warn(
-				warn("Got thaw location for a bucket", e,
-						"Assumes the bucket is already thawed", "bucket", bucket,
-						"exception", e));
-	}
-
-	private void thawBucketFromArchive(Bucket bucket) {
+	/**
+	 * Tells apart a bucket that was already thawed from one that could not be
+	 * locked, also when the single-flight thaw was run by another thawer.
+	 */
+	private boolean isThawLocationPresent(Bucket bucket) {
 		try {
-			Bucket thawedBucket = getsBucketsFromArchive.getBucketFromArchive(bucket);
-			successfulThawedBuckets.add(thawedBucket);
-		} catch (ThawTransferFailException e) {
-			failedBuckets.add(new FailedBucket(bucket, e));
-		} catch (ImportThawedBucketFailException e) {
-			failedBuckets.add(new FailedBucket(bucket, e));
+			File thawLocation = thawLocationProvider
+					.getLocationInThawForBucket(bucket);
+			return thawLocation != null && thawLocation.exists();
+		} catch (IOException e) {
+			return false;
 		}
 	}
 
+	private void addFailedBucket(Bucket bucket, Exception exception,
+			ThawListener thawListener) {
+		failedBuckets.add(new FailedBucket(bucket, exception));
+		thawListener.bucketFailed(bucket, exception);
+	}
+
+	private void logWarningForAssumingBucketAlreadyExists(Bucket bucket,
+			IOException e) {
+		logger.warn(warn("Got thaw location for a bucket", e,
+				"Assumes the bucket is already thawed", "bucket", bucket,
+				"exception", e));
+	}
+
 	/**
 	 * @return buckets that succeeded to be thawed.
 	 */
@@ -150,4 +312,12 @@ public class BucketThawer {
 		return failedBuckets;
 	}
 
+	/**
+	 * @return milliseconds it took to transfer and import each bucket that was
+	 *         thawed or failed to thaw, by bucket name.
+	 */
+	public Map<String, Long> getThawTimesMillis() {
+		return thawTimesMillis;
+	}
+
 }
@@ -14,26 +14,37 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.thaw;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import com.splunk.Service;
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
 import com.splunk.shuttl.archiver.bucketsize.ArchiveBucketSize;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.importexport.BucketImporter;
+import com.splunk.shuttl.archiver.importexport.csv.CsvStreamingImporter;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFilteredFactory;
 import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+import com.splunk.shuttl.archiver.util.SameThreadExecutorService;
 
 /**
  * Factory for getting {@link BucketThawer}
  */
 public class BucketThawerFactory {
 
+	/**
+	 * Thaw locations rarely change, so they are looked up in splunk at most this
+	 * often per index.
+	 */
+	public static final long THAW_LOCATION_TIME_TO_LIVE_MILLIS = 5 * 60 * 1000;
+
 	public static BucketThawer createDefaultThawer() {
-		Service splunkService = getLoggedInSplunkService();
-		SplunkSettings splunkSettings = getSplunkSettings(splunkService);
 		ArchiveConfiguration config = ArchiveConfiguration.getSharedInstance();
-		return createWithSplunkSettingsAndConfig(splunkSettings, config);
+		return createWithSplunkSettingsAndConfig(getSharedSplunkSettings(),
+				config);
 	}
 
 	public static BucketThawer createWithSplunkSettingsAndConfig(
@@ -44,24 +55,88 @@ public class BucketThawerFactory {
 				.create(splunkSettings);
 
 		ThawBucketTransferer thawBucketTransferer = getThawBucketTransferer(
-				archiveFileSystem, thawLocationProvider);
+				archiveFileSystem, thawLocationProvider, configuration);
 		ListsBucketsFiltered listsBucketsFiltered = ListsBucketsFilteredFactory
 				.create(configuration);
 		GetsBucketsFromArchive getsBucketsFromArchive = new GetsBucketsFromArchive(
 				thawBucketTransferer, BucketImporter.create(), new BucketSizeResolver(
 						ArchiveBucketSize.create(configuration)));
+		ThawBucketLocker thawBucketLocker = new ThawBucketLocker();
 		return new BucketThawer(listsBucketsFiltered, getsBucketsFromArchive,
-				thawLocationProvider, new ThawBucketLocker());
+				thawLocationProvider, thawBucketLocker,
+				getSharedThawExecutor(configuration.getThawThreads()),
+				InFlightThaws.getSharedInstance(), getThawedBucketCache(
+						thawLocationProvider, thawBucketLocker, configuration));
+	}
+
+	private static ThawedBucketCache getThawedBucketCache(
+			ThawLocationProvider thawLocationProvider,
+			ThawBucketLocker thawBucketLocker, ArchiveConfiguration configuration) {
+		long budget = configuration.getThawCacheBudgetBytes();
+		if (budget <= 0)
+			return ThawedBucketCache.unlimited();
+		return new ThawedBucketCache(thawLocationProvider, thawBucketLocker,
+				budget);
+	}
+
+	private static ExecutorService sharedThawExecutor;
+
+	/**
+	 * All thaw requests share the same threads, so that the number of buckets
+	 * thawed at the same time is bounded no matter how many thaw requests are
+	 * made at once.
+	 * 
+	 * @return executor that thaws one bucket at a time, on the thread of the
+	 *         thaw request, when there is at most one thaw thread.
+	 */
+	private static synchronized ExecutorService getSharedThawExecutor(
+			int thawThreads) {
+		if (thawThreads <= 1)
+			return new SameThreadExecutorService();
+		if (sharedThawExecutor == null)
+			sharedThawExecutor = Executors.newFixedThreadPool(thawThreads,
+					new DaemonThreadFactory("shuttl-thaw"));
+		return sharedThawExecutor;
 	}
 
 	private static ThawBucketTransferer getThawBucketTransferer(
 			ArchiveFileSystem archiveFileSystem,
-			ThawLocationProvider thawLocationProvider) {
+			ThawLocationProvider thawLocationProvider,
+			ArchiveConfiguration configuration) {
 		ThawBucketTransferer thawBucketTransferer = new ThawBucketTransferer(
-				thawLocationProvider, archiveFileSystem, new BucketFactory());
+				thawLocationProvider, archiveFileSystem, new BucketFactory(),
+				CsvStreamingImporter.create(), configuration.isCsvStreamingThaw(),
+				ThawBucketLinker.create());
 		return thawBucketTransferer;
 	}
 
+	private static SplunkSettings sharedSplunkSettings;
+
+	/**
+	 * All thaws share one logged in splunk session and the thaw locations it
+	 * has looked up, instead of logging in and looking up the locations for
+	 * every thaw request. An expired session is logged in again by the
+	 * settings, and settings that have failed to call splunkd are replaced with
+	 * a new session on the next thaw request.
+	 */
+	private static synchronized SplunkSettings getSharedSplunkSettings() {
+		if (sharedSplunkSettings == null
+				|| sharedSplunkSettings.hasSplunkCallFailed())
+			sharedSplunkSettings = new SplunkSettings(getLoggedInSplunkService(),
+					THAW_LOCATION_TIME_TO_LIVE_MILLIS);
+		return sharedSplunkSettings;
+	}
+
+	/**
+	 * Forgets the shared splunk session and the thaw locations it has looked
+	 * up, for when the indexes in splunk have been changed.
+	 */
+	public static synchronized void invalidateSharedSplunkSettings() {
+		if (sharedSplunkSettings != null)
+			sharedSplunkSettings.invalidateThawLocations();
+		sharedSplunkSettings = null;
+	}
+
 	// TODO: Communicating with splunk through splunk home is not nice.
 	// CONFIG
 	private static Service getLoggedInSplunkService() {
@@ -55,8 +55,20 @@ public class GetsBucketsFromArchive {
 	 */
 	public Bucket getBucketFromArchive(Bucket bucket)
 			throws ThawTransferFailException, ImportThawedBucketFailException {
+		return getBucketFromArchive(bucket, new NullThawListener());
+	}
+
+	/**
+	 * @param thawListener
+	 *          told when the bucket is transferred and imported.
+	 * @see #getBucketFromArchive(Bucket)
+	 */
+	public Bucket getBucketFromArchive(Bucket bucket, ThawListener thawListener)
+			throws ThawTransferFailException, ImportThawedBucketFailException {
 		logger.info(will("Attempting to thaw bucket", "bucket", bucket));
+		thawListener.bucketTransferring(bucket);
 		Bucket thawedBucket = getTransferedBucket(bucket);
+		thawListener.bucketImporting(bucket);
 		Bucket importedBucket = importThawedBucket(thawedBucket);
 		Bucket bucketWithSize = bucketSizeResolver.resolveBucketSize(thawedBucket);
 		logger.info(done("Thawed bucket", "bucket", importedBucket));
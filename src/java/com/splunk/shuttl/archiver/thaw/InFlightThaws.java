@@ -0,0 +1,111 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Makes sure that a bucket is only thawed once at a time. Whoever asks for a
+ * bucket that is already being thawed waits for that thaw and gets its result,
+ * instead of transferring the bucket again.
+ */
+public class InFlightThaws {
+
+	private static final Logger logger = Logger.getLogger(InFlightThaws.class);
+
+	private static final InFlightThaws sharedInstance = new InFlightThaws();
+
+	private final ConcurrentMap<String, FutureTask<Bucket>> thaws;
+
+	public InFlightThaws() {
+		this.thaws = new ConcurrentHashMap<String, FutureTask<Bucket>>();
+	}
+
+	/**
+	 * Calls the thaw for the bucket, unless the bucket is already being thawed,
+	 * in which case the result of that thaw is returned when it's done.
+	 * 
+	 * @return the thawed bucket, or null if the thaw did not thaw the bucket.
+	 */
+	public Bucket thawOnce(Bucket bucket, Callable<Bucket> thaw)
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		String key = keyForBucket(bucket);
+		FutureTask<Bucket> newThaw = new FutureTask<Bucket>(thaw);
+		FutureTask<Bucket> inFlight = thaws.putIfAbsent(key, newThaw);
+		if (inFlight == null) {
+			try {
+				newThaw.run();
+			} finally {
+				thaws.remove(key, newThaw);
+			}
+			return getResult(newThaw);
+		} else {
+			logger.info(happened("Bucket is already being thawed. "
+					+ "Waiting for that thaw instead of thawing again", "bucket",
+					bucket));
+			return getResult(inFlight);
+		}
+	}
+
+	/**
+	 * @return true if the bucket is being thawed right now.
+	 */
+	public boolean isThawing(Bucket bucket) {
+		return thaws.containsKey(keyForBucket(bucket));
+	}
+
+	private String keyForBucket(Bucket bucket) {
+		return bucket.getIndex() + "/" + bucket.getName();
+	}
+
+	private Bucket getResult(FutureTask<Bucket> thaw)
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		try {
+			return thaw.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ThawTransferFailException)
+				throw (ThawTransferFailException) cause;
+			if (cause instanceof ImportThawedBucketFailException)
+				throw (ImportThawedBucketFailException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * @return thaws shared by the whole server, so that concurrent thaw
+	 *         requests coalesce on the buckets they have in common.
+	 */
+	public static InFlightThaws getSharedInstance() {
+		return sharedInstance;
+	}
+}
@@ -0,0 +1,47 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Listener for when nobody follows how the thawing progresses.
+ */
+public class NullThawListener implements ThawListener {
+
+	@Override
+	public void bucketQueued(Bucket bucket) {
+	}
+
+	@Override
+	public void bucketAlreadyThawed(Bucket bucket) {
+	}
+
+	@Override
+	public void bucketTransferring(Bucket bucket) {
+	}
+
+	@Override
+	public void bucketImporting(Bucket bucket) {
+	}
+
+	@Override
+	public void bucketThawed(Bucket bucket, Bucket thawedBucket) {
+	}
+
+	@Override
+	public void bucketFailed(Bucket bucket, Exception exception) {
+	}
+}
@@ -17,26 +17,46 @@ package com.splunk.shuttl.archiver.thaw;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.log4j.Logger;
 
+import com.splunk.HttpException;
 import com.splunk.Index;
 import com.splunk.Service;
 import com.splunk.shuttl.archiver.model.IllegalIndexException;
 
 /**
- * Gets settings from the configured Splunk.
+ * Gets settings from the configured Splunk. Thaw locations can be remembered
+ * for a while, since looking them up is a round trip to splunkd. A session
+ * that splunkd has expired is logged in again.
  */
 public class SplunkSettings {
 
 	private final Service splunkService;
 	private static final Logger logger = Logger.getLogger(SplunkSettings.class);
 
+	private final long thawLocationTimeToLiveMillis;
+	private final ConcurrentMap<String, CachedThawLocation> thawLocations;
+	private volatile boolean splunkCallFailed;
+
 	/**
 	 * @param splunkService
 	 */
 	public SplunkSettings(Service splunkService) {
+		this(splunkService, 0);
+	}
+
+	/**
+	 * @param thawLocationTimeToLiveMillis
+	 *          how long a thaw location is remembered before it's looked up in
+	 *          splunk again. Zero looks it up every time.
+	 */
+	public SplunkSettings(Service splunkService, long thawLocationTimeToLiveMillis) {
 		this.splunkService = splunkService;
+		this.thawLocationTimeToLiveMillis = thawLocationTimeToLiveMillis;
+		this.thawLocations = new ConcurrentHashMap<String, CachedThawLocation>();
 	}
 
 	/**
@@ -45,13 +65,70 @@ public class SplunkSettings {
 	 *           if index does not exist in splunk
 	 */
 	public File getThawLocation(String index) throws IllegalIndexException {
-		Index splunkIndex = splunkService.getIndexes().get(index);
+		long now = System.currentTimeMillis();
+		CachedThawLocation cached = thawLocations.get(index);
+		if (cached != null && now < cached.expiresAtMillis)
+			return cached.thawLocation;
+
+		File thawLocation = getThawLocationFromSplunk(index);
+		if (thawLocationTimeToLiveMillis > 0)
+			thawLocations.put(index, new CachedThawLocation(thawLocation, now
+					+ thawLocationTimeToLiveMillis));
+		return thawLocation;
+	}
+
+	private File getThawLocationFromSplunk(String index)
+			throws IllegalIndexException {
+		Index splunkIndex;
+		try {
+			splunkIndex = getIndexFromSplunk(index);
+		} catch (RuntimeException e) {
+			splunkCallFailed = true;
+			throw e;
+		}
 		if (splunkIndex == null)
 			throwAndLogNonExistingSplunkIndex(index);
 
 		return new File(splunkIndex.getThawedPathExpanded());
 	}
 
+	private Index getIndexFromSplunk(String index) {
+		try {
+			return splunkService.getIndexes().get(index);
+		} catch (HttpException e) {
+			if (e.getStatus() != 401 || splunkService.getUsername() == null)
+				throw e;
+			logger.info(will("Log in to splunk again", "reason",
+					"session has expired", "splunk service", splunkService.getHost()));
+			splunkService.login(splunkService.getUsername(),
+					splunkService.getPassword());
+			return splunkService.getIndexes().get(index);
+		}
+	}
+
+	/**
+	 * @return true if a call to splunkd has failed, other than for an index that
+	 *         does not exist, so that the session should be replaced.
+	 */
+	public boolean hasSplunkCallFailed() {
+		return splunkCallFailed;
+	}
+
+	/**
+	 * Forgets the remembered thaw location of an index, so that it's looked up
+	 * in splunk the next time.
+	 */
+	public void invalidateThawLocation(String index) {
+		thawLocations.remove(index);
+	}
+
+	/**
+	 * Forgets all remembered thaw locations.
+	 */
+	public void invalidateThawLocations() {
+		thawLocations.clear();
+	}
+
 	private void throwAndLogNonExistingSplunkIndex(String index)
 			throws IllegalIndexException {
 		logger.error(did("Attempted to get thaw location for index",
@@ -60,4 +137,15 @@ public class SplunkSettings {
 		throw new IllegalIndexException("Index " + index
 				+ " does not exist in splunk");
 	}
+
+	private static class CachedThawLocation {
+
+		private final File thawLocation;
+		private final long expiresAtMillis;
+
+		public CachedThawLocation(File thawLocation, long expiresAtMillis) {
+			this.thawLocation = thawLocation;
+			this.expiresAtMillis = expiresAtMillis;
+		}
+	}
 }
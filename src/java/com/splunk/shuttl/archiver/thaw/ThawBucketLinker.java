@@ -0,0 +1,156 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+import static java.util.Arrays.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+
+/**
+ * Thaws a bucket from an archive on the local file system without copying its
+ * bytes, when the archive is on the same file system as the thaw directory.<br/>
+ * <br/>
+ * The bucket is first cloned with a copy on write reflink, on file systems
+ * that support it, such as btrfs and XFS. Otherwise its rawdata files, which
+ * splunk never changes, are hard linked and the rest of the bucket is copied.
+ * The other files are not hard linked, since splunk may rewrite them in a
+ * thawed bucket and would then change the archived bucket too.
+ */
+public class ThawBucketLinker {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawBucketLinker.class);
+
+	/* package private for testing */static final String RAWDATA_DIRECTORY = "rawdata";
+
+	private final ShellExecutor shellExecutor;
+
+	/**
+	 * @param shellExecutor
+	 *          to run cp with, since java can't create reflinks nor hard links.
+	 */
+	public ThawBucketLinker(ShellExecutor shellExecutor) {
+		this.shellExecutor = shellExecutor;
+	}
+
+	/**
+	 * @param archivedBucket
+	 *          directory of the bucket in a local archive.
+	 * @param thawTransferLocation
+	 *          non existing directory to link the bucket to.
+	 * @return true if the bucket was linked. When false, nothing is left at the
+	 *         thaw transfer location and the bucket has to be copied.
+	 */
+	public boolean linkBucket(File archivedBucket, File thawTransferLocation) {
+		if (!archivedBucket.isDirectory() || thawTransferLocation.exists())
+			return false;
+		long start = System.currentTimeMillis();
+		if (reflink(archivedBucket, thawTransferLocation)) {
+			logLinked(archivedBucket, thawTransferLocation, "reflink", start);
+			return true;
+		}
+		FileUtils.deleteQuietly(thawTransferLocation);
+		if (hardLinkRawdata(archivedBucket, thawTransferLocation)) {
+			logLinked(archivedBucket, thawTransferLocation, "hardlink_rawdata",
+					start);
+			return true;
+		}
+		FileUtils.deleteQuietly(thawTransferLocation);
+		logger.debug(did("Tried to link archived bucket to thaw",
+				"Neither reflink nor hard link worked", "To link the bucket",
+				"archived_bucket", archivedBucket, "thaw_transfer_location",
+				thawTransferLocation));
+		return false;
+	}
+
+	private boolean reflink(File archivedBucket, File thawTransferLocation) {
+		return mkdirs(thawTransferLocation.getParentFile())
+				&& copy(asList("cp", "-R", "--reflink=always",
+						archivedBucket.getAbsolutePath(),
+						thawTransferLocation.getAbsolutePath()));
+	}
+
+	private boolean hardLinkRawdata(File archivedBucket,
+			File thawTransferLocation) {
+		if (!mkdirs(thawTransferLocation))
+			return false;
+		File[] children = archivedBucket.listFiles();
+		if (children == null)
+			return false;
+		for (File child : children)
+			if (!linkOrCopyChild(child, new File(thawTransferLocation,
+					child.getName())))
+				return false;
+		return true;
+	}
+
+	private boolean linkOrCopyChild(File child, File destination) {
+		if (child.isDirectory() && child.getName().equals(RAWDATA_DIRECTORY))
+			return copy(asList("cp", "-R", "-l", child.getAbsolutePath(),
+					destination.getAbsolutePath()));
+		try {
+			if (child.isDirectory())
+				FileUtils.copyDirectory(child, destination);
+			else
+				FileUtils.copyFile(child, destination);
+			return true;
+		} catch (IOException e) {
+			logger.debug(did("Copied file of bucket while hard linking rawdata", e,
+					"To copy the file", "file", child, "destination", destination));
+			return false;
+		}
+	}
+
+	private boolean mkdirs(File directory) {
+		return directory.isDirectory() || directory.mkdirs();
+	}
+
+	/**
+	 * cp fails when the file system can't reflink, or when hard linking across
+	 * file systems.
+	 */
+	private boolean copy(List<String> command) {
+		try {
+			return shellExecutor.executeCommand(
+					Collections.singletonMap("PATH", System.getenv("PATH")), command) == 0;
+		} catch (RuntimeException e) {
+			logger.debug(did("Executed cp", e, "cp to run", "command", command));
+			return false;
+		}
+	}
+
+	private void logLinked(File archivedBucket, File thawTransferLocation,
+			String mode, long start) {
+		logger.info(done("Linked archived bucket to thaw", "archived_bucket",
+				archivedBucket, "thaw_transfer_location", thawTransferLocation,
+				"mode", mode, "link_time_ms", System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * @return linker that runs cp found on the process' PATH.
+	 */
+	public static ThawBucketLinker create() {
+		return new ThawBucketLinker(ShellExecutor.getInstance());
+	}
+}
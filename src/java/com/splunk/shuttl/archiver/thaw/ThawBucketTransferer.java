@@ -17,11 +17,19 @@ package com.splunk.shuttl.archiver.thaw;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.FileOverwriteException;
+import com.splunk.shuttl.archiver.importexport.csv.CsvStreamingImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.util.DirectoryMover;
 
 /**
  * Transfers bucket to thaw.
@@ -31,20 +39,45 @@ public class ThawBucketTransferer {
 	private final ThawLocationProvider thawLocationProvider;
 	private final ArchiveFileSystem archiveFileSystem;
 	private final BucketFactory bucketFactory;
+	private final CsvStreamingImporter csvStreamingImporter;
+	private final boolean importCsvWhileTransferring;
+	private final ThawBucketLinker thawBucketLinker;
 
+	/**
+	 * @param csvStreamingImporter
+	 *          to import {@link BucketFormat#CSV} buckets while they are read
+	 *          from the archive.
+	 * @param importCsvWhileTransferring
+	 *          if false, {@link BucketFormat#CSV} buckets are transferred as
+	 *          they are and imported afterwards.
+	 * @param thawBucketLinker
+	 *          to link buckets from an archive on the local file system, instead
+	 *          of copying them.
+	 */
 	public ThawBucketTransferer(ThawLocationProvider thawLocationProvider,
-			ArchiveFileSystem archiveFileSystem, BucketFactory bucketFactory) {
+			ArchiveFileSystem archiveFileSystem, BucketFactory bucketFactory,
+			CsvStreamingImporter csvStreamingImporter,
+			boolean importCsvWhileTransferring, ThawBucketLinker thawBucketLinker) {
 		this.thawLocationProvider = thawLocationProvider;
 		this.archiveFileSystem = archiveFileSystem;
 		this.bucketFactory = bucketFactory;
+		this.csvStreamingImporter = csvStreamingImporter;
+		this.importCsvWhileTransferring = importCsvWhileTransferring;
+		this.thawBucketLinker = thawBucketLinker;
 	}
 
 	/**
 	 * Transfers an archived bucket in the thaw directory of the bucket's index.
+	 * {@link BucketFormat#CSV} buckets are imported during the transfer, if
+	 * configured to.
 	 * 
-	 * @return the transferred bucket.
+	 * @return the transferred bucket, in {@link BucketFormat#SPLUNK_BUCKET} if it
+	 *         was imported during the transfer.
 	 */
 	public Bucket transferBucketToThaw(Bucket bucket) throws IOException {
+		if (importCsvWhileTransferring
+				&& BucketFormat.CSV.equals(bucket.getFormat()))
+			return transferCsvBucketToThawImported(bucket);
 		File thawTransferLocation = thawBucketToTransferLocation(bucket);
 		File bucketsThawLocation = moveTransferedBucketToThawLocation(bucket,
 				thawTransferLocation);
@@ -56,15 +89,70 @@ public class ThawBucketTransferer {
 			throws FileNotFoundException, FileOverwriteException, IOException {
 		File thawTransferLocation = thawLocationProvider
 				.getThawTransferLocation(bucket);
-		archiveFileSystem.getFile(thawTransferLocation, bucket.getURI());
+		if (!isUnpackedToTransferLocation(bucket, thawTransferLocation)
+				&& !isLinkedToTransferLocation(bucket, thawTransferLocation))
+			archiveFileSystem.getFile(thawTransferLocation, bucket.getURI());
 		return thawTransferLocation;
 	}
 
+	/**
+	 * Only {@link BucketFormat#SPLUNK_BUCKET} buckets are packed. They are
+	 * unpacked without first asking the archive if they are packed, since the
+	 * archive has no packed directory to unpack when they aren't.
+	 */
+	private boolean isUnpackedToTransferLocation(Bucket bucket,
+			File thawTransferLocation) throws FileOverwriteException, IOException {
+		if (!BucketFormat.SPLUNK_BUCKET.equals(bucket.getFormat()))
+			return false;
+		try {
+			archiveFileSystem.getPackedDirectory(thawTransferLocation,
+					bucket.getURI());
+			return true;
+		} catch (FileNotFoundException e) {
+			return false;
+		}
+	}
+
+	private boolean isLinkedToTransferLocation(Bucket bucket,
+			File thawTransferLocation) {
+		URI uri = bucket.getURI();
+		return "file".equals(uri.getScheme())
+				&& thawBucketLinker.linkBucket(new File(uri.getPath()),
+						thawTransferLocation);
+	}
+
+	private Bucket transferCsvBucketToThawImported(Bucket bucket)
+			throws IOException {
+		File thawTransferLocation = thawLocationProvider
+				.getThawTransferLocation(bucket);
+		InputStream csvStream = archiveFileSystem
+				.openFile(getArchivedCsvFile(bucket));
+		try {
+			csvStreamingImporter.importBucketFromCsvStream(bucket.getIndex(),
+					thawTransferLocation, csvStream);
+		} finally {
+			IOUtils.closeQuietly(csvStream);
+		}
+		File bucketsThawLocation = moveTransferedBucketToThawLocation(bucket,
+				thawTransferLocation);
+		return bucketFactory.createWithIndexDirectoryAndSize(bucket.getIndex(),
+				bucketsThawLocation, BucketFormat.SPLUNK_BUCKET, bucket.getSize());
+	}
+
+	private URI getArchivedCsvFile(Bucket bucket) throws IOException {
+		for (URI file : archiveFileSystem.listPath(bucket.getURI()))
+			if (FilenameUtils.getExtension(file.getPath()).equals("csv"))
+				return file;
+		throw new FileNotFoundException("No csv file in archived bucket: "
+				+ bucket.getURI());
+	}
+
 	private File moveTransferedBucketToThawLocation(Bucket bucket,
 			File thawTransferLocation) throws IOException {
 		File bucketsThawLocation = thawLocationProvider
 				.getLocationInThawForBucket(bucket);
-		thawTransferLocation.renameTo(bucketsThawLocation);
+		DirectoryMover.getSharedInstance().moveDirectory(thawTransferLocation,
+				bucketsThawLocation);
 		return bucketsThawLocation;
 	}
 }
@@ -0,0 +1,295 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Thaws a range of buckets in the background and keeps track of how far it
+ * has come, so that the progress can be polled while the job runs.
+ */
+public class ThawJob implements ThawListener {
+
+	private static final Logger logger = Logger.getLogger(ThawJob.class);
+
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED
+	}
+
+	public enum BucketState {
+		QUEUED, TRANSFERRING, IMPORTING, DONE, FAILED
+	}
+
+	private final String id;
+	private final String index;
+	private final Date earliest;
+	private final Date latest;
+	private final Map<String, BucketProgress> buckets;
+
+	private State state;
+	private String failureReason;
+	private long startedMillis;
+	private long finishedMillis;
+
+	public ThawJob(String id, String index, Date earliest, Date latest) {
+		this.id = id;
+		this.index = index;
+		this.earliest = earliest;
+		this.latest = latest;
+		this.buckets = new LinkedHashMap<String, BucketProgress>();
+		this.state = State.QUEUED;
+	}
+
+	/**
+	 * Thaws the job's buckets with a thawer from the factory. Returns when all
+	 * buckets are thawed or failed. The job fails if the thawer can't be
+	 * created.
+	 */
+	public void run(Callable<BucketThawer> thawerFactory) {
+		started();
+		try {
+			thawerFactory.call().thawBuckets(index, earliest, latest, this);
+			finished(State.DONE, null);
+		} catch (Exception e) {
+			logger.error(did("Ran thaw job", e, "to thaw buckets", "job_id", id,
+					"index", index));
+			finished(State.FAILED, e.getClass().getSimpleName());
+		}
+	}
+
+	private synchronized void started() {
+		state = State.RUNNING;
+		startedMillis = System.currentTimeMillis();
+	}
+
+	private synchronized void finished(State endState, String reason) {
+		state = endState;
+		failureReason = reason;
+		finishedMillis = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void bucketQueued(Bucket bucket) {
+		buckets.put(bucket.getName(), new BucketProgress(bucket));
+	}
+
+	@Override
+	public synchronized void bucketAlreadyThawed(Bucket bucket) {
+		setBucketState(bucket, BucketState.DONE, null);
+		buckets.get(bucket.getName()).alreadyThawed = true;
+	}
+
+	@Override
+	public void bucketTransferring(Bucket bucket) {
+		setBucketState(bucket, BucketState.TRANSFERRING, null);
+	}
+
+	@Override
+	public void bucketImporting(Bucket bucket) {
+		setBucketState(bucket, BucketState.IMPORTING, null);
+	}
+
+	@Override
+	public void bucketThawed(Bucket bucket, Bucket thawedBucket) {
+		setBucketState(bucket, BucketState.DONE, null);
+	}
+
+	@Override
+	public void bucketFailed(Bucket bucket, Exception exception) {
+		setBucketState(bucket, BucketState.FAILED, exception.getClass()
+				.getSimpleName());
+	}
+
+	private synchronized void setBucketState(Bucket bucket,
+			BucketState bucketState, String reason) {
+		BucketProgress progress = buckets.get(bucket.getName());
+		if (progress == null) {
+			progress = new BucketProgress(bucket);
+			buckets.put(bucket.getName(), progress);
+		}
+		progress.state = bucketState;
+		progress.reason = reason;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getIndex() {
+		return index;
+	}
+
+	public Date getEarliest() {
+		return earliest;
+	}
+
+	public Date getLatest() {
+		return latest;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return true if the job is neither queued nor running.
+	 */
+	public synchronized boolean isFinished() {
+		return state == State.DONE || state == State.FAILED;
+	}
+
+	/**
+	 * @return why the job failed, or null if it didn't.
+	 */
+	public synchronized String getFailureReason() {
+		return failureReason;
+	}
+
+	/**
+	 * @return copy of the progress of each bucket, in the order they were
+	 *         queued.
+	 */
+	public synchronized List<BucketProgress> getBucketProgress() {
+		List<BucketProgress> copy = new ArrayList<BucketProgress>();
+		for (BucketProgress progress : buckets.values())
+			copy.add(progress.copy());
+		return copy;
+	}
+
+	/**
+	 * @return sum of the archived sizes of the buckets that are done. Buckets
+	 *         without known sizes or that were already thawed are not counted.
+	 */
+	public synchronized long getBytesMoved() {
+		long bytes = 0;
+		for (BucketProgress progress : buckets.values())
+			if (progress.state == BucketState.DONE && !progress.alreadyThawed
+					&& progress.size != null)
+				bytes += progress.size;
+		return bytes;
+	}
+
+	/**
+	 * @return estimated milliseconds until the job is finished, or null if
+	 *         there's nothing to estimate from yet. The estimate is based on
+	 *         bytes when the sizes of all buckets are known, otherwise on the
+	 *         number of buckets. Buckets that were already thawed are left out,
+	 *         since they took no time.
+	 */
+	public synchronized Long getEtaMillis() {
+		if (state == State.DONE || state == State.FAILED)
+			return 0L;
+		if (state != State.RUNNING)
+			return null;
+		long totalBytes = 0;
+		long finishedBytes = 0;
+		int total = 0;
+		int finished = 0;
+		boolean allSizesKnown = true;
+		for (BucketProgress progress : buckets.values()) {
+			if (progress.alreadyThawed)
+				continue;
+			total++;
+			boolean isFinished = progress.state == BucketState.DONE
+					|| progress.state == BucketState.FAILED;
+			if (isFinished)
+				finished++;
+			if (progress.size == null) {
+				allSizesKnown = false;
+			} else {
+				totalBytes += progress.size;
+				if (isFinished)
+					finishedBytes += progress.size;
+			}
+		}
+		if (finished == 0)
+			return null;
+		long elapsed = System.currentTimeMillis() - startedMillis;
+		if (allSizesKnown && finishedBytes > 0)
+			return elapsed * (totalBytes - finishedBytes) / finishedBytes;
+		return elapsed * (total - finished) / finished;
+	}
+
+	/**
+	 * @return milliseconds the job has been running, or ran if it's finished.
+	 */
+	public synchronized long getElapsedMillis() {
+		if (startedMillis == 0)
+			return 0;
+		long end = finishedMillis == 0 ? System.currentTimeMillis()
+				: finishedMillis;
+		return end - startedMillis;
+	}
+
+	/**
+	 * Progress of a single bucket in a {@link ThawJob}.
+	 */
+	public static class BucketProgress {
+
+		public final String bucketName;
+		public final Long size;
+		private BucketState state;
+		private String reason;
+		private boolean alreadyThawed;
+
+		private BucketProgress(Bucket bucket) {
+			this(bucket.getName(), bucket.getSize(), BucketState.QUEUED, null,
+					false);
+		}
+
+		private BucketProgress(String bucketName, Long size, BucketState state,
+				String reason, boolean alreadyThawed) {
+			this.bucketName = bucketName;
+			this.size = size;
+			this.state = state;
+			this.reason = reason;
+			this.alreadyThawed = alreadyThawed;
+		}
+
+		public BucketState getState() {
+			return state;
+		}
+
+		/**
+		 * @return why the bucket failed to thaw, or null if it didn't.
+		 */
+		public String getReason() {
+			return reason;
+		}
+
+		/**
+		 * @return true if the bucket was done without being thawed by the job.
+		 */
+		public boolean isAlreadyThawed() {
+			return alreadyThawed;
+		}
+
+		private BucketProgress copy() {
+			return new BucketProgress(bucketName, size, state, reason,
+					alreadyThawed);
+		}
+	}
+}
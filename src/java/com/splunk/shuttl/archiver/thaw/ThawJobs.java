@@ -0,0 +1,163 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.util.DaemonThreadFactory;
+
+/**
+ * Runs {@link ThawJob}s on a fixed number of threads with a bounded queue and
+ * remembers them by id, so that their progress can be looked up. Only the
+ * latest finished jobs are remembered.
+ */
+public class ThawJobs {
+
+	private static final Logger logger = Logger.getLogger(ThawJobs.class);
+
+	public static final int QUEUE_CAPACITY = 20;
+	public static final int MAX_FINISHED_JOBS = 100;
+
+	private final ThreadPoolExecutor executor;
+	private final int maxFinishedJobs;
+	private final Map<String, ThawJob> jobs;
+
+	/**
+	 * @param executor
+	 *          which runs the jobs and rejects jobs when it's full.
+	 * @param maxFinishedJobs
+	 *          number of finished jobs that are remembered.
+	 */
+	public ThawJobs(ThreadPoolExecutor executor, int maxFinishedJobs) {
+		this.executor = executor;
+		this.maxFinishedJobs = maxFinishedJobs;
+		this.jobs = new LinkedHashMap<String, ThawJob>();
+	}
+
+	/**
+	 * Queues a job that thaws the buckets in an index within a time range.
+	 * 
+	 * @return the queued job.
+	 * @throws ThawJobQueueFullException
+	 *           if the queue has no room for the job.
+	 */
+	public ThawJob submit(String index, Date earliest, Date latest) {
+		final ThawJob job = new ThawJob(UUID.randomUUID().toString(), index,
+				earliest, latest);
+		addJob(job);
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					job.run(new Callable<BucketThawer>() {
+
+						@Override
+						public BucketThawer call() {
+							return createThawer();
+						}
+					});
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			removeJob(job);
+			logger.warn(warn("Queued thaw job", "thaw job queue was full",
+					"job will not be run", "index", index, "queue_depth", executor
+							.getQueue().size()));
+			throw new ThawJobQueueFullException(e);
+		}
+		logger.info(done("Queued thaw job", "job_id", job.getId(), "index", index,
+				"earliest", earliest, "latest", latest));
+		return job;
+	}
+
+	/* package private for testing */BucketThawer createThawer() {
+		return BucketThawerFactory.createDefaultThawer();
+	}
+
+	private synchronized void addJob(ThawJob job) {
+		jobs.put(job.getId(), job);
+		forgetOldestFinishedJobs();
+	}
+
+	private synchronized void removeJob(ThawJob job) {
+		jobs.remove(job.getId());
+	}
+
+	private void forgetOldestFinishedJobs() {
+		int finished = 0;
+		for (ThawJob job : jobs.values())
+			if (job.isFinished())
+				finished++;
+		for (Iterator<ThawJob> it = jobs.values().iterator(); it.hasNext()
+				&& finished > maxFinishedJobs;)
+			if (it.next().isFinished()) {
+				it.remove();
+				finished--;
+			}
+	}
+
+	/**
+	 * @return job with the id, or null if there's no such job or it has been
+	 *         forgotten.
+	 */
+	public synchronized ThawJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * @return number of jobs waiting in the queue.
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return {@link ThawJobs} that runs {@code concurrentJobs} jobs at a time.
+	 */
+	public static ThawJobs create(int concurrentJobs) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrentJobs,
+				concurrentJobs, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+				new DaemonThreadFactory("shuttl-thaw-job"));
+		return new ThawJobs(executor, MAX_FINISHED_JOBS);
+	}
+
+	private static ThawJobs sharedInstance;
+
+	/**
+	 * @return jobs shared by the whole server, configured with
+	 *         {@link ArchiveConfiguration#getSharedInstance()}.
+	 */
+	public static synchronized ThawJobs getSharedInstance() {
+		if (sharedInstance == null)
+			sharedInstance = create(ArchiveConfiguration.getSharedInstance()
+					.getThawJobs());
+		return sharedInstance;
+	}
+}
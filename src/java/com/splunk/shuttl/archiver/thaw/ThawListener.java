@@ -0,0 +1,60 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Gets told how the thawing of each bucket progresses. Can be called from
+ * many threads at once when buckets are thawed in parallel.
+ */
+public interface ThawListener {
+
+	/**
+	 * The bucket is in the thawed range and will be thawed, unless it's already
+	 * thawed. Called for every bucket before any bucket is thawed.
+	 */
+	void bucketQueued(Bucket bucket);
+
+	/**
+	 * The queued bucket was already thawed, so it was not transferred.
+	 */
+	void bucketAlreadyThawed(Bucket bucket);
+
+	/**
+	 * The bucket is being transferred from the archive.
+	 */
+	void bucketTransferring(Bucket bucket);
+
+	/**
+	 * The transferred bucket is being imported to
+	 * {@link com.splunk.shuttl.archiver.archive.BucketFormat#SPLUNK_BUCKET}.
+	 */
+	void bucketImporting(Bucket bucket);
+
+	/**
+	 * @param bucket
+	 *          that was queued.
+	 * @param thawedBucket
+	 *          the bucket in thaw.
+	 */
+	void bucketThawed(Bucket bucket, Bucket thawedBucket);
+
+	/**
+	 * @param bucket
+	 *          that was queued.
+	 */
+	void bucketFailed(Bucket bucket, Exception exception);
+}
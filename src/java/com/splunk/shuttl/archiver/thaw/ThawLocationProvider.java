@@ -19,6 +19,7 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 import java.io.File;
 import java.io.IOException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.LocalFileSystemConstants;
@@ -29,8 +30,16 @@ import com.splunk.shuttl.archiver.model.Bucket;
  */
 public class ThawLocationProvider {
 
+	/**
+	 * Name of the directory in each thaw directory where buckets are
+	 * transferred, so that moving them into thaw is a rename on the same file
+	 * system.
+	 */
+	public static final String TRANSFERS_DIRECTORY_NAME = ".shuttl-thaw-transfers";
+
 	private final SplunkSettings splunkSettings;
 	private final File transferLocation;
+	private final String transfersDirectoryName;
 
 	/**
 	 * @param splunkSettings
@@ -40,8 +49,20 @@ public class ThawLocationProvider {
 	 */
 	public ThawLocationProvider(SplunkSettings splunkSettings,
 			File transferLocation) {
+		this(splunkSettings, transferLocation, null);
+	}
+
+	/**
+	 * @param transfersDirectoryName
+	 *          when not null, buckets are transferred to a directory with this
+	 *          name in the thaw directory of their index. The transferLocation is
+	 *          only used when that directory can't be created.
+	 */
+	public ThawLocationProvider(SplunkSettings splunkSettings,
+			File transferLocation, String transfersDirectoryName) {
 		this.splunkSettings = splunkSettings;
 		this.transferLocation = transferLocation;
+		this.transfersDirectoryName = transfersDirectoryName;
 	}
 
 	/**
@@ -59,20 +80,39 @@ public class ThawLocationProvider {
 	 * @param bucket
 	 *          to get transfer location for.
 	 * @return non existing local where the bucket can be transfered.
+	 * @throws IOException
+	 *           if the thaw directory of the bucket can not be found.
 	 */
-	public File getThawTransferLocation(Bucket bucket) {
-		File file = new File(transferLocation, bucket.getName());
+	public File getThawTransferLocation(Bucket bucket) throws IOException {
+		File file = new File(getTransfersDirectory(bucket), bucket.getName());
 		if (file.exists())
 			deleteFile(file);
 		return file;
 	}
 
+	private File getTransfersDirectory(Bucket bucket) throws IOException {
+		if (transfersDirectoryName == null)
+			return transferLocation;
+		File transfersDirectory = new File(splunkSettings.getThawLocation(bucket
+				.getIndex()), transfersDirectoryName);
+		if (transfersDirectory.isDirectory() || transfersDirectory.mkdirs())
+			return transfersDirectory;
+		Logger.getLogger(getClass()).warn(
+				warn("Created transfers directory in thaw", "Could not create it",
+						"Will transfer to the shared transfers directory, "
+								+ "which may need a copy to get into thaw", "directory",
+						transfersDirectory, "transfer_location", transferLocation));
+		return transferLocation;
+	}
+
 	private void deleteFile(File file) {
-		boolean wasDeleted = file.delete();
-		if (!wasDeleted)
+		try {
+			FileUtils.forceDelete(file);
+		} catch (IOException e) {
 			Logger.getLogger(getClass()).warn(
-					warn("Tried deleting a file", "Could not delete it",
-							"Will not do anything", "file", file));
+					warn("Tried deleting a file", e, "Will not do anything", "file",
+							file));
+		}
 	}
 
 	/**
@@ -81,7 +121,8 @@ public class ThawLocationProvider {
 	 */
 	public static ThawLocationProvider create(SplunkSettings splunkSettings) {
 		return new ThawLocationProvider(splunkSettings,
-				LocalFileSystemConstants.getThawTransfersDirectory());
+				LocalFileSystemConstants.getThawTransfersDirectory(),
+				TRANSFERS_DIRECTORY_NAME);
 	}
 
 }
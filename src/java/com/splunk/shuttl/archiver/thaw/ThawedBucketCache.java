@@ -0,0 +1,222 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.bucketlock.BucketLock;
+import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Treats the thaw directory of each index as a cache with a disk budget.
+ * Thawed buckets are remembered as used by the modification time of their
+ * directory, so that the least recently used ones can be deleted when a new
+ * thaw would go over the budget. <br/>
+ * A cache is made for each thaw request. The size of each thawed directory is
+ * measured once per request, and measured again only if the directory has
+ * been used or changed since.
+ */
+public class ThawedBucketCache {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawedBucketCache.class);
+
+	private final ThawLocationProvider thawLocationProvider;
+	private final BucketLocker thawBucketLocker;
+	private final long budgetBytesPerIndex;
+	private final Map<File, ThawedDirectory> measuredDirectories;
+
+	/**
+	 * @param thawLocationProvider
+	 *          for finding the thaw directory of an index.
+	 * @param thawBucketLocker
+	 *          to not delete buckets that are being thawed.
+	 * @param budgetBytesPerIndex
+	 *          bytes of thawed buckets that each index can keep.
+	 */
+	public ThawedBucketCache(ThawLocationProvider thawLocationProvider,
+			BucketLocker thawBucketLocker, long budgetBytesPerIndex) {
+		this.thawLocationProvider = thawLocationProvider;
+		this.thawBucketLocker = thawBucketLocker;
+		this.budgetBytesPerIndex = budgetBytesPerIndex;
+		this.measuredDirectories = new HashMap<File, ThawedDirectory>();
+	}
+
+	/**
+	 * Marks a thawed bucket as used now, so that it's the last to be deleted.
+	 */
+	public void bucketUsed(Bucket bucket) {
+		try {
+			File thawedBucket = thawLocationProvider
+					.getLocationInThawForBucket(bucket);
+			if (thawedBucket.exists()
+					&& !thawedBucket.setLastModified(System.currentTimeMillis()))
+				logger.debug(warn("Marked thawed bucket as used",
+						"could not set modification time", "bucket may be "
+								+ "deleted before more recently used buckets", "bucket",
+						bucket));
+		} catch (IOException e) {
+			logger.warn(warn("Marked thawed bucket as used", e,
+					"bucket may be deleted before more recently used buckets",
+					"bucket", bucket));
+		}
+	}
+
+	/**
+	 * Deletes the least recently used thawed buckets of the bucket's index,
+	 * until there's room for the bucket within the budget. Buckets that are
+	 * being thawed are not deleted. <br/>
+	 * The room made is the bucket's archived size, which is not the size it
+	 * gets in thaw when it's imported from a .csv format. Thawed buckets are
+	 * counted by their size on disk, so the budget is corrected the next time
+	 * room is made.
+	 */
+	public synchronized void makeRoomForBucket(Bucket bucket) {
+		File thawDirectory;
+		try {
+			thawDirectory = thawLocationProvider.getLocationInThawForBucket(bucket)
+					.getParentFile();
+		} catch (IOException e) {
+			logger.warn(warn("Made room for bucket in thaw", e,
+					"will not delete any thawed buckets", "bucket", bucket));
+			return;
+		}
+		File[] thawedBuckets = thawDirectory.listFiles();
+		if (thawedBuckets == null)
+			return;
+
+		long bucketSize = bucket.getSize() == null ? 0 : bucket.getSize();
+		List<ThawedDirectory> directories = new ArrayList<ThawedDirectory>();
+		long usedBytes = 0;
+		for (File dir : thawedBuckets)
+			if (isThawedBucket(dir) && !dir.getName().equals(bucket.getName())) {
+				ThawedDirectory thawed = measure(dir);
+				directories.add(thawed);
+				usedBytes += thawed.size;
+			}
+		Collections.sort(directories, new LeastRecentlyUsedFirst());
+
+		for (ThawedDirectory thawed : directories) {
+			if (usedBytes + bucketSize <= budgetBytesPerIndex)
+				break;
+			if (evict(bucket.getIndex(), thawed.directory)) {
+				measuredDirectories.remove(thawed.directory);
+				usedBytes -= thawed.size;
+			}
+		}
+		if (usedBytes + bucketSize > budgetBytesPerIndex)
+			logger.warn(warn("Made room for bucket in thaw",
+					"thawed buckets are still over budget", "will thaw anyway",
+					"bucket", bucket, "used_bytes", usedBytes, "budget_bytes",
+					budgetBytesPerIndex));
+	}
+
+	private ThawedDirectory measure(File directory) {
+		ThawedDirectory measured = measuredDirectories.get(directory);
+		if (measured == null || measured.lastUsed != directory.lastModified()) {
+			measured = new ThawedDirectory(directory);
+			measuredDirectories.put(directory, measured);
+		}
+		return measured;
+	}
+
+	private boolean isThawedBucket(File file) {
+		return file.isDirectory() && !file.getName().startsWith(".");
+	}
+
+	private boolean evict(String index, File directory) {
+		BucketLock lock;
+		try {
+			lock = thawBucketLocker.getLockForBucket(new Bucket(index, directory));
+		} catch (FileNotFoundException e) {
+			return false;
+		}
+		try {
+			if (!lock.tryLockExclusive())
+				return false;
+			FileUtils.deleteDirectory(directory);
+			logger.info(done("Evicted least recently used thawed bucket",
+					"bucket", directory, "last_used", directory.lastModified()));
+			return true;
+		} catch (IOException e) {
+			logger.warn(warn("Evicted thawed bucket", e, "bucket is kept",
+					"bucket", directory));
+			return false;
+		} finally {
+			lock.closeLock();
+		}
+	}
+
+	private static class ThawedDirectory {
+
+		private final File directory;
+		private final long lastUsed;
+		private final long size;
+
+		public ThawedDirectory(File directory) {
+			this.directory = directory;
+			this.lastUsed = directory.lastModified();
+			this.size = FileUtils.sizeOfDirectory(directory);
+		}
+	}
+
+	private static class LeastRecentlyUsedFirst implements
+			Comparator<ThawedDirectory> {
+
+		@Override
+		public int compare(ThawedDirectory a, ThawedDirectory b) {
+			return a.lastUsed < b.lastUsed ? -1 : a.lastUsed == b.lastUsed ? 0 : 1;
+		}
+	}
+
+	/**
+	 * Cache for when thawed buckets are kept until someone deletes them.
+	 */
+	private static class UnlimitedThawedBucketCache extends ThawedBucketCache {
+
+		public UnlimitedThawedBucketCache() {
+			super(null, null, Long.MAX_VALUE);
+		}
+
+		@Override
+		public void bucketUsed(Bucket bucket) {
+		}
+
+		@Override
+		public void makeRoomForBucket(Bucket bucket) {
+		}
+	}
+
+	/**
+	 * @return cache without a budget, which never deletes thawed buckets.
+	 */
+	public static ThawedBucketCache unlimited() {
+		return new UnlimitedThawedBucketCache();
+	}
+}
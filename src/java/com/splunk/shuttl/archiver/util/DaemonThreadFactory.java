@@ -0,0 +1,58 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads, so that Shuttl's pools never keep the
+ * server from shutting down and their threads can be told apart in a thread
+ * dump.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final String namePrefix;
+	private final int priority;
+	private final AtomicInteger threadNumber;
+
+	/**
+	 * @param namePrefix
+	 *          of the thread names, which are followed by the thread number.
+	 */
+	public DaemonThreadFactory(String namePrefix) {
+		this(namePrefix, Thread.NORM_PRIORITY);
+	}
+
+	/**
+	 * @param priority
+	 *          of the created threads.
+	 * @see #DaemonThreadFactory(String)
+	 */
+	public DaemonThreadFactory(String namePrefix, int priority) {
+		this.namePrefix = namePrefix;
+		this.priority = priority;
+		this.threadNumber = new AtomicInteger(1);
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread thread = new Thread(r, namePrefix + "-"
+				+ threadNumber.getAndIncrement());
+		thread.setDaemon(true);
+		thread.setPriority(priority);
+		return thread;
+	}
+}
@@ -0,0 +1,162 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.util;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Moves directories by renaming them. When a directory can't be renamed, for
+ * example because the destination is on another file system, its files are
+ * copied in parallel and the source is deleted afterwards.
+ */
+public class DirectoryMover {
+
+	private static final Logger logger = Logger.getLogger(DirectoryMover.class);
+
+	public static final int COPY_THREADS = 4;
+
+	private static final DirectoryMover sharedInstance = new DirectoryMover(
+			Executors.newFixedThreadPool(COPY_THREADS, new DaemonThreadFactory(
+					"shuttl-copy")));
+
+	private final ExecutorService copyExecutor;
+
+	/**
+	 * @param copyExecutor
+	 *          to copy files on when directories can't be renamed.
+	 */
+	public DirectoryMover(ExecutorService copyExecutor) {
+		this.copyExecutor = copyExecutor;
+	}
+
+	/**
+	 * Moves the source directory to the destination, which must not exist or be
+	 * an empty directory.
+	 * 
+	 * @throws IOException
+	 *           if the directory could neither be renamed nor copied. The
+	 *           source is left as it was.
+	 */
+	public void moveDirectory(File source, File destination) throws IOException {
+		if (destination.exists() && !isEmptyDirectory(destination))
+			throw new IOException("Cannot move directory: " + source
+					+ ", because destination is not empty: " + destination);
+		if (rename(source, destination))
+			return;
+		if (!source.isDirectory())
+			throw new IOException("Cannot move directory: " + source
+					+ ", because it is not a directory");
+
+		long start = System.currentTimeMillis();
+		logger.info(will("Copy directory, since it could not be renamed",
+				"source", source, "destination", destination));
+		try {
+			copyDirectory(source, destination);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(destination);
+			throw e;
+		}
+		FileUtils.deleteDirectory(source);
+		logger.info(done("Copied directory", "source", source, "destination",
+				destination, "copy_time_ms", System.currentTimeMillis() - start));
+	}
+
+	private boolean isEmptyDirectory(File file) {
+		String[] children = file.list();
+		return children != null && children.length == 0;
+	}
+
+	/* package private for testing */boolean rename(File source,
+			File destination) {
+		return source.renameTo(destination);
+	}
+
+	private void copyDirectory(File source, File destination)
+			throws IOException {
+		List<Future<Void>> copies = new ArrayList<Future<Void>>();
+		try {
+			submitCopies(source, destination, copies);
+			for (Future<Void> copy : copies)
+				copy.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while copying directory: " + source);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			for (Future<Void> copy : copies)
+				copy.cancel(true);
+		}
+	}
+
+	private void submitCopies(File source, File destination,
+			List<Future<Void>> copies) throws IOException {
+		if (!destination.isDirectory() && !destination.mkdirs())
+			throw new IOException("Could not create directory: " + destination);
+		File[] children = source.listFiles();
+		if (children == null)
+			throw new IOException("Could not list directory: " + source);
+		for (File child : children) {
+			File target = new File(destination, child.getName());
+			if (child.isDirectory())
+				submitCopies(child, target, copies);
+			else
+				copies.add(copyExecutor.submit(new CopyFile(child, target)));
+		}
+	}
+
+	private static class CopyFile implements Callable<Void> {
+
+		private final File source;
+		private final File destination;
+
+		public CopyFile(File source, File destination) {
+			this.source = source;
+			this.destination = destination;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			FileUtils.copyFile(source, destination);
+			return null;
+		}
+	}
+
+	/**
+	 * @return mover that copies on {@link #COPY_THREADS} threads shared by the
+	 *         whole process.
+	 */
+	public static DirectoryMover getSharedInstance() {
+		return sharedInstance;
+	}
+}
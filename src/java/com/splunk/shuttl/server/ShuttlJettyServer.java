@@ -23,6 +23,9 @@ import org.eclipse.jetty.webapp.WebAppContext;
 import org.eclipse.jetty.xml.XmlConfiguration;
 
 import com.splunk.shuttl.archiver.StartUpCleaner;
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.archive.SpoolDirectoryPoller;
+import com.splunk.shuttl.archiver.catalog.ArchiveTimeIndex;
 import com.splunk.shuttl.server.mbeans.ShuttlServer;
 
 /**
@@ -57,6 +60,10 @@ public class ShuttlJettyServer {
 			}
 			StartUpCleaner.create().clean();
 			server.start();
+			ArchiveTimeIndex.warmSharedInstanceInBackground(ArchiveConfiguration
+					.getSharedInstance());
+			SpoolDirectoryPoller.startIfConfigured(ArchiveConfiguration
+					.getSharedInstance());
 		} catch (Exception e) {
 			logger.error("Error during startup", e);
 			System.exit(1);
@@ -20,6 +20,9 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
+import com.splunk.shuttl.archiver.archive.BucketArchiverExecutor;
+import com.splunk.shuttl.archiver.archive.BucketTrash;
+import com.splunk.shuttl.archiver.thaw.BucketThawerFactory;
 import com.splunk.shuttl.server.mbeans.util.JAXBUtils;
 import com.splunk.shuttl.server.mbeans.util.MBeanUtils;
 import com.splunk.shuttl.server.model.ArchiverConf;
@@ -132,6 +135,156 @@ public class ShuttlArchiver implements ShuttlArchiverMBean {
 		conf.setArchiverRootURI(uri);
 	}
 
+	@Override
+	public Integer getArchiverThreads() {
+		return conf.getArchiverThreads();
+	}
+
+	@Override
+	public void setArchiverThreads(Integer threads) {
+		conf.setArchiverThreads(threads);
+	}
+
+	@Override
+	public Integer getArchiverQueueCapacity() {
+		return conf.getArchiverQueueCapacity();
+	}
+
+	@Override
+	public void setArchiverQueueCapacity(Integer capacity) {
+		conf.setArchiverQueueCapacity(capacity);
+	}
+
+	@Override
+	public Boolean getCsvStreamingExport() {
+		return conf.getCsvStreamingExport();
+	}
+
+	@Override
+	public void setCsvStreamingExport(Boolean csvStreamingExport) {
+		conf.setCsvStreamingExport(csvStreamingExport);
+	}
+
+	@Override
+	public Integer getUploadStreams() {
+		return conf.getUploadStreams();
+	}
+
+	@Override
+	public void setUploadStreams(Integer uploadStreams) {
+		conf.setUploadStreams(uploadStreams);
+	}
+
+	@Override
+	public Integer getUploadBufferSize() {
+		return conf.getUploadBufferSize();
+	}
+
+	@Override
+	public void setUploadBufferSize(Integer uploadBufferSize) {
+		conf.setUploadBufferSize(uploadBufferSize);
+	}
+
+	@Override
+	public Boolean getPackBuckets() {
+		return conf.getPackBuckets();
+	}
+
+	@Override
+	public void setPackBuckets(Boolean packBuckets) {
+		conf.setPackBuckets(packBuckets);
+	}
+
+	@Override
+	public Boolean getCatalogEnabled() {
+		return conf.getCatalogEnabled();
+	}
+
+	@Override
+	public void setCatalogEnabled(Boolean catalogEnabled) {
+		conf.setCatalogEnabled(catalogEnabled);
+	}
+
+	@Override
+	public Integer getThawThreads() {
+		return conf.getThawThreads();
+	}
+
+	@Override
+	public void setThawThreads(Integer thawThreads) {
+		conf.setThawThreads(thawThreads);
+	}
+
+	@Override
+	public Boolean getCsvStreamingThaw() {
+		return conf.getCsvStreamingThaw();
+	}
+
+	@Override
+	public void setCsvStreamingThaw(Boolean csvStreamingThaw) {
+		conf.setCsvStreamingThaw(csvStreamingThaw);
+	}
+
+	@Override
+	public Integer getThawJobs() {
+		return conf.getThawJobs();
+	}
+
+	@Override
+	public void setThawJobs(Integer thawJobs) {
+		conf.setThawJobs(thawJobs);
+	}
+
+	@Override
+	public Long getThawCacheBudgetBytes() {
+		return conf.getThawCacheBudgetBytes();
+	}
+
+	@Override
+	public void setThawCacheBudgetBytes(Long thawCacheBudgetBytes) {
+		conf.setThawCacheBudgetBytes(thawCacheBudgetBytes);
+	}
+
+	@Override
+	public String getSpoolDirectory() {
+		return conf.getSpoolDirectory();
+	}
+
+	@Override
+	public void setSpoolDirectory(String spoolDirectory) {
+		conf.setSpoolDirectory(spoolDirectory);
+	}
+
+	@Override
+	public int getArchiveQueueDepth() {
+		return BucketArchiverExecutor.getSharedInstance().getQueueDepth();
+	}
+
+	@Override
+	public int getArchivesInFlight() {
+		return BucketArchiverExecutor.getSharedInstance().getInFlight();
+	}
+
+	@Override
+	public long getRejectedArchiveRequests() {
+		return BucketArchiverExecutor.getSharedInstance().getRejectedCount();
+	}
+
+	@Override
+	public long getTrashBytes() {
+		return BucketTrash.getSharedInstance().getTrashBytes();
+	}
+
+	@Override
+	public long getTrashBuckets() {
+		return BucketTrash.getSharedInstance().getTrashBuckets();
+	}
+
+	@Override
+	public void invalidateSplunkSettings() {
+		BucketThawerFactory.invalidateSharedSplunkSettings();
+	}
+
 	@Override
 	public void addIndex(String name) {
 		if (conf.getIndexNames() == null)
@@ -57,4 +57,38 @@ public interface ShuttlArchiverMBean extends ArchiverConfiguration {
 	 * @param name
 	 */
 	public void deleteIndex(String name);
+
+	/**
+	 * @return number of buckets waiting in the archive queue.
+	 */
+	public int getArchiveQueueDepth();
+
+	/**
+	 * @return number of buckets that are currently being archived.
+	 */
+	public int getArchivesInFlight();
+
+	/**
+	 * @return number of archive requests that were rejected because the archive
+	 *         queue was full.
+	 */
+	public long getRejectedArchiveRequests();
+
+	/**
+	 * @return bytes of archived buckets that are waiting to be deleted from the
+	 *         local file system.
+	 */
+	public long getTrashBytes();
+
+	/**
+	 * @return number of archived buckets that are waiting to be deleted from
+	 *         the local file system.
+	 */
+	public long getTrashBuckets();
+
+	/**
+	 * Forgets the cached splunk session and index thaw locations, so that they
+	 * are fetched from splunk on the next thaw.
+	 */
+	public void invalidateSplunkSettings();
 }
@@ -27,7 +27,9 @@ import javax.ws.rs.core.MediaType;
 
 import org.apache.log4j.Logger;
 
+import com.splunk.shuttl.archiver.archive.ArchiveQueueFullException;
 import com.splunk.shuttl.archiver.archive.BucketArchiver;
+import com.splunk.shuttl.archiver.archive.BucketArchiverExecutor;
 import com.splunk.shuttl.archiver.archive.BucketArchiverFactory;
 import com.splunk.shuttl.archiver.archive.BucketArchiverRunner;
 import com.splunk.shuttl.archiver.archive.recovery.ArchiveBucketLock;
@@ -41,6 +43,12 @@ public class ArchiveBucketEndpoint {
 	private static final org.apache.log4j.Logger logger = Logger
 			.getLogger(ArchiveBucketEndpoint.class);
 
+	/**
+	 * Seconds a client should wait before retrying when the archive queue is
+	 * full.
+	 */
+	static final int RETRY_AFTER_SECONDS = 30;
+
 	@POST
 	@Produces(MediaType.TEXT_PLAIN)
 	public void archiveBucket(@FormParam("path") String path,
@@ -76,24 +84,43 @@ public class ArchiveBucketEndpoint {
 	}
 
 	private void archiveBucketOnAnotherThread(String index, String path) {
+		try {
+			queueBucketForArchiving(index, path);
+		} catch (ArchiveQueueFullException e) {
+			throw new ShuttlServiceUnavailableException(
+					"Archive queue is full. Retry later.", RETRY_AFTER_SECONDS);
+		}
+	}
 
+	/**
+	 * Locks the bucket and queues it for archiving on the shared
+	 * {@link BucketArchiverExecutor}. The archiver is created before the bucket
+	 * is locked, and the lock is closed if the bucket could not be queued, so
+	 * that a failure never leaves the bucket locked.
+	 * 
+	 * @throws ArchiveQueueFullException
+	 *           if the archive queue is full.
+	 */
+	static void queueBucketForArchiving(String index, String path) {
 		logger.info(will("Attempting to archive bucket", "index", index, "path",
 				path));
-		Runnable r = createBucketArchiverRunner(index, path);
-		new Thread(r).run();
-	}
-
-	private Runnable createBucketArchiverRunner(String index, String path) {
-		BucketArchiver bucketArchiver = BucketArchiverFactory
-				.createConfiguredArchiver();
 		Bucket bucket = BucketFactory.createBucketWithIndexAndDirectory(index,
 				new File(path));
+		BucketArchiver bucketArchiver = BucketArchiverFactory
+				.createConfiguredArchiver();
 		BucketLock bucketLock = new ArchiveBucketLock(bucket);
 		throwExceptionIfSharedLockCannotBeAcquired(bucketLock);
-		return new BucketArchiverRunner(bucketArchiver, bucket, bucketLock);
+		try {
+			BucketArchiverExecutor.getSharedInstance().execute(
+					new BucketArchiverRunner(bucketArchiver, bucket, bucketLock));
+		} catch (RuntimeException e) {
+			bucketLock.closeLock();
+			throw e;
+		}
 	}
 
-	private void throwExceptionIfSharedLockCannotBeAcquired(BucketLock bucketLock) {
+	private static void throwExceptionIfSharedLockCannotBeAcquired(
+			BucketLock bucketLock) {
 		if (!bucketLock.tryLockShared())
 			throw new IllegalStateException("We must ensure that the"
 					+ " bucket archiver has a " + "lock to the bucket it will transfer");
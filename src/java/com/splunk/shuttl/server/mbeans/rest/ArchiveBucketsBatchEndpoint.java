@@ -0,0 +1,103 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static com.splunk.shuttl.ShuttlConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.FormParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.splunk.shuttl.archiver.archive.ArchiveQueueFullException;
+
+/**
+ * Queues many buckets for archiving in one request, so that recovering a lot
+ * of failed buckets doesn't take one request per bucket.
+ */
+@Path(ENDPOINT_ARCHIVER + ENDPOINT_BUCKET_ARCHIVER_BATCH)
+public class ArchiveBucketsBatchEndpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(ArchiveBucketsBatchEndpoint.class);
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	/**
+	 * @param paths
+	 *          of the buckets to archive.
+	 * @param indexes
+	 *          of the buckets, in the same order as the paths.
+	 * @return JSON object with the paths that were "queued" and the paths that
+	 *         were "not_queued", because the queue was full or the bucket could
+	 *         not be locked.
+	 */
+	@POST
+	@Produces(MediaType.APPLICATION_JSON)
+	public String archiveBuckets(@FormParam("path") List<String> paths,
+			@FormParam("index") List<String> indexes) {
+		verifyValidArguments(paths, indexes);
+		logger.info(happened("Received REST request to archive buckets",
+				"endpoint", ENDPOINT_BUCKET_ARCHIVER_BATCH, "buckets", paths.size()));
+
+		List<String> queued = new ArrayList<String>();
+		List<String> notQueued = new ArrayList<String>();
+		for (int i = 0; i < paths.size(); i++) {
+			String path = paths.get(i);
+			try {
+				ArchiveBucketEndpoint.queueBucketForArchiving(indexes.get(i), path);
+				queued.add(path);
+			} catch (ArchiveQueueFullException e) {
+				notQueued.addAll(paths.subList(i, paths.size()));
+				break;
+			} catch (RuntimeException e) {
+				logger.warn(warn("Queued bucket for archiving", e,
+						"Will queue the rest of the buckets", "path", path));
+				notQueued.add(path);
+			}
+		}
+		return toJson(queued, notQueued);
+	}
+
+	private void verifyValidArguments(List<String> paths, List<String> indexes) {
+		if (paths == null || indexes == null || paths.size() != indexes.size())
+			throw new ShuttlBadRequestException(
+					"Every path must be given with an index");
+	}
+
+	private String toJson(List<String> queued, List<String> notQueued) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("queued", queued);
+		result.put("not_queued", notQueued);
+		try {
+			return OBJECT_MAPPER.writeValueAsString(result);
+		} catch (IOException e) {
+			logger.error(did("Converted archive batch result to JSON string", e,
+					null));
+			throw new RuntimeException(e);
+		}
+	}
+}
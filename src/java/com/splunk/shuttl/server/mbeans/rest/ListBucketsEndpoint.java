@@ -18,20 +18,23 @@ package com.splunk.shuttl.server.mbeans.rest;
 import static com.splunk.shuttl.ShuttlConstants.*;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.eclipse.jetty.util.ajax.JSON;
 
@@ -41,6 +44,7 @@ import com.splunk.shuttl.archiver.bucketsize.ArchiveBucketSize;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.listers.ArchivedIndexesLister;
+import com.splunk.shuttl.archiver.listers.BucketPager;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFilteredFactory;
 import com.splunk.shuttl.archiver.model.Bucket;
@@ -56,6 +60,8 @@ public class ListBucketsEndpoint {
 	private static final org.apache.log4j.Logger logger = Logger
 			.getLogger(ListBucketsEndpoint.class);
 
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	@Path(ENDPOINT_LIST_INDEXES)
@@ -75,47 +81,131 @@ public class ListBucketsEndpoint {
 		return JSON.getDefault().toJSON(indexesLister.listIndexes());
 	}
 
+	/**
+	 * Lists buckets as JSON, written while the buckets are listed:
+	 * <code>{"buckets": [...], "buckets_TOTAL_SIZE": "..."}</code><br/>
+	 * <br/>
+	 * The first bucket is listed before the response is sent, so that failing
+	 * to list the archive fails the request. The status has been sent when
+	 * listing fails after that, so the buckets array is then closed and the
+	 * response has an "error" instead of a "buckets_TOTAL_SIZE".<br/>
+	 * <br/>
+	 * With any of limit, cursor or sort, only one page of buckets is listed and
+	 * the response also has a "next_cursor", which is null on the last page.
+	 * 
+	 * @param limit
+	 *          max number of buckets on the page.
+	 * @param cursor
+	 *          "next_cursor" of the previous page.
+	 * @param sort
+	 *          "index", "earliest" or "latest", with a "-" prefix for descending
+	 *          order.
+	 * @see BucketPager
+	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	@Path(ENDPOINT_LIST_BUCKETS)
-	public String listBucketsForIndex(@QueryParam("index") String index,
-			@QueryParam("from") String from, @QueryParam("to") String to) {
+	public StreamingOutput listBucketsForIndex(@QueryParam("index") String index,
+			@QueryParam("from") String from, @QueryParam("to") String to,
+			@QueryParam("limit") Integer limit,
+			@QueryParam("cursor") String cursor, @QueryParam("sort") String sort) {
 		logger.info(happened("Received REST request to list buckets", "endpoint",
-				ENDPOINT_LIST_BUCKETS, "index", index, "from", from, "to", to));
+				ENDPOINT_LIST_BUCKETS, "index", index, "from", from, "to", to,
+				"limit", limit, "cursor", cursor, "sort", sort));
 
 		Date fromDate = getValidFromDate(from);
 		Date toDate = getValidToDate(to);
 
-		List<Bucket> filteredBucketsAtIndex = getFilteredBucketsAtIndex(index,
+		Iterator<Bucket> filteredBuckets = getFilteredBucketsAtIndex(index,
 				fromDate, toDate);
 
-		List<BucketBean> beans = new ArrayList<BucketBean>();
-		long totalBucketsSize = 0;
+		BucketsJsonOutput output;
+		if (limit == null && cursor == null && sort == null) {
+			output = new BucketsJsonOutput(filteredBuckets, false, null);
+		} else {
+			BucketPager pager = createBucketPager(sort, cursor, limit);
+			List<Bucket> page = pager.page(filteredBuckets);
+			output = new BucketsJsonOutput(page.iterator(), true,
+					pager.getNextCursor());
+		}
+		output.listFirstBucket();
+		return output;
+	}
 
-		for (Bucket bucket : filteredBucketsAtIndex) {
-			beans.add(getBucketBean(bucket));
-			totalBucketsSize += bucket.getSize() == null ? 0 : bucket.getSize();
+	private BucketPager createBucketPager(String sort, String cursor,
+			Integer limit) {
+		try {
+			return BucketPager.create(sort, cursor, limit);
+		} catch (IllegalArgumentException e) {
+			logger.warn(warn("Created a bucket pager from the request", e,
+					"Responding with bad request", "sort", sort, "cursor", cursor,
+					"limit", limit));
+			throw new ShuttlBadRequestException(e.getMessage());
 		}
+	}
 
-		Map<String, Object> response = new HashMap<String, Object>();
-		response.put("buckets_TOTAL_SIZE",
-				FileUtils.byteCountToDisplaySize(totalBucketsSize));
-		response.put("buckets", beans);
+	private class BucketsJsonOutput implements StreamingOutput {
 
-		try {
-			return new ObjectMapper().writeValueAsString(response);
-		} catch (Exception e) {
-			logger.error(did(
-					"attempted to convert buckets and their total size to JSON string",
-					e, null));
-			throw new RuntimeException(e);
+		private final Iterator<Bucket> buckets;
+		private final boolean paged;
+		private final String nextCursor;
+		private Bucket firstBucket;
+
+		public BucketsJsonOutput(Iterator<Bucket> buckets, boolean paged,
+				String nextCursor) {
+			this.buckets = buckets;
+			this.paged = paged;
+			this.nextCursor = nextCursor;
+		}
+
+		/**
+		 * Lists the first bucket, before the response is committed.
+		 */
+		public void listFirstBucket() {
+			if (buckets.hasNext())
+				firstBucket = getBucketWithSize(buckets.next());
+		}
+
+		@Override
+		public void write(OutputStream output) throws IOException {
+			JsonGenerator json = OBJECT_MAPPER.getJsonFactory()
+					.createJsonGenerator(output, JsonEncoding.UTF8);
+			json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			long totalBucketsSize = 0;
+			String error = null;
+
+			json.writeStartObject();
+			json.writeArrayFieldStart("buckets");
+			try {
+				Bucket bucket = firstBucket;
+				while (bucket != null) {
+					json.writeObject(BucketBean.createBeanFromBucket(bucket));
+					totalBucketsSize += bucket.getSize() == null ? 0 : bucket.getSize();
+					bucket = buckets.hasNext() ? getBucketWithSize(buckets.next())
+							: null;
+				}
+			} catch (RuntimeException e) {
+				logger.error(did("Listed buckets while writing the response", e,
+						"all buckets to be listed", "exception", e));
+				error = "Failed to list all buckets: " + e;
+			}
+			json.writeEndArray();
+			if (error != null)
+				json.writeStringField("error", error);
+			else
+				json.writeStringField("buckets_TOTAL_SIZE",
+						FileUtils.byteCountToDisplaySize(totalBucketsSize));
+			if (paged)
+				json.writeStringField("next_cursor", nextCursor);
+			json.writeEndObject();
+			json.close();
 		}
 	}
 
-	private BucketBean getBucketBean(Bucket bucket) {
-		BucketSizeResolver bucketSizeResolver = getBucketSizeResolver();
-		Bucket bucketWithSize = bucketSizeResolver.resolveBucketSize(bucket);
-		return BucketBean.createBeanFromBucket(bucketWithSize);
+	private Bucket getBucketWithSize(Bucket bucket) {
+		if (bucket.getSize() != null)
+			return bucket;
+		return getBucketSizeResolver().resolveBucketSize(bucket);
 	}
 
 	private BucketSizeResolver getBucketSizeResolver() {
@@ -139,14 +229,14 @@ public class ListBucketsEndpoint {
 		return StringDateConverter.convert(to);
 	}
 
-	private List<Bucket> getFilteredBucketsAtIndex(String index, Date fromDate,
-			Date toDate) {
+	private Iterator<Bucket> getFilteredBucketsAtIndex(String index,
+			Date fromDate, Date toDate) {
 		ListsBucketsFiltered listsBucketsFiltered = getListsBucketsFiltered();
 		if (index == null)
-			return listsBucketsFiltered.listFilteredBuckets(fromDate, toDate);
+			return listsBucketsFiltered.iterateFilteredBuckets(fromDate, toDate);
 		else
 			return listsBucketsFiltered.listFilteredBucketsAtIndex(index, fromDate,
-					toDate);
+					toDate).iterator();
 	}
 
 	private ListsBucketsFiltered getListsBucketsFiltered() {
@@ -0,0 +1,77 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static com.splunk.shuttl.ShuttlConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.FormParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalogRebuilder;
+
+/**
+ * Endpoint for rebuilding the archive catalog from the archived buckets.
+ */
+@Path(ENDPOINT_ARCHIVER + ENDPOINT_CATALOG_REBUILD)
+public class RebuildCatalogEndpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(RebuildCatalogEndpoint.class);
+
+	/**
+	 * @param index
+	 *          to rebuild the catalog of. Defaults to all indexes in the archive.
+	 * @return JSON object with the number of catalog entries per rebuilt index.
+	 */
+	@POST
+	@Produces(MediaType.APPLICATION_JSON)
+	public String rebuildCatalog(@FormParam("index") String index) {
+		logger.info(happened("Received REST request to rebuild archive catalog",
+				"endpoint", ENDPOINT_CATALOG_REBUILD, "index", index));
+
+		ArchiveCatalogRebuilder rebuilder = ArchiveCatalogRebuilder
+				.create(ArchiveConfiguration.getSharedInstance());
+		Map<String, Object> response = new HashMap<String, Object>();
+		try {
+			if (index == null)
+				response.put("rebuilt", rebuilder.rebuildAll());
+			else
+				response.put("rebuilt", singleIndex(index, rebuilder.rebuild(index)));
+			return new ObjectMapper().writeValueAsString(response);
+		} catch (IOException e) {
+			logger.error(did("Rebuilt archive catalog", e,
+					"To rebuild the catalog", "index", index, "exception", e));
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Map<String, Integer> singleIndex(String index, int entries) {
+		Map<String, Integer> rebuilt = new HashMap<String, Integer>();
+		rebuilt.put(index, entries);
+		return rebuilt;
+	}
+}
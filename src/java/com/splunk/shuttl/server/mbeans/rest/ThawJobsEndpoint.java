@@ -0,0 +1,148 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static com.splunk.shuttl.ShuttlConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.FormParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.splunk.shuttl.archiver.thaw.StringDateConverter;
+import com.splunk.shuttl.archiver.thaw.ThawJob;
+import com.splunk.shuttl.archiver.thaw.ThawJob.BucketProgress;
+import com.splunk.shuttl.archiver.thaw.ThawJobQueueFullException;
+import com.splunk.shuttl.archiver.thaw.ThawJobs;
+
+/**
+ * Endpoint for thawing buckets in the background. Submitting a thaw returns a
+ * job id right away, which is used to poll the progress of the thaw.
+ */
+@Path(ENDPOINT_ARCHIVER + ENDPOINT_THAW_JOBS)
+public class ThawJobsEndpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawJobsEndpoint.class);
+
+	static final int RETRY_AFTER_SECONDS = 30;
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	/**
+	 * Queues a thaw of a range of buckets in either a specific index or all
+	 * indexes on the archiving fs.
+	 * 
+	 * @param index
+	 *          Any index that exists in both the archiving filesystem and splunk.
+	 *          Defaults to all indexes in the archiving fs.
+	 * @param from
+	 *          Start date of thawing interval (on the form yyyy-MM-dd). Defaults
+	 *          to 0001-01-01.
+	 * @param to
+	 *          End date of thawing interval (on the form yyyy-MM-dd). Defaults to
+	 *          9999-12-31.
+	 * @return JSON object with the "id" of the queued job.
+	 */
+	@POST
+	@Produces(MediaType.APPLICATION_JSON)
+	public String submitThawJob(@FormParam("index") String index,
+			@FormParam("from") String from, @FormParam("to") String to) {
+		logger.info(happened("Received REST request to queue thaw job",
+				"endpoint", ENDPOINT_THAW_JOBS, "index", index, "from", from, "to",
+				to));
+
+		Date fromDate = StringDateConverter.convert(from == null ? "0001-01-01"
+				: from);
+		Date toDate = StringDateConverter.convert(to == null ? "9999-12-31" : to);
+		if (fromDate == null || toDate == null)
+			throw new ShuttlBadRequestException(
+					"From and to date must be provided on the form yyyy-MM-dd");
+
+		ThawJob job;
+		try {
+			job = ThawJobs.getSharedInstance().submit(index, fromDate, toDate);
+		} catch (ThawJobQueueFullException e) {
+			throw new ShuttlServiceUnavailableException(
+					"Thaw job queue is full. Retry later.", RETRY_AFTER_SECONDS);
+		}
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("id", job.getId());
+		return toJson(response);
+	}
+
+	/**
+	 * @param id
+	 *          of a job returned when it was submitted.
+	 * @return JSON object with the state of the job, the state of each of its
+	 *         buckets, the bytes moved so far and the estimated milliseconds left.
+	 */
+	@GET
+	@Path("{id}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public String getThawJob(@PathParam("id") String id) {
+		ThawJob job = ThawJobs.getSharedInstance().getJob(id);
+		if (job == null)
+			throw new ShuttlNotFoundException("No thaw job with id: " + id);
+		return toJson(convertJobToMap(job));
+	}
+
+	private Map<String, Object> convertJobToMap(ThawJob job) {
+		List<Map<String, Object>> buckets = new ArrayList<Map<String, Object>>();
+		for (BucketProgress progress : job.getBucketProgress()) {
+			Map<String, Object> bucket = new LinkedHashMap<String, Object>();
+			bucket.put("bucketName", progress.bucketName);
+			bucket.put("size", progress.size);
+			bucket.put("state", progress.getState().name().toLowerCase());
+			if (progress.getReason() != null)
+				bucket.put("reason", progress.getReason());
+			buckets.add(bucket);
+		}
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("id", job.getId());
+		map.put("index", job.getIndex());
+		map.put("state", job.getState().name().toLowerCase());
+		if (job.getFailureReason() != null)
+			map.put("reason", job.getFailureReason());
+		map.put("buckets", buckets);
+		map.put("bytes_moved", job.getBytesMoved());
+		map.put("elapsed_millis", job.getElapsedMillis());
+		map.put("eta_millis", job.getEtaMillis());
+		return map;
+	}
+
+	private String toJson(Map<String, Object> map) {
+		try {
+			return OBJECT_MAPPER.writeValueAsString(map);
+		} catch (Exception e) {
+			logger.error(did("Converted thaw job to JSON string", e, null));
+			throw new RuntimeException(e);
+		}
+	}
+}
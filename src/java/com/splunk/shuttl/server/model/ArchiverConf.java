@@ -29,7 +29,11 @@ import javax.xml.bind.annotation.XmlType;
  */
 @XmlRootElement(namespace = "com.splunk.shuttl.server.model")
 @XmlType(propOrder = { "archiveFormats", "clusterName", "serverName",
-		"indexNames", "archiverRootURI", "bucketFormatPriority", "tmpDirectory" })
+		"indexNames", "archiverRootURI", "bucketFormatPriority", "tmpDirectory",
+		"archiverThreads", "archiverQueueCapacity", "csvStreamingExport",
+		"uploadStreams", "uploadBufferSize", "packBuckets", "catalogEnabled",
+		"thawThreads", "csvStreamingThaw", "thawJobs", "thawCacheBudgetBytes",
+		"spoolDirectory" })
 public class ArchiverConf implements ArchiverConfiguration {
 	private List<String> archiveFormats;
 	private String tmpDirectory;
@@ -38,6 +42,18 @@ public class ArchiverConf implements ArchiverConfiguration {
 	private String archiverRootURI;
 	private List<String> indexNames;
 	private List<String> bucketFormatPriority;
+	private Integer archiverThreads;
+	private Integer archiverQueueCapacity;
+	private Boolean csvStreamingExport;
+	private Integer uploadStreams;
+	private Integer uploadBufferSize;
+	private Boolean packBuckets;
+	private Boolean catalogEnabled;
+	private Integer thawThreads;
+	private Boolean csvStreamingThaw;
+	private Integer thawJobs;
+	private Long thawCacheBudgetBytes;
+	private String spoolDirectory;
 
 	/*
 	 * (non-Javadoc)
@@ -192,4 +208,282 @@ public class ArchiverConf implements ArchiverConfiguration {
 	public void setIndexNames(List<String> indexNames) {
 		this.indexNames = indexNames;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getArchiverThreads()
+	 */
+	@Override
+	public Integer getArchiverThreads() {
+		return archiverThreads;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setArchiverThreads
+	 * (java.lang.Integer)
+	 */
+	@Override
+	public void setArchiverThreads(Integer threads) {
+		this.archiverThreads = threads;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getArchiverQueueCapacity
+	 * ()
+	 */
+	@Override
+	public Integer getArchiverQueueCapacity() {
+		return archiverQueueCapacity;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setArchiverQueueCapacity
+	 * (java.lang.Integer)
+	 */
+	@Override
+	public void setArchiverQueueCapacity(Integer capacity) {
+		this.archiverQueueCapacity = capacity;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getCsvStreamingExport
+	 * ()
+	 */
+	@Override
+	public Boolean getCsvStreamingExport() {
+		return csvStreamingExport;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setCsvStreamingExport
+	 * (java.lang.Boolean)
+	 */
+	@Override
+	public void setCsvStreamingExport(Boolean csvStreamingExport) {
+		this.csvStreamingExport = csvStreamingExport;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getUploadStreams()
+	 */
+	@Override
+	public Integer getUploadStreams() {
+		return uploadStreams;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setUploadStreams
+	 * (java.lang.Integer)
+	 */
+	@Override
+	public void setUploadStreams(Integer uploadStreams) {
+		this.uploadStreams = uploadStreams;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getUploadBufferSize()
+	 */
+	@Override
+	public Integer getUploadBufferSize() {
+		return uploadBufferSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setUploadBufferSize
+	 * (java.lang.Integer)
+	 */
+	@Override
+	public void setUploadBufferSize(Integer uploadBufferSize) {
+		this.uploadBufferSize = uploadBufferSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getPackBuckets()
+	 */
+	@Override
+	public Boolean getPackBuckets() {
+		return packBuckets;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setPackBuckets
+	 * (java.lang.Boolean)
+	 */
+	@Override
+	public void setPackBuckets(Boolean packBuckets) {
+		this.packBuckets = packBuckets;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getCatalogEnabled()
+	 */
+	@Override
+	public Boolean getCatalogEnabled() {
+		return catalogEnabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setCatalogEnabled
+	 * (java.lang.Boolean)
+	 */
+	@Override
+	public void setCatalogEnabled(Boolean catalogEnabled) {
+		this.catalogEnabled = catalogEnabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getThawThreads()
+	 */
+	@Override
+	public Integer getThawThreads() {
+		return thawThreads;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setThawThreads
+	 * (java.lang.Integer)
+	 */
+	@Override
+	public void setThawThreads(Integer thawThreads) {
+		this.thawThreads = thawThreads;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getCsvStreamingThaw()
+	 */
+	@Override
+	public Boolean getCsvStreamingThaw() {
+		return csvStreamingThaw;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setCsvStreamingThaw
+	 * (java.lang.Boolean)
+	 */
+	@Override
+	public void setCsvStreamingThaw(Boolean csvStreamingThaw) {
+		this.csvStreamingThaw = csvStreamingThaw;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getThawJobs()
+	 */
+	@Override
+	public Integer getThawJobs() {
+		return thawJobs;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setThawJobs
+	 * (java.lang.Integer)
+	 */
+	@Override
+	public void setThawJobs(Integer thawJobs) {
+		this.thawJobs = thawJobs;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getThawCacheBudgetBytes()
+	 */
+	@Override
+	public Long getThawCacheBudgetBytes() {
+		return thawCacheBudgetBytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setThawCacheBudgetBytes
+	 * (java.lang.Long)
+	 */
+	@Override
+	public void setThawCacheBudgetBytes(Long thawCacheBudgetBytes) {
+		this.thawCacheBudgetBytes = thawCacheBudgetBytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#getSpoolDirectory()
+	 */
+	@Override
+	public String getSpoolDirectory() {
+		return spoolDirectory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.splunk.shuttl.server.model.ArchiverConfiguration#setSpoolDirectory
+	 * (java.lang.String)
+	 */
+	@Override
+	public void setSpoolDirectory(String spoolDirectory) {
+		this.spoolDirectory = spoolDirectory;
+	}
 }
@@ -49,4 +49,51 @@ public interface ArchiverConfiguration {
 
 	public void setArchiverRootURI(String URI);
 
+	public Integer getArchiverThreads();
+
+	public void setArchiverThreads(Integer threads);
+
+	public Integer getArchiverQueueCapacity();
+
+	public void setArchiverQueueCapacity(Integer capacity);
+
+	public Boolean getCsvStreamingExport();
+
+	public void setCsvStreamingExport(Boolean csvStreamingExport);
+
+	public Integer getUploadStreams();
+
+	public void setUploadStreams(Integer uploadStreams);
+
+	public Integer getUploadBufferSize();
+
+	public void setUploadBufferSize(Integer uploadBufferSize);
+
+	public Boolean getPackBuckets();
+
+	public void setPackBuckets(Boolean packBuckets);
+
+	public Boolean getCatalogEnabled();
+
+	public void setCatalogEnabled(Boolean catalogEnabled);
+
+	public Integer getThawThreads();
+
+	public void setThawThreads(Integer thawThreads);
+
+	public Boolean getCsvStreamingThaw();
+
+	public void setCsvStreamingThaw(Boolean csvStreamingThaw);
+
+	public Integer getThawJobs();
+
+	public void setThawJobs(Integer thawJobs);
+
+	public Long getThawCacheBudgetBytes();
+
+	public void setThawCacheBudgetBytes(Long thawCacheBudgetBytes);
+
+	public String getSpoolDirectory();
+
+	public void setSpoolDirectory(String spoolDirectory);
 }
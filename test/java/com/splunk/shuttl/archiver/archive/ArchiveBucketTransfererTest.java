@@ -15,23 +15,40 @@
 
 package com.splunk.shuttl.archiver.archive;
 
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
 import static java.util.Arrays.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal;
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal.Stage;
 import com.splunk.shuttl.archiver.bucketsize.ArchiveBucketSize;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.ArchiveTimeIndex;
+import com.splunk.shuttl.archiver.catalog.CatalogEntry;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.FileOverwriteException;
+import com.splunk.shuttl.archiver.importexport.BucketExportStream;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -42,14 +59,25 @@ public class ArchiveBucketTransfererTest {
 	private PathResolver pathResolver;
 	private ArchiveBucketTransferer archiveBucketTransferer;
 	private ArchiveBucketSize archiveBucketSize;
+	private ArchiveCatalog archiveCatalog;
+	private ArchiveTimeIndex archiveTimeIndex;
+	private BucketJournal bucketJournal;
 
 	@BeforeMethod
 	public void setUp() {
 		archive = mock(ArchiveFileSystem.class);
 		pathResolver = mock(PathResolver.class);
 		archiveBucketSize = mock(ArchiveBucketSize.class);
-		archiveBucketTransferer = new ArchiveBucketTransferer(archive,
-				pathResolver, archiveBucketSize);
+		archiveCatalog = mock(ArchiveCatalog.class);
+		archiveTimeIndex = new ArchiveTimeIndex();
+		bucketJournal = mock(BucketJournal.class);
+		archiveBucketTransferer = createTransferer(false);
+	}
+
+	private ArchiveBucketTransferer createTransferer(boolean packBuckets) {
+		return new ArchiveBucketTransferer(archive, pathResolver,
+				archiveBucketSize, packBuckets, archiveCatalog, archiveTimeIndex,
+				bucketJournal);
 	}
 
 	@Test(groups = { "fast-unit" })
@@ -59,31 +87,125 @@ public class ArchiveBucketTransfererTest {
 		URI destination = URI.create("file:/some/path");
 		when(pathResolver.resolveArchivePath(bucket)).thenReturn(destination);
 		archiveBucketTransferer.transferBucketToArchive(bucket);
-		verify(archive).putFileAtomically(bucket.getDirectory(), destination);
+		verify(archive).putFileAtomically(eq(bucket.getDirectory()),
+				eq(destination), Matchers.<Map<String, File>> any());
+	}
+
+	public void transferBucketToArchive_packingSplunkBucket_putBucketPacked()
+			throws IOException {
+		archiveBucketTransferer = createTransferer(true);
+		Bucket bucket = TUtilsBucket.createBucket();
+		URI destination = URI.create("file:/some/path");
+		when(pathResolver.resolveArchivePath(bucket)).thenReturn(destination);
+
+		archiveBucketTransferer.transferBucketToArchive(bucket);
+
+		verify(archive).putDirectoryPackedAtomically(eq(bucket.getDirectory()),
+				eq(destination), Matchers.<Map<String, File>> any());
+		verify(archive, never()).putFileAtomically(any(File.class),
+				any(URI.class), Matchers.<Map<String, File>> any());
+	}
+
+	public void transferBucketToArchive_packingCsvBucket_putBucketNotPacked()
+			throws IOException {
+		archiveBucketTransferer = createTransferer(true);
+		Bucket bucket = TUtilsBucket.createRealCsvBucket();
+		URI destination = URI.create("file:/some/path");
+		when(pathResolver.resolveArchivePath(bucket)).thenReturn(destination);
+
+		archiveBucketTransferer.transferBucketToArchive(bucket);
+
+		verify(archive).putFileAtomically(eq(bucket.getDirectory()),
+				eq(destination), Matchers.<Map<String, File>> any());
+	}
+
+	@SuppressWarnings("unchecked")
+	public void transferBucketStreamToArchive_givenStream_putsSizeOfStreamedBytesWithBucket()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		BucketExportStream bucketStream = new BucketExportStream(bucket,
+				"bucket.csv", new ByteArrayInputStream("a,b".getBytes()));
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws IOException {
+				Object[] args = invocation.getArguments();
+				IOUtils.toByteArray((InputStream) args[0]);
+				((Map<String, File>) args[3]).entrySet();
+				return null;
+			}
+		}).when(archive).putStreamAtomically(any(InputStream.class),
+				any(URI.class), anyString(), Matchers.<Map<String, File>> any());
+
+		archiveBucketTransferer.transferBucketStreamToArchive(bucketStream);
+
+		ArgumentCaptor<Bucket> sizedBucket = ArgumentCaptor.forClass(Bucket.class);
+		verify(archiveBucketSize).getSizeMetadata(sizedBucket.capture());
+		assertEquals(3L, (long) sizedBucket.getValue().getSize());
+	}
+
+	public void transferBucketToArchive_withCatalog_addsBucketToCatalog()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+
+		archiveBucketTransferer.transferBucketToArchive(bucket);
+
+		verify(archiveCatalog).add(bucket);
+	}
+
+	public void transferBucketToArchive_withTimeIndex_addsBucketToTimeIndex() {
+		Bucket bucket = TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_20_10_0");
+
+		archiveBucketTransferer.transferBucketToArchive(bucket);
+
+		List<CatalogEntry> found = archiveTimeIndex.find(bucket.getIndex(),
+				bucket.getEarliest(), bucket.getLatest());
+		assertEquals(1, found.size());
+		assertEquals(bucket.getName(), found.get(0).getBucketName());
+	}
+
+	public void transferBucketToArchive_catalogFailsToAddBucket_doesNotThrow()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		doThrow(new IOException()).when(archiveCatalog).add(bucket);
+
+		archiveBucketTransferer.transferBucketToArchive(bucket);
+
+		verify(archiveBucketSize).getSizeMetadata(bucket);
 	}
 
-	public void transferBucketToArchive_givenSuccessfulBucketTransfer_putBucketSizeInArchive() {
-		Bucket bucket = mock(Bucket.class);
+	public void transferBucketToArchive_givenSuccessfulBucketTransfer_putBucketSizeWithTheBucket()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		URI destination = URI.create("file:/some/path");
+		when(pathResolver.resolveArchivePath(bucket)).thenReturn(destination);
+		Map<String, File> sizeMetadata = Collections.singletonMap(
+				PathResolver.BUCKET_SIZE_FILE_PATH, createFile());
+		when(archiveBucketSize.getSizeMetadata(bucket)).thenReturn(sizeMetadata);
+
 		archiveBucketTransferer.transferBucketToArchive(bucket);
-		verify(archiveBucketSize).putSize(bucket);
+
+		verify(archive).putFileAtomically(bucket.getDirectory(), destination,
+				sizeMetadata);
+		verify(archiveBucketSize, never()).putSize(bucket);
 	}
 
 	public void transferBucketToArchive_whenBucketTransferIsUnsuccessful_dontPutBucketSizeInArchive()
 			throws FileNotFoundException, FileOverwriteException, IOException {
 		doThrow(Exception.class).when(archive).putFileAtomically(any(File.class),
-				any(URI.class));
+				any(URI.class), Matchers.<Map<String, File>> any());
 		try {
 			archiveBucketTransferer.transferBucketToArchive(mock(Bucket.class));
 		} catch (Exception e) {
 		}
-		verifyZeroInteractions(archiveBucketSize);
+		verify(archiveBucketSize, never()).putSize(any(Bucket.class));
 	}
 
 	@Test(expectedExceptions = { FailedToArchiveBucketException.class })
 	public void _archiveFileSystemThrowsIOException_throwFailedToArchiveBucketException()
 			throws IOException {
 		doThrow(IOException.class).when(archive).putFileAtomically(any(File.class),
-				any(URI.class));
+				any(URI.class), Matchers.<Map<String, File>> any());
 		archiveBucketTransferer.transferBucketToArchive(mock(Bucket.class));
 	}
 
@@ -91,7 +213,8 @@ public class ArchiveBucketTransfererTest {
 	public void _archiveFileSystemThrowsFileNotFoundException_throwFailedToArchiveBucketException()
 			throws IOException {
 		doThrow(FileNotFoundException.class).when(archive).putFileAtomically(
-				any(File.class), any(URI.class));
+				any(File.class), any(URI.class),
+				Matchers.<Map<String, File>> any());
 		archiveBucketTransferer.transferBucketToArchive(mock(Bucket.class));
 	}
 
@@ -99,7 +222,8 @@ public class ArchiveBucketTransfererTest {
 	public void _archiveFileSystemThrowsFileOverwriteException_throwFailedToArchiveBucketException()
 			throws IOException {
 		doThrow(FileOverwriteException.class).when(archive).putFileAtomically(
-				any(File.class), any(URI.class));
+				any(File.class), any(URI.class),
+				Matchers.<Map<String, File>> any());
 		archiveBucketTransferer.transferBucketToArchive(mock(Bucket.class));
 	}
 
@@ -126,4 +250,41 @@ public class ArchiveBucketTransfererTest {
 				asList(URI.create("valid:/uri")));
 		assertTrue(archiveBucketTransferer.isArchived(bucket, bucket.getFormat()));
 	}
+
+	public void transferBucketToArchive_withJournal_recordsSizeWrittenOnce() {
+		Bucket bucket = TUtilsBucket.createBucket();
+
+		archiveBucketTransferer.transferBucketToArchive(bucket);
+
+		verify(bucketJournal).record(bucket, Stage.SIZE_WRITTEN,
+				bucket.getFormat());
+		verifyNoMoreInteractions(bucketJournal);
+	}
+
+	public void isJournaledAsArchived_journalHasSizeWritten_trueWithoutListingArchive()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		when(
+				bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+						bucket.getFormat())).thenReturn(true);
+
+		assertTrue(archiveBucketTransferer.isJournaledAsArchived(bucket,
+				bucket.getFormat()));
+		verify(archive, never()).listPath(any(URI.class));
+	}
+
+	public void isArchived_journalHasSizeWrittenButArchiveDoesNotHaveBucket_false()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		URI bucketUri = URI.create("valid:/bucket/uri");
+		when(
+				pathResolver.resolveArchivedBucketURI(bucket.getIndex(),
+						bucket.getName(), bucket.getFormat())).thenReturn(bucketUri);
+		when(
+				bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+						bucket.getFormat())).thenReturn(true);
+		when(archive.listPath(bucketUri)).thenReturn(new ArrayList<URI>());
+
+		assertFalse(archiveBucketTransferer.isArchived(bucket, bucket.getFormat()));
+	}
 }
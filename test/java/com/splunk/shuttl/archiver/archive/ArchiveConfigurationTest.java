@@ -144,4 +144,26 @@ public class ArchiveConfigurationTest {
 		assertEquals(URI.create("hdfz://localhost:8000/tmp"), tmpDirectory);
 	}
 
+	public void getArchiverThreads_null_default() {
+		when(mBean.getArchiverThreads()).thenReturn(null);
+		assertEquals(ArchiveConfiguration.DEFAULT_ARCHIVER_THREADS,
+				createConfiguration().getArchiverThreads());
+	}
+
+	public void getArchiverThreads_givenThreadsInMBean_sameAsInMBean() {
+		when(mBean.getArchiverThreads()).thenReturn(7);
+		assertEquals(7, createConfiguration().getArchiverThreads());
+	}
+
+	public void getArchiverQueueCapacity_zero_default() {
+		when(mBean.getArchiverQueueCapacity()).thenReturn(0);
+		assertEquals(ArchiveConfiguration.DEFAULT_ARCHIVER_QUEUE_CAPACITY,
+				createConfiguration().getArchiverQueueCapacity());
+	}
+
+	public void getArchiverQueueCapacity_givenCapacityInMBean_sameAsInMBean() {
+		when(mBean.getArchiverQueueCapacity()).thenReturn(3);
+		assertEquals(3, createConfiguration().getArchiverQueueCapacity());
+	}
+
 }
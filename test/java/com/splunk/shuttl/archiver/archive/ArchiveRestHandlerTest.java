@@ -14,6 +14,7 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.archive;
 
+import static java.util.Arrays.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
@@ -23,13 +24,16 @@ import java.util.List;
 
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.ShuttlConstants;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -88,4 +92,32 @@ public class ArchiveRestHandlerTest {
 
 		verifyClassWasOnlyErrorLogged(IOException.class);
 	}
+
+	public void callRestToArchiveBuckets_givenBuckets_executesOneRequestWithAllBuckets()
+			throws ClientProtocolException, IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		Bucket otherBucket = TUtilsBucket.createBucket();
+		archiveRestHandler.callRestToArchiveBuckets(asList(bucket, otherBucket));
+
+		ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor
+				.forClass(HttpUriRequest.class);
+		verify(httpClient, times(1)).execute(request.capture());
+		String body = EntityUtils.toString(((HttpPost) request.getValue())
+				.getEntity());
+		assertTrue(body.contains(bucket.getName()));
+		assertTrue(body.contains(otherBucket.getName()));
+		assertTrue(request.getValue().getURI().getPath()
+				.endsWith(ShuttlConstants.ENDPOINT_BUCKET_ARCHIVER_BATCH));
+	}
+
+	@SuppressWarnings("unchecked")
+	public void callRestToArchiveBuckets_httpClientThrowsIOException_caughtAndLogged()
+			throws ClientProtocolException, IOException {
+		when(httpClient.execute(any(HttpUriRequest.class))).thenThrow(
+				IOException.class);
+		archiveRestHandler.callRestToArchiveBuckets(asList(TUtilsBucket
+				.createBucket()));
+
+		verifyClassWasOnlyErrorLogged(IOException.class);
+	}
 }
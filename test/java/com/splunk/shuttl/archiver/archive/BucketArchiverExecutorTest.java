@@ -0,0 +1,115 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class BucketArchiverExecutorTest {
+
+	private BucketArchiverExecutor executor;
+	private CountDownLatch release;
+	private CountDownLatch started;
+
+	@BeforeMethod
+	public void setUp() {
+		executor = BucketArchiverExecutor.create(1, 1);
+		release = new CountDownLatch(1);
+		started = new CountDownLatch(1);
+	}
+
+	@AfterMethod
+	public void tearDown() throws InterruptedException {
+		release.countDown();
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	private Runnable blockingRunnable() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	public void execute_runnable_runsRunnable() throws InterruptedException {
+		Runnable runnable = mock(Runnable.class);
+		executor.execute(runnable);
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		verify(runnable).run();
+	}
+
+	public void getInFlight_runnableIsRunning_one() throws InterruptedException {
+		executor.execute(blockingRunnable());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.getInFlight());
+	}
+
+	public void getQueueDepth_workerIsBusy_countsWaitingRunnable()
+			throws InterruptedException {
+		executor.execute(blockingRunnable());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.execute(mock(Runnable.class));
+		assertEquals(1, executor.getQueueDepth());
+	}
+
+	@Test(expectedExceptions = { ArchiveQueueFullException.class })
+	public void execute_workerBusyAndQueueFull_throwsArchiveQueueFullException()
+			throws InterruptedException {
+		executor.execute(blockingRunnable());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.execute(mock(Runnable.class));
+		executor.execute(mock(Runnable.class));
+	}
+
+	public void getRejectedCount_rejectedRunnable_one()
+			throws InterruptedException {
+		executor.execute(blockingRunnable());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.execute(mock(Runnable.class));
+		try {
+			executor.execute(mock(Runnable.class));
+			fail();
+		} catch (ArchiveQueueFullException e) {
+			assertEquals(1, executor.getRejectedCount());
+		}
+	}
+
+	public void execute_runnableThrows_inFlightIsDecremented()
+			throws InterruptedException {
+		Runnable throwing = mock(Runnable.class);
+		doThrow(new RuntimeException()).when(throwing).run();
+		executor.execute(throwing);
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		assertEquals(0, executor.getInFlight());
+	}
+}
@@ -19,13 +19,18 @@ import static java.util.Arrays.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal;
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal.Stage;
+import com.splunk.shuttl.archiver.importexport.BucketExportStream;
 import com.splunk.shuttl.archiver.importexport.BucketExporter;
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.SameThreadExecutorService;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
 @Test(groups = { "fast-unit" })
@@ -35,6 +40,7 @@ public class BucketArchiverTest {
 	private BucketExporter exporter;
 	private ArchiveBucketTransferer archiveBucketTransferer;
 	private BucketDeleter deletesBuckets;
+	private BucketJournal bucketJournal;
 
 	private Bucket bucket;
 	private List<BucketFormat> bucketFormats;
@@ -45,8 +51,10 @@ public class BucketArchiverTest {
 		archiveBucketTransferer = mock(ArchiveBucketTransferer.class);
 		deletesBuckets = mock(BucketDeleter.class);
 		bucketFormats = asList(BucketFormat.SPLUNK_BUCKET);
+		bucketJournal = mock(BucketJournal.class);
 		bucketArchiver = new BucketArchiver(exporter, archiveBucketTransferer,
-				deletesBuckets, bucketFormats);
+				deletesBuckets, bucketFormats, new SameThreadExecutorService(),
+				bucketJournal);
 
 		bucket = TUtilsBucket.createBucket();
 	}
@@ -99,4 +107,78 @@ public class BucketArchiverTest {
 		verify(exporter, never()).exportBucket(bucket, format);
 	}
 
+	public void archiveBucket_exporterCanStreamFormat_transfersStreamAndDeletesBucket()
+			throws IOException {
+		BucketFormat format = bucketFormats.get(0);
+		when(exporter.canExportBucketToStream(bucket, format)).thenReturn(true);
+		BucketExportStream stream = mock(BucketExportStream.class);
+		when(exporter.exportBucketToStream(bucket, format)).thenReturn(stream);
+
+		bucketArchiver.archiveBucket(bucket);
+
+		verify(archiveBucketTransferer).transferBucketStreamToArchive(stream);
+		verify(stream).close();
+		verify(exporter, never()).exportBucket(bucket, format);
+		verify(deletesBuckets).deleteBucket(bucket);
+	}
+
+	public void archiveBucket_streamTransferFails_doesNotDeleteBucket()
+			throws IOException {
+		BucketFormat format = bucketFormats.get(0);
+		when(exporter.canExportBucketToStream(bucket, format)).thenReturn(true);
+		BucketExportStream stream = mock(BucketExportStream.class);
+		when(exporter.exportBucketToStream(bucket, format)).thenReturn(stream);
+		doThrow(new FailedToArchiveBucketException()).when(
+				archiveBucketTransferer).transferBucketStreamToArchive(stream);
+
+		bucketArchiver.archiveBucket(bucket);
+
+		verify(stream).close();
+		verifyZeroInteractions(deletesBuckets);
+	}
+
+	public void archiveBucket_withJournal_recordsExportAndDeletion() {
+		getMockedBucketReturnFromExporter();
+
+		bucketArchiver.archiveBucket(bucket);
+
+		verify(bucketJournal).record(bucket, Stage.EXPORTING,
+				BucketFormat.SPLUNK_BUCKET);
+		verify(bucketJournal).record(bucket, Stage.DELETED);
+	}
+
+	public void archiveBucket_formatJournaledAsArchivedAndInArchive_doesNotExportAndDeletesBucket() {
+		BucketFormat format = bucketFormats.get(0);
+		when(archiveBucketTransferer.isJournaledAsArchived(bucket, format))
+				.thenReturn(true);
+		when(archiveBucketTransferer.isArchived(bucket, format)).thenReturn(true);
+
+		bucketArchiver.archiveBucket(bucket);
+
+		verify(exporter, never()).exportBucket(bucket, format);
+		verify(deletesBuckets).deleteBucket(bucket);
+	}
+
+	public void archiveBucket_formatJournaledAsArchivedButNotInArchive_doesNotDeleteBucketAndForgetsIt() {
+		BucketFormat format = bucketFormats.get(0);
+		when(archiveBucketTransferer.isJournaledAsArchived(bucket, format))
+				.thenReturn(true);
+		when(archiveBucketTransferer.isArchived(bucket, format)).thenReturn(false);
+
+		bucketArchiver.archiveBucket(bucket);
+
+		verifyZeroInteractions(deletesBuckets);
+		verify(bucketJournal).forget(bucket);
+		verify(bucketJournal, never()).record(bucket, Stage.DELETED);
+	}
+
+	public void archiveBucket_formatUploadedNow_isNotLookedUpInArchiveAgain() {
+		getMockedBucketReturnFromExporter();
+		BucketFormat format = bucketFormats.get(0);
+
+		bucketArchiver.archiveBucket(bucket);
+
+		verify(archiveBucketTransferer, times(1)).isArchived(bucket, format);
+		verify(deletesBuckets).deleteBucket(bucket);
+	}
 }
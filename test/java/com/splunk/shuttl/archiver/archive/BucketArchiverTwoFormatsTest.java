@@ -15,13 +15,23 @@
 package com.splunk.shuttl.archiver.archive;
 
 import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
 
 import java.util.List;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal;
 import com.splunk.shuttl.archiver.importexport.BucketExporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 
@@ -37,19 +47,26 @@ public class BucketArchiverTwoFormatsTest {
 	private List<BucketFormat> formats;
 	private Bucket exportedBucket1;
 	private Bucket exportedBucket2;
+	private ExecutorService formatExecutor;
 
 	@BeforeMethod
 	public void setUp() {
+		formatExecutor = Executors.newFixedThreadPool(2);
 		exporter = mock(BucketExporter.class);
 		archiveBucketTransferer = mock(ArchiveBucketTransferer.class);
 		bucketDeleter = mock(BucketDeleter.class);
 		formats = asList(BucketFormat.SPLUNK_BUCKET, BucketFormat.CSV);
 		bucketArchiver = new BucketArchiver(exporter, archiveBucketTransferer,
-				bucketDeleter, formats);
+				bucketDeleter, formats, formatExecutor, mock(BucketJournal.class));
 
 		bucket = mock(Bucket.class);
 	}
 
+	@AfterMethod
+	public void tearDown() {
+		formatExecutor.shutdownNow();
+	}
+
 	@Test(groups = { "fast-unit" })
 	public void archiveBucket_givenTwoFormats_archivesBothExportsAndDeletesOriginalBucket() {
 		setUpTwoFormatsAndTwoExportedBuckets();
@@ -100,4 +117,38 @@ public class BucketArchiverTwoFormatsTest {
 		verify(bucketDeleter, times(1)).deleteBucket(bucket);
 	}
 
+	public void archiveBucket_givenTwoFormats_exportsTheFormatsConcurrently() {
+		setUpTwoFormatsAndTwoExportedBuckets();
+		final CountDownLatch bothExporting = new CountDownLatch(2);
+		when(exporter.exportBucket(eq(bucket), any(BucketFormat.class)))
+				.thenAnswer(new Answer<Bucket>() {
+					@Override
+					public Bucket answer(InvocationOnMock invocation) throws Throwable {
+						bothExporting.countDown();
+						assertTrue(bothExporting.await(5, TimeUnit.SECONDS));
+						Object format = invocation.getArguments()[1];
+						return format == formats.get(0) ? exportedBucket1
+								: exportedBucket2;
+					}
+				});
+
+		bucketArchiver.archiveBucket(bucket);
+		verify(bucketDeleter).deleteBucket(bucket);
+	}
+
+	public void archiveBucket_firstFormatThrowsRuntimeException_rethrowsAfterSecondFormatIsDone() {
+		setUpTwoFormatsAndTwoExportedBuckets();
+		RuntimeException exception = new RuntimeException();
+		doThrow(exception).when(archiveBucketTransferer).transferBucketToArchive(
+				exportedBucket1);
+		try {
+			bucketArchiver.archiveBucket(bucket);
+			fail();
+		} catch (RuntimeException e) {
+			assertSame(exception, e);
+		}
+		verify(bucketDeleter).deleteBucket(exportedBucket2);
+		verify(bucketDeleter, never()).deleteBucket(bucket);
+	}
+
 }
@@ -33,12 +33,14 @@ public class BucketDeleterTest {
 	private Bucket bucket;
 	private BucketDeleter bucketDeleter;
 	private Logger logger;
+	private BucketTrash bucketTrash;
 
 	@BeforeMethod
 	public void setUp() {
 		bucket = TUtilsBucket.createBucket();
 		logger = mock(Logger.class);
-		bucketDeleter = new BucketDeleter(logger);
+		bucketTrash = mock(BucketTrash.class);
+		bucketDeleter = new BucketDeleter(logger, bucketTrash);
 	}
 
 	public void deleteBucket_givenExistingBucket_deletesBucket_deleteTwiceDoesNothing() {
@@ -55,4 +57,18 @@ public class BucketDeleterTest {
 		bucketDeleter.deleteBucket(throwsIOExceptionOnDelete);
 		verify(logger).warn(anyString());
 	}
+
+	public void deleteBucket_bucketWasTrashed_doesNotDeleteBucketInPlace()
+			throws IOException {
+		Bucket trashedBucket = mock(Bucket.class);
+		when(bucketTrash.trashBucket(trashedBucket)).thenReturn(true);
+		bucketDeleter.deleteBucket(trashedBucket);
+		verify(trashedBucket, never()).deleteBucket();
+	}
+
+	public void deleteBucket_bucketCouldNotBeTrashed_deletesBucketInPlace() {
+		when(bucketTrash.trashBucket(bucket)).thenReturn(false);
+		bucketDeleter.deleteBucket(bucket);
+		assertFalse(bucket.getDirectory().exists());
+	}
 }
@@ -34,7 +34,7 @@ import org.testng.annotations.Test;
 import com.splunk.shuttl.archiver.archive.recovery.BucketMover;
 import com.splunk.shuttl.archiver.archive.recovery.FailedBucketsArchiver;
 import com.splunk.shuttl.archiver.bucketlock.BucketLockerInTestDir;
-import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketHandler;
+import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketsHandler;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 import com.splunk.shuttl.testutil.TUtilsTestNG;
@@ -121,7 +121,8 @@ public class BucketFreezerSuccessfulArchivingTest {
 		Bucket bucket = TUtilsBucket.createBucket();
 		bucketFreezer.freezeBucket(bucket.getIndex(), bucket.getDirectory()
 				.getAbsolutePath());
-		verify(failedBucketsArchiver).archiveFailedBuckets(archiveRestHandler);
+		verify(failedBucketsArchiver).archiveFailedBucketsInBatches(
+				archiveRestHandler);
 	}
 
 	public void freezeBucket_givenBucket_triesToRestoreBucketsAFTERCallingRest() {
@@ -131,8 +132,8 @@ public class BucketFreezerSuccessfulArchivingTest {
 		InOrder inOrder = inOrder(archiveRestHandler, failedBucketsArchiver);
 		inOrder.verify(archiveRestHandler, times(1)).callRestToArchiveBucket(
 				any(Bucket.class));
-		inOrder.verify(failedBucketsArchiver).archiveFailedBuckets(
-				any(SharedLockBucketHandler.class));
+		inOrder.verify(failedBucketsArchiver).archiveFailedBucketsInBatches(
+				any(SharedLockBucketsHandler.class));
 		inOrder.verifyNoMoreInteractions();
 	}
 }
@@ -0,0 +1,138 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class BucketTrashTest {
+
+	private ExecutorService deleteExecutor;
+	private BucketTrash bucketTrash;
+	private File root;
+	private File parent;
+
+	@BeforeMethod
+	public void setUp() {
+		deleteExecutor = Executors.newSingleThreadExecutor();
+		bucketTrash = new BucketTrash(deleteExecutor, 1000);
+		root = TUtilsFile.createDirectory();
+		parent = TUtilsFile.createDirectoryInParent(root, "index");
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		deleteExecutor.shutdownNow();
+		FileUtils.deleteQuietly(root);
+	}
+
+	private void waitForDeletions() throws InterruptedException {
+		deleteExecutor.shutdown();
+		assertTrue(deleteExecutor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	public void trashBucket_existingBucket_bucketDirectoryIsGoneImmediately() {
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(parent,
+				"index");
+		assertTrue(bucketTrash.trashBucket(bucket));
+		assertFalse(bucket.getDirectory().exists());
+	}
+
+	public void trashBucket_existingBucket_trashIsBesideTheIndexDirectory() {
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(parent,
+				"index");
+		bucketTrash.trashBucket(bucket);
+		assertEquals(0, parent.list().length);
+		assertTrue(new File(root, BucketTrash.TRASH_DIRECTORY_NAME).isDirectory());
+	}
+
+	public void trashBucket_existingBucket_deletesTrashedBucketInBackground()
+			throws InterruptedException {
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(parent,
+				"index");
+		bucketTrash.trashBucket(bucket);
+		waitForDeletions();
+		File trash = new File(root, BucketTrash.TRASH_DIRECTORY_NAME);
+		assertEquals(0, trash.list().length);
+		assertEquals(0, bucketTrash.getTrashBuckets());
+		assertEquals(0, bucketTrash.getTrashBytes());
+	}
+
+	public void trashBucket_deleteThreadIsBusy_trashSizeIncludesBucket()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(parent,
+				"index");
+		FileUtils.writeStringToFile(new File(bucket.getDirectory(), "data"),
+				"0123456789");
+		deleteExecutor.shutdownNow();
+		deleteExecutor = mock(ExecutorService.class);
+		bucketTrash = new BucketTrash(deleteExecutor, 1000);
+
+		bucketTrash.trashBucket(bucket);
+		assertEquals(1, bucketTrash.getTrashBuckets());
+		assertTrue(bucketTrash.getTrashBytes() >= 10);
+	}
+
+	public void trashBucket_bucketDirectoryDoesNotExist_false() {
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(parent,
+				"index");
+		FileUtils.deleteQuietly(bucket.getDirectory());
+		assertFalse(bucketTrash.trashBucket(bucket));
+	}
+
+	public void trashBucket_leftoversInTrash_deletesLeftovers()
+			throws InterruptedException {
+		File trash = TUtilsFile.createDirectoryInParent(root,
+				BucketTrash.TRASH_DIRECTORY_NAME);
+		File leftover = TUtilsFile.createDirectoryInParent(trash, "leftover");
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(parent,
+				"index");
+		bucketTrash.trashBucket(bucket);
+		waitForDeletions();
+		assertFalse(leftover.exists());
+	}
+
+	public void trashBucket_moreFilesThanUnlinksPerSecond_sleepsBetweenWindows()
+			throws IOException, InterruptedException {
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(parent,
+				"index");
+		for (int i = 0; i < 5; i++)
+			FileUtils.touch(new File(bucket.getDirectory(), "file" + i));
+		BucketTrash throttled = spy(new BucketTrash(deleteExecutor, 2));
+		doReturn(0L).when(throttled).currentTimeMillis();
+		doNothing().when(throttled).sleep(anyLong());
+
+		throttled.trashBucket(bucket);
+		waitForDeletions();
+		verify(throttled, atLeast(2)).sleep(1000L);
+	}
+}
@@ -122,6 +122,34 @@ public class PathResolverTest {
 		assertEquals(expectedFormatsHome, actualFormatsHome);
 	}
 
+	public void getCatalogHome_givenIndex_uriInCatalogsDirectoryOfIndexesHome() {
+		URI expected = URI.create(pathResolver.getIndexesHome() + "/.catalog/"
+				+ "index");
+		assertEquals(expected, pathResolver.getCatalogHome("index"));
+	}
+
+	public void getArchivedFormatsPattern_givenIndex_globsBucketsAndFormatsInBucketsHome() {
+		URI expected = URI.create(pathResolver.getBucketsHome("index") + "/*/*");
+		assertEquals(expected, pathResolver.getArchivedFormatsPattern("index"));
+	}
+
+	public void getArchivedSizeFilesPattern_givenIndex_globsSizeFilesOfEveryFormat() {
+		URI expected = URI.create(pathResolver.getBucketsHome("index")
+				+ "/*/*/archive_meta/bucket.size.*");
+		assertEquals(expected, pathResolver.getArchivedSizeFilesPattern("index"));
+	}
+
+	public void getSizeFromBucketSizeFileName_sizeFileName_size() {
+		String path = PathResolver.getBucketSizeFilePath(123);
+		assertEquals(Long.valueOf(123), PathResolver
+				.getSizeFromBucketSizeFileName(path.substring(path.lastIndexOf('/') + 1)));
+	}
+
+	public void getSizeFromBucketSizeFileName_fileNameWithoutSize_null() {
+		assertNull(PathResolver.getSizeFromBucketSizeFileName("bucket.size"));
+		assertNull(PathResolver.getSizeFromBucketSizeFileName("bucket.size.x"));
+	}
+
 	public void resolveArchivedBucketURI_givenIndexBucketNameAndFormat_uriEqualsFormatsHomePlusFormat() {
 		String index = "index";
 		String bucketName = "bucketName";
@@ -163,4 +191,16 @@ public class PathResolverTest {
 				uritoFileWithBucketSize);
 	}
 
+	public void getBucketSizeFileUriForBucket_givenBucketAndSize_sizeIsInTheFileName() {
+		assertEquals(
+				URI.create(getArchivePathUpToFormat()
+						+ "/archive_meta/bucket.size.4711"),
+				pathResolver.getBucketSizeFileUriForBucket(bucket, 4711));
+	}
+
+	public void getMetadataDirectoryUriForBucket_givenBucket_metadataFolderInTheBucket() {
+		assertEquals(URI.create(getArchivePathUpToFormat() + "/archive_meta"),
+				pathResolver.getMetadataDirectoryUriForBucket(bucket));
+	}
+
 }
@@ -0,0 +1,177 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.bucketlock.BucketLock;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class SpoolDirectoryPollerTest {
+
+	private File spoolDirectory;
+	private BucketArchiverExecutor archiverExecutor;
+	private SpoolDirectoryPoller poller;
+	private BucketLock bucketLock;
+	private BucketArchiver bucketArchiver;
+	private Runnable archiverRunner;
+
+	@BeforeMethod
+	public void setUp() {
+		spoolDirectory = TUtilsFile.createDirectory();
+		archiverExecutor = mock(BucketArchiverExecutor.class);
+		bucketLock = mock(BucketLock.class);
+		when(bucketLock.tryLockShared()).thenReturn(true);
+		bucketArchiver = mock(BucketArchiver.class);
+		archiverRunner = mock(Runnable.class);
+		poller = spy(new SpoolDirectoryPoller(spoolDirectory, archiverExecutor));
+		doReturn(bucketLock).when(poller).createBucketLock(any(Bucket.class));
+		doReturn(bucketArchiver).when(poller).createBucketArchiver();
+		doReturn(archiverRunner).when(poller).createBucketArchiverRunner(
+				eq(bucketArchiver), any(Bucket.class), eq(bucketLock));
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(spoolDirectory);
+	}
+
+	private Bucket spoolBucket(String index) {
+		File indexDirectory = new File(spoolDirectory, index);
+		indexDirectory.mkdirs();
+		return TUtilsBucket.createBucketInDirectoryWithIndex(indexDirectory,
+				index);
+	}
+
+	private Runnable captureQueuedRunnable() {
+		ArgumentCaptor<Runnable> queued = ArgumentCaptor.forClass(Runnable.class);
+		verify(archiverExecutor).execute(queued.capture());
+		return queued.getValue();
+	}
+
+	public void poll_emptySpool_queuesNothing() {
+		poller.poll();
+		verifyZeroInteractions(archiverExecutor);
+	}
+
+	public void poll_spooledBucket_queuesBucketWithIndexFromDirectory() {
+		Bucket spooled = spoolBucket("index");
+		poller.poll();
+		verify(archiverExecutor).execute(any(Runnable.class));
+		ArgumentCaptor<Bucket> bucket = ArgumentCaptor.forClass(Bucket.class);
+		verify(poller).createBucketArchiverRunner(eq(bucketArchiver),
+				bucket.capture(), eq(bucketLock));
+		assertEquals("index", bucket.getValue().getIndex());
+		assertEquals(spooled.getName(), bucket.getValue().getName());
+	}
+
+	public void poll_bucketIsBeingRenamedIntoSpool_skipsBucket() {
+		Bucket spooled = spoolBucket("index");
+		File partial = new File(spooled.getDirectory().getParentFile(), "."
+				+ spooled.getName());
+		assertTrue(spooled.getDirectory().renameTo(partial));
+		poller.poll();
+		verifyZeroInteractions(archiverExecutor);
+	}
+
+	public void poll_bucketAlreadyQueued_doesNotQueueItAgain() {
+		spoolBucket("index");
+		poller.poll();
+		poller.poll();
+		verify(archiverExecutor, times(1)).execute(any(Runnable.class));
+	}
+
+	public void poll_bucketIsLockedByOther_doesNotQueueBucket() {
+		when(bucketLock.tryLockShared()).thenReturn(false);
+		spoolBucket("index");
+		poller.poll();
+		verifyZeroInteractions(archiverExecutor);
+	}
+
+	public void poll_archiveQueueIsFull_closesLockAndRetriesOnNextPoll() {
+		spoolBucket("index");
+		doThrow(new ArchiveQueueFullException(
+				null)).doNothing()
+				.when(archiverExecutor).execute(any(Runnable.class));
+		poller.poll();
+		verify(bucketLock).closeLock();
+		poller.poll();
+		verify(archiverExecutor, times(2)).execute(any(Runnable.class));
+	}
+
+	public void poll_creatingArchiverFails_doesNotLockBucket() {
+		spoolBucket("index");
+		doThrow(new RuntimeException()).when(poller).createBucketArchiver();
+		try {
+			poller.poll();
+			fail();
+		} catch (RuntimeException e) {
+		}
+		verify(bucketLock, never()).tryLockShared();
+		verifyZeroInteractions(archiverExecutor);
+	}
+
+	public void poll_queueingFailsWithRuntimeException_closesLockAndRetriesOnNextPoll() {
+		spoolBucket("index");
+		doThrow(new RuntimeException()).doNothing().when(archiverExecutor)
+				.execute(any(Runnable.class));
+		try {
+			poller.poll();
+			fail();
+		} catch (RuntimeException e) {
+		}
+		verify(bucketLock).closeLock();
+		poller.poll();
+		verify(archiverExecutor, times(2)).execute(any(Runnable.class));
+	}
+
+	public void poll_archivingFailed_retriesAfterRetryDelay() {
+		spoolBucket("index");
+		doReturn(0L).when(poller).currentTimeMillis();
+		poller.poll();
+		captureQueuedRunnable().run();
+
+		poller.poll();
+		verify(archiverExecutor, times(1)).execute(any(Runnable.class));
+
+		doReturn(SpoolDirectoryPoller.RETRY_DELAY_MILLIS).when(poller)
+				.currentTimeMillis();
+		poller.poll();
+		verify(archiverExecutor, times(2)).execute(any(Runnable.class));
+	}
+
+	public void poll_archivingSucceeded_bucketIsNotQueuedAgain() {
+		Bucket spooled = spoolBucket("index");
+		poller.poll();
+		Runnable queued = captureQueuedRunnable();
+		FileUtils.deleteQuietly(spooled.getDirectory());
+		queued.run();
+		poller.poll();
+		verify(archiverExecutor, times(1)).execute(any(Runnable.class));
+	}
+}
@@ -0,0 +1,127 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive.recovery;
+
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.archive.recovery.BucketJournal.Stage;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class BucketJournalTest {
+
+	private File journalFile;
+	private BucketJournal bucketJournal;
+	private Bucket bucket;
+
+	@BeforeMethod
+	public void setUp() {
+		journalFile = TUtilsFile.createFilePath();
+		bucketJournal = new BucketJournal(journalFile);
+		bucket = TUtilsBucket.createBucket();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(journalFile);
+	}
+
+	public void hasCompleted_nothingRecorded_false() {
+		assertFalse(bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.SPLUNK_BUCKET));
+	}
+
+	public void hasCompleted_stageRecordedForFormat_true() {
+		bucketJournal.record(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.SPLUNK_BUCKET);
+		assertTrue(bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.SPLUNK_BUCKET));
+	}
+
+	public void hasCompleted_stageRecordedForOtherFormat_false() {
+		bucketJournal.record(bucket, Stage.SIZE_WRITTEN, BucketFormat.CSV);
+		assertFalse(bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.SPLUNK_BUCKET));
+	}
+
+	public void hasCompleted_bucketRecordedAsDeleted_false() {
+		bucketJournal.record(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.SPLUNK_BUCKET);
+		bucketJournal.record(bucket, Stage.DELETED);
+		assertFalse(bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.SPLUNK_BUCKET));
+		assertEquals(0, bucketJournal.size());
+	}
+
+	public void forget_bucketWithSizeWritten_isForgottenAlsoAfterReopening() {
+		bucketJournal.record(bucket, Stage.SIZE_WRITTEN, BucketFormat.CSV);
+		bucketJournal.forget(bucket);
+		BucketJournal reopened = new BucketJournal(journalFile);
+		assertFalse(bucketJournal.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.CSV));
+		assertFalse(reopened.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.CSV));
+	}
+
+	public void constructor_journalWrittenByEarlierInstance_resumesStages() {
+		bucketJournal.record(bucket, Stage.SIZE_WRITTEN, BucketFormat.CSV);
+		BucketJournal reopened = new BucketJournal(journalFile);
+		assertTrue(reopened.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.CSV));
+	}
+
+	public void constructor_journalEndsWithPartialLine_skipsPartialLine()
+			throws IOException {
+		bucketJournal.record(bucket, Stage.EXPORTING, BucketFormat.CSV);
+		FileUtils.writeStringToFile(journalFile, "SIZE_WRI", true);
+		BucketJournal reopened = new BucketJournal(journalFile);
+		assertTrue(reopened
+				.hasCompleted(bucket, Stage.EXPORTING, BucketFormat.CSV));
+		assertFalse(reopened.hasCompleted(bucket, Stage.SIZE_WRITTEN,
+				BucketFormat.CSV));
+	}
+
+	public void constructor_journalWithStageNoLongerRecorded_skipsThatLine()
+			throws IOException {
+		bucketJournal.record(bucket, Stage.EXPORTING, BucketFormat.CSV);
+		FileUtils.writeStringToFile(journalFile, "UPLOADED\t" + bucket.getIndex()
+				+ "\t" + bucket.getName() + "\tCSV\n", true);
+		BucketJournal reopened = new BucketJournal(journalFile);
+		assertTrue(reopened
+				.hasCompleted(bucket, Stage.EXPORTING, BucketFormat.CSV));
+		assertEquals(1, reopened.size());
+	}
+
+	public void record_manyDeletedBuckets_journalIsCompacted() {
+		for (int i = 0; i < BucketJournal.COMPACT_AFTER_RECORDS; i++) {
+			Bucket deleted = TUtilsBucket.createBucketWithIndexAndName("index",
+					"db_" + (i + 1) + "_" + i + "_0");
+			bucketJournal.record(deleted, Stage.DELETED);
+		}
+		bucketJournal.record(bucket, Stage.SIZE_WRITTEN, BucketFormat.CSV);
+		assertTrue(journalFile.length() < 100);
+	}
+}
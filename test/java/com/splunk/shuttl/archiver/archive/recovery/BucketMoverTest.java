@@ -124,6 +124,17 @@ public class BucketMoverTest {
 		assertTrue(movedBuckets.isEmpty());
 	}
 
+	public void getMovedBuckets_dotDirectoriesInMoveLocationAndIndexDirectory_areNotListedAsBuckets() {
+		Bucket bucket = createBucketInMoveLocationWithIndexPreserved("index");
+		File trash = createDirectoryInParent(moveBucketLocation, ".shuttl-trash");
+		createDirectoryInParent(trash, "trashed-bucket");
+		createDirectoryInParent(bucket.getDirectory().getParentFile(), ".hidden");
+
+		List<Bucket> movedBuckets = bucketMover.getMovedBuckets();
+		assertEquals(1, movedBuckets.size());
+		assertEquals(bucket, movedBuckets.get(0));
+	}
+
 	public void getMovedBuckets_noBucketsInIndexDirectory_emptyList() {
 		File empty = createDirectoryInParent(moveBucketLocation, "index");
 		assertTrue(isDirectoryEmpty(empty));
@@ -138,4 +149,46 @@ public class BucketMoverTest {
 		return TUtilsBucket.createBucketInDirectoryWithIndex(
 				directoryRepresentingIndex, index);
 	}
+
+	public void moveBucket_givenStagingDirectoryName_movesBucketToStagingDirectoryNextToIt() {
+		File colddb = createDirectory();
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(colddb,
+				"index");
+		BucketMover stagingMover = new BucketMover(moveBucketLocation, ".staging");
+
+		Bucket movedBucket = stagingMover.moveBucket(bucket);
+		File expectedDirectory = new File(new File(colddb, ".staging"), "index");
+		assertEquals(expectedDirectory.getAbsolutePath(), movedBucket
+				.getDirectory().getParentFile().getAbsolutePath());
+		assertFalse(bucket.getDirectory().exists());
+	}
+
+	public void getMovedBuckets_bucketMovedToStagingDirectory_listsBucketInStagingDirectoryAndMovedLocation() {
+		Bucket inMoveLocation = createBucketInMoveLocationWithIndexPreserved("a");
+		File colddb = createDirectory();
+		BucketMover stagingMover = new BucketMover(moveBucketLocation, ".staging");
+		Bucket staged = stagingMover.moveBucket(TUtilsBucket
+				.createBucketInDirectoryWithIndex(colddb, "b"));
+		stagingMover.moveBucket(TUtilsBucket.createBucketInDirectoryWithIndex(
+				colddb, "b"));
+
+		List<Bucket> movedBuckets = new BucketMover(moveBucketLocation,
+				".staging").getMovedBuckets();
+		assertEquals(3, movedBuckets.size());
+		assertTrue(movedBuckets.contains(inMoveLocation));
+		assertTrue(movedBuckets.contains(staged));
+	}
+
+	public void moveBucket_stagingDirectoryCanNotBeCreated_movesBucketToMoveLocation()
+			throws IOException {
+		File colddb = createDirectory();
+		assertTrue(new File(colddb, ".staging").createNewFile());
+		Bucket bucket = TUtilsBucket.createBucketInDirectoryWithIndex(colddb,
+				"index");
+
+		Bucket movedBucket = new BucketMover(moveBucketLocation, ".staging")
+				.moveBucket(bucket);
+		assertEquals(new File(moveBucketLocation, "index").getAbsolutePath(),
+				movedBucket.getDirectory().getParentFile().getAbsolutePath());
+	}
 }
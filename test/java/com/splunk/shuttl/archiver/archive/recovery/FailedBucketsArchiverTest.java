@@ -28,6 +28,7 @@ import org.testng.annotations.Test;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
 import com.splunk.shuttl.archiver.bucketlock.BucketLockerInTestDir;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketHandler;
+import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketsHandler;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -80,4 +81,25 @@ public class FailedBucketsArchiverTest {
 		verify(sharedLockBucketHandler, times(2)).handleSharedLockedBucket(
 				any(Bucket.class));
 	}
+
+	public void archiveFailedBucketsInBatches_moreBucketsThanBatchSize_handlesTwoBatches() {
+		List<Bucket> buckets = stubXBucketsInBucketMover(
+				FailedBucketsArchiver.BATCH_SIZE + 1);
+		SharedLockBucketsHandler bucketsHandler = mock(
+				SharedLockBucketsHandler.class);
+
+		failedBucketsArchiver.archiveFailedBucketsInBatches(bucketsHandler);
+
+		verify(bucketsHandler).handleSharedLockedBuckets(
+				buckets.subList(0, FailedBucketsArchiver.BATCH_SIZE));
+		verify(bucketsHandler).handleSharedLockedBuckets(
+				buckets.subList(FailedBucketsArchiver.BATCH_SIZE, buckets.size()));
+	}
+
+	public void archiveFailedBucketsInBatches_noMovedBuckets_neverCallsHandler() {
+		SharedLockBucketsHandler bucketsHandler = mock(
+				SharedLockBucketsHandler.class);
+		failedBucketsArchiver.archiveFailedBucketsInBatches(bucketsHandler);
+		verifyZeroInteractions(bucketsHandler);
+	}
 }
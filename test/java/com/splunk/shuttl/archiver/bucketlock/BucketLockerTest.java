@@ -16,6 +16,7 @@ package com.splunk.shuttl.archiver.bucketlock;
 
 import static com.splunk.shuttl.archiver.LocalFileSystemConstants.*;
 import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static java.util.Arrays.*;
 import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
@@ -28,6 +29,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketHandler;
+import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketsHandler;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -87,6 +89,39 @@ public class BucketLockerTest {
 		verify(bucketHandler).handleSharedLockedBucket(bucket);
 	}
 
+	public void callBucketsHandlerUnderSharedLocks_oneBucketIsLocked_callsHandlerOnceWithTheOtherBuckets() {
+		Bucket otherBucket = TUtilsBucket
+				.createBucketInDirectory(tempTestDirectory);
+		Bucket lockedBucket = TUtilsBucket
+				.createBucketInDirectory(tempTestDirectory);
+		assertTrue(bucketLocker.getLockForBucket(lockedBucket).tryLockExclusive());
+		SharedLockBucketsHandler bucketsHandler = mock(
+				SharedLockBucketsHandler.class);
+
+		bucketLocker.callBucketsHandlerUnderSharedLocks(
+				asList(bucket, lockedBucket, otherBucket), bucketsHandler);
+
+		verify(bucketsHandler).handleSharedLockedBuckets(
+				asList(bucket, otherBucket));
+	}
+
+	public void callBucketsHandlerUnderSharedLocks_handlerIsDone_releasesLocks() {
+		SharedLockBucketsHandler bucketsHandler = mock(
+				SharedLockBucketsHandler.class);
+		bucketLocker.callBucketsHandlerUnderSharedLocks(asList(bucket),
+				bucketsHandler);
+		assertTrue(bucketLocker.getLockForBucket(bucket).tryLockExclusive());
+	}
+
+	public void callBucketsHandlerUnderSharedLocks_noBucketCanBeLocked_doesNotCallHandler() {
+		assertTrue(bucketLocker.getLockForBucket(bucket).tryLockExclusive());
+		SharedLockBucketsHandler bucketsHandler = mock(
+				SharedLockBucketsHandler.class);
+		bucketLocker.callBucketsHandlerUnderSharedLocks(asList(bucket),
+				bucketsHandler);
+		verifyZeroInteractions(bucketsHandler);
+	}
+
 	public static class NoOpBucketHandler implements SharedLockBucketHandler {
 
 		public boolean wasRun = false;
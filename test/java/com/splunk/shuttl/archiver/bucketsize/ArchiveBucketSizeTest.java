@@ -15,6 +15,7 @@
 package com.splunk.shuttl.archiver.bucketsize;
 
 import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static java.util.Arrays.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
@@ -22,12 +23,14 @@ import static org.testng.AssertJUnit.*;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Map;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.archive.PathResolver;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.FileEntry;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -56,8 +59,9 @@ public class ArchiveBucketSizeTest {
 
 	public void putSize_givenPathResolver_getsMetadataFolderForBucket() {
 		Bucket bucket = mock(Bucket.class);
+		when(bucket.getSize()).thenReturn(4711L);
 		archiveBucketSize.putSize(bucket);
-		verify(pathResolver).getBucketSizeFileUriForBucket(bucket);
+		verify(pathResolver).getBucketSizeFileUriForBucket(bucket, 4711);
 	}
 
 	public void putSize_givenFileWithBucketSizeAndPathOnArchiveFileSystem_transfersFileWithSizeToArchiveFileSystem()
@@ -67,7 +71,7 @@ public class ArchiveBucketSizeTest {
 		when(bucketSizeIO.getFileWithBucketSize(bucket)).thenReturn(
 				fileWithBucketsSize);
 		URI pathOnArchiveFileSystem = URI.create("path:/on/archive/file/system");
-		when(pathResolver.getBucketSizeFileUriForBucket(bucket)).thenReturn(
+		when(pathResolver.getBucketSizeFileUriForBucket(bucket, 0)).thenReturn(
 				pathOnArchiveFileSystem);
 		archiveBucketSize.putSize(bucket);
 		verify(archiveFileSystem).putFileAtomically(fileWithBucketsSize,
@@ -92,4 +96,44 @@ public class ArchiveBucketSizeTest {
 		assertEquals(size, actualSize);
 
 	}
+
+	public void getSize_sizeFileWithSizeInItsNameIsListed_returnsSizeWithoutReadingTheFile()
+			throws IOException {
+		Bucket remoteBucket = TUtilsBucket.createRemoteBucket();
+		URI metadataDirectory = URI.create("remote:/bucket/archive_meta");
+		when(pathResolver.getMetadataDirectoryUriForBucket(remoteBucket))
+				.thenReturn(metadataDirectory);
+		when(archiveFileSystem.listEntries(metadataDirectory)).thenReturn(
+				asList(new FileEntry(URI
+						.create("remote:/bucket/archive_meta/bucket.size.4711"), 4, 0,
+						false)));
+
+		assertEquals(4711, archiveBucketSize.getSize(remoteBucket));
+		verifyZeroInteractions(bucketSizeIO);
+	}
+
+	public void getSize_onlySizeFileWithoutSizeInItsNameIsListed_readsTheFile()
+			throws IOException {
+		Bucket remoteBucket = TUtilsBucket.createRemoteBucket();
+		when(archiveFileSystem.listEntries(any(URI.class))).thenReturn(
+				asList(new FileEntry(URI
+						.create("remote:/bucket/archive_meta/bucket.size"), 4, 0, false)));
+		when(bucketSizeIO.readSizeFromRemoteFile(any(URI.class))).thenReturn(
+				4711L);
+
+		assertEquals(4711, archiveBucketSize.getSize(remoteBucket));
+	}
+
+	public void getSizeMetadata_bucket_sizeFileIsNamedWithTheBucketsSize() {
+		Bucket bucket = mock(Bucket.class);
+		when(bucket.getSize()).thenReturn(4711L);
+		File fileWithBucketsSize = createFile();
+		when(bucketSizeIO.getFileWithBucketSize(bucket)).thenReturn(
+				fileWithBucketsSize);
+
+		Map<String, File> sizeMetadata = archiveBucketSize.getSizeMetadata(bucket);
+
+		assertEquals(fileWithBucketsSize,
+				sizeMetadata.get("archive_meta/bucket.size.4711"));
+	}
 }
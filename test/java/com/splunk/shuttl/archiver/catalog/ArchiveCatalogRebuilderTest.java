@@ -0,0 +1,112 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.archive.PathResolver;
+import com.splunk.shuttl.archiver.bucketsize.ArchiveBucketSize;
+import com.splunk.shuttl.archiver.listers.ArchiveBucketsLister;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class ArchiveCatalogRebuilderTest {
+
+	private ArchiveBucketsLister bucketsLister;
+	private BucketFormatResolver bucketFormatResolver;
+	private ArchiveBucketSize archiveBucketSize;
+	private PathResolver pathResolver;
+	private ArchiveCatalog archiveCatalog;
+	private ArchiveCatalogRebuilder rebuilder;
+	private Bucket bucket;
+
+	@BeforeMethod
+	public void setUp() {
+		bucketsLister = mock(ArchiveBucketsLister.class);
+		bucketFormatResolver = mock(BucketFormatResolver.class);
+		archiveBucketSize = mock(ArchiveBucketSize.class);
+		pathResolver = mock(PathResolver.class);
+		archiveCatalog = mock(ArchiveCatalog.class);
+		rebuilder = new ArchiveCatalogRebuilder(bucketsLister,
+				bucketFormatResolver, archiveBucketSize, pathResolver, archiveCatalog);
+
+		bucket = TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_1336330530_1336330530_0");
+		when(bucketsLister.listBucketsInIndex("index")).thenReturn(asList(bucket));
+		when(
+				pathResolver.resolveArchivedBucketURI(anyString(), anyString(),
+						any(BucketFormat.class))).thenReturn(URI.create("valid:/uri"));
+	}
+
+	public void rebuild_bucketInTwoFormats_replacesCatalogWithEntryPerFormat()
+			throws IOException {
+		when(bucketFormatResolver.listArchivedFormats(bucket)).thenReturn(
+				asList(BucketFormat.SPLUNK_BUCKET, BucketFormat.CSV));
+		when(archiveBucketSize.getSize(any(Bucket.class))).thenReturn(10L);
+
+		assertEquals(2, rebuilder.rebuild("index"));
+
+		ArgumentCaptor<List<CatalogEntry>> entries = entriesCaptor();
+		verify(archiveCatalog).replace(eq("index"), entries.capture());
+		CatalogEntry csvEntry = entries.getValue().get(1);
+		assertEquals(bucket.getName(), csvEntry.getBucketName());
+		assertEquals(BucketFormat.CSV, csvEntry.getFormat());
+		assertEquals(10L, (long) csvEntry.getSize());
+	}
+
+	public void rebuild_sizeCannotBeRead_entryWithoutSize() throws IOException {
+		when(bucketFormatResolver.listArchivedFormats(bucket)).thenReturn(
+				asList(BucketFormat.SPLUNK_BUCKET));
+		when(archiveBucketSize.getSize(any(Bucket.class))).thenThrow(
+				new RuntimeException());
+
+		rebuilder.rebuild("index");
+
+		ArgumentCaptor<List<CatalogEntry>> entries = entriesCaptor();
+		verify(archiveCatalog).replace(eq("index"), entries.capture());
+		assertNull(entries.getValue().get(0).getSize());
+	}
+
+	public void rebuildAll_twoIndexes_rebuildsBoth() throws IOException {
+		when(bucketsLister.listIndexes()).thenReturn(asList("index", "other"));
+
+		rebuilder.rebuildAll();
+
+		verify(archiveCatalog).replace(eq("index"),
+				Matchers.<List<CatalogEntry>> any());
+		verify(archiveCatalog).replace(eq("other"),
+				Matchers.<List<CatalogEntry>> any());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private ArgumentCaptor<List<CatalogEntry>> entriesCaptor() {
+		return (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+	}
+}
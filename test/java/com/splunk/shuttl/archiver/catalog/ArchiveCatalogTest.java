@@ -0,0 +1,209 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.archive.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class ArchiveCatalogTest {
+
+	private ArchiveCatalog archiveCatalog;
+	private File catalogsHome;
+	private File tmpDirectory;
+	private PathResolver pathResolver;
+	private ArchiveFileSystem archiveFileSystem;
+
+	@BeforeMethod
+	public void setUp() {
+		catalogsHome = createDirectory();
+		tmpDirectory = createDirectory();
+		pathResolver = mock(PathResolver.class);
+		when(pathResolver.getCatalogHome("index")).thenReturn(
+				new File(catalogsHome, "index").toURI());
+		archiveFileSystem = ArchiveFileSystemFactory.getForUriToTmpDir(tmpDirectory
+				.toURI());
+		archiveCatalog = new ArchiveCatalog(archiveFileSystem, pathResolver);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(catalogsHome);
+		FileUtils.deleteQuietly(tmpDirectory);
+	}
+
+	public void hasCatalog_nothingAdded_false() throws IOException {
+		assertFalse(archiveCatalog.hasCatalog("index"));
+		assertTrue(archiveCatalog.getEntries("index").isEmpty());
+	}
+
+	public void disabled_addedBucket_hasNoCatalogAndNoEntries()
+			throws IOException {
+		ArchiveCatalog disabled = ArchiveCatalog.disabled();
+
+		disabled.add(TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_1336330530_1336330530_0"));
+
+		assertFalse(disabled.isEnabled());
+		assertFalse(disabled.hasCatalog("index"));
+		assertTrue(disabled.getEntries("index").isEmpty());
+	}
+
+	public void getEntries_addedBucket_entryWithBucketsNameFormatTimesAndSize()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_1336330530_1336330530_0");
+
+		archiveCatalog.add(bucket);
+
+		List<CatalogEntry> entries = archiveCatalog.getEntries("index");
+		assertEquals(1, entries.size());
+		CatalogEntry entry = entries.get(0);
+		assertEquals(bucket.getName(), entry.getBucketName());
+		assertEquals(bucket.getFormat(), entry.getFormat());
+		assertEquals(bucket.getEarliest(), entry.getEarliest());
+		assertEquals(bucket.getLatest(), entry.getLatest());
+		assertEquals(bucket.getSize(), entry.getSize());
+	}
+
+	public void add_moreBucketsThanMaxSegments_segmentsAreMergedAndNoEntryIsLost()
+			throws IOException {
+		int buckets = ArchiveCatalog.MAX_SEGMENTS + 2;
+		for (int i = 0; i < buckets; i++)
+			archiveCatalog.add(TUtilsBucket.createBucketWithIndexAndName("index",
+					"db_1336330530_1336330530_" + i));
+
+		assertEquals(buckets, archiveCatalog.getEntries("index").size());
+		int segments = new File(catalogsHome, "index").list().length;
+		assertTrue(segments <= ArchiveCatalog.MAX_SEGMENTS);
+	}
+
+	public void add_sameBucketTwice_oneEntry() throws IOException {
+		Bucket bucket = TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_1336330530_1336330530_0");
+
+		archiveCatalog.add(bucket);
+		archiveCatalog.add(bucket);
+
+		assertEquals(1, archiveCatalog.getEntries("index").size());
+	}
+
+	public void replace_catalogWithEntries_onlyReplacingEntriesAreLeft()
+			throws IOException {
+		archiveCatalog.add(TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_1336330530_1336330530_0"));
+		CatalogEntry entry = new CatalogEntry("db_2_1_5", BucketFormat.CSV,
+				new Date(1000), new Date(2000), null);
+
+		archiveCatalog.replace("index", Arrays.asList(entry));
+
+		List<CatalogEntry> entries = archiveCatalog.getEntries("index");
+		assertEquals(1, entries.size());
+		assertEquals(entry.toLine(), entries.get(0).toLine());
+		assertNull(entries.get(0).getSize());
+	}
+
+	public void getEntries_segmentsReplacedWhileReading_readsReplacingSegment()
+			throws IOException {
+		archiveCatalog.add(TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_1336330530_1336330530_0"));
+		archiveCatalog.add(TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_1336330530_1336330530_1"));
+		final List<CatalogEntry> entries = archiveCatalog.getEntries("index");
+		ArchiveFileSystem replacedWhileReading = spy(archiveFileSystem);
+		doAnswer(new Answer<InputStream>() {
+			private boolean replaced;
+
+			@Override
+			public InputStream answer(InvocationOnMock invocation)
+					throws Throwable {
+				if (!replaced) {
+					replaced = true;
+					archiveCatalog.replace("index", entries);
+				}
+				return (InputStream) invocation.callRealMethod();
+			}
+		}).when(replacedWhileReading).openFile(any(URI.class));
+
+		List<CatalogEntry> read = new ArchiveCatalog(replacedWhileReading,
+				pathResolver).getEntries("index");
+
+		assertEquals(2, read.size());
+	}
+
+	public void add_bucketsFromTwoCatalogsInParallel_noEntryIsLost()
+			throws Exception {
+		final int bucketsPerCatalog = ArchiveCatalog.MAX_SEGMENTS * 2;
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		List<Future<Void>> adds = new ArrayList<Future<Void>>();
+		for (int c = 0; c < 2; c++) {
+			final ArchiveCatalog catalog = new ArchiveCatalog(archiveFileSystem,
+					pathResolver);
+			final int offset = c * bucketsPerCatalog;
+			adds.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					for (int i = offset; i < offset + bucketsPerCatalog; i++)
+						catalog.add(TUtilsBucket.createBucketWithIndexAndName("index",
+								"db_1336330530_1336330530_" + i));
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<Void> add : adds)
+				add.get();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(2 * bucketsPerCatalog, archiveCatalog.getEntries("index")
+				.size());
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void fromLine_notAnEntry_throwsIllegalArgumentException() {
+		CatalogEntry.fromLine("db_2_1_5\tCSV");
+	}
+}
@@ -0,0 +1,113 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.IOException;
+import java.util.Date;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+
+@Test(groups = { "fast-unit" })
+public class ArchiveTimeIndexTest {
+
+	private ArchiveTimeIndex archiveTimeIndex;
+	private ArchiveCatalogRebuilder archiveWalker;
+	private ArchiveCatalog archiveCatalog;
+	private CatalogEntry entry;
+
+	@BeforeMethod
+	public void setUp() {
+		archiveTimeIndex = new ArchiveTimeIndex();
+		archiveWalker = mock(ArchiveCatalogRebuilder.class);
+		archiveCatalog = mock(ArchiveCatalog.class);
+		entry = new CatalogEntry("db_20_10_0", BucketFormat.SPLUNK_BUCKET,
+				new Date(10), new Date(20), 1L);
+	}
+
+	public void isWarm_notWarmed_false() {
+		archiveTimeIndex.add("index", entry);
+		assertFalse(archiveTimeIndex.isWarm());
+	}
+
+	public void warm_indexWithCatalog_readsCatalogInsteadOfWalking()
+			throws IOException {
+		when(archiveWalker.listIndexes()).thenReturn(asList("index"));
+		when(archiveCatalog.getEntries("index")).thenReturn(asList(entry));
+
+		archiveTimeIndex.warm(archiveWalker, archiveCatalog);
+
+		assertTrue(archiveTimeIndex.isWarm());
+		assertEquals(asList(entry),
+				archiveTimeIndex.find("index", new Date(0), new Date(100)));
+		verify(archiveWalker, never()).walkIndex("index");
+	}
+
+	public void warm_indexWithoutCatalog_walksIndex() throws IOException {
+		when(archiveWalker.listIndexes()).thenReturn(asList("index"));
+		when(archiveWalker.walkIndex("index")).thenReturn(asList(entry));
+
+		archiveTimeIndex.warm(archiveWalker, ArchiveCatalog.disabled());
+
+		assertEquals(asList("index"), archiveTimeIndex.getIndexes());
+		assertEquals(asList(entry),
+				archiveTimeIndex.find("index", new Date(0), new Date(100)));
+	}
+
+	public void find_bucketAddedAfterWarm_isFound() throws IOException {
+		archiveTimeIndex.warm(archiveWalker, ArchiveCatalog.disabled());
+		archiveTimeIndex.add("index", entry);
+
+		assertEquals(asList(entry),
+				archiveTimeIndex.find("index", new Date(15), new Date(15)));
+		assertTrue(archiveTimeIndex.find("other", new Date(0), new Date(100))
+				.isEmpty());
+	}
+
+	public void find_sameBucketAndFormatAddedTwice_isFoundOnce()
+			throws IOException {
+		when(archiveWalker.listIndexes()).thenReturn(asList("index"));
+		when(archiveWalker.walkIndex("index")).thenReturn(asList(entry));
+		archiveTimeIndex.warm(archiveWalker, ArchiveCatalog.disabled());
+		CatalogEntry replacing = new CatalogEntry("db_20_10_0",
+				BucketFormat.SPLUNK_BUCKET, new Date(10), new Date(20), 2L);
+
+		archiveTimeIndex.add("index", replacing);
+
+		assertEquals(asList(replacing),
+				archiveTimeIndex.find("index", new Date(0), new Date(100)));
+	}
+
+	public void find_moreBucketsAddedThanAreKeptAsRecent_findsAllBuckets() {
+		int buckets = 1000;
+		for (int i = 0; i < buckets; i++)
+			archiveTimeIndex.add("index", new CatalogEntry("db_" + (2 * i + 1)
+					+ "_" + (2 * i) + "_" + i, BucketFormat.SPLUNK_BUCKET, new Date(
+					2 * i), new Date(2 * i + 1), 1L));
+
+		assertEquals(buckets,
+				archiveTimeIndex.find("index", new Date(0), new Date(2 * buckets))
+						.size());
+		assertEquals(1,
+				archiveTimeIndex.find("index", new Date(1000), new Date(1000))
+						.size());
+	}
+}
@@ -0,0 +1,110 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static org.testng.AssertJUnit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+
+@Test(groups = { "fast-unit" })
+public class BucketIntervalIndexTest {
+
+	private CatalogEntry entry(String name, long earliest, long latest,
+			BucketFormat format) {
+		return new CatalogEntry(name, format, new Date(earliest),
+				new Date(latest), null);
+	}
+
+	private List<CatalogEntry> find(BucketIntervalIndex index, long earliest,
+			long latest) {
+		List<CatalogEntry> found = new ArrayList<CatalogEntry>();
+		index.find(earliest, latest, found);
+		return found;
+	}
+
+	public void find_emptyIndex_findsNothing() {
+		assertTrue(find(BucketIntervalIndex.empty(), 0, Long.MAX_VALUE).isEmpty());
+	}
+
+	public void find_earliestAfterLatest_findsNothing() {
+		BucketIntervalIndex index = BucketIntervalIndex.create(Arrays.asList(entry(
+				"a", 10, 20, BucketFormat.SPLUNK_BUCKET)));
+		assertTrue(find(index, 20, 10).isEmpty());
+	}
+
+	public void find_rangeTouchingBucketEdges_findsBucket() {
+		BucketIntervalIndex index = BucketIntervalIndex.create(Arrays.asList(entry(
+				"a", 10, 20, BucketFormat.SPLUNK_BUCKET)));
+		assertEquals(1, find(index, 20, 30).size());
+		assertEquals(1, find(index, 0, 10).size());
+		assertTrue(find(index, 21, 30).isEmpty());
+		assertTrue(find(index, 0, 9).isEmpty());
+	}
+
+	public void find_randomBuckets_findsSameBucketsAsLinearScan() {
+		Random random = new Random(4711);
+		List<CatalogEntry> entries = new ArrayList<CatalogEntry>();
+		for (int i = 0; i < 500; i++) {
+			long earliest = random.nextInt(10000);
+			long latest = earliest + random.nextInt(random.nextBoolean() ? 50 : 3000);
+			entries.add(entry("b" + i, earliest, latest, BucketFormat.SPLUNK_BUCKET));
+		}
+		BucketIntervalIndex index = BucketIntervalIndex.create(entries);
+
+		for (int i = 0; i < 200; i++) {
+			long earliest = random.nextInt(13000);
+			long latest = earliest + random.nextInt(1000);
+			Set<CatalogEntry> expected = new HashSet<CatalogEntry>();
+			for (CatalogEntry e : entries)
+				if (e.getLatest().getTime() >= earliest
+						&& e.getEarliest().getTime() <= latest)
+					expected.add(e);
+			assertEquals(expected,
+					new HashSet<CatalogEntry>(find(index, earliest, latest)));
+		}
+	}
+
+	public void withEntries_newFormatOfExistingBucket_bucketHasBothFormats() {
+		BucketIntervalIndex index = BucketIntervalIndex.create(Arrays.asList(entry(
+				"a", 10, 20, BucketFormat.SPLUNK_BUCKET)));
+
+		BucketIntervalIndex withCsv = index.withEntries(Arrays.asList(entry("a",
+				10, 20, BucketFormat.CSV)));
+
+		assertEquals(1, withCsv.size());
+		assertEquals(2, find(withCsv, 0, 100).size());
+		assertEquals(1, find(index, 0, 100).size());
+	}
+
+	public void withEntries_sameBucketAndFormat_entryIsReplaced() {
+		CatalogEntry replacing = new CatalogEntry("a", BucketFormat.CSV, new Date(
+				10), new Date(20), 5L);
+		BucketIntervalIndex index = BucketIntervalIndex.create(
+				Arrays.asList(entry("a", 10, 20, BucketFormat.CSV))).withEntries(
+				Arrays.asList(replacing));
+
+		assertEquals(Arrays.asList(replacing), find(index, 0, 100));
+	}
+}
@@ -129,6 +129,7 @@ public class ArchiverEndToEndTest {
 				thawIndex, earliest, latest);
 		successfulBucketFreezer.freezeBucket(bucketToFreeze.getIndex(),
 				bucketToFreeze.getDirectory().getAbsolutePath());
+		TUtilsFunctional.waitForAsyncArchiving();
 
 		verifyFreezeByListingBucketInArchive(bucketToFreeze, thawIndex, earliest,
 				latest);
@@ -0,0 +1,124 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.testutil.TUtilsFileSystem;
+import com.splunk.shuttl.testutil.TUtilsTestNG;
+
+@Test(groups = { "fast-unit" })
+public class DirectoryContainerTest {
+
+	public void unpack_packedDirectory_sameFilesAndDirectories()
+			throws IOException {
+		File directory = createDirectory();
+		populateFileWithRandomContent(createFileInParent(directory, "a"));
+		File sub = createDirectoryInParent(directory, "sub");
+		populateFileWithRandomContent(createFileInParent(sub, "b"));
+		createFileInParent(directory, "emptyFile");
+		ByteArrayOutputStream container = new ByteArrayOutputStream();
+
+		long written = DirectoryContainer.pack(directory, container);
+		File unpacked = createFilePath();
+		DirectoryContainer.unpack(
+				new ByteArrayInputStream(container.toByteArray()), unpacked);
+
+		assertEquals(container.size(), written);
+		TUtilsTestNG.assertFileContentsEqual(new File(directory, "a"), new File(
+				unpacked, "a"));
+		TUtilsTestNG.assertFileContentsEqual(new File(sub, "b"), new File(
+				unpacked, "sub/b"));
+		assertEquals(0, new File(unpacked, "emptyFile").length());
+	}
+
+	public void pack_directory_indexHasMembersInPackOrderWithTheirLengths()
+			throws IOException {
+		File directory = createDirectory();
+		File a = createFileInParent(directory, "a");
+		populateFileWithRandomContent(a);
+		createDirectoryInParent(directory, "sub");
+
+		Map<String, DirectoryContainer.Member> index = readIndexOfPacked(directory);
+
+		List<String> paths = new ArrayList<String>(index.keySet());
+		assertEquals(Arrays.asList("a", "sub"), paths);
+		assertEquals(a.length(), index.get("a").getLength());
+		assertTrue(index.get("sub").isDirectory());
+	}
+
+	private Map<String, DirectoryContainer.Member> readIndexOfPacked(
+			File directory) throws IOException {
+		File containerFile = createFilePath();
+		FileUtils.writeByteArrayToFile(containerFile, packToBytes(directory));
+		FSDataInputStream in = TUtilsFileSystem.getLocalFileSystem().open(
+				new Path(containerFile.toURI()));
+		try {
+			return DirectoryContainer.readIndex(in, containerFile.length());
+		} finally {
+			in.close();
+		}
+	}
+
+	private byte[] packToBytes(File directory) throws IOException {
+		ByteArrayOutputStream container = new ByteArrayOutputStream();
+		DirectoryContainer.pack(directory, container);
+		return container.toByteArray();
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void unpack_notAContainer_throwsIOException() throws IOException {
+		DirectoryContainer.unpack(new ByteArrayInputStream("not a container"
+				.getBytes()), createFilePath());
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void unpack_memberPathOutsideDirectory_throwsIOException()
+			throws IOException {
+		byte[] packed = packToBytes(createDirectory());
+		ByteArrayOutputStream evil = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(evil);
+		out.write(packed, 0, 4);
+		out.writeUTF("../escaped");
+		out.writeLong(0);
+		out.writeUTF("");
+
+		DirectoryContainer.unpack(new ByteArrayInputStream(evil.toByteArray()),
+				createFilePath());
+	}
+
+	@Test(expectedExceptions = { FileNotFoundException.class })
+	public void pack_notADirectory_throwsFileNotFoundException()
+			throws IOException {
+		DirectoryContainer.pack(createFile(), new ByteArrayOutputStream());
+	}
+}
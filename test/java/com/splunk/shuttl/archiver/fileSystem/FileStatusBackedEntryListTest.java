@@ -0,0 +1,71 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.net.URI;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class FileStatusBackedEntryListTest {
+
+	private FileStatusBackedEntryList entryList;
+	private FileStatus[] fileStatus;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		fileStatus = new FileStatus[] { mock(FileStatus.class),
+				mock(FileStatus.class) };
+		entryList = new FileStatusBackedEntryList(fileStatus);
+	}
+
+	public void get_fileStatus_entryKeepsListedMetadata() {
+		URI uri = URI.create("file:///path/to/a/file");
+		when(fileStatus[0].getPath()).thenReturn(new Path(uri));
+		when(fileStatus[0].getLen()).thenReturn(4711L);
+		when(fileStatus[0].getModificationTime()).thenReturn(1234L);
+		when(fileStatus[0].isDir()).thenReturn(false);
+
+		FileEntry entry = entryList.get(0);
+
+		assertEquals(uri, entry.getUri());
+		assertEquals(4711, entry.getLength());
+		assertEquals(1234, entry.getModificationTime());
+		assertFalse(entry.isDirectory());
+	}
+
+	public void get_directoryStatus_entryIsDirectory() {
+		when(fileStatus[1].getPath()).thenReturn(new Path("file:///a/directory"));
+		when(fileStatus[1].isDir()).thenReturn(true);
+
+		assertTrue(entryList.get(1).isDirectory());
+	}
+
+	public void get_sameIndexTwice_sameEntry() {
+		when(fileStatus[0].getPath()).thenReturn(new Path("file:///a/file"));
+
+		assertSame(entryList.get(0), entryList.get(0));
+	}
+
+	public void size_nonEmpty_returnCorrectSize() {
+		assertEquals(2, entryList.size());
+	}
+}
@@ -25,7 +25,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -373,6 +375,49 @@ public class HadoopFileSystemArchiveTest {
 		assertTrue(contents.contains(uri));
 	}
 
+	public void listEntries_directoryWithAFile_entryHasTheFilesLengthAndModificationTime()
+			throws IOException {
+		File file = TUtilsFile.createFileWithRandomContent();
+		hadoopFileSystemPutter.putFile(file);
+		Path hadoopPath = hadoopFileSystemPutter.getPathForFile(file);
+
+		List<FileEntry> entries = hadoopFileSystemArchive
+				.listEntries(hadoopFileSystemPutter.getPathOfMyFiles().toUri());
+
+		assertEquals(1, entries.size());
+		FileEntry entry = entries.get(0);
+		assertEquals(hadoopPath.toUri(), entry.getUri());
+		assertEquals(file.length(), entry.getLength());
+		assertEquals(fileSystem.getFileStatus(hadoopPath).getModificationTime(),
+				entry.getModificationTime());
+		assertFalse(entry.isDirectory());
+	}
+
+	public void listEntries_listingAPathThatDoNotExist_emptyList()
+			throws IOException {
+		assertTrue(hadoopFileSystemArchive.listEntries(
+				URI.create("file:///This/path/should/not/exist")).isEmpty());
+	}
+
+	public void getContentLength_directoryWithSubDirectories_sumOfAllFiles()
+			throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		hadoopFileSystemPutter.putFile(directory);
+
+		long contentLength = hadoopFileSystemArchive
+				.getContentLength(hadoopFileSystemPutter.getPathForFile(directory)
+						.toUri());
+
+		assertEquals(FileUtils.sizeOfDirectory(directory), contentLength);
+	}
+
+	@Test(expectedExceptions = { FileNotFoundException.class })
+	public void getContentLength_pathThatDoNotExist_throwsFileNotFoundException()
+			throws IOException {
+		hadoopFileSystemArchive.getContentLength(URI
+				.create("file:///This/path/should/not/exist"));
+	}
+
 	public void listPath_listingAPathThatDoNotExist_emptyList()
 			throws IOException, URISyntaxException {
 		URI hadoopPathToTheDirectory = new URI("file:///This/path/should/not/exist");
@@ -385,6 +430,33 @@ public class HadoopFileSystemArchiveTest {
 		assertEquals(0, contents.size());
 	}
 
+	public void listPathsMatching_patternSpanningTwoDirectoryLevels_listsPathsOnTheSecondLevel()
+			throws IOException {
+		File directory = TUtilsFile.createDirectory();
+		File a = TUtilsFile.createDirectoryInParent(directory, "a");
+		File b = TUtilsFile.createDirectoryInParent(directory, "b");
+		TUtilsFile.createDirectoryInParent(a, "x");
+		TUtilsFile.createDirectoryInParent(a, "y");
+		TUtilsFile.createDirectoryInParent(b, "x");
+		hadoopFileSystemPutter.putFile(directory);
+		URI remoteDirectory = hadoopFileSystemPutter.getPathForFile(directory)
+				.toUri();
+
+		List<URI> matching = hadoopFileSystemArchive.listPathsMatching(URI
+				.create(remoteDirectory + "/*/*"));
+
+		assertEquals(3, matching.size());
+		assertTrue(matching.contains(URI.create(remoteDirectory + "/a/x")));
+		assertTrue(matching.contains(URI.create(remoteDirectory + "/a/y")));
+		assertTrue(matching.contains(URI.create(remoteDirectory + "/b/x")));
+	}
+
+	public void listPathsMatching_nothingMatches_emptyList() throws IOException {
+		List<URI> matching = hadoopFileSystemArchive.listPathsMatching(URI
+				.create("file:///This/path/should/not/exist/*/*"));
+		assertEquals(0, matching.size());
+	}
+
 	public void deletePathRecursivly_givenAFile_thePathShouldBeDeleted()
 			throws IOException {
 		File testFile = TUtilsFile.createFileWithRandomContent();
@@ -438,26 +510,60 @@ public class HadoopFileSystemArchiveTest {
 
 	}
 
-	public void putFileToTmpDirectoryAppendingPath_existingFile_fileIsCopiedToTheTmpDirectory()
+	public void putFileAtomically_directoryWithMetadata_metadataIsPutInTheDirectory()
+			throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		File sizeFile = TUtilsFile.createFileWithRandomContent();
+		Path hadoopPath = TUtilsPath.getSafeDirectory(fileSystem);
+
+		hadoopFileSystemArchive.putFileAtomically(directory, hadoopPath.toUri(),
+				Collections.singletonMap("archive_meta/bucket.size", sizeFile));
+
+		assertTrue(fileSystem.exists(new Path(hadoopPath, "a.tsidx")));
+		File retrivedFile = TUtilsFileSystem.getFileFromFileSystem(fileSystem,
+				new Path(hadoopPath, "archive_meta/bucket.size"));
+		TUtilsTestNG.assertFileContentsEqual(sizeFile, retrivedFile);
+		assertFalse(fileSystem.exists(new Path(tmpPath.toString()
+				+ hadoopPath.toUri().getPath())));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void putFileAtomically_fileWithMetadata_illegalArgumentException()
+			throws IOException {
+		hadoopFileSystemArchive.putFileAtomically(
+				TUtilsFile.createFileWithRandomContent(),
+				TUtilsPath.getSafeDirectory(fileSystem).toUri(),
+				Collections.singletonMap("meta", TUtilsFile.createFile()));
+	}
+
+	public void putStreamAtomically_withMetadata_metadataIsPutNextToTheStreamedFile()
 			throws IOException {
 		File testFile = TUtilsFile.createFileWithRandomContent();
-		Path testFilePath = new Path("/just/a/random/path");
-		Path whereTestFileShouldGo = new Path(tmpPath.toUri().getPath()
-				+ testFilePath.toUri().getPath());
+		File sizeFile = TUtilsFile.createFileWithRandomContent();
+		Path hadoopPath = TUtilsPath.getSafeDirectory(fileSystem);
 
-		// Make sure setup was correct
-		assertFalse(fileSystem.exists(whereTestFileShouldGo));
-		assertFalse(fileSystem.exists(testFilePath));
+		hadoopFileSystemArchive.putStreamAtomically(
+				new FileInputStream(testFile), hadoopPath.toUri(), "file.csv",
+				Collections.singletonMap("archive_meta/bucket.size", sizeFile));
 
-		// Test
-		Path pathWhereTestFilePut = hadoopFileSystemArchive
-				.putFileToTmpDirectoryOverwirtingOldFilesAppendingPath(testFile,
-						testFilePath.toUri());
+		assertTrue(fileSystem.exists(new Path(hadoopPath, "file.csv")));
+		assertTrue(fileSystem.exists(new Path(hadoopPath,
+				"archive_meta/bucket.size")));
+	}
 
-		// Verify
-		assertEquals(whereTestFileShouldGo, pathWhereTestFilePut);
-		assertTrue(fileSystem.exists(whereTestFileShouldGo));
-		assertFalse(fileSystem.exists(testFilePath));
+	public void putDirectoryPackedAtomically_withMetadata_metadataIsPutNextToTheContainer()
+			throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		Path hadoopPath = TUtilsPath.getSafeDirectory(fileSystem);
+
+		hadoopFileSystemArchive.putDirectoryPackedAtomically(directory,
+				hadoopPath.toUri(), Collections.singletonMap(
+						"archive_meta/bucket.size", TUtilsFile.createFileWithRandomContent()));
+
+		assertTrue(fileSystem.exists(new Path(hadoopPath,
+				DirectoryContainer.FILE_NAME)));
+		assertTrue(fileSystem.exists(new Path(hadoopPath,
+				"archive_meta/bucket.size")));
 	}
 
 	public void move_existingFileOnHadoop_fileIsMoved() throws IOException {
@@ -495,4 +601,122 @@ public class HadoopFileSystemArchiveTest {
 
 		assertEquals(expectedContent, actualContent);
 	}
+
+	public void putStreamAtomically_validInput_fileInDirectoryHasStreamContent()
+			throws IOException {
+		File testFile = TUtilsFile.createFileWithRandomContent();
+		Path hadoopPath = TUtilsPath.getSafeDirectory(fileSystem);
+
+		// Test
+		hadoopFileSystemArchive.putStreamAtomically(
+				new FileInputStream(testFile), hadoopPath.toUri(), "file.csv");
+
+		// Confirm
+		File retrivedFile = TUtilsFileSystem.getFileFromFileSystem(fileSystem,
+				new Path(hadoopPath, "file.csv"));
+		TUtilsTestNG.assertFileContentsEqual(testFile, retrivedFile);
+	}
+
+	public void putStreamAtomically_streamThrowsIOException_nothingIsLeftInDirectoryOrTmp()
+			throws IOException {
+		Path hadoopPath = TUtilsPath.getSafeDirectory(fileSystem);
+		InputStream failingStream = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException();
+			}
+		};
+
+		try {
+			hadoopFileSystemArchive.putStreamAtomically(failingStream,
+					hadoopPath.toUri(), "file.csv");
+			fail();
+		} catch (IOException e) {
+			// expected.
+		}
+		assertFalse(fileSystem.exists(hadoopPath));
+		assertFalse(fileSystem.exists(new Path(tmpPath.toString()
+				+ hadoopPath.toUri().getPath())));
+	}
+
+	@Test(expectedExceptions = FileOverwriteException.class)
+	public void putStreamAtomically_whenRemoteDirectoryExists_fileOverwriteException()
+			throws IOException {
+		File existingFile = TUtilsFile.createFileWithRandomContent();
+		hadoopFileSystemPutter.putFile(existingFile);
+		Path hadoopPath = hadoopFileSystemPutter.getPathForFile(existingFile);
+
+		hadoopFileSystemArchive.putStreamAtomically(new FileInputStream(
+				existingFile), hadoopPath.toUri(), "file.csv");
+	}
+
+	public void putFileAtomically_withParallelFileUploader_filePutToFileSystem()
+			throws IOException {
+		ExecutorService uploadExecutor = ParallelFileUploader
+				.createUploadExecutor(2);
+		hadoopFileSystemArchive = new HadoopFileSystemArchive(fileSystem,
+				tmpPath, new ParallelFileUploader(fileSystem, uploadExecutor, 1024));
+		File testFile = TUtilsFile.createFileWithRandomContent();
+		Path hadoopPath = TUtilsPath.getSafeDirectory(fileSystem);
+
+		try {
+			hadoopFileSystemArchive.putFileAtomically(testFile, hadoopPath.toUri());
+		} finally {
+			uploadExecutor.shutdown();
+		}
+
+		File retrivedFile = TUtilsFileSystem.getFileFromFileSystem(fileSystem,
+				hadoopPath);
+		TUtilsTestNG.assertFileContentsEqual(testFile, retrivedFile);
+	}
+
+	private File createDirectoryWithSubDirectories() {
+		File directory = createDirectory();
+		populateFileWithRandomContent(createFileInParent(directory, "a.tsidx"));
+		File rawdata = createDirectoryInParent(directory, "rawdata");
+		populateFileWithRandomContent(createFileInParent(rawdata, "journal.gz"));
+		createDirectoryInParent(directory, "empty");
+		return directory;
+	}
+
+	public void getPackedDirectory_putDirectoryPacked_unpacksAllFilesAndDirectories()
+			throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		Path hadoopPath = TUtilsPath.getSafeDirectory(fileSystem);
+		File unpacked = createFilePath();
+
+		hadoopFileSystemArchive.putDirectoryPackedAtomically(directory,
+				hadoopPath.toUri());
+		hadoopFileSystemArchive.getPackedDirectory(unpacked, hadoopPath.toUri());
+
+		assertEquals(1, fileSystem.listStatus(hadoopPath).length);
+		TUtilsTestNG.assertFileContentsEqual(new File(directory, "a.tsidx"),
+				new File(unpacked, "a.tsidx"));
+		TUtilsTestNG.assertFileContentsEqual(new File(directory,
+				"rawdata/journal.gz"), new File(unpacked, "rawdata/journal.gz"));
+		assertTrue(new File(unpacked, "empty").isDirectory());
+	}
+
+	@Test(expectedExceptions = FileNotFoundException.class)
+	public void getPackedDirectory_directoryWasNotPacked_fileNotFoundException()
+			throws IOException {
+		Path notPackedPath = new Path(TUtilsPath.getSafeDirectory(fileSystem),
+				"notPacked");
+		hadoopFileSystemArchive.putFileAtomically(
+				createDirectoryWithSubDirectories(), notPackedPath.toUri());
+
+		hadoopFileSystemArchive.getPackedDirectory(createFilePath(),
+				notPackedPath.toUri());
+	}
+
+	@Test(expectedExceptions = FileOverwriteException.class)
+	public void putDirectoryPackedAtomically_whenRemoteDirectoryExists_fileOverwriteException()
+			throws IOException {
+		File existingFile = TUtilsFile.createFileWithRandomContent();
+		hadoopFileSystemPutter.putFile(existingFile);
+		Path hadoopPath = hadoopFileSystemPutter.getPathForFile(existingFile);
+
+		hadoopFileSystemArchive.putDirectoryPackedAtomically(createDirectory(),
+				hadoopPath.toUri());
+	}
 }
@@ -0,0 +1,106 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Compares archiving and retrieving a bucket sized directory with
+ * {@link LocalFileSystemArchive} and with {@link HadoopFileSystemArchive} on
+ * Hadoop's local file system. Run with the ant target benchmark-tests.
+ */
+@Test(groups = { "benchmark" })
+public class LocalFileSystemArchiveBenchmarkTest {
+
+	private static final int FILES = 16;
+	private static final int FILE_SIZE = 16 * 1024 * 1024;
+	private static final int ROUNDS = 3;
+
+	private File bucket;
+	private File workDirectory;
+
+	@BeforeClass(groups = { "benchmark" })
+	public void createBucket() throws IOException {
+		bucket = createDirectory();
+		Random random = new Random(4711);
+		byte[] content = new byte[FILE_SIZE];
+		for (int i = 0; i < FILES; i++) {
+			random.nextBytes(content);
+			OutputStream output = new FileOutputStream(new File(bucket, "file" + i));
+			try {
+				output.write(content);
+			} finally {
+				output.close();
+			}
+		}
+		workDirectory = createDirectory();
+	}
+
+	@AfterClass(groups = { "benchmark" })
+	public void deleteBucket() {
+		FileUtils.deleteQuietly(bucket);
+		FileUtils.deleteQuietly(workDirectory);
+	}
+
+	public void benchmark_putAndGetBucket_printsBestTimeOfEachArchiveFileSystem()
+			throws IOException {
+		FileSystem hadoopLocal = FileSystem.getLocal(new Configuration());
+		long hadoopMillis = Long.MAX_VALUE;
+		long localMillis = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			hadoopMillis = Math.min(hadoopMillis,
+					timePutAndGet(new HadoopFileSystemArchive(hadoopLocal, new Path(
+							new File(workDirectory, "hadoop-tmp").getAbsolutePath())),
+							"hadoop" + round));
+			localMillis = Math.min(localMillis,
+					timePutAndGet(new LocalFileSystemArchive(new File(workDirectory,
+							"local-tmp")), "local" + round));
+		}
+		long megabytes = (long) FILES * FILE_SIZE / (1024 * 1024);
+		System.out.println(String.format("Put and get of %d MB in %d files: "
+				+ "hadoop local %d ms, local %d ms", megabytes, FILES, hadoopMillis,
+				localMillis));
+	}
+
+	private long timePutAndGet(ArchiveFileSystem archive, String name)
+			throws IOException {
+		File archived = new File(workDirectory, name + "-archived");
+		File retrieved = new File(workDirectory, name + "-retrieved");
+		long start = System.currentTimeMillis();
+		archive.putFileAtomically(bucket, archived.toURI());
+		archive.getFile(retrieved, archived.toURI());
+		long millis = System.currentTimeMillis() - start;
+		for (int i = 0; i < FILES; i++)
+			assertEquals(FILE_SIZE, new File(retrieved, "file" + i).length());
+		FileUtils.deleteDirectory(archived);
+		FileUtils.deleteDirectory(retrieved);
+		return millis;
+	}
+}
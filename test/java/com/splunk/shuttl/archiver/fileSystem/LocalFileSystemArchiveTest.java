@@ -0,0 +1,273 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.testutil.TUtilsTestNG;
+
+@Test(groups = { "fast-unit" })
+public class LocalFileSystemArchiveTest {
+
+	private LocalFileSystemArchive localFileSystemArchive;
+	private File tmpDirectory;
+	private File archiveDirectory;
+
+	@BeforeMethod
+	public void setUp() {
+		tmpDirectory = createDirectory();
+		archiveDirectory = createDirectory();
+		localFileSystemArchive = new LocalFileSystemArchive(tmpDirectory);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(tmpDirectory);
+		FileUtils.deleteQuietly(archiveDirectory);
+	}
+
+	private URI archiveUri(String path) {
+		return new File(archiveDirectory, path).toURI();
+	}
+
+	public void putFileAtomically_directoryWithMetadata_copiesDirectoryAndMetadataAndCleansTmp()
+			throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		File sizeFile = createFileWithRandomContent();
+
+		localFileSystemArchive.putFileAtomically(directory,
+				archiveUri("index/bucket"),
+				Collections.singletonMap("archive_meta/bucket.size", sizeFile));
+
+		File archived = new File(archiveDirectory, "index/bucket");
+		TUtilsTestNG.assertFileContentsEqual(new File(directory, "a.tsidx"),
+				new File(archived, "a.tsidx"));
+		TUtilsTestNG.assertFileContentsEqual(new File(directory,
+				"rawdata/journal.gz"), new File(archived, "rawdata/journal.gz"));
+		assertTrue(new File(archived, "empty").isDirectory());
+		TUtilsTestNG.assertFileContentsEqual(sizeFile, new File(archived,
+				"archive_meta/bucket.size"));
+		assertFalse(new File(tmpDirectory, archived.getPath()).exists());
+	}
+
+	@Test(expectedExceptions = { FileOverwriteException.class })
+	public void putFileAtomically_destinationExists_throwsFileOverwriteException()
+			throws IOException {
+		File file = createFileWithRandomContent();
+		localFileSystemArchive.putFileAtomically(file, archiveUri("file"));
+		localFileSystemArchive.putFileAtomically(file, archiveUri("file"));
+	}
+
+	@Test(expectedExceptions = { FileNotFoundException.class })
+	public void putFileAtomically_localFileDoesNotExist_throwsFileNotFoundException()
+			throws IOException {
+		localFileSystemArchive.putFileAtomically(createFilePath(),
+				archiveUri("file"));
+	}
+
+	public void putFileAtomically_renameFails_copiesNextToDestinationAndRenames()
+			throws IOException {
+		localFileSystemArchive = spy(localFileSystemArchive);
+		File tmp = new File(tmpDirectory, new File(archiveDirectory, "file")
+				.getPath());
+		doReturn(false).when(localFileSystemArchive).rename(eq(tmp),
+				any(File.class));
+		File file = createFileWithRandomContent();
+
+		localFileSystemArchive.putFileAtomically(file, archiveUri("file"));
+
+		TUtilsTestNG.assertFileContentsEqual(file, new File(archiveDirectory,
+				"file"));
+		assertEquals(1, archiveDirectory.list().length);
+	}
+
+	public void putStreamAtomically_streamFails_nothingIsLeftAtTheDestination()
+			throws IOException {
+		InputStream failingStream = mock(InputStream.class);
+		when(failingStream.read(any(byte[].class))).thenThrow(new IOException());
+		try {
+			localFileSystemArchive.putStreamAtomically(failingStream,
+					archiveUri("bucket"), "bucket.csv");
+			fail();
+		} catch (IOException e) {
+		}
+		assertFalse(new File(archiveDirectory, "bucket").exists());
+	}
+
+	public void putStreamAtomically_stream_fileInDestinationHasTheContent()
+			throws IOException {
+		localFileSystemArchive.putStreamAtomically(new ByteArrayInputStream(
+				"content".getBytes()), archiveUri("bucket"), "bucket.csv");
+
+		assertEquals("content", FileUtils.readFileToString(new File(
+				archiveDirectory, "bucket/bucket.csv")));
+	}
+
+	public void getPackedDirectory_putDirectoryPacked_unpacksAllFilesAndDirectories()
+			throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		File unpacked = createFilePath();
+
+		localFileSystemArchive.putDirectoryPackedAtomically(directory,
+				archiveUri("bucket"));
+		localFileSystemArchive.getPackedDirectory(unpacked, archiveUri("bucket"));
+
+		TUtilsTestNG.assertDirectoriesAreCopies(directory, unpacked);
+	}
+
+	public void getFile_archivedDirectory_copiesDirectory() throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		File retrieved = createFilePath();
+		localFileSystemArchive.putFile(directory, archiveUri("bucket"));
+
+		localFileSystemArchive.getFile(retrieved, archiveUri("bucket"));
+
+		TUtilsTestNG.assertDirectoriesAreCopies(directory, retrieved);
+	}
+
+	@Test(expectedExceptions = { FileNotFoundException.class })
+	public void getFile_fileDoesNotExistInArchive_throwsFileNotFoundException()
+			throws IOException {
+		localFileSystemArchive.getFile(createFilePath(), archiveUri("nothing"));
+	}
+
+	public void listPath_directoryWithChecksumFile_listsFileWithoutChecksumFile()
+			throws IOException {
+		createFileInParent(archiveDirectory, "file");
+		createFileInParent(archiveDirectory, ".file.crc");
+
+		List<URI> uris = localFileSystemArchive.listPath(archiveDirectory.toURI());
+
+		assertEquals(1, uris.size());
+		assertEquals(URI.create("file:" + archiveDirectory.getAbsolutePath()
+				+ "/file"), uris.get(0));
+	}
+
+	public void listPath_subDirectory_uriDoesNotEndWithSeparator()
+			throws IOException {
+		createDirectoryInParent(archiveDirectory, "index");
+
+		List<URI> uris = localFileSystemArchive.listPath(archiveDirectory.toURI());
+
+		assertEquals(URI.create("file:" + archiveDirectory.getAbsolutePath()
+				+ "/index"), uris.get(0));
+	}
+
+	public void listPath_file_listOnlyContainingTheFile() throws IOException {
+		File file = createFileInParent(archiveDirectory, "file");
+
+		List<URI> uris = localFileSystemArchive.listPath(file.toURI());
+
+		assertEquals(1, uris.size());
+	}
+
+	public void listPath_pathDoesNotExist_emptyList() throws IOException {
+		assertTrue(localFileSystemArchive.listPath(archiveUri("nothing"))
+				.isEmpty());
+	}
+
+	public void listEntries_directoryWithFileAndDirectory_entriesHaveLengthAndDirectoryFlag()
+			throws IOException {
+		File file = createFileInParent(archiveDirectory, "file");
+		populateFileWithRandomContent(file);
+		createDirectoryInParent(archiveDirectory, "directory");
+
+		for (FileEntry entry : localFileSystemArchive.listEntries(archiveDirectory
+				.toURI()))
+			if (entry.isDirectory()) {
+				assertEquals(0, entry.getLength());
+			} else {
+				assertEquals(file.length(), entry.getLength());
+				assertEquals(file.lastModified(), entry.getModificationTime());
+			}
+	}
+
+	public void listPathsMatching_globsInTwoComponents_listsAllMatchesSorted()
+			throws IOException {
+		createDirectoryInParent(createDirectoryInParent(archiveDirectory, "a"),
+				"x");
+		createDirectoryInParent(new File(archiveDirectory, "a"), "y");
+		createDirectoryInParent(createDirectoryInParent(archiveDirectory, "b"),
+				"x");
+		createDirectoryInParent(archiveDirectory, "c");
+
+		List<URI> uris = localFileSystemArchive
+				.listPathsMatching(archiveUri("{a,b}/*"));
+
+		assertEquals(3, uris.size());
+		assertTrue(uris.get(0).getPath().endsWith("/a/x"));
+		assertTrue(uris.get(1).getPath().endsWith("/a/y"));
+		assertTrue(uris.get(2).getPath().endsWith("/b/x"));
+	}
+
+	public void globToRegex_hadoopGlobs_matchAsHadoop() {
+		assertTrue("db_1_2_3".matches(LocalFileSystemArchive
+				.globToRegex("db_*_?_[0-9]")));
+		assertTrue("SPLUNK_BUCKET".matches(LocalFileSystemArchive
+				.globToRegex("{CSV,SPLUNK_BUCKET}")));
+		assertFalse("a.b".matches(LocalFileSystemArchive.globToRegex("a?c")));
+		assertTrue("a*".matches(LocalFileSystemArchive.globToRegex("a\\*")));
+		assertFalse("ab".matches(LocalFileSystemArchive.globToRegex("a\\*")));
+		assertFalse("b".matches(LocalFileSystemArchive.globToRegex("[^b]")));
+	}
+
+	public void getContentLength_directory_sumOfFilesWithoutChecksumFiles()
+			throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+		long length = FileUtils.sizeOfDirectory(directory);
+		populateFileWithRandomContent(createFileInParent(directory, ".a.tsidx.crc"));
+
+		assertEquals(length,
+				localFileSystemArchive.getContentLength(directory.toURI()));
+	}
+
+	public void deletePath_directory_deletesDirectory() throws IOException {
+		File directory = createDirectoryWithSubDirectories();
+
+		localFileSystemArchive.deletePath(directory.toURI());
+
+		assertFalse(directory.exists());
+	}
+
+	public void deletePath_pathDoesNotExist_doesNothing() throws IOException {
+		localFileSystemArchive.deletePath(archiveUri("nothing"));
+	}
+
+	private File createDirectoryWithSubDirectories() {
+		File directory = createDirectory();
+		populateFileWithRandomContent(createFileInParent(directory, "a.tsidx"));
+		File rawdata = createDirectoryInParent(directory, "rawdata");
+		populateFileWithRandomContent(createFileInParent(rawdata, "journal.gz"));
+		createDirectoryInParent(directory, "empty");
+		return directory;
+	}
+}
@@ -0,0 +1,121 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.math.RandomUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.testutil.TUtilsFile;
+import com.splunk.shuttl.testutil.TUtilsFileSystem;
+import com.splunk.shuttl.testutil.TUtilsTestNG;
+
+@Test(groups = { "fast-unit" })
+public class ParallelFileUploaderTest {
+
+	private FileSystem fileSystem;
+	private ExecutorService uploadExecutor;
+	private ParallelFileUploader uploader;
+	private Path destination;
+
+	@BeforeMethod
+	public void setUp() {
+		fileSystem = TUtilsFileSystem.getLocalFileSystem();
+		uploadExecutor = ParallelFileUploader.createUploadExecutor(3);
+		uploader = new ParallelFileUploader(fileSystem, uploadExecutor, 1024);
+		destination = new Path("/tmp/" + RandomUtils.nextInt() + "/upload");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		uploadExecutor.shutdownNow();
+		fileSystem.delete(destination.getParent(), true);
+	}
+
+	public void upload_file_fileHasSameContent() throws IOException {
+		File file = TUtilsFile.createFileWithRandomContent();
+		uploader.upload(file, destination);
+		File uploaded = TUtilsFileSystem.getFileFromFileSystem(fileSystem,
+				destination);
+		TUtilsTestNG.assertFileContentsEqual(file, uploaded);
+	}
+
+	public void upload_directoryWithFilesAndSubDirectory_keepsStructureAndContent()
+			throws IOException {
+		File dir = TUtilsFile.createDirectory();
+		File a = TUtilsFile.createFileInParent(dir, "a");
+		TUtilsFile.populateFileWithRandomContent(a);
+		File sub = TUtilsFile.createDirectoryInParent(dir, "sub");
+		File b = TUtilsFile.createFileInParent(sub, "b");
+		TUtilsFile.populateFileWithRandomContent(b);
+
+		uploader.upload(dir, destination);
+
+		TUtilsTestNG.assertFileContentsEqual(a, TUtilsFileSystem
+				.getFileFromFileSystem(fileSystem, new Path(destination, "a")));
+		TUtilsTestNG.assertFileContentsEqual(b, TUtilsFileSystem
+				.getFileFromFileSystem(fileSystem, new Path(destination, "sub/b")));
+		FileUtils.deleteDirectory(dir);
+	}
+
+	public void upload_directory_returnsNumberOfBytesUploaded()
+			throws IOException {
+		File dir = TUtilsFile.createDirectory();
+		File a = TUtilsFile.createFileInParent(dir, "a");
+		TUtilsFile.populateFileWithRandomContent(a);
+		File b = TUtilsFile.createFileInParent(dir, "b");
+		TUtilsFile.populateFileWithRandomContent(b);
+
+		assertEquals(a.length() + b.length(), uploader.upload(dir, destination));
+		FileUtils.deleteDirectory(dir);
+	}
+
+	public void upload_emptyDirectory_createsEmptyDirectory() throws IOException {
+		File dir = TUtilsFile.createDirectory();
+		uploader.upload(dir, destination);
+		assertTrue(fileSystem.getFileStatus(destination).isDir());
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test(expectedExceptions = { FileNotFoundException.class })
+	public void upload_localFileDoesNotExist_throwsFileNotFoundException()
+			throws IOException {
+		uploader.upload(TUtilsFile.createFilePath(), destination);
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void upload_fileSystemFailsToCreateFile_throwsIOException()
+			throws IOException {
+		FileSystem failingFileSystem = mock(FileSystem.class);
+		when(failingFileSystem.create(any(Path.class), anyBoolean(), anyInt()))
+				.thenThrow(new IOException());
+		uploader = new ParallelFileUploader(failingFileSystem, uploadExecutor,
+				1024);
+		uploader.upload(TUtilsFile.createFileWithRandomContent(), destination);
+	}
+}
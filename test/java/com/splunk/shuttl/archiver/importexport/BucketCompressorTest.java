@@ -0,0 +1,154 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport;
+
+import static org.testng.AssertJUnit.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.UtilsBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class BucketCompressorTest {
+
+	private BucketCompressor bucketCompressor;
+	private ExecutorService executor;
+
+	@BeforeMethod
+	public void setUp() {
+		executor = Executors.newSingleThreadExecutor();
+		bucketCompressor = new BucketCompressor(new CompressionCodecFactory(
+				new Configuration()), executor);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	public void compressBucket_csvBucketToGzip_csvFileIsReplacedWithGzFile()
+			throws IOException {
+		Bucket csvBucket = TUtilsBucket.createRealCsvBucket();
+		String csvName = UtilsBucket.getCsvFile(csvBucket).getName();
+
+		Bucket compressed = bucketCompressor.compressBucket(csvBucket,
+				BucketFormat.CSV_GZ);
+
+		assertEquals(BucketFormat.CSV_GZ, compressed.getFormat());
+		assertFalse(new File(compressed.getDirectory(), csvName).exists());
+		assertTrue(new File(compressed.getDirectory(), csvName + ".gz").exists());
+	}
+
+	public void decompressBucket_compressedCsvBucket_restoresCsvFileContent()
+			throws IOException {
+		Bucket csvBucket = TUtilsBucket.createRealCsvBucket();
+		File csvFile = UtilsBucket.getCsvFile(csvBucket);
+		byte[] content = FileUtils.readFileToByteArray(csvFile);
+
+		Bucket compressed = bucketCompressor.compressBucket(csvBucket,
+				BucketFormat.CSV_BZ2);
+		Bucket decompressed = bucketCompressor.decompressBucket(compressed);
+
+		assertEquals(BucketFormat.CSV, decompressed.getFormat());
+		assertTrue(Arrays.equals(content,
+				FileUtils.readFileToByteArray(csvFile)));
+		assertEquals(1, decompressed.getDirectory().listFiles().length);
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void compressBucket_splunkBucketToCompressedCsv_throwsIllegalArgumentException()
+			throws IOException {
+		bucketCompressor.compressBucket(TUtilsBucket.createBucket(),
+				BucketFormat.CSV_GZ);
+	}
+
+	public void compressStream_csvStream_streamIsGzipOfTheContent()
+			throws IOException {
+		byte[] content = "a,b\nc,d\n".getBytes();
+		Bucket csvBucket = TUtilsBucket.createRealCsvBucket();
+		BucketExportStream csvStream = new BucketExportStream(csvBucket,
+				"bucket.csv", new ByteArrayInputStream(content));
+
+		BucketExportStream compressed = bucketCompressor.compressStream(
+				csvStream, BucketFormat.CSV_GZ);
+		byte[] compressedBytes = IOUtils.toByteArray(compressed.getInputStream());
+		compressed.close();
+
+		assertEquals("bucket.csv.gz", compressed.getFileName());
+		assertEquals(BucketFormat.CSV_GZ, compressed.getBucket().getFormat());
+		GzipCodec gzip = new GzipCodec();
+		gzip.setConf(new Configuration());
+		InputStream decompressed = gzip.createInputStream(new ByteArrayInputStream(
+				compressedBytes));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IOUtils.copy(decompressed, out);
+		assertTrue(Arrays.equals(content, out.toByteArray()));
+	}
+
+	public void getStreamedBucket_compressedStreamRead_sizeIsTheCompressedBytes()
+			throws IOException {
+		BucketExportStream csvStream = new BucketExportStream(
+				TUtilsBucket.createRealCsvBucket(), "bucket.csv",
+				new ByteArrayInputStream("a,b\nc,d\n".getBytes()));
+
+		BucketExportStream compressed = bucketCompressor.compressStream(
+				csvStream, BucketFormat.CSV_GZ);
+		byte[] compressedBytes = IOUtils.toByteArray(compressed.getInputStream());
+		compressed.close();
+
+		assertEquals((long) compressedBytes.length, (long) compressed
+				.getStreamedBucket().getSize());
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void compressStream_originalStreamFails_throwsIOExceptionWhenRead()
+			throws IOException {
+		InputStream failing = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException();
+			}
+		};
+		BucketExportStream csvStream = new BucketExportStream(
+				TUtilsBucket.createRealCsvBucket(), "bucket.csv", failing);
+
+		BucketExportStream compressed = bucketCompressor.compressStream(
+				csvStream, BucketFormat.CSV_GZ);
+		try {
+			IOUtils.toByteArray(compressed.getInputStream());
+		} finally {
+			compressed.close();
+		}
+	}
+}
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -28,6 +29,7 @@ import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.archive.UnknownBucketFormatException;
 import com.splunk.shuttl.archiver.importexport.csv.CsvBucketCreator;
 import com.splunk.shuttl.archiver.importexport.csv.CsvExporter;
+import com.splunk.shuttl.archiver.importexport.csv.CsvStreamingExporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -37,12 +39,21 @@ public class BucketExporterTest {
 	BucketExporter bucketExporter;
 	CsvExporter csvExporter;
 	CsvBucketCreator csvBucketCreator;
+	CsvStreamingExporter csvStreamingExporter;
+	BucketCompressor bucketCompressor;
 
 	@BeforeMethod(groups = { "fast-unit" })
 	public void setUp() {
 		csvExporter = mock(CsvExporter.class);
 		csvBucketCreator = mock(CsvBucketCreator.class);
-		bucketExporter = new BucketExporter(csvExporter, csvBucketCreator);
+		csvStreamingExporter = mock(CsvStreamingExporter.class);
+		bucketCompressor = mock(BucketCompressor.class);
+		bucketExporter = createExporter(false);
+	}
+
+	private BucketExporter createExporter(boolean streamCsvExports) {
+		return new BucketExporter(csvExporter, csvBucketCreator,
+				csvStreamingExporter, streamCsvExports, bucketCompressor);
 	}
 
 	@Test(groups = { "fast-unit" })
@@ -81,4 +92,79 @@ public class BucketExporterTest {
 		}
 		verifyZeroInteractions(csvExporter);
 	}
+
+	public void canExportBucketToStream_csvExportsNotStreamed_false() {
+		Bucket bucket = TUtilsBucket.createBucket();
+		assertFalse(bucketExporter.canExportBucketToStream(bucket,
+				BucketFormat.CSV));
+	}
+
+	public void canExportBucketToStream_csvExportsStreamedAndSplunkBucketToCsv_true() {
+		bucketExporter = createExporter(true);
+		Bucket bucket = TUtilsBucket.createBucket();
+		assertTrue(bucketExporter.canExportBucketToStream(bucket,
+				BucketFormat.CSV));
+	}
+
+	public void exportBucketToStream_streamingExporter_returnsStreamFromStreamingExporter()
+			throws IOException {
+		bucketExporter = createExporter(true);
+		Bucket bucket = TUtilsBucket.createBucket();
+		BucketExportStream stream = mock(BucketExportStream.class);
+		when(csvStreamingExporter.exportBucketToCsvStream(bucket)).thenReturn(
+				stream);
+		assertSame(stream,
+				bucketExporter.exportBucketToStream(bucket, BucketFormat.CSV));
+		verifyZeroInteractions(csvExporter);
+	}
+
+	public void exportBucketToFormat_compressedCsv_compressesTheExportedCsvBucket()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		File csvFile = createFile();
+		when(csvExporter.exportBucketToCsv(bucket)).thenReturn(csvFile);
+		Bucket csvBucket = mock(Bucket.class);
+		when(csvBucket.getFormat()).thenReturn(BucketFormat.CSV);
+		when(csvBucketCreator.createBucketWithCsvFile(csvFile, bucket)).thenReturn(
+				csvBucket);
+		Bucket compressedBucket = mock(Bucket.class);
+		when(bucketCompressor.compressBucket(csvBucket, BucketFormat.CSV_GZ))
+				.thenReturn(compressedBucket);
+
+		assertEquals(compressedBucket,
+				bucketExporter.exportBucket(bucket, BucketFormat.CSV_GZ));
+	}
+
+	@Test(expectedExceptions = { BucketCompressionFailedException.class })
+	public void exportBucketToFormat_compressionFails_deletesCsvBucketAndThrows()
+			throws IOException {
+		Bucket bucket = TUtilsBucket.createBucket();
+		File csvFile = createFile();
+		when(csvExporter.exportBucketToCsv(bucket)).thenReturn(csvFile);
+		Bucket csvBucket = mock(Bucket.class);
+		when(csvBucketCreator.createBucketWithCsvFile(csvFile, bucket)).thenReturn(
+				csvBucket);
+		when(bucketCompressor.compressBucket(csvBucket, BucketFormat.CSV_GZ))
+				.thenThrow(new IOException());
+		try {
+			bucketExporter.exportBucket(bucket, BucketFormat.CSV_GZ);
+		} finally {
+			verify(csvBucket).deleteBucket();
+		}
+	}
+
+	public void exportBucketToStream_compressedCsv_returnsCompressedStream()
+			throws IOException {
+		bucketExporter = createExporter(true);
+		Bucket bucket = TUtilsBucket.createBucket();
+		BucketExportStream csvStream = mock(BucketExportStream.class);
+		when(csvStreamingExporter.exportBucketToCsvStream(bucket)).thenReturn(
+				csvStream);
+		BucketExportStream compressedStream = mock(BucketExportStream.class);
+		when(bucketCompressor.compressStream(csvStream, BucketFormat.CSV_SNAPPY))
+				.thenReturn(compressedStream);
+
+		assertSame(compressedStream,
+				bucketExporter.exportBucketToStream(bucket, BucketFormat.CSV_SNAPPY));
+	}
 }
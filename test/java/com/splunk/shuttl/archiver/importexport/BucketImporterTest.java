@@ -17,6 +17,8 @@ package com.splunk.shuttl.archiver.importexport;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
+import java.io.IOException;
+
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -30,11 +32,13 @@ public class BucketImporterTest {
 
 	private BucketImporter bucketImporter;
 	private CsvImporter csvImporter;
+	private BucketCompressor bucketCompressor;
 
 	@BeforeMethod
 	public void setUp() {
 		csvImporter = mock(CsvImporter.class);
-		bucketImporter = new BucketImporter(csvImporter);
+		bucketCompressor = mock(BucketCompressor.class);
+		bucketImporter = new BucketImporter(csvImporter, bucketCompressor);
 	}
 
 	@Test(groups = { "fast-unit" })
@@ -62,4 +66,19 @@ public class BucketImporterTest {
 		bucketImporter.restoreToSplunkBucketFormat(unknownBucket);
 	}
 
+	public void _bucketInCompressedCsvFormat_decompressesAndImportsCsvBucket()
+			throws IOException {
+		Bucket compressedBucket = mock(Bucket.class);
+		when(compressedBucket.getFormat()).thenReturn(BucketFormat.CSV_GZ);
+		Bucket csvBucket = TUtilsBucket.createRealCsvBucket();
+		when(bucketCompressor.decompressBucket(compressedBucket)).thenReturn(
+				csvBucket);
+		Bucket importedBucket = mock(Bucket.class);
+		when(csvImporter.importBucketFromCsv(csvBucket)).thenReturn(
+				importedBucket);
+
+		assertEquals(importedBucket,
+				bucketImporter.restoreToSplunkBucketFormat(compressedBucket));
+	}
+
 }
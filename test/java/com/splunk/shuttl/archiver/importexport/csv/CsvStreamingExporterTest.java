@@ -0,0 +1,184 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.csv;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.BucketExportStream;
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.archiver.importexport.csv.splunk.SplunkExportTool;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.SameThreadExecutorService;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "slow-unit" })
+public class CsvStreamingExporterTest {
+
+	private CsvStreamingExporter csvStreamingExporter;
+	private SplunkExportTool exportTool;
+	private File csvDirectory;
+	private ExecutorService executor;
+	private Bucket bucket;
+
+	@BeforeMethod
+	public void setUp() {
+		exportTool = mock(SplunkExportTool.class);
+		when(exportTool.getEnvironment()).thenReturn(
+				Collections.<String, String> emptyMap());
+		csvDirectory = TUtilsFile.createDirectory();
+		executor = Executors.newSingleThreadExecutor();
+		csvStreamingExporter = new CsvStreamingExporter(exportTool,
+				new GetsBucketsCsvExportFile(csvDirectory),
+				ShellExecutor.getInstance(), executor);
+		bucket = TUtilsBucket.createBucket();
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		executor.shutdownNow();
+		FileUtils.deleteDirectory(csvDirectory);
+	}
+
+	/**
+	 * The export tool is called with: bucketDir csvFile -csv. As a "sh -c"
+	 * script, the csv file is $2.
+	 */
+	private void exportToolScript(String script) {
+		when(exportTool.getExecutableCommand()).thenReturn(
+				asList("sh", "-c", script, "exporttool"));
+	}
+
+	public void exportBucketToCsvStream_exportToolWritesToCsvFile_streamHasTheContent()
+			throws IOException {
+		exportToolScript("echo a,b > \"$2\"");
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		try {
+			assertEquals(asList("a,b"), IOUtils.readLines(stream.getInputStream()));
+		} finally {
+			stream.close();
+		}
+	}
+
+	public void exportBucketToCsvStream_givenBucket_csvBucketWithSameNameAndIndex()
+			throws IOException {
+		exportToolScript("true > \"$2\"");
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		stream.close();
+		assertEquals(BucketFormat.CSV, stream.getBucket().getFormat());
+		assertEquals(bucket.getName(), stream.getBucket().getName());
+		assertEquals(bucket.getIndex(), stream.getBucket().getIndex());
+		assertEquals(bucket.getName() + ".csv", stream.getFileName());
+	}
+
+	public void getStreamedBucket_afterReadingStream_sizeIsTheBytesOfTheCsv()
+			throws IOException {
+		exportToolScript("echo a,b > \"$2\"");
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		try {
+			IOUtils.toByteArray(stream.getInputStream());
+			assertEquals(4L, (long) stream.getStreamedBucket().getSize());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void exportBucketToCsvStream_exportToolFailsAfterWriting_throwsIOExceptionAtEndOfStream()
+			throws IOException {
+		exportToolScript("echo a,b > \"$2\"; exit 3");
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		try {
+			IOUtils.toByteArray(stream.getInputStream());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void exportBucketToCsvStream_exportToolNeverOpensPipe_throwsIOExceptionInsteadOfBlocking()
+			throws IOException {
+		exportToolScript("exit 1");
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		InputStream input = stream.getInputStream();
+		try {
+			IOUtils.toByteArray(input);
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test(expectedExceptions = { IOException.class }, timeOut = 10000)
+	public void exportBucketToCsvStream_exportToolExitsBeforeStreamIsRead_throwsIOExceptionInsteadOfBlocking()
+			throws IOException {
+		exportToolScript("exit 1");
+		csvStreamingExporter = new CsvStreamingExporter(exportTool,
+				new GetsBucketsCsvExportFile(csvDirectory),
+				ShellExecutor.getInstance(), new SameThreadExecutorService());
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		try {
+			IOUtils.toByteArray(stream.getInputStream());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test(timeOut = 10000)
+	public void exportBucketToCsvStream_exportToolSucceedsBeforeStreamIsRead_streamIsEmpty()
+			throws IOException {
+		exportToolScript("exit 0");
+		csvStreamingExporter = new CsvStreamingExporter(exportTool,
+				new GetsBucketsCsvExportFile(csvDirectory),
+				ShellExecutor.getInstance(), new SameThreadExecutorService());
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		try {
+			assertEquals(0, IOUtils.toByteArray(stream.getInputStream()).length);
+		} finally {
+			stream.close();
+		}
+	}
+
+	public void close_afterExport_removesPipe() throws IOException {
+		exportToolScript("echo a,b > \"$2\"");
+		BucketExportStream stream = csvStreamingExporter
+				.exportBucketToCsvStream(bucket);
+		IOUtils.toByteArray(stream.getInputStream());
+		stream.close();
+		assertEquals(0, csvDirectory.listFiles().length);
+	}
+}
@@ -0,0 +1,151 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.csv;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.archiver.importexport.csv.splunk.SplunkImportTool;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.util.SameThreadExecutorService;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "slow-unit" })
+public class CsvStreamingImporterTest {
+
+	private CsvStreamingImporter csvStreamingImporter;
+	private SplunkImportTool importTool;
+	private File parentDirectory;
+	private File bucketDirectory;
+	private ExecutorService executor;
+
+	@BeforeMethod
+	public void setUp() {
+		importTool = mock(SplunkImportTool.class);
+		when(importTool.getEnvironment()).thenReturn(
+				Collections.<String, String> emptyMap());
+		parentDirectory = TUtilsFile.createDirectory();
+		bucketDirectory = new File(parentDirectory, "db_2_1_0");
+		executor = Executors.newSingleThreadExecutor();
+		csvStreamingImporter = new CsvStreamingImporter(importTool,
+				ShellExecutor.getInstance(), new BucketFactory(), executor);
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		executor.shutdownNow();
+		FileUtils.deleteDirectory(parentDirectory);
+	}
+
+	/**
+	 * The import tool is called with: bucketDir csvFile. As a "sh -c" script,
+	 * the bucket directory is $1 and the csv file is $2.
+	 */
+	private void importToolScript(String script) {
+		when(importTool.getExecutableCommand()).thenReturn(
+				asList("sh", "-c", script, "importtool"));
+	}
+
+	private Bucket importCsv(String csv) throws IOException {
+		return csvStreamingImporter.importBucketFromCsvStream("index",
+				bucketDirectory, new ByteArrayInputStream(csv.getBytes()));
+	}
+
+	public void importBucketFromCsvStream_importToolReadsPipe_readsTheStream()
+			throws IOException {
+		importToolScript("cat \"$2\" > \"$1/imported\"");
+
+		importCsv("a,b\n");
+
+		assertEquals("a,b\n",
+				FileUtils.readFileToString(new File(bucketDirectory, "imported")));
+	}
+
+	public void importBucketFromCsvStream_givenIndex_bucketInBucketDirectoryWithIndex()
+			throws IOException {
+		importToolScript("cat \"$2\" > /dev/null");
+
+		Bucket bucket = importCsv("a,b\n");
+
+		assertEquals("index", bucket.getIndex());
+		assertEquals(bucketDirectory.getAbsoluteFile(), bucket.getDirectory()
+				.getAbsoluteFile());
+	}
+
+	public void importBucketFromCsvStream_afterImport_removesPipe()
+			throws IOException {
+		importToolScript("cat \"$2\" > /dev/null");
+
+		importCsv("a,b\n");
+
+		assertEquals(asList(bucketDirectory), asList(parentDirectory.listFiles()));
+	}
+
+	public void importBucketFromCsvStream_importToolFails_throwsAndDeletesBucketDirectory() {
+		importToolScript("cat \"$2\" > /dev/null; exit 3");
+		try {
+			importCsv("a,b\n");
+			fail();
+		} catch (IOException e) {
+			assertEquals(0, parentDirectory.listFiles().length);
+		}
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void importBucketFromCsvStream_importToolNeverOpensPipe_throwsIOExceptionInsteadOfBlocking()
+			throws IOException {
+		importToolScript("exit 1");
+		importCsv("a,b\n");
+	}
+
+	@Test(expectedExceptions = { IOException.class }, timeOut = 10000)
+	public void importBucketFromCsvStream_importToolExitsBeforePipeIsWritten_throwsIOExceptionInsteadOfBlocking()
+			throws IOException {
+		importToolScript("exit 1");
+		csvStreamingImporter = new CsvStreamingImporter(importTool,
+				ShellExecutor.getInstance(), new BucketFactory(),
+				new SameThreadExecutorService());
+		importCsv("a,b\n");
+	}
+
+	@Test(expectedExceptions = { IOException.class }, timeOut = 10000)
+	public void importBucketFromCsvStream_importToolExitsWithoutReadingAllOfStream_throwsIOExceptionInsteadOfBlocking()
+			throws IOException {
+		importToolScript("head -c 1 \"$2\" > /dev/null");
+		importCsv(createCsvLargerThanPipeBuffer());
+	}
+
+	private String createCsvLargerThanPipeBuffer() {
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 64 * 1024; i++)
+			csv.append("a,b\n");
+		return csv.toString();
+	}
+}
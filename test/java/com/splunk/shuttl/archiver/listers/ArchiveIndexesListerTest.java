@@ -69,4 +69,12 @@ public class ArchiveIndexesListerTest {
 		assertEquals(listIndexes, Arrays.asList(index1, index2));
 	}
 
+	public void listIndexes_catalogsDirectoryInIndexesHome_isNotAnIndex()
+			throws IOException {
+		List<URI> uris = Arrays.asList(URI.create("valid:/uri/index"),
+				URI.create("valid:/uri/" + PathResolver.CATALOGS_DIRECTORY));
+		when(fileSystem.listPath(any(URI.class))).thenReturn(uris);
+		assertEquals(Arrays.asList("index"), archivedIndexesLister.listIndexes());
+	}
+
 }
@@ -0,0 +1,145 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+@Test(groups = { "fast-unit" })
+public class BucketPagerTest {
+
+	private Bucket a1;
+	private Bucket a2;
+	private Bucket b1;
+	private List<Bucket> buckets;
+
+	@BeforeMethod
+	public void setUp() {
+		a1 = bucket("a", "db_30_10_1");
+		a2 = bucket("a", "db_35_15_2");
+		b1 = bucket("b", "db_40_5_1");
+		buckets = asList(b1, a2, a1);
+	}
+
+	private Bucket bucket(String index, String name) {
+		Bucket bucket = mock(Bucket.class);
+		when(bucket.getIndex()).thenReturn(index);
+		when(bucket.getName()).thenReturn(name);
+		return bucket;
+	}
+
+	private List<Bucket> page(BucketPager pager, List<Bucket> buckets) {
+		return pager.page(buckets.iterator());
+	}
+
+	public void page_noSortNoLimit_allBucketsSortedByIndexAndName() {
+		BucketPager pager = BucketPager.create(null, null, null);
+		assertEquals(asList(a1, a2, b1), page(pager, buckets));
+		assertNull(pager.getNextCursor());
+	}
+
+	public void page_manyBuckets_readsEachBucketsNameOnce() {
+		List<Bucket> many = new ArrayList<Bucket>();
+		for (int i = 0; i < 100; i++)
+			many.add(bucket("a", "db_" + (i + 1) + "_" + i + "_" + i));
+
+		BucketPager.create("earliest", null, 10).page(many.iterator());
+
+		for (Bucket bucket : many)
+			verify(bucket, times(1)).getName();
+	}
+
+	public void page_sortByEarliest_bucketsSortedByEarliestTime() {
+		assertEquals(asList(b1, a1, a2),
+				page(BucketPager.create("earliest", null, null), buckets));
+	}
+
+	public void page_sortByLatestDescending_bucketsSortedByLatestTimeDescending() {
+		assertEquals(asList(b1, a2, a1),
+				page(BucketPager.create("-latest", null, null), buckets));
+	}
+
+	public void page_limitLessThanBuckets_firstBucketsAndCursorToLastOnPage() {
+		BucketPager pager = BucketPager.create(null, null, 2);
+		assertEquals(asList(a1, a2), page(pager, buckets));
+		assertEquals("a/db_35_15_2", pager.getNextCursor());
+	}
+
+	public void page_cursorFromPreviousPage_continuesAfterCursor() {
+		BucketPager first = BucketPager.create("earliest", null, 2);
+		page(first, buckets);
+
+		BucketPager second = BucketPager.create("earliest", first.getNextCursor(),
+				2);
+
+		assertEquals(asList(a2), page(second, buckets));
+		assertNull(second.getNextCursor());
+	}
+
+	public void page_pagingThroughManyBuckets_everyBucketListedOnce() {
+		List<Bucket> many = new ArrayList<Bucket>();
+		for (int i = 0; i < 50; i++)
+			many.add(bucket("index" + (i % 3), "db_" + (1000 - i) + "_" + (i % 7)
+					+ "_" + i));
+		Collections.shuffle(many);
+
+		List<Bucket> listed = new ArrayList<Bucket>();
+		String cursor = null;
+		do {
+			BucketPager pager = BucketPager.create("-earliest", cursor, 7);
+			listed.addAll(page(pager, many));
+			cursor = pager.getNextCursor();
+		} while (cursor != null);
+
+		assertEquals(50, listed.size());
+		assertTrue(listed.containsAll(many));
+	}
+
+	public void page_limitEqualToBuckets_noNextCursor() {
+		BucketPager pager = BucketPager.create(null, null, 3);
+		page(pager, buckets);
+		assertNull(pager.getNextCursor());
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void create_unknownSort_throws() {
+		BucketPager.create("size", null, null);
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void create_cursorWithoutBucketName_throws() {
+		BucketPager.create(null, "index", null);
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void create_cursorWithIllegalBucketName_throws() {
+		BucketPager.create(null, "index/not_a_bucket", null);
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void create_zeroLimit_throws() {
+		BucketPager.create(null, null, 0);
+	}
+}
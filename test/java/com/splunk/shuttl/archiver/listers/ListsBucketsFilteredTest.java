@@ -19,12 +19,18 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.ArchiveTimeIndex;
+import com.splunk.shuttl.archiver.catalog.CatalogEntry;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.thaw.BucketFilter;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
@@ -35,6 +41,9 @@ public class ListsBucketsFilteredTest {
 	private ArchiveBucketsLister archiveBucketsLister;
 	private BucketFilter bucketFilter;
 	private BucketFormatResolver bucketFormatResolver;
+	private ArchiveCatalog archiveCatalog;
+	private ArchiveTimeIndex archiveTimeIndex;
+	private ParallelBucketsLister parallelBucketsLister;
 	private ListsBucketsFiltered listsBucketsFiltered;
 	private Date earliestTime;
 	private Date latestTime;
@@ -47,15 +56,23 @@ public class ListsBucketsFilteredTest {
 		archiveBucketsLister = mock(ArchiveBucketsLister.class);
 		bucketFilter = mock(BucketFilter.class);
 		bucketFormatResolver = mock(BucketFormatResolver.class);
-		listsBucketsFiltered = new ListsBucketsFiltered(archiveBucketsLister,
-				bucketFilter, bucketFormatResolver);
+		archiveCatalog = ArchiveCatalog.disabled();
+		archiveTimeIndex = new ArchiveTimeIndex();
+		parallelBucketsLister = mock(ParallelBucketsLister.class);
+		listsBucketsFiltered = createListsBucketsFiltered();
+	}
+
+	private ListsBucketsFiltered createListsBucketsFiltered() {
+		return new ListsBucketsFiltered(archiveBucketsLister, bucketFilter,
+				bucketFormatResolver, archiveCatalog, archiveTimeIndex,
+				parallelBucketsLister);
 	}
 
 	@Test(groups = { "fast-unit" })
 	public void _givenBucketsInAnIndex_filterBucketsOnTimeRange() {
 		List<Bucket> bucketsInIndex = asList(mock(Bucket.class));
 		String index = "index";
-		when(archiveBucketsLister.listBucketsInIndex(index)).thenReturn(
+		when(bucketFormatResolver.resolveIndexBucketsFormats(index)).thenReturn(
 				bucketsInIndex);
 		listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
 				latestTime);
@@ -63,25 +80,156 @@ public class ListsBucketsFilteredTest {
 				latestTime);
 	}
 
-	@SuppressWarnings("unchecked")
-	public void _givenFilteredBuckets_resolvesFilteredBucketsFormats() {
+	public void _givenFilteredBuckets_returnThoseBuckets() {
 		List<Bucket> filteredBuckets = asList(mock(Bucket.class));
 		when(
-				bucketFilter.filterBucketsByTimeRange(anyList(), any(Date.class),
-						any(Date.class))).thenReturn(filteredBuckets);
-		listsBucketsFiltered.listFilteredBucketsAtIndex("foo", earliestTime,
+				bucketFilter.filterBucketsByTimeRange(anyListOf(Bucket.class),
+						any(Date.class), any(Date.class))).thenReturn(filteredBuckets);
+
+		List<Bucket> filteredBucketsAtIndex = listsBucketsFiltered
+				.listFilteredBucketsAtIndex("foo", earliestTime, latestTime);
+		assertEquals(filteredBuckets, filteredBucketsAtIndex);
+	}
+
+	public void listFilteredBucketsAtIndex_indexHasCatalog_filtersBucketsFromCatalogWithoutListingArchive()
+			throws IOException {
+		archiveCatalog = mock(ArchiveCatalog.class);
+		listsBucketsFiltered = createListsBucketsFiltered();
+		List<CatalogEntry> entries = asList(mock(CatalogEntry.class));
+		when(archiveCatalog.getEntries("index")).thenReturn(entries);
+		List<Bucket> catalogedBuckets = asList(mock(Bucket.class));
+		when(bucketFormatResolver.resolveCatalogedBucketsFormats("index", entries))
+				.thenReturn(catalogedBuckets);
+		List<Bucket> filteredBuckets = asList(mock(Bucket.class));
+		when(
+				bucketFilter.filterBucketsByTimeRange(catalogedBuckets, earliestTime,
+						latestTime)).thenReturn(filteredBuckets);
+
+		assertEquals(filteredBuckets, listsBucketsFiltered
+				.listFilteredBucketsAtIndex("index", earliestTime, latestTime));
+		verify(bucketFormatResolver, never()).resolveIndexBucketsFormats(
+				anyString());
+	}
+
+	public void listFilteredBucketsAtIndex_indexWithoutCatalog_listsArchive()
+			throws IOException {
+		archiveCatalog = mock(ArchiveCatalog.class);
+		listsBucketsFiltered = createListsBucketsFiltered();
+		when(archiveCatalog.getEntries("index")).thenReturn(
+				new ArrayList<CatalogEntry>());
+
+		listsBucketsFiltered.listFilteredBucketsAtIndex("index", earliestTime,
 				latestTime);
-		verify(bucketFormatResolver).resolveBucketsFormats(filteredBuckets);
+
+		verify(bucketFormatResolver).resolveIndexBucketsFormats("index");
 	}
 
-	@SuppressWarnings("unchecked")
-	public void _givenFilteredBuckets_returnThoseBuckets() {
-		List<Bucket> bucketsWithFormats = asList(mock(Bucket.class));
-		when(bucketFormatResolver.resolveBucketsFormats(anyList())).thenReturn(
-				bucketsWithFormats);
+	public void listFilteredBucketsAtIndex_warmTimeIndex_resolvesBucketsFoundInTimeIndex() {
+		archiveTimeIndex = mock(ArchiveTimeIndex.class);
+		when(archiveTimeIndex.isWarm()).thenReturn(true);
+		listsBucketsFiltered = createListsBucketsFiltered();
+		List<CatalogEntry> entries = asList(mock(CatalogEntry.class));
+		when(archiveTimeIndex.find("index", earliestTime, latestTime)).thenReturn(
+				entries);
+		List<Bucket> buckets = asList(mock(Bucket.class));
+		when(bucketFormatResolver.resolveCatalogedBucketsFormats("index", entries))
+				.thenReturn(buckets);
 
-		List<Bucket> filteredBucketsAtIndex = listsBucketsFiltered
-				.listFilteredBucketsAtIndex("foo", earliestTime, latestTime);
-		assertEquals(bucketsWithFormats, filteredBucketsAtIndex);
+		assertEquals(buckets, listsBucketsFiltered.listFilteredBucketsAtIndex(
+				"index", earliestTime, latestTime));
+		verifyZeroInteractions(archiveBucketsLister, bucketFilter);
+	}
+
+	public void listFilteredBuckets_warmTimeIndex_listsIndexesOfTimeIndex() {
+		archiveTimeIndex = mock(ArchiveTimeIndex.class);
+		when(archiveTimeIndex.isWarm()).thenReturn(true);
+		when(archiveTimeIndex.getIndexes()).thenReturn(asList("a", "b"));
+		listsBucketsFiltered = createListsBucketsFiltered();
+
+		listsBucketsFiltered.listFilteredBuckets(earliestTime, latestTime);
+
+		verify(archiveTimeIndex).find("a", earliestTime, latestTime);
+		verify(archiveTimeIndex).find("b", earliestTime, latestTime);
+		verifyZeroInteractions(archiveBucketsLister);
+	}
+
+	public void listFilteredBuckets_parallelLister_filtersTheBucketsOfEachIndex() {
+		List<String> indexes = asList("a", "b");
+		when(parallelBucketsLister.listIndexes()).thenReturn(indexes);
+		List<Bucket> bucketsOfA = asList(mock(Bucket.class));
+		List<Bucket> bucketsOfB = asList(mock(Bucket.class));
+		List<List<Bucket>> bucketsPerIndex = asList(bucketsOfA, bucketsOfB);
+		when(parallelBucketsLister.listBucketsPerIndex(indexes)).thenReturn(
+				bucketsPerIndex.iterator());
+		when(bucketFilter.filterBucketsByTimeRange(bucketsOfA, earliestTime,
+				latestTime)).thenReturn(bucketsOfA);
+		when(bucketFilter.filterBucketsByTimeRange(bucketsOfB, earliestTime,
+				latestTime)).thenReturn(new ArrayList<Bucket>());
+
+		List<Bucket> buckets = listsBucketsFiltered.listFilteredBuckets(
+				earliestTime, latestTime);
+
+		assertEquals(bucketsOfA, buckets);
+		verifyZeroInteractions(archiveBucketsLister);
+		verify(bucketFormatResolver, never()).resolveBucketsFormats(
+				anyListOf(Bucket.class));
+	}
+
+	public void listFilteredBucketsAtIndex_parallelLister_resolvesFormatsWithOneListingOfTheIndex() {
+		List<Bucket> buckets = asList(mock(Bucket.class));
+		when(bucketFormatResolver.resolveIndexBucketsFormats("index")).thenReturn(
+				buckets);
+
+		listsBucketsFiltered.listFilteredBucketsAtIndex("index", earliestTime,
+				latestTime);
+
+		verify(bucketFilter).filterBucketsByTimeRange(buckets, earliestTime,
+				latestTime);
+		verifyZeroInteractions(archiveBucketsLister);
+	}
+
+	public void iterateFilteredBuckets_warmTimeIndex_listsNextIndexWhenPreviousIsIterated() {
+		archiveTimeIndex = mock(ArchiveTimeIndex.class);
+		when(archiveTimeIndex.isWarm()).thenReturn(true);
+		when(archiveTimeIndex.getIndexes()).thenReturn(asList("a", "b"));
+		listsBucketsFiltered = createListsBucketsFiltered();
+		Bucket bucketOfA = mock(Bucket.class);
+		Bucket bucketOfB = mock(Bucket.class);
+		when(
+				bucketFormatResolver.resolveCatalogedBucketsFormats(eq("a"),
+						anyListOf(CatalogEntry.class))).thenReturn(asList(bucketOfA));
+		when(
+				bucketFormatResolver.resolveCatalogedBucketsFormats(eq("b"),
+						anyListOf(CatalogEntry.class))).thenReturn(asList(bucketOfB));
+
+		Iterator<Bucket> buckets = listsBucketsFiltered.iterateFilteredBuckets(
+				earliestTime, latestTime);
+
+		assertEquals(bucketOfA, buckets.next());
+		verify(archiveTimeIndex, never()).find("b", earliestTime, latestTime);
+		assertEquals(bucketOfB, buckets.next());
+		assertFalse(buckets.hasNext());
+	}
+
+	public void iterateFilteredBuckets_indexWithoutBuckets_skipsToNextIndex() {
+		archiveTimeIndex = mock(ArchiveTimeIndex.class);
+		when(archiveTimeIndex.isWarm()).thenReturn(true);
+		when(archiveTimeIndex.getIndexes()).thenReturn(asList("a", "b"));
+		listsBucketsFiltered = createListsBucketsFiltered();
+		Bucket bucketOfB = mock(Bucket.class);
+		when(
+				bucketFormatResolver.resolveCatalogedBucketsFormats(eq("a"),
+						anyListOf(CatalogEntry.class))).thenReturn(
+				new ArrayList<Bucket>());
+		when(
+				bucketFormatResolver.resolveCatalogedBucketsFormats(eq("b"),
+						anyListOf(CatalogEntry.class))).thenReturn(asList(bucketOfB));
+
+		Iterator<Bucket> buckets = listsBucketsFiltered.iterateFilteredBuckets(
+				earliestTime, latestTime);
+
+		assertTrue(buckets.hasNext());
+		assertEquals(bucketOfB, buckets.next());
+		assertFalse(buckets.hasNext());
 	}
 }
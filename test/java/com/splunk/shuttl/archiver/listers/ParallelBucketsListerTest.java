@@ -0,0 +1,113 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+
+@Test(groups = { "fast-unit" })
+public class ParallelBucketsListerTest {
+
+	private ArchiveBucketsLister bucketsLister;
+	private BucketFormatResolver bucketFormatResolver;
+	private ExecutorService executor;
+	private ParallelBucketsLister parallelBucketsLister;
+
+	@BeforeMethod
+	public void setUp() {
+		bucketsLister = mock(ArchiveBucketsLister.class);
+		bucketFormatResolver = mock(BucketFormatResolver.class);
+		executor = Executors.newFixedThreadPool(2);
+		parallelBucketsLister = new ParallelBucketsLister(bucketsLister,
+				bucketFormatResolver, executor);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	public void listBuckets_twoIndexes_bucketsOfBothIndexesWithResolvedFormats() {
+		Bucket a = mock(Bucket.class);
+		Bucket b = mock(Bucket.class);
+		when(bucketsLister.listIndexes()).thenReturn(asList("a", "b"));
+		when(bucketFormatResolver.resolveIndexBucketsFormats("a")).thenReturn(
+				asList(a));
+		when(bucketFormatResolver.resolveIndexBucketsFormats("b")).thenReturn(
+				asList(b));
+
+		List<Bucket> buckets = parallelBucketsLister.listBuckets();
+
+		assertEquals(2, buckets.size());
+		assertTrue(buckets.contains(a));
+		assertTrue(buckets.contains(b));
+	}
+
+	public void listBucketsPerIndex_slowIndex_otherIndexIsHandedOutBeforeSlowIndexCompletes() {
+		final CountDownLatch slowIndexMayComplete = new CountDownLatch(1);
+		final List<Bucket> slowBuckets = asList(mock(Bucket.class));
+		List<Bucket> fastBuckets = asList(mock(Bucket.class));
+		when(bucketFormatResolver.resolveIndexBucketsFormats("slow")).thenAnswer(
+				new Answer<List<Bucket>>() {
+
+					@Override
+					public List<Bucket> answer(InvocationOnMock invocation)
+							throws Throwable {
+						slowIndexMayComplete.await(10, TimeUnit.SECONDS);
+						return slowBuckets;
+					}
+				});
+		when(bucketFormatResolver.resolveIndexBucketsFormats("fast")).thenReturn(
+				fastBuckets);
+
+		Iterator<List<Bucket>> bucketsPerIndex = parallelBucketsLister
+				.listBucketsPerIndex(asList("slow", "fast"));
+
+		assertEquals(fastBuckets, bucketsPerIndex.next());
+		slowIndexMayComplete.countDown();
+		assertEquals(slowBuckets, bucketsPerIndex.next());
+		assertFalse(bucketsPerIndex.hasNext());
+	}
+
+	@Test(expectedExceptions = { RuntimeException.class })
+	public void listBucketsPerIndex_listingFails_throwsRuntimeException() {
+		when(bucketFormatResolver.resolveIndexBucketsFormats("index")).thenThrow(
+				new RuntimeException());
+
+		parallelBucketsLister.listBucketsPerIndex(asList("index")).next();
+	}
+
+	public void listBucketsPerIndex_noIndexes_hasNoBuckets() {
+		assertFalse(parallelBucketsLister.listBucketsPerIndex(
+				asList(new String[0])).hasNext());
+	}
+}
@@ -21,6 +21,7 @@ import static org.testng.AssertJUnit.*;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import org.testng.annotations.BeforeMethod;
@@ -28,6 +29,7 @@ import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.archive.PathResolver;
+import com.splunk.shuttl.archiver.catalog.CatalogEntry;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
@@ -118,4 +120,108 @@ public class BucketFormatResolverTest {
 		assertEquals(1, bucketsWithFormat.size());
 		assertEquals(uri, bucketsWithFormat.get(0).getURI());
 	}
+
+	@SuppressWarnings("unchecked")
+	public void resolveCatalogedBucketsFormats_bucketInTwoFormats_oneBucketWithChosenFormatAndItsSize() {
+		String name = "db_1336330530_1336330530_0";
+		CatalogEntry splunkBucket = new CatalogEntry(name,
+				BucketFormat.SPLUNK_BUCKET, new Date(), new Date(), 10L);
+		CatalogEntry csv = new CatalogEntry(name, BucketFormat.CSV, new Date(),
+				new Date(), 20L);
+		when(bucketFormatChooser.chooseBucketFormat(anyList())).thenReturn(
+				BucketFormat.CSV);
+		when(
+				pathResolver.resolveArchivedBucketURI("index", name,
+						BucketFormat.CSV)).thenReturn(URI.create("valid:/uri"));
+
+		List<Bucket> buckets = bucketFormatResolver
+				.resolveCatalogedBucketsFormats("index", Arrays.asList(splunkBucket,
+						csv));
+
+		assertEquals(1, buckets.size());
+		Bucket bucket = buckets.get(0);
+		assertEquals(name, bucket.getName());
+		assertEquals(BucketFormat.CSV, bucket.getFormat());
+		assertEquals(20L, (long) bucket.getSize());
+		assertEquals(URI.create("valid:/uri"), bucket.getURI());
+	}
+
+	public void resolveIndexBucketsFormats_formatsOfManyBuckets_listsArchiveOnceForTheIndex()
+			throws IOException {
+		URI pattern = URI.create("valid:/index/*/*");
+		when(pathResolver.getArchivedFormatsPattern("index")).thenReturn(pattern);
+
+		bucketFormatResolver.resolveIndexBucketsFormats("index");
+
+		verify(archiveFileSystem).listPathsMatching(pattern);
+		verify(archiveFileSystem, never()).listPath(any(URI.class));
+	}
+
+	public void resolveIndexBucketsFormats_formatsOfTwoBuckets_choosesFormatPerBucket()
+			throws IOException {
+		when(archiveFileSystem.listPathsMatching(any(URI.class))).thenReturn(
+				Arrays.asList(URI.create("valid:/index/db_2_1_0/SPLUNK_BUCKET"),
+						URI.create("valid:/index/db_2_1_0/CSV"),
+						URI.create("valid:/index/db_4_3_1/CSV")));
+		when(bucketFormatChooser.chooseBucketFormat(anyListOf(BucketFormat.class)))
+				.thenReturn(BucketFormat.CSV);
+		when(
+				pathResolver.resolveArchivedBucketURI(anyString(), anyString(),
+						any(BucketFormat.class))).thenReturn(URI.create("valid:/uri"));
+
+		List<Bucket> buckets = bucketFormatResolver
+				.resolveIndexBucketsFormats("index");
+
+		assertEquals(2, buckets.size());
+		assertEquals("db_2_1_0", buckets.get(0).getName());
+		assertEquals("db_4_3_1", buckets.get(1).getName());
+		assertEquals("index", buckets.get(0).getIndex());
+		assertEquals(BucketFormat.CSV, buckets.get(0).getFormat());
+		verify(bucketFormatChooser).chooseBucketFormat(
+				Arrays.asList(BucketFormat.SPLUNK_BUCKET, BucketFormat.CSV));
+		verify(bucketFormatChooser).chooseBucketFormat(
+				Arrays.asList(BucketFormat.CSV));
+	}
+
+	public void resolveIndexBucketsFormats_sizeFilesOfIndex_bucketsHaveSizeOfChosenFormatWithoutReadingSizes()
+			throws IOException {
+		URI formatsPattern = URI.create("valid:/index/*/*");
+		URI sizesPattern = URI.create("valid:/index/*/*/sizes");
+		when(pathResolver.getArchivedFormatsPattern("index")).thenReturn(
+				formatsPattern);
+		when(pathResolver.getArchivedSizeFilesPattern("index")).thenReturn(
+				sizesPattern);
+		when(archiveFileSystem.listPathsMatching(formatsPattern)).thenReturn(
+				Arrays.asList(URI.create("valid:/index/db_2_1_0/SPLUNK_BUCKET"),
+						URI.create("valid:/index/db_2_1_0/CSV"),
+						URI.create("valid:/index/db_4_3_1/CSV")));
+		when(archiveFileSystem.listPathsMatching(sizesPattern)).thenReturn(
+				Arrays.asList(URI.create("valid:/index/db_2_1_0/SPLUNK_BUCKET/"
+						+ PathResolver.getBucketSizeFilePath(7)), URI
+						.create("valid:/index/db_2_1_0/CSV/"
+								+ PathResolver.getBucketSizeFilePath(9))));
+		when(bucketFormatChooser.chooseBucketFormat(anyListOf(BucketFormat.class)))
+				.thenReturn(BucketFormat.CSV);
+		when(
+				pathResolver.resolveArchivedBucketURI(anyString(), anyString(),
+						any(BucketFormat.class))).thenReturn(URI.create("valid:/uri"));
+
+		List<Bucket> buckets = bucketFormatResolver
+				.resolveIndexBucketsFormats("index");
+
+		assertEquals(9L, (long) buckets.get(0).getSize());
+		assertNull(buckets.get(1).getSize());
+		verify(archiveFileSystem, never()).openFile(any(URI.class));
+		verify(archiveFileSystem, never()).listEntries(any(URI.class));
+	}
+
+	public void resolveIndexBucketsFormats_pathThatIsNotAFormat_isSkipped()
+			throws IOException {
+		when(archiveFileSystem.listPathsMatching(any(URI.class))).thenReturn(
+				Arrays.asList(URI.create("valid:/index/db_2_1_0/not_a_format")));
+
+		assertTrue(bucketFormatResolver.resolveIndexBucketsFormats("index")
+				.isEmpty());
+		verifyZeroInteractions(bucketFormatChooser);
+	}
 }
@@ -20,11 +20,22 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.mockito.InOrder;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -34,6 +45,7 @@ import com.splunk.shuttl.archiver.bucketlock.BucketLockerInTestDir;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
+import com.splunk.shuttl.archiver.util.SameThreadExecutorService;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
 @Test(groups = { "fast-unit" })
@@ -55,8 +67,8 @@ public class BucketThawerTest {
 		getsBucketsFromArchive = mock(GetsBucketsFromArchive.class);
 		thawLocationProvider = mock(ThawLocationProvider.class);
 		thawBucketLocker = new BucketLockerInTestDir(createDirectory());
-		bucketThawer = new BucketThawer(listsBucketsFiltered,
-				getsBucketsFromArchive, thawLocationProvider, thawBucketLocker);
+		bucketThawer = createThawer(new SameThreadExecutorService(),
+				new InFlightThaws(), ThawedBucketCache.unlimited());
 
 		index = "foo";
 		earliestTime = new Date();
@@ -83,9 +95,9 @@ public class BucketThawerTest {
 
 		bucketThawer.thawBuckets(index, earliestTime, latestTime);
 		verify(getsBucketsFromArchive).getBucketFromArchive(
-				archivedBucketWithinTimeRange1);
+				eq(archivedBucketWithinTimeRange1), any(ThawListener.class));
 		verify(getsBucketsFromArchive).getBucketFromArchive(
-				archivedBucketWithinTimeRange2);
+				eq(archivedBucketWithinTimeRange2), any(ThawListener.class));
 	}
 
 	public void thawBuckets_bucketAlreadyThawedToThawLocation_doesNotThawBucketAgain()
@@ -101,6 +113,31 @@ public class BucketThawerTest {
 		verifyZeroInteractions(getsBucketsFromArchive);
 	}
 
+	public void thawBuckets_bucketThawedByOtherThawRightBeforeThisThaw_doesNotThawBucketAgain()
+			throws Exception {
+		final File thawLocation = createFilePath();
+		when(thawLocationProvider.getLocationInThawForBucket(bucket)).thenReturn(
+				thawLocation);
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(bucket));
+		InFlightThaws inFlightThaws = spy(new InFlightThaws());
+		doAnswer(new Answer<Bucket>() {
+
+			@Override
+			public Bucket answer(InvocationOnMock invocation) throws Throwable {
+				assertTrue(thawLocation.mkdirs());
+				return (Bucket) invocation.callRealMethod();
+			}
+		}).when(inFlightThaws).thawOnce(eq(bucket),
+				Matchers.<Callable<Bucket>> any());
+
+		createThawer(new SameThreadExecutorService(), inFlightThaws,
+				ThawedBucketCache.unlimited()).thawBuckets(index, earliestTime,
+				latestTime);
+		verifyZeroInteractions(getsBucketsFromArchive);
+	}
+
 	public void thawBuckets_thawLocationProviderThrowsException_failBucketAndDoNotTransfer()
 			throws IOException {
 		doThrow(new IOException()).when(thawLocationProvider)
@@ -134,10 +171,10 @@ public class BucketThawerTest {
 						latestTime)).thenReturn(asList(bucket1, bucket2));
 		Bucket thawedBucket1 = mock(Bucket.class);
 		Bucket thawedBucket2 = mock(Bucket.class);
-		when(getsBucketsFromArchive.getBucketFromArchive(bucket1)).thenReturn(
-				thawedBucket1);
-		when(getsBucketsFromArchive.getBucketFromArchive(bucket2)).thenReturn(
-				thawedBucket2);
+		when(getsBucketsFromArchive.getBucketFromArchive(eq(bucket1),
+				any(ThawListener.class))).thenReturn(thawedBucket1);
+		when(getsBucketsFromArchive.getBucketFromArchive(eq(bucket2),
+				any(ThawListener.class))).thenReturn(thawedBucket2);
 		bucketThawer.thawBuckets(index, earliestTime, latestTime);
 		List<Bucket> thawedBuckets = bucketThawer.getThawedBuckets();
 		assertEquals(2, thawedBuckets.size());
@@ -148,7 +185,7 @@ public class BucketThawerTest {
 	public void getFailedBuckets_whenThawTransferFailExceptionIsThrownForABucket_returnBucket()
 			throws ThawTransferFailException, ImportThawedBucketFailException {
 		doThrow(ThawTransferFailException.class).when(getsBucketsFromArchive)
-				.getBucketFromArchive(bucket);
+				.getBucketFromArchive(eq(bucket), any(ThawListener.class));
 
 		run_thawBuckets_bucketFieldPassedToGetsBucketFromArchive();
 		List<FailedBucket> failedBuckets = bucketThawer.getFailedBuckets();
@@ -168,7 +205,7 @@ public class BucketThawerTest {
 	public void getFailedBuckets_whenImportThawedBucketFailExceptionIsThrownForBucket_returnBucket()
 			throws ThawTransferFailException, ImportThawedBucketFailException {
 		doThrow(ImportThawedBucketFailException.class).when(getsBucketsFromArchive)
-				.getBucketFromArchive(bucket);
+				.getBucketFromArchive(eq(bucket), any(ThawListener.class));
 
 		run_thawBuckets_bucketFieldPassedToGetsBucketFromArchive();
 		List<FailedBucket> failedBuckets = bucketThawer.getFailedBuckets();
@@ -183,16 +220,253 @@ public class BucketThawerTest {
 	public void getThawedBuckets_whenThawFails_doesntContainThatBucket()
 			throws ThawTransferFailException, ImportThawedBucketFailException {
 		doThrow(ThawTransferFailException.class).when(getsBucketsFromArchive)
-				.getBucketFromArchive(any(Bucket.class));
+				.getBucketFromArchive(any(Bucket.class), any(ThawListener.class));
 		run_thawBuckets_bucketFieldPassedToGetsBucketFromArchive();
 		assertTrue(bucketThawer.getThawedBuckets().isEmpty());
 	}
 
 	public void getFailedBuckets_whenBucketSucceed_doesntContainThatBucket()
 			throws ThawTransferFailException, ImportThawedBucketFailException {
-		when(getsBucketsFromArchive.getBucketFromArchive(bucket)).thenReturn(
-				mock(Bucket.class));
+		when(getsBucketsFromArchive.getBucketFromArchive(eq(bucket),
+				any(ThawListener.class))).thenReturn(mock(Bucket.class));
 		run_thawBuckets_bucketFieldPassedToGetsBucketFromArchive();
 		assertTrue(bucketThawer.getFailedBuckets().isEmpty());
 	}
+
+	private BucketThawer createParallelThawer(ExecutorService thawExecutor) {
+		return createThawer(thawExecutor, new InFlightThaws(),
+				ThawedBucketCache.unlimited());
+	}
+
+	public void thawBuckets_parallelThawer_bucketsAreThawedAtTheSameTime()
+			throws Exception {
+		ExecutorService thawExecutor = Executors.newFixedThreadPool(2);
+		try {
+			Bucket b1 = TUtilsBucket.createBucket();
+			Bucket b2 = TUtilsBucket.createBucket();
+			when(
+					listsBucketsFiltered.listFilteredBucketsAtIndex(index,
+							earliestTime, latestTime)).thenReturn(asList(b1, b2));
+			final CountDownLatch bothThawing = new CountDownLatch(2);
+			when(
+					getsBucketsFromArchive.getBucketFromArchive(any(Bucket.class),
+							any(ThawListener.class)))
+					.thenAnswer(new Answer<Bucket>() {
+
+						@Override
+						public Bucket answer(InvocationOnMock invocation)
+								throws Throwable {
+							bothThawing.countDown();
+							assertTrue(bothThawing.await(10, TimeUnit.SECONDS));
+							return (Bucket) invocation.getArguments()[0];
+						}
+					});
+
+			createParallelThawer(thawExecutor).thawBuckets(index, earliestTime,
+					latestTime);
+
+			assertEquals(0, bothThawing.getCount());
+		} finally {
+			thawExecutor.shutdownNow();
+		}
+	}
+
+	public void thawBuckets_parallelThawer_collectsThawedAndFailedBucketsWithThawTimes()
+			throws Exception {
+		ExecutorService thawExecutor = Executors.newFixedThreadPool(4);
+		try {
+			List<Bucket> buckets = new ArrayList<Bucket>();
+			for (int i = 0; i < 8; i++)
+				buckets.add(TUtilsBucket.createBucket());
+			Bucket failing = buckets.get(3);
+			Bucket throwing = buckets.get(5);
+			when(
+					listsBucketsFiltered.listFilteredBucketsAtIndex(index,
+							earliestTime, latestTime)).thenReturn(buckets);
+			when(
+					getsBucketsFromArchive.getBucketFromArchive(any(Bucket.class),
+							any(ThawListener.class)))
+					.thenAnswer(new Answer<Bucket>() {
+
+						@Override
+						public Bucket answer(InvocationOnMock invocation)
+								throws Throwable {
+							return (Bucket) invocation.getArguments()[0];
+						}
+					});
+			doThrow(new ThawTransferFailException(failing)).when(
+					getsBucketsFromArchive).getBucketFromArchive(eq(failing),
+					any(ThawListener.class));
+			doThrow(new RuntimeException()).when(getsBucketsFromArchive)
+					.getBucketFromArchive(eq(throwing), any(ThawListener.class));
+			BucketThawer parallelThawer = createParallelThawer(thawExecutor);
+
+			parallelThawer.thawBuckets(index, earliestTime, latestTime);
+
+			assertEquals(6, parallelThawer.getThawedBuckets().size());
+			assertEquals(2, parallelThawer.getFailedBuckets().size());
+			assertEquals(8, parallelThawer.getThawTimesMillis().size());
+			assertTrue(parallelThawer.getThawTimesMillis().containsKey(
+					failing.getName()));
+		} finally {
+			thawExecutor.shutdownNow();
+		}
+	}
+
+	public void thawBuckets_givenListener_tellsListenerWhichBucketsAreQueuedThawedAndFailed()
+			throws Exception {
+		Bucket failing = mock(Bucket.class);
+		Bucket thawedBucket = mock(Bucket.class);
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(bucket, failing));
+		ThawListener thawListener = mock(ThawListener.class);
+		when(getsBucketsFromArchive.getBucketFromArchive(bucket, thawListener))
+				.thenReturn(thawedBucket);
+		ThawTransferFailException exception = new ThawTransferFailException(
+				failing);
+		doThrow(exception).when(getsBucketsFromArchive).getBucketFromArchive(
+				failing, thawListener);
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime, thawListener);
+		verify(thawListener).bucketQueued(bucket);
+		verify(thawListener).bucketQueued(failing);
+		verify(thawListener).bucketThawed(bucket, thawedBucket);
+		verify(thawListener).bucketFailed(failing, exception);
+	}
+
+	public void thawBuckets_givenListener_queuesAllBucketsBeforeThawingAny()
+			throws Exception {
+		Bucket other = mock(Bucket.class);
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(bucket, other));
+		ThawListener thawListener = mock(ThawListener.class);
+		when(getsBucketsFromArchive.getBucketFromArchive(bucket, thawListener))
+				.thenReturn(mock(Bucket.class));
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime, thawListener);
+		InOrder inOrder = inOrder(thawListener);
+		inOrder.verify(thawListener).bucketQueued(other);
+		inOrder.verify(thawListener).bucketThawed(eq(bucket), any(Bucket.class));
+	}
+
+	public void thawBuckets_givenListenerAndBucketAlreadyThawed_queuesBucketAndReportsItAlreadyThawed()
+			throws IOException {
+		Bucket thawedBucket = TUtilsBucket.createBucket();
+		when(thawLocationProvider.getLocationInThawForBucket(thawedBucket))
+				.thenReturn(thawedBucket.getDirectory());
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(thawedBucket));
+		ThawListener thawListener = mock(ThawListener.class);
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime, thawListener);
+		InOrder inOrder = inOrder(thawListener);
+		inOrder.verify(thawListener).bucketQueued(thawedBucket);
+		inOrder.verify(thawListener).bucketAlreadyThawed(thawedBucket);
+		verifyNoMoreInteractions(thawListener);
+	}
+
+	public void thawBuckets_twoThawersSharingInFlightThawsThawSameBucket_transfersBucketOnceAndBothGetIt()
+			throws Exception {
+		ExecutorService requests = Executors.newFixedThreadPool(2);
+		try {
+			final Bucket archived = TUtilsBucket.createBucket();
+			final Bucket thawedBucket = TUtilsBucket.createBucket();
+			when(
+					listsBucketsFiltered.listFilteredBucketsAtIndex(index,
+							earliestTime, latestTime)).thenReturn(asList(archived));
+			final CountDownLatch transferring = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			when(
+					getsBucketsFromArchive.getBucketFromArchive(eq(archived),
+							any(ThawListener.class))).thenAnswer(new Answer<Bucket>() {
+
+				@Override
+				public Bucket answer(InvocationOnMock invocation) throws Throwable {
+					transferring.countDown();
+					assertTrue(release.await(10, TimeUnit.SECONDS));
+					return thawedBucket;
+				}
+			});
+			InFlightThaws inFlightThaws = new InFlightThaws();
+			final BucketThawer first = createThawer(new SameThreadExecutorService(),
+					inFlightThaws, ThawedBucketCache.unlimited());
+			final BucketThawer second = createThawer(
+					new SameThreadExecutorService(), inFlightThaws,
+					ThawedBucketCache.unlimited());
+
+			Future<?> firstThaw = requests.submit(thawRunnable(first));
+			assertTrue(transferring.await(10, TimeUnit.SECONDS));
+			Future<?> secondThaw = requests.submit(thawRunnable(second));
+			Thread.sleep(50);
+			release.countDown();
+			firstThaw.get(10, TimeUnit.SECONDS);
+			secondThaw.get(10, TimeUnit.SECONDS);
+
+			verify(getsBucketsFromArchive, times(1)).getBucketFromArchive(
+					eq(archived), any(ThawListener.class));
+			assertEquals(asList(thawedBucket), first.getThawedBuckets());
+			assertEquals(asList(thawedBucket), second.getThawedBuckets());
+		} finally {
+			requests.shutdownNow();
+		}
+	}
+
+	private Runnable thawRunnable(final BucketThawer thawer) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				thawer.thawBuckets(index, earliestTime, latestTime);
+			}
+		};
+	}
+
+	public void thawBuckets_bucketAlreadyThawedWithCache_marksBucketAsUsed()
+			throws IOException {
+		ThawedBucketCache thawedBucketCache = mock(ThawedBucketCache.class);
+		Bucket thawedBucket = TUtilsBucket.createBucket();
+		when(thawLocationProvider.getLocationInThawForBucket(thawedBucket))
+				.thenReturn(thawedBucket.getDirectory());
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(thawedBucket));
+
+		createThawerWithCache(thawedBucketCache).thawBuckets(index, earliestTime,
+				latestTime);
+		verify(thawedBucketCache).bucketUsed(thawedBucket);
+		verifyZeroInteractions(getsBucketsFromArchive);
+	}
+
+	public void thawBuckets_withCache_makesRoomForBucketBeforeThawingIt()
+			throws Exception {
+		ThawedBucketCache thawedBucketCache = mock(ThawedBucketCache.class);
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(bucket));
+		when(getsBucketsFromArchive.getBucketFromArchive(eq(bucket),
+				any(ThawListener.class))).thenReturn(mock(Bucket.class));
+
+		createThawerWithCache(thawedBucketCache).thawBuckets(index, earliestTime,
+				latestTime);
+		InOrder inOrder = inOrder(thawedBucketCache, getsBucketsFromArchive);
+		inOrder.verify(thawedBucketCache).makeRoomForBucket(bucket);
+		inOrder.verify(getsBucketsFromArchive).getBucketFromArchive(eq(bucket),
+				any(ThawListener.class));
+		inOrder.verify(thawedBucketCache).bucketUsed(bucket);
+	}
+
+	private BucketThawer createThawerWithCache(ThawedBucketCache thawedBucketCache) {
+		return createThawer(new SameThreadExecutorService(),
+				new InFlightThaws(), thawedBucketCache);
+	}
+
+	private BucketThawer createThawer(ExecutorService thawExecutor,
+			InFlightThaws inFlightThaws, ThawedBucketCache thawedBucketCache) {
+		return new BucketThawer(listsBucketsFiltered, getsBucketsFromArchive,
+				thawLocationProvider, thawBucketLocker, thawExecutor, inFlightThaws,
+				thawedBucketCache);
+	}
 }
@@ -20,6 +20,7 @@ import static org.testng.AssertJUnit.*;
 
 import java.io.IOException;
 
+import org.mockito.InOrder;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -92,4 +93,24 @@ public class GetsBucketsFromArchiveTest {
 		verifyZeroInteractions(bucketImporter);
 	}
 
+	public void getBucketFromArchive_givenListener_tellsListenerWhenTransferringAndImportingInOrder()
+			throws Exception {
+		Bucket bucketThawed = mock(Bucket.class);
+		Bucket importedBucket = TUtilsBucket.createBucket();
+		when(thawBucketTransferer.transferBucketToThaw(bucket)).thenReturn(
+				bucketThawed);
+		when(bucketImporter.restoreToSplunkBucketFormat(bucketThawed)).thenReturn(
+				importedBucket);
+		when(bucketSizeResolver.resolveBucketSize(bucketThawed)).thenReturn(
+				importedBucket);
+		ThawListener thawListener = mock(ThawListener.class);
+
+		getsBucketsFromArchive.getBucketFromArchive(bucket, thawListener);
+		InOrder inOrder = inOrder(thawListener, thawBucketTransferer,
+				bucketImporter);
+		inOrder.verify(thawListener).bucketTransferring(bucket);
+		inOrder.verify(thawBucketTransferer).transferBucketToThaw(bucket);
+		inOrder.verify(thawListener).bucketImporting(bucket);
+		inOrder.verify(bucketImporter).restoreToSplunkBucketFormat(bucketThawed);
+	}
 }
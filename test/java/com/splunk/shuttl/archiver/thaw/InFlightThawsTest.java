@@ -0,0 +1,129 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class InFlightThawsTest {
+
+	private InFlightThaws inFlightThaws;
+	private Bucket bucket;
+	private ExecutorService executor;
+
+	@BeforeMethod
+	public void setUp() {
+		inFlightThaws = new InFlightThaws();
+		bucket = TUtilsBucket.createBucket();
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	public void thawOnce_noThawInFlight_callsThawAndReturnsItsBucket()
+			throws Exception {
+		Bucket thawedBucket = mock(Bucket.class);
+		assertEquals(thawedBucket,
+				inFlightThaws.thawOnce(bucket, returning(thawedBucket)));
+		assertFalse(inFlightThaws.isThawing(bucket));
+	}
+
+	public void thawOnce_bucketBeingThawed_waitsForThatThawInsteadOfThawingAgain()
+			throws Exception {
+		final Bucket thawedBucket = mock(Bucket.class);
+		final CountDownLatch thawing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger thaws = new AtomicInteger();
+		final Callable<Bucket> thaw = new Callable<Bucket>() {
+
+			@Override
+			public Bucket call() throws Exception {
+				thaws.incrementAndGet();
+				thawing.countDown();
+				assertTrue(release.await(10, TimeUnit.SECONDS));
+				return thawedBucket;
+			}
+		};
+		Future<Bucket> leader = executor.submit(thawOnceCall(thaw));
+		assertTrue(thawing.await(10, TimeUnit.SECONDS));
+		assertTrue(inFlightThaws.isThawing(bucket));
+		Future<Bucket> follower = executor.submit(thawOnceCall(thaw));
+		Thread.sleep(50);
+		assertFalse(follower.isDone());
+
+		release.countDown();
+		assertEquals(thawedBucket, leader.get(10, TimeUnit.SECONDS));
+		assertEquals(thawedBucket, follower.get(10, TimeUnit.SECONDS));
+		assertEquals(1, thaws.get());
+	}
+
+	@Test(expectedExceptions = { ThawTransferFailException.class })
+	public void thawOnce_thawThrowsTransferFailure_throwsTransferFailure()
+			throws Exception {
+		inFlightThaws.thawOnce(bucket, new Callable<Bucket>() {
+
+			@Override
+			public Bucket call() throws Exception {
+				throw new ThawTransferFailException(bucket);
+			}
+		});
+	}
+
+	public void thawOnce_previousThawIsDone_thawsAgain() throws Exception {
+		Bucket first = mock(Bucket.class);
+		Bucket second = mock(Bucket.class);
+		inFlightThaws.thawOnce(bucket, returning(first));
+		assertEquals(second, inFlightThaws.thawOnce(bucket, returning(second)));
+	}
+
+	private Callable<Bucket> returning(final Bucket thawedBucket) {
+		return new Callable<Bucket>() {
+
+			@Override
+			public Bucket call() throws Exception {
+				return thawedBucket;
+			}
+		};
+	}
+
+	private Callable<Bucket> thawOnceCall(final Callable<Bucket> thaw) {
+		return new Callable<Bucket>() {
+
+			@Override
+			public Bucket call() throws Exception {
+				return inFlightThaws.thawOnce(bucket, thaw);
+			}
+		};
+	}
+}
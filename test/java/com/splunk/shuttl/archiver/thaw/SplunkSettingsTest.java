@@ -14,6 +14,7 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.thaw;
 
+import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
 import java.io.File;
@@ -22,6 +23,9 @@ import java.io.IOException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.EntityCollection;
+import com.splunk.HttpException;
+import com.splunk.Index;
 import com.splunk.Service;
 import com.splunk.shuttl.archiver.model.IllegalIndexException;
 import com.splunk.shuttl.testutil.TUtilsMockito;
@@ -58,4 +62,99 @@ public class SplunkSettingsTest {
 				.getThawLocation(nonexistantIndexName);
 		assertEquals(thawLocationPath, actualThawLocation.getAbsolutePath());
 	}
+
+	public void getThawLocation_noTimeToLive_looksUpLocationInSplunkEveryTime()
+			throws IOException {
+		splunkSettings.getThawLocation(indexName);
+		splunkSettings.getThawLocation(indexName);
+		verify(splunkService, times(2)).getIndexes();
+	}
+
+	public void getThawLocation_withinTimeToLive_looksUpLocationInSplunkOnce()
+			throws IOException {
+		SplunkSettings cachingSettings = new SplunkSettings(splunkService, 60000);
+		File first = cachingSettings.getThawLocation(indexName);
+		File second = cachingSettings.getThawLocation(indexName);
+
+		assertEquals(first, second);
+		verify(splunkService, times(1)).getIndexes();
+	}
+
+	public void getThawLocation_invalidatedLocation_looksUpLocationInSplunkAgain()
+			throws IOException {
+		SplunkSettings cachingSettings = new SplunkSettings(splunkService, 60000);
+		cachingSettings.getThawLocation(indexName);
+		cachingSettings.invalidateThawLocation(indexName);
+		cachingSettings.getThawLocation(indexName);
+		cachingSettings.invalidateThawLocations();
+		cachingSettings.getThawLocation(indexName);
+
+		verify(splunkService, times(3)).getIndexes();
+	}
+
+	public void getThawLocation_timeToLiveHasPassed_looksUpLocationInSplunkAgain()
+			throws IOException, InterruptedException {
+		SplunkSettings cachingSettings = new SplunkSettings(splunkService, 1);
+		cachingSettings.getThawLocation(indexName);
+		Thread.sleep(10);
+		cachingSettings.getThawLocation(indexName);
+
+		verify(splunkService, times(2)).getIndexes();
+	}
+
+	public void getThawLocation_indexNotInSplunk_isNotRemembered()
+			throws IOException {
+		SplunkSettings cachingSettings = new SplunkSettings(splunkService, 60000);
+		for (int i = 0; i < 2; i++)
+			try {
+				cachingSettings.getThawLocation("asd123");
+				fail();
+			} catch (IllegalIndexException e) {
+			}
+		verify(splunkService, times(2)).getIndexes();
+	}
+
+	public void getThawLocation_sessionExpired_logsInAgainAndGetsThawDirectory()
+			throws IOException {
+		EntityCollection<Index> indexes = splunkService.getIndexes();
+		Index index = indexes.get(indexName);
+		HttpException unauthorized = httpException(401);
+		when(indexes.get(indexName)).thenThrow(unauthorized).thenReturn(index);
+		when(splunkService.getUsername()).thenReturn("admin");
+		when(splunkService.getPassword()).thenReturn("changeme");
+
+		File actualThawLocation = splunkSettings.getThawLocation(indexName);
+
+		assertEquals(thawLocationPath, actualThawLocation.getAbsolutePath());
+		verify(splunkService).login("admin", "changeme");
+		assertFalse(splunkSettings.hasSplunkCallFailed());
+	}
+
+	public void getThawLocation_splunkCallFails_hasSplunkCallFailed()
+			throws IOException {
+		HttpException serverError = httpException(500);
+		when(splunkService.getIndexes().get(indexName)).thenThrow(serverError);
+		try {
+			splunkSettings.getThawLocation(indexName);
+			fail();
+		} catch (HttpException e) {
+		}
+		assertTrue(splunkSettings.hasSplunkCallFailed());
+	}
+
+	public void getThawLocation_indexNotInSplunk_hasNotSplunkCallFailed()
+			throws IOException {
+		try {
+			splunkSettings.getThawLocation("asd123");
+			fail();
+		} catch (IllegalIndexException e) {
+		}
+		assertFalse(splunkSettings.hasSplunkCallFailed());
+	}
+
+	private HttpException httpException(int status) {
+		HttpException exception = mock(HttpException.class);
+		when(exception.getStatus()).thenReturn(status);
+		return exception;
+	}
 }
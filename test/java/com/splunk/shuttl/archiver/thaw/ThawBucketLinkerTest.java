@@ -0,0 +1,128 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.testutil.TUtilsTestNG;
+
+@Test(groups = { "fast-unit" })
+public class ThawBucketLinkerTest {
+
+	private ThawBucketLinker thawBucketLinker;
+	private ShellExecutor shellExecutor;
+	private File archivedBucket;
+	private File thawTransferLocation;
+
+	@BeforeMethod
+	public void setUp() {
+		shellExecutor = mock(ShellExecutor.class);
+		thawBucketLinker = new ThawBucketLinker(shellExecutor);
+		archivedBucket = createDirectory();
+		populateFileWithRandomContent(createFileInParent(archivedBucket,
+				"a.tsidx"));
+		File rawdata = createDirectoryInParent(archivedBucket,
+				ThawBucketLinker.RAWDATA_DIRECTORY);
+		populateFileWithRandomContent(createFileInParent(rawdata, "journal.gz"));
+		thawTransferLocation = new File(createDirectory(), "transfer");
+	}
+
+	@SuppressWarnings("unchecked")
+	private void cpExitsWith(int exitCode, int... exitCodes) {
+		Integer[] rest = new Integer[exitCodes.length];
+		for (int i = 0; i < exitCodes.length; i++)
+			rest[i] = exitCodes[i];
+		when(shellExecutor.executeCommand(any(Map.class), any(List.class)))
+				.thenReturn(exitCode, rest);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void linkBucket_reflinkSucceeds_trueAfterOneReflink() {
+		cpExitsWith(0);
+
+		assertTrue(thawBucketLinker.linkBucket(archivedBucket,
+				thawTransferLocation));
+
+		verify(shellExecutor).executeCommand(
+				any(Map.class),
+				eq(asList("cp", "-R", "--reflink=always",
+						archivedBucket.getAbsolutePath(),
+						thawTransferLocation.getAbsolutePath())));
+	}
+
+	@SuppressWarnings("unchecked")
+	public void linkBucket_reflinkFails_hardLinksRawdataAndCopiesTheRest() {
+		cpExitsWith(1, 0);
+
+		assertTrue(thawBucketLinker.linkBucket(archivedBucket,
+				thawTransferLocation));
+
+		verify(shellExecutor).executeCommand(
+				any(Map.class),
+				eq(asList("cp", "-R", "-l", new File(archivedBucket,
+						ThawBucketLinker.RAWDATA_DIRECTORY).getAbsolutePath(),
+						new File(thawTransferLocation,
+								ThawBucketLinker.RAWDATA_DIRECTORY).getAbsolutePath())));
+		TUtilsTestNG.assertFileContentsEqual(new File(archivedBucket, "a.tsidx"),
+				new File(thawTransferLocation, "a.tsidx"));
+	}
+
+	public void linkBucket_reflinkAndHardLinkFail_falseAndNothingLeftAtTransferLocation() {
+		cpExitsWith(1, 1);
+
+		assertFalse(thawBucketLinker.linkBucket(archivedBucket,
+				thawTransferLocation));
+
+		assertFalse(thawTransferLocation.exists());
+	}
+
+	@SuppressWarnings("unchecked")
+	public void linkBucket_cpCannotBeExecuted_false() {
+		when(shellExecutor.executeCommand(any(Map.class), any(List.class)))
+				.thenThrow(new RuntimeException());
+
+		assertFalse(thawBucketLinker.linkBucket(archivedBucket,
+				thawTransferLocation));
+	}
+
+	public void linkBucket_transferLocationExists_falseWithoutRunningCp() {
+		assertFalse(thawBucketLinker.linkBucket(archivedBucket, createDirectory()));
+
+		verifyZeroInteractions(shellExecutor);
+	}
+
+	@Test(groups = { "slow-unit" })
+	public void linkBucket_realCp_thawedBucketHasTheArchivedFiles() {
+		thawBucketLinker = ThawBucketLinker.create();
+
+		assertTrue(thawBucketLinker.linkBucket(archivedBucket,
+				thawTransferLocation));
+
+		TUtilsTestNG.assertDirectoriesAreCopies(archivedBucket,
+				thawTransferLocation);
+	}
+}
@@ -17,15 +17,21 @@ package com.splunk.shuttl.archiver.thaw;
 import static com.splunk.shuttl.testutil.TUtilsFile.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
+import static java.util.Arrays.*;
 import static org.testng.Assert.*;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.importexport.csv.CsvStreamingImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.BucketFactory;
 import com.splunk.shuttl.testutil.TUtilsBucket;
@@ -38,6 +44,8 @@ public class ThawBucketTransfererTest {
 	ArchiveFileSystem archiveFileSystem;
 	ThawLocationProvider thawLocationProvider;
 	BucketFactory bucketFactory;
+	CsvStreamingImporter csvStreamingImporter;
+	ThawBucketLinker thawBucketLinker;
 
 	@BeforeMethod
 	public void setUp() {
@@ -45,8 +53,26 @@ public class ThawBucketTransfererTest {
 		thawLocationProvider = mock(ThawLocationProvider.class);
 		archiveFileSystem = mock(ArchiveFileSystem.class);
 		bucketFactory = mock(BucketFactory.class);
-		bucketTransferer = new ThawBucketTransferer(thawLocationProvider,
-				archiveFileSystem, bucketFactory);
+		csvStreamingImporter = mock(CsvStreamingImporter.class);
+		thawBucketLinker = mock(ThawBucketLinker.class);
+		bucketTransferer = createTransferer(false);
+		stubNoPackedDirectoryInArchive();
+	}
+
+	private void stubNoPackedDirectoryInArchive() {
+		try {
+			doThrow(FileNotFoundException.class).when(archiveFileSystem)
+					.getPackedDirectory(any(File.class), any(URI.class));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private ThawBucketTransferer createTransferer(
+			boolean importCsvWhileTransferring) {
+		return new ThawBucketTransferer(thawLocationProvider, archiveFileSystem,
+				bucketFactory, csvStreamingImporter, importCsvWhileTransferring,
+				thawBucketLinker);
 	}
 
 	@Test(groups = { "fast-unit" })
@@ -62,6 +88,24 @@ public class ThawBucketTransfererTest {
 		verify(archiveFileSystem).getFile(transferDirectory, bucket.getURI());
 	}
 
+	public void _givenPackedBucket_unpackBucketToTransferLocation()
+			throws IOException {
+		stub(thawLocationProvider.getLocationInThawForBucket(bucket)).toReturn(
+				createDirectory());
+		File transferDirectory = createDirectory();
+		when(thawLocationProvider.getThawTransferLocation(bucket)).thenReturn(
+				transferDirectory);
+		doNothing().when(archiveFileSystem).getPackedDirectory(transferDirectory,
+				bucket.getURI());
+
+		bucketTransferer.transferBucketToThaw(bucket);
+
+		verify(archiveFileSystem).getPackedDirectory(transferDirectory,
+				bucket.getURI());
+		verify(archiveFileSystem, never()).getFile(any(File.class),
+				eq(bucket.getURI()));
+	}
+
 	public void _whenArchiveFileSystemThrowsIOException_keepThrowing()
 			throws IOException {
 		doThrow(IOException.class).when(archiveFileSystem).getFile(any(File.class),
@@ -95,4 +139,105 @@ public class ThawBucketTransfererTest {
 		assertEquals(bucketOnLocalDisk, actualBucket);
 	}
 
+	public void _givenCsvBucketImportedWhileTransferring_importsArchivedCsvFileWhileReadingIt()
+			throws IOException {
+		bucketTransferer = createTransferer(true);
+		Bucket csvBucket = mock(Bucket.class);
+		URI csvBucketUri = URI.create("valid:/index/db_2_1_0/CSV");
+		when(csvBucket.getFormat()).thenReturn(BucketFormat.CSV);
+		when(csvBucket.getURI()).thenReturn(csvBucketUri);
+		when(csvBucket.getIndex()).thenReturn("index");
+		URI csvFile = URI.create(csvBucketUri + "/db_2_1_0.csv");
+		when(archiveFileSystem.listPath(csvBucketUri)).thenReturn(
+				asList(URI.create(csvBucketUri + "/archive_meta"), csvFile));
+		InputStream csvStream = mock(InputStream.class);
+		when(archiveFileSystem.openFile(csvFile)).thenReturn(csvStream);
+		File transferLocation = createDirectory(); // as created by the importer
+		when(thawLocationProvider.getThawTransferLocation(csvBucket)).thenReturn(
+				transferLocation);
+		when(thawLocationProvider.getLocationInThawForBucket(csvBucket))
+				.thenReturn(createFilePath());
+
+		bucketTransferer.transferBucketToThaw(csvBucket);
+
+		verify(csvStreamingImporter).importBucketFromCsvStream("index",
+				transferLocation, csvStream);
+		verify(csvStream).close();
+		verify(archiveFileSystem, never()).getFile(any(File.class),
+				any(URI.class));
+		verify(bucketFactory).createWithIndexDirectoryAndSize(eq("index"),
+				any(File.class), eq(BucketFormat.SPLUNK_BUCKET), any(Long.class));
+	}
+
+	public void _givenCsvBucketNotImportedWhileTransferring_transfersBucketAsItIs()
+			throws IOException {
+		Bucket csvBucket = TUtilsBucket.createRealCsvBucket();
+		when(thawLocationProvider.getThawTransferLocation(csvBucket)).thenReturn(
+				createDirectory());
+		when(thawLocationProvider.getLocationInThawForBucket(csvBucket))
+				.thenReturn(createFilePath());
+
+		bucketTransferer.transferBucketToThaw(csvBucket);
+
+		verify(archiveFileSystem).getFile(any(File.class),
+				eq(csvBucket.getURI()));
+		verify(archiveFileSystem, never()).getPackedDirectory(any(File.class),
+				any(URI.class));
+		verifyZeroInteractions(csvStreamingImporter);
+	}
+
+	public void _givenCsvBucketWithoutCsvFileInArchive_throwsFileNotFoundException()
+			throws IOException {
+		bucketTransferer = createTransferer(true);
+		Bucket csvBucket = mock(Bucket.class);
+		when(csvBucket.getFormat()).thenReturn(BucketFormat.CSV);
+		when(csvBucket.getURI()).thenReturn(URI.create("valid:/index/b/CSV"));
+		try {
+			bucketTransferer.transferBucketToThaw(csvBucket);
+			fail();
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+	}
+
+	public void _givenLocalArchiveAndLinker_linksBucketInsteadOfCopyingIt()
+			throws IOException {
+		File transferLocation = createFilePath();
+		when(thawLocationProvider.getThawTransferLocation(bucket)).thenReturn(
+				transferLocation);
+		when(thawLocationProvider.getLocationInThawForBucket(bucket)).thenReturn(
+				createFilePath());
+		when(thawBucketLinker.linkBucket(bucket.getDirectory(), transferLocation))
+				.thenReturn(true);
+		transferLocation.mkdirs(); // as linked
+
+		bucketTransferer.transferBucketToThaw(bucket);
+
+		verify(archiveFileSystem, never()).getFile(any(File.class),
+				any(URI.class));
+	}
+
+	public void _givenLinkerThatCannotLink_copiesBucket() throws IOException {
+		File transferDirectory = createDirectory();
+		when(thawLocationProvider.getThawTransferLocation(bucket)).thenReturn(
+				transferDirectory);
+		when(thawLocationProvider.getLocationInThawForBucket(bucket)).thenReturn(
+				createFilePath());
+
+		bucketTransferer.transferBucketToThaw(bucket);
+
+		verify(archiveFileSystem).getFile(transferDirectory, bucket.getURI());
+	}
+
+	public void _givenRemoteBucketAndLinker_doesNotTryToLink() throws IOException {
+		Bucket remoteBucket = TUtilsBucket.createRemoteBucket();
+		when(thawLocationProvider.getThawTransferLocation(remoteBucket))
+				.thenReturn(createDirectory());
+		when(thawLocationProvider.getLocationInThawForBucket(remoteBucket))
+				.thenReturn(createFilePath());
+
+		bucketTransferer.transferBucketToThaw(remoteBucket);
+
+		verifyZeroInteractions(thawBucketLinker);
+	}
 }
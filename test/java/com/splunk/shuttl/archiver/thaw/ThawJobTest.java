@@ -0,0 +1,183 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.ThawJob.BucketProgress;
+import com.splunk.shuttl.archiver.thaw.ThawJob.BucketState;
+import com.splunk.shuttl.archiver.thaw.ThawJob.State;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class ThawJobTest {
+
+	private ThawJob thawJob;
+	private BucketThawer bucketThawer;
+	private Callable<BucketThawer> thawerFactory;
+	private Date earliest;
+	private Date latest;
+	private Bucket bucket;
+
+	@BeforeMethod
+	public void setUp() {
+		earliest = new Date(0);
+		latest = new Date(1000);
+		thawJob = new ThawJob("id", "index", earliest, latest);
+		bucketThawer = mock(BucketThawer.class);
+		thawerFactory = new Callable<BucketThawer>() {
+
+			@Override
+			public BucketThawer call() {
+				return bucketThawer;
+			}
+		};
+		bucket = TUtilsBucket.createBucketWithIndexAndName("index", "db_20_10_0");
+	}
+
+	public void getState_notRun_queued() {
+		assertEquals(State.QUEUED, thawJob.getState());
+		assertNull(thawJob.getEtaMillis());
+	}
+
+	public void run_givenThawer_thawsBucketsWithTheJobAsListener() {
+		thawJob.run(thawerFactory);
+		verify(bucketThawer).thawBuckets("index", earliest, latest, thawJob);
+		assertEquals(State.DONE, thawJob.getState());
+	}
+
+	public void run_thawerThrows_jobFailedWithReason() {
+		doThrow(new IllegalStateException()).when(bucketThawer).thawBuckets(
+				anyString(), any(Date.class), any(Date.class),
+				any(ThawListener.class));
+		thawJob.run(thawerFactory);
+		assertEquals(State.FAILED, thawJob.getState());
+		assertEquals("IllegalStateException", thawJob.getFailureReason());
+		assertTrue(thawJob.isFinished());
+	}
+
+	public void run_thawerCannotBeCreated_jobFailedWithReason() {
+		thawJob.run(new Callable<BucketThawer>() {
+
+			@Override
+			public BucketThawer call() {
+				throw new IllegalStateException();
+			}
+		});
+		assertEquals(State.FAILED, thawJob.getState());
+		assertEquals("IllegalStateException", thawJob.getFailureReason());
+	}
+
+	public void getBucketProgress_bucketsGoThroughStates_reportsLatestStateOfEachBucket() {
+		Bucket other = TUtilsBucket.createBucketWithIndexAndName("index",
+				"db_40_30_1");
+		thawJob.bucketQueued(bucket);
+		thawJob.bucketQueued(other);
+		thawJob.bucketTransferring(bucket);
+		thawJob.bucketImporting(bucket);
+		thawJob.bucketFailed(other, new ThawTransferFailException(other));
+
+		List<BucketProgress> progress = thawJob.getBucketProgress();
+		assertEquals(2, progress.size());
+		assertEquals(bucket.getName(), progress.get(0).bucketName);
+		assertEquals(BucketState.IMPORTING, progress.get(0).getState());
+		assertEquals(BucketState.FAILED, progress.get(1).getState());
+		assertEquals("ThawTransferFailException", progress.get(1).getReason());
+	}
+
+	public void getBytesMoved_oneOfTwoBucketsDone_sizeOfTheDoneBucket() {
+		Bucket done = bucketWithSize("db_20_10_0", 100L);
+		Bucket transferring = bucketWithSize("db_40_30_1", 300L);
+		thawJob.bucketQueued(done);
+		thawJob.bucketQueued(transferring);
+		thawJob.bucketTransferring(transferring);
+		thawJob.bucketThawed(done, mock(Bucket.class));
+
+		assertEquals(100, thawJob.getBytesMoved());
+	}
+
+	public void bucketAlreadyThawed_queuedBucket_doneButNoBytesMoved() {
+		Bucket thawed = bucketWithSize("db_20_10_0", 100L);
+		thawJob.bucketQueued(thawed);
+		thawJob.bucketAlreadyThawed(thawed);
+
+		BucketProgress progress = thawJob.getBucketProgress().get(0);
+		assertEquals(BucketState.DONE, progress.getState());
+		assertTrue(progress.isAlreadyThawed());
+		assertEquals(0, thawJob.getBytesMoved());
+	}
+
+	public void getEtaMillis_alreadyThawedBucket_isLeftOutOfTheEstimate() {
+		final Bucket alreadyThawed = bucketWithSize("db_20_10_0", 100L);
+		final Bucket left = bucketWithSize("db_40_30_1", 300L);
+		final Long[] eta = new Long[1];
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				thawJob.bucketQueued(alreadyThawed);
+				thawJob.bucketQueued(left);
+				thawJob.bucketAlreadyThawed(alreadyThawed);
+				eta[0] = thawJob.getEtaMillis();
+				return null;
+			}
+		}).when(bucketThawer).thawBuckets("index", earliest, latest, thawJob);
+
+		thawJob.run(thawerFactory);
+		assertNull(eta[0]);
+	}
+
+	public void getEtaMillis_whileRunningWithKnownSizes_estimatesFromBytesLeft() {
+		final Bucket done = bucketWithSize("db_20_10_0", 100L);
+		final Bucket left = bucketWithSize("db_40_30_1", 300L);
+		final Long[] eta = new Long[1];
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				thawJob.bucketQueued(done);
+				thawJob.bucketQueued(left);
+				assertNull(thawJob.getEtaMillis());
+				Thread.sleep(20);
+				thawJob.bucketThawed(done, done);
+				eta[0] = thawJob.getEtaMillis();
+				return null;
+			}
+		}).when(bucketThawer).thawBuckets("index", earliest, latest, thawJob);
+
+		thawJob.run(thawerFactory);
+		assertTrue(eta[0] >= 3 * 20);
+		assertEquals(0L, (long) thawJob.getEtaMillis());
+	}
+
+	private Bucket bucketWithSize(String name, Long size) {
+		Bucket sized = mock(Bucket.class);
+		when(sized.getName()).thenReturn(name);
+		when(sized.getSize()).thenReturn(size);
+		return sized;
+	}
+}
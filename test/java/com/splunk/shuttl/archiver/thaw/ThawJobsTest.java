@@ -0,0 +1,138 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.thaw.ThawJob.State;
+
+@Test(groups = { "fast-unit" })
+public class ThawJobsTest {
+
+	private ThreadPoolExecutor executor;
+	private ThawJobs thawJobs;
+	private BucketThawer bucketThawer;
+	private Date earliest;
+	private Date latest;
+
+	@BeforeMethod
+	public void setUp() {
+		executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(1));
+		thawJobs = spy(new ThawJobs(executor, 1));
+		bucketThawer = mock(BucketThawer.class);
+		doReturn(bucketThawer).when(thawJobs).createThawer();
+		earliest = new Date(0);
+		latest = new Date(1000);
+	}
+
+	@AfterMethod
+	public void tearDown() throws InterruptedException {
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	public void submit_givenRange_runsJobWithThawer()
+			throws InterruptedException {
+		ThawJob job = thawJobs.submit("index", earliest, latest);
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+
+		verify(bucketThawer).thawBuckets("index", earliest, latest, job);
+		assertEquals(State.DONE, job.getState());
+	}
+
+	public void submit_thawerCannotBeCreated_jobFails()
+			throws InterruptedException {
+		doThrow(new IllegalStateException()).when(thawJobs).createThawer();
+		ThawJob job = thawJobs.submit("index", earliest, latest);
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+
+		assertEquals(State.FAILED, job.getState());
+		assertEquals("IllegalStateException", job.getFailureReason());
+	}
+
+	public void getJob_submittedJob_returnsJobById() {
+		ThawJob job = thawJobs.submit("index", earliest, latest);
+		assertSame(job, thawJobs.getJob(job.getId()));
+	}
+
+	public void getJob_unknownId_null() {
+		assertNull(thawJobs.getJob("unknown"));
+	}
+
+	public void submit_runningAndQueueFull_throwsQueueFullException()
+			throws InterruptedException {
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				running.countDown();
+				release.await();
+				return null;
+			}
+		}).when(bucketThawer).thawBuckets(eq("running"), any(Date.class),
+				any(Date.class), any(ThawListener.class));
+		try {
+			thawJobs.submit("running", earliest, latest);
+			assertTrue(running.await(5, TimeUnit.SECONDS));
+			thawJobs.submit("queued", earliest, latest);
+			try {
+				thawJobs.submit("rejected", earliest, latest);
+				fail("Expected ThawJobQueueFullException");
+			} catch (ThawJobQueueFullException e) {
+				assertEquals(1, thawJobs.getQueueDepth());
+			}
+		} finally {
+			release.countDown();
+		}
+	}
+
+	public void submit_moreFinishedJobsThanRemembered_forgetsOldestFinishedJob()
+			throws InterruptedException {
+		ThawJob first = thawJobs.submit("index", earliest, latest);
+		waitUntilFinished(first);
+		ThawJob second = thawJobs.submit("index", earliest, latest);
+		waitUntilFinished(second);
+		ThawJob third = thawJobs.submit("index", earliest, latest);
+
+		assertNull(thawJobs.getJob(first.getId()));
+		assertSame(second, thawJobs.getJob(second.getId()));
+		assertSame(third, thawJobs.getJob(third.getId()));
+	}
+
+	private void waitUntilFinished(ThawJob job) throws InterruptedException {
+		for (int i = 0; i < 500 && !job.isFinished(); i++)
+			Thread.sleep(10);
+		assertTrue(job.isFinished());
+	}
+}
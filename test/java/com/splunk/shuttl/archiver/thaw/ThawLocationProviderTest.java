@@ -71,13 +71,15 @@ public class ThawLocationProviderTest {
 		assertEquals(bucket.getName(), bucketsLocation.getName());
 	}
 
-	public void getThawTransferLocation_givenTransferLocation_fileIsInTransferLocation() {
+	public void getThawTransferLocation_givenTransferLocation_fileIsInTransferLocation()
+			throws IOException {
 		File transferLoc = thawLocationProvider.getThawTransferLocation(bucket);
 		assertEquals(transferLocation.getAbsolutePath(), transferLoc
 				.getParentFile().getAbsolutePath());
 	}
 
-	public void getThawTransferLocation_givenTransferLocation_fileHasNameOfBucketForUniquness() {
+	public void getThawTransferLocation_givenTransferLocation_fileHasNameOfBucketForUniquness()
+			throws IOException {
 		File transferLoc = thawLocationProvider.getThawTransferLocation(bucket);
 		assertEquals(bucket.getName(), transferLoc.getName());
 	}
@@ -92,4 +94,30 @@ public class ThawLocationProviderTest {
 				secondLocation.getAbsolutePath());
 		assertFalse(secondLocation.exists());
 	}
+
+	public void getThawTransferLocation_givenTransfersDirectoryName_fileIsInThatDirectoryInThawLocation()
+			throws IOException {
+		File transferLoc = new ThawLocationProvider(splunkSettings,
+				transferLocation, ".transfers").getThawTransferLocation(bucket);
+		assertEquals(new File(thawLocation, ".transfers").getAbsolutePath(),
+				transferLoc.getParentFile().getAbsolutePath());
+		assertTrue(transferLoc.getParentFile().isDirectory());
+		assertEquals(bucket.getName(), transferLoc.getName());
+	}
+
+	public void getThawTransferLocation_transfersDirectoryCanNotBeCreated_fileIsInTransferLocation()
+			throws IOException {
+		assertTrue(thawLocation.createNewFile());
+		File transferLoc = new ThawLocationProvider(splunkSettings,
+				transferLocation, ".transfers").getThawTransferLocation(bucket);
+		assertEquals(transferLocation.getAbsolutePath(), transferLoc
+				.getParentFile().getAbsolutePath());
+	}
+
+	public void getThawTransferLocation_directoryExistsAtLocation_deletesTheDirectory()
+			throws IOException {
+		File transferLoc = thawLocationProvider.getThawTransferLocation(bucket);
+		assertTrue(new File(transferLoc, "partial").mkdirs());
+		assertFalse(thawLocationProvider.getThawTransferLocation(bucket).exists());
+	}
 }
@@ -0,0 +1,173 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.bucketlock.BucketLock;
+import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
+import com.splunk.shuttl.archiver.bucketlock.BucketLockerInTestDir;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+@Test(groups = { "fast-unit" })
+public class ThawedBucketCacheTest {
+
+	private File thawDirectory;
+	private ThawLocationProvider thawLocationProvider;
+	private BucketLocker thawBucketLocker;
+	private File oldest;
+	private File middle;
+	private File newest;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		thawDirectory = createDirectory();
+		thawLocationProvider = mock(ThawLocationProvider.class);
+		when(thawLocationProvider.getLocationInThawForBucket(any(Bucket.class)))
+				.thenAnswer(new Answer<File>() {
+
+					@Override
+					public File answer(InvocationOnMock invocation) throws Throwable {
+						Bucket bucket = (Bucket) invocation.getArguments()[0];
+						return new File(thawDirectory, bucket.getName());
+					}
+				});
+		thawBucketLocker = new BucketLockerInTestDir(createDirectory());
+		oldest = createThawedBucket("db_2_1_0", 1000000);
+		middle = createThawedBucket("db_4_3_1", 2000000);
+		newest = createThawedBucket("db_6_5_2", 3000000);
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(thawDirectory);
+	}
+
+	private File createThawedBucket(String name, long lastModified)
+			throws IOException {
+		File bucketDir = new File(thawDirectory, name);
+		FileUtils.writeByteArrayToFile(new File(bucketDir, "data"), new byte[10]);
+		assertTrue(bucketDir.setLastModified(lastModified));
+		return bucketDir;
+	}
+
+	private Bucket bucketToThaw(String name, Long size) {
+		Bucket bucket = mock(Bucket.class);
+		when(bucket.getName()).thenReturn(name);
+		when(bucket.getIndex()).thenReturn("index");
+		when(bucket.getSize()).thenReturn(size);
+		return bucket;
+	}
+
+	public void makeRoomForBucket_bucketFitsInBudget_deletesNothing() {
+		new ThawedBucketCache(thawLocationProvider, thawBucketLocker, 40)
+				.makeRoomForBucket(bucketToThaw("db_8_7_3", 10L));
+
+		assertTrue(oldest.exists());
+		assertTrue(middle.exists());
+		assertTrue(newest.exists());
+	}
+
+	public void makeRoomForBucket_bucketGoesOverBudget_deletesLeastRecentlyUsedUntilItFits() {
+		new ThawedBucketCache(thawLocationProvider, thawBucketLocker, 20)
+				.makeRoomForBucket(bucketToThaw("db_8_7_3", 5L));
+
+		assertFalse(oldest.exists());
+		assertFalse(middle.exists());
+		assertTrue(newest.exists());
+	}
+
+	public void makeRoomForBucket_leastRecentlyUsedBucketIsLocked_deletesNextLeastRecentlyUsed()
+			throws Exception {
+		BucketLock lock = thawBucketLocker.getLockForBucket(new Bucket("index",
+				oldest));
+		assertTrue(lock.tryLockExclusive());
+		try {
+			new ThawedBucketCache(thawLocationProvider, thawBucketLocker, 30)
+					.makeRoomForBucket(bucketToThaw("db_8_7_3", 10L));
+
+			assertTrue(oldest.exists());
+			assertFalse(middle.exists());
+			assertTrue(newest.exists());
+		} finally {
+			lock.closeLock();
+		}
+	}
+
+	public void makeRoomForBucket_unknownSizeOfBucket_keepsTheThawedWithinBudget() {
+		new ThawedBucketCache(thawLocationProvider, thawBucketLocker, 20)
+				.makeRoomForBucket(bucketToThaw("db_8_7_3", null));
+
+		assertFalse(oldest.exists());
+		assertTrue(middle.exists());
+		assertTrue(newest.exists());
+	}
+
+	public void bucketUsed_thawedBucket_becomesMostRecentlyUsed() {
+		ThawedBucketCache cache = new ThawedBucketCache(thawLocationProvider,
+				thawBucketLocker, 20);
+		cache.bucketUsed(bucketToThaw(oldest.getName(), null));
+		cache.makeRoomForBucket(bucketToThaw("db_8_7_3", 5L));
+
+		assertTrue(oldest.exists());
+		assertFalse(middle.exists());
+		assertFalse(newest.exists());
+	}
+
+	public void makeRoomForBucket_thawedBucketUnchangedSinceMeasured_isNotMeasuredAgain()
+			throws IOException {
+		ThawedBucketCache cache = new ThawedBucketCache(thawLocationProvider,
+				thawBucketLocker, 40);
+		cache.makeRoomForBucket(bucketToThaw("db_8_7_3", 10L));
+		growThawedBucket(newest, newest.lastModified());
+		cache.makeRoomForBucket(bucketToThaw("db_8_7_3", 10L));
+
+		assertTrue(oldest.exists());
+		assertTrue(middle.exists());
+		assertTrue(newest.exists());
+	}
+
+	public void makeRoomForBucket_thawedBucketChangedSinceMeasured_isMeasuredAgain()
+			throws IOException {
+		ThawedBucketCache cache = new ThawedBucketCache(thawLocationProvider,
+				thawBucketLocker, 40);
+		cache.makeRoomForBucket(bucketToThaw("db_8_7_3", 10L));
+		growThawedBucket(newest, 4000000);
+		cache.makeRoomForBucket(bucketToThaw("db_8_7_3", 10L));
+
+		assertFalse(oldest.exists());
+		assertFalse(middle.exists());
+		assertTrue(newest.exists());
+	}
+
+	private void growThawedBucket(File bucketDir, long lastModified)
+			throws IOException {
+		FileUtils.writeByteArrayToFile(new File(bucketDir, "data"), new byte[30]);
+		assertTrue(bucketDir.setLastModified(lastModified));
+	}
+}
@@ -0,0 +1,45 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.util;
+
+import static org.testng.AssertJUnit.*;
+
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class DaemonThreadFactoryTest {
+
+	private final Runnable noop = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+
+	public void newThread_givenNamePrefix_createsNumberedDaemonThreads() {
+		DaemonThreadFactory threadFactory = new DaemonThreadFactory("prefix");
+		Thread first = threadFactory.newThread(noop);
+		Thread second = threadFactory.newThread(noop);
+		assertTrue(first.isDaemon());
+		assertEquals("prefix-1", first.getName());
+		assertEquals("prefix-2", second.getName());
+		assertEquals(Thread.NORM_PRIORITY, first.getPriority());
+	}
+
+	public void newThread_givenPriority_createsThreadsWithThePriority() {
+		Thread thread = new DaemonThreadFactory("prefix", Thread.MIN_PRIORITY)
+				.newThread(noop);
+		assertEquals(Thread.MIN_PRIORITY, thread.getPriority());
+	}
+}
@@ -0,0 +1,104 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.util;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.AssertJUnit.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class DirectoryMoverTest {
+
+	private ExecutorService copyExecutor;
+	private DirectoryMover directoryMover;
+	private DirectoryMover copyingMover;
+	private File source;
+	private File destination;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		copyExecutor = Executors.newFixedThreadPool(2);
+		directoryMover = new DirectoryMover(copyExecutor);
+		copyingMover = new DirectoryMover(copyExecutor) {
+			@Override
+			boolean rename(File source, File destination) {
+				return false;
+			}
+		};
+		source = createDirectory();
+		FileUtils.writeStringToFile(new File(source, "a"), "aaa");
+		FileUtils.writeStringToFile(new File(new File(source, "rawdata"), "b"),
+				"bbb");
+		destination = new File(createDirectory(), "moved");
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		copyExecutor.shutdownNow();
+	}
+
+	public void moveDirectory_canBeRenamed_movesDirectory() throws IOException {
+		directoryMover.moveDirectory(source, destination);
+		assertFalse(source.exists());
+		assertMovedContent();
+	}
+
+	public void moveDirectory_canNotBeRenamed_copiesFilesAndDeletesSource()
+			throws IOException {
+		copyingMover.moveDirectory(source, destination);
+		assertFalse(source.exists());
+		assertMovedContent();
+	}
+
+	private void assertMovedContent() throws IOException {
+		assertEquals("aaa", FileUtils.readFileToString(new File(destination, "a")));
+		assertEquals("bbb", FileUtils.readFileToString(new File(new File(
+				destination, "rawdata"), "b")));
+	}
+
+	public void moveDirectory_destinationIsEmptyDirectory_movesDirectory()
+			throws IOException {
+		assertTrue(destination.mkdirs());
+		copyingMover.moveDirectory(source, destination);
+		assertMovedContent();
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void moveDirectory_destinationIsNotEmpty_throws() throws IOException {
+		assertTrue(new File(destination, "other").mkdirs());
+		directoryMover.moveDirectory(source, destination);
+	}
+
+	public void moveDirectory_copyCanNotCreateDestination_keepsSource()
+			throws IOException {
+		File parentIsAFile = new File(destination.getParentFile(), "file");
+		assertTrue(parentIsAFile.createNewFile());
+		try {
+			copyingMover.moveDirectory(source, new File(parentIsAFile, "moved"));
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(new File(source, "a").exists());
+		}
+	}
+}